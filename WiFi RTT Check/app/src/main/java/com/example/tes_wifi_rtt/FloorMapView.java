@@ -0,0 +1,313 @@
+package com.example.tes_wifi_rtt;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+/**
+ * Map of the floor drawn on one hardware accelerated canvas: the floorplan tiles in view at the
+ * resolution of the current zoom, a marker for every
+ * anchor, the routers of the latest fix and the device position. Positions are in meters, x to
+ * the right and y down the floorplan. The device marker is predicted from the velocity of the
+ * latest fix and eased towards the prediction on every display frame, so it glides between fixes
+ * instead of jumping. Pan and pinch zoom are continuous; the map follows the device until it is
+ * panned and follows again after a double tap. Must be used on the UI thread.
+ */
+public class FloorMapView extends View {
+
+    static final float DEFAULT_DP_PER_METER = 5.118f;
+    static final float MIN_DP_PER_METER = 2;
+    static final float MAX_DP_PER_METER = 80;
+    // Time constant of the easing towards the predicted position
+    static final float SMOOTHING_SECONDS = 0.15f;
+    static final float MARKER_DP = 28;
+    static final float ANCHOR_DP = 4;
+
+    private final float density;
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint anchorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint rangedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint accuracyPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private FloorplanTiles floorplan;
+    // Keys of the tiles in view, refilled every frame
+    private long[] visibleTiles = new long[64];
+    private final Rect tileSource = new Rect();
+    private final RectF tileDestination = new RectF();
+    private Bitmap marker;
+    private PositioningMetrics metrics;
+    private float[] anchorX = new float[0];
+    private float[] anchorY = new float[0];
+
+    // Screen px = meters * scale + offset
+    private float scale;
+    private float offsetX;
+    private float offsetY;
+    private boolean following = true;
+
+    private PositionFix fix;
+    private final double[] predicted = new double[2];
+    private double shownX;
+    private double shownY;
+    private boolean positionShown;
+    private long lastFrameNanos;
+
+    public FloorMapView(Context context) {
+        this(context, null);
+    }
+
+    public FloorMapView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        density = getResources().getDisplayMetrics().density;
+        scale = DEFAULT_DP_PER_METER * density;
+        anchorPaint.setColor(0xFF2452A2); // Kettering blue
+        rangedPaint.setColor(Color.GREEN);
+        accuracyPaint.setColor(0x302452A2);
+
+        marker = BitmapFactory.decodeResource(getResources(), R.drawable.kettering_bulldog);
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoomBy(detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                following = false;
+                offsetX -= distanceX;
+                offsetY -= distanceY;
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                following = true;
+                invalidate();
+                return true;
+            }
+        });
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        floorplan = FloorplanTiles.open(getContext());
+        if (floorplan != null)
+            floorplan.setOnTileLoaded(this::postInvalidateOnAnimation);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (floorplan != null)
+            floorplan.close();
+        floorplan = null;
+    }
+
+    /**
+     * Draws a marker for every anchor in the database.
+     */
+    public void setAnchors(AnchorDatabase anchors) {
+        int count = anchors.size();
+        anchorX = new float[count];
+        anchorY = new float[count];
+        for (int i = 0; i < count; i++) {
+            anchorX[i] = anchors.getX(i);
+            anchorY[i] = anchors.getY(i);
+        }
+        invalidate();
+    }
+
+    /**
+     * Records the time taken by every frame as the render stage of the given metrics.
+     */
+    public void setMetrics(PositioningMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Shows a newly published fix. The marker moves towards it over the following frames.
+     */
+    public void setFix(PositionFix fix) {
+        this.fix = fix;
+        postInvalidateOnAnimation();
+    }
+
+    /**
+     * Zooms around the centre of the view, e.g. from the zoom buttons.
+     */
+    public void zoomBy(float factor) {
+        zoomBy(factor, getWidth() / 2f, getHeight() / 2f);
+    }
+
+    private void zoomBy(float factor, float focusX, float focusY) {
+        float zoomed = Math.max(MIN_DP_PER_METER * density, Math.min(MAX_DP_PER_METER * density, scale * factor));
+        factor = zoomed / scale;
+        // Keep the point under the focus where it is
+        offsetX = focusX - (focusX - offsetX) * factor;
+        offsetY = focusY - (focusY - offsetY) * factor;
+        scale = zoomed;
+        invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        long start = System.nanoTime();
+        boolean moving = updatePosition();
+        if (following && positionShown) {
+            offsetX = getWidth() / 2f - (float)shownX * scale;
+            offsetY = getHeight() / 2f - (float)shownY * scale;
+        }
+
+        if (floorplan != null)
+            drawFloorplan(canvas, floorplan);
+
+        float anchorRadius = ANCHOR_DP * density;
+        for (int i = 0; i < anchorX.length; i++)
+            canvas.drawCircle(anchorX[i] * scale + offsetX, anchorY[i] * scale + offsetY, anchorRadius, anchorPaint);
+        PositionFix fix = this.fix;
+        if (fix != null) {
+            for (int i = 0; i < fix.getRouterCount(); i++) {
+                if (fix.getRouterX(i) > 0 || fix.getRouterY(i) > 0) // Routers missing from the database sit at 0,0
+                    canvas.drawCircle(fix.getRouterX(i) * scale + offsetX, fix.getRouterY(i) * scale + offsetY,
+                            anchorRadius, rangedPaint);
+            }
+        }
+
+        if (positionShown) {
+            float x = (float)shownX * scale + offsetX;
+            float y = (float)shownY * scale + offsetY;
+            canvas.drawCircle(x, y, (float)Math.sqrt(fix.getVariance()) * scale, accuracyPaint);
+            if (marker != null) {
+                float half = MARKER_DP * density / 2;
+                canvas.save();
+                canvas.translate(x - half, y - half);
+                canvas.scale(2 * half / marker.getWidth(), 2 * half / marker.getHeight());
+                canvas.drawBitmap(marker, 0, 0, bitmapPaint);
+                canvas.restore();
+            }
+        }
+
+        if (metrics != null)
+            metrics.record(PositioningMetrics.STAGE_RENDER, System.nanoTime() - start);
+        // Keep drawing every frame only while the marker is still moving
+        if (moving)
+            postInvalidateOnAnimation();
+    }
+
+    /**
+     * Draws the tiles in view from the level closest to one floorplan pixel per screen pixel.
+     * Missing tiles are requested from the decoder and drawn from a cached coarser level meanwhile.
+     */
+    private void drawFloorplan(Canvas canvas, FloorplanTiles floorplan) {
+        TilePyramid pyramid = floorplan.getPyramid();
+        TileCache<Bitmap> cache = floorplan.getCache();
+        // Level 0 px = (screen px - offset) * pxPerScreenPx + origin
+        double pxPerScreenPx = pyramid.getPxPerMeter() / scale;
+        double left = pyramid.getOriginX() - offsetX * pxPerScreenPx;
+        double top = pyramid.getOriginY() - offsetY * pxPerScreenPx;
+        int level = pyramid.chooseLevel(pxPerScreenPx);
+        int count = pyramid.visibleTiles(level, left, top,
+                left + getWidth() * pxPerScreenPx, top + getHeight() * pxPerScreenPx, visibleTiles);
+        if (count < 0) {
+            visibleTiles = new long[-count];
+            count = pyramid.visibleTiles(level, left, top,
+                    left + getWidth() * pxPerScreenPx, top + getHeight() * pxPerScreenPx, visibleTiles);
+        }
+
+        int tileSize = pyramid.getTileSize();
+        for (int i = 0; i < count; i++) {
+            long key = visibleTiles[i];
+            int column = TilePyramid.getColumn(key);
+            int row = TilePyramid.getRow(key);
+            Bitmap tile = cache.get(key);
+            int fallback = level;
+            if (tile == null) {
+                floorplan.request(key);
+                while (tile == null && ++fallback < pyramid.getLevels()) {
+                    int shift = fallback - level;
+                    tile = cache.peek(TilePyramid.key(fallback, column >> shift, row >> shift));
+                }
+                if (tile == null)
+                    continue;
+            }
+            // The part of the drawn bitmap covering this tile, in the pixels of its level
+            int shift = fallback - level;
+            int span = tileSize >> shift;
+            int sourceLeft = (column * tileSize >> shift) - (column >> shift) * tileSize;
+            int sourceTop = (row * tileSize >> shift) - (row >> shift) * tileSize;
+            tileSource.set(sourceLeft, sourceTop,
+                    Math.min(sourceLeft + span, tile.getWidth()), Math.min(sourceTop + span, tile.getHeight()));
+            // Back to level 0 px, then to the screen
+            long levelPx = 1L << fallback;
+            double bitmapLeft = (double)(column >> shift) * tileSize * levelPx - left;
+            double bitmapTop = (double)(row >> shift) * tileSize * levelPx - top;
+            tileDestination.set(
+                    (float)((bitmapLeft + tileSource.left * levelPx) / pxPerScreenPx),
+                    (float)((bitmapTop + tileSource.top * levelPx) / pxPerScreenPx),
+                    (float)((bitmapLeft + tileSource.right * levelPx) / pxPerScreenPx),
+                    (float)((bitmapTop + tileSource.bottom * levelPx) / pxPerScreenPx));
+            canvas.drawBitmap(tile, tileSource, tileDestination, bitmapPaint);
+        }
+        // Tiles that scrolled away before being decoded are skipped by the decoder
+        cache.cancelPendingExcept(visibleTiles, count);
+    }
+
+    /**
+     * Eases the shown position towards the position predicted for this frame.
+     * Returns true if the marker has not caught up or the device is moving.
+     */
+    private boolean updatePosition() {
+        PositionFix fix = this.fix;
+        long now = SystemClock.elapsedRealtimeNanos();
+        float dt = (now - lastFrameNanos) * 1e-9f;
+        lastFrameNanos = now;
+        if (fix == null || !fix.hasPosition())
+            return false;
+
+        fix.predict(now, predicted);
+        // The prediction stops moving once it reaches the tracker's limit
+        boolean extrapolating = fix.getSpeed() > 0.05
+                && now - fix.getTimestamp() < PositionTracker.MAX_PREDICTION_NANOS;
+        if (!positionShown) {
+            shownX = predicted[0];
+            shownY = predicted[1];
+            positionShown = true;
+            return extrapolating;
+        }
+        double blend = 1 - Math.exp(-Math.min(dt, 1) / SMOOTHING_SECONDS);
+        shownX += (predicted[0] - shownX) * blend;
+        shownY += (predicted[1] - shownY) * blend;
+        double remaining = Math.hypot(predicted[0] - shownX, predicted[1] - shownY);
+        return remaining > 0.01 || extrapolating;
+    }
+}
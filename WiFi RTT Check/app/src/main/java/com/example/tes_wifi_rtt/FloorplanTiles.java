@@ -0,0 +1,120 @@
+package com.example.tes_wifi_rtt;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Floorplan tile pyramid read from assets/floorplan, written there by FloorplanTiler. Tiles are
+ * decoded on a background thread, latest request first since it is the most likely to still be
+ * in view, into a TileCache sized from the memory class of the device.
+ */
+public class FloorplanTiles {
+
+    private static final String TAG = "FloorplanTiles";
+    static final String DIRECTORY = "floorplan";
+    // Share of the app's heap the decoded tiles may use
+    static final int CACHE_FRACTION = 8;
+
+    private final AssetManager assets;
+    private final TilePyramid pyramid;
+    private final TileCache<Bitmap> cache;
+    private final LinkedBlockingDeque<Long> requests = new LinkedBlockingDeque<>();
+    private final Thread decoder;
+    private volatile Runnable onTileLoaded;
+
+    /**
+     * Reads the manifest and starts the decoder. Returns null if the app has no tiles.
+     */
+    public static FloorplanTiles open(Context context) {
+        try (Reader in = new InputStreamReader(context.getAssets().open(DIRECTORY + "/" + TilePyramid.MANIFEST))) {
+            return new FloorplanTiles(context, TilePyramid.parse(in));
+        }
+        catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "Floorplan not loaded", e);
+            return null;
+        }
+    }
+
+    private FloorplanTiles(Context context, TilePyramid pyramid) {
+        this.assets = context.getAssets();
+        this.pyramid = pyramid;
+        int memoryClassMb = ((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass();
+        this.cache = new TileCache<>(memoryClassMb * 1024L * 1024L / CACHE_FRACTION, Bitmap::getAllocationByteCount);
+        this.decoder = new Thread(this::runDecoder, "floorplan-tiles");
+        this.decoder.setDaemon(true);
+        this.decoder.start();
+    }
+
+    public TilePyramid getPyramid() {
+        return pyramid;
+    }
+
+    public TileCache<Bitmap> getCache() {
+        return cache;
+    }
+
+    /**
+     * Called on the decoder thread after each tile is added to the cache.
+     */
+    public void setOnTileLoaded(Runnable onTileLoaded) {
+        this.onTileLoaded = onTileLoaded;
+    }
+
+    /**
+     * Has a tile decoded unless it is cached or already waiting.
+     */
+    public void request(long key) {
+        if (cache.request(key))
+            requests.offerFirst(key);
+    }
+
+    /**
+     * Stops the decoder and drops every tile.
+     */
+    public void close() {
+        decoder.interrupt();
+        cache.clear();
+    }
+
+    private void runDecoder() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Bitmap.Config.RGB_565; // Floorplans have no alpha, half the memory of ARGB
+        try {
+            while (true) {
+                long key = requests.takeFirst();
+                if (!cache.isPending(key)) // Scrolled out of view, or a duplicate of a decoded request
+                    continue;
+                Bitmap tile = null;
+                try (InputStream in = assets.open(DIRECTORY + "/" + TilePyramid.getPath(key))) {
+                    tile = BitmapFactory.decodeStream(in, null, options);
+                }
+                catch (IOException e) {
+                    Log.w(TAG, "Floorplan tile not loaded", e);
+                }
+                if (tile == null) {
+                    cache.fail(key);
+                    continue;
+                }
+                cache.put(key, tile);
+                Runnable listener = onTileLoaded;
+                if (listener != null)
+                    listener.run();
+            }
+        }
+        catch (InterruptedException e) {
+            // Closed
+        }
+    }
+}
@@ -3,43 +3,52 @@ package com.example.tes_wifi_rtt;
 import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.graphics.Color;
-import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
 import android.widget.*;
 import android.view.*;
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.net.wifi.ScanResult;
-import android.net.wifi.WifiManager;
-import android.net.wifi.rtt.RangingRequest;
-import android.net.wifi.rtt.*;
+import android.content.res.AssetFileDescriptor;
 import android.Manifest;
-import android.Manifest.permission;
 
 import androidx.appcompat.widget.SwitchCompat;
 import androidx.constraintlayout.widget.ConstraintLayout;
 import androidx.constraintlayout.widget.ConstraintSet;
 import androidx.core.app.ActivityCompat;
+import androidx.recyclerview.widget.RecyclerView;
 
 import org.w3c.dom.Text;
 
-import java.util.List;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 
 public class MainActivity extends Activity {
 
-    List<ScanResult> scanResults;
+    private static final String TAG = "MainActivity";
 
-    GPSCoreAPI coreAPI = new GPSCoreAPI();
+    GPSCoreAPI coreAPI;
+    PositioningPipeline pipeline;
+    TraceRecorder recorder;
+    PositionFix shownFix;
+    RouterListAdapter routerAdapter;
 
-    double xGlobal = 0;
-    double yGlobal = 0;
+    // Views used on every tick, looked up once in onCreate
+    FloorMapView mapView;
+    Switch switch1;
+    TextView textError;
+    TextView positionText;
 
-    float dpPerMeter = 5.118f; // 13/2.54
-    float constdpPerMeter = 5.118f;
-    int clearCounter = 0;
-
-    int zoomLevel = 1;
+    double[] userPosition = new double[2];
 
     public void setCompatible(Context context){
         TextView textCompatible = findViewById(R.id.textCompatible);
@@ -53,128 +62,80 @@ public class MainActivity extends Activity {
             textCompatible.setTextColor(Color.RED);
         }
     }
-    public void scanWifi(Context context){
-        TextView textError = findViewById(R.id.textError);
-        LinearLayout linearLayout = findViewById(R.id.linearLayout);
-
-        boolean mLocationPermissionApproved = ActivityCompat.checkSelfPermission(context, permission.ACCESS_FINE_LOCATION)== PackageManager.PERMISSION_GRANTED;
-
-        WifiManager mWifiManager = (WifiManager) getSystemService(Context.WIFI_SERVICE);
-
-        WifiRttManager mWifiRttManager = (WifiRttManager) context.getSystemService(Context.WIFI_RTT_RANGING_SERVICE);
-
-        RangingRequest.Builder builder = new RangingRequest.Builder();
-
-        RangingRequest req = builder.build(); // Builds request for distances
-
-        // Code here executes on main thread after user presses button
-        if (mLocationPermissionApproved) {
-            if (ActivityCompat.checkSelfPermission(context, permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-                // TODO: Consider calling
-                //    ActivityCompat#requestPermissions
-                // here to request the missing permissions, and then overriding
-                //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-                //                                          int[] grantResults)
-                // to handle the case where the user grants the permission. See the documentation
-                // for ActivityCompat#requestPermissions for more details.
-                return;
-            }
-            scanResults = mWifiManager.getScanResults();
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) { // Checks version is up to date
-                String[] wifiMac = new String[10];
-                int[] wifiSignalStrength = new int[10];
-                int[] wifiDistance = new int[10];
-                boolean rttRoutersAvailable = false;
-
-                for (int i = 0; i < scanResults.size(); i++) { // Iterates through all scanned Wifi(s)
-                    if ((scanResults.get(i)).is80211mcResponder()) { // Checks that the router is RTT supported
-                        builder.addAccessPoint(scanResults.get(i)); // Adds access point to request range
-                        rttRoutersAvailable = true;
-                    }
-                }
-                scanResults.clear();
-                if (rttRoutersAvailable) {
-                    rttRoutersAvailable = false;
-                    mWifiRttManager.startRanging(req, context.getMainExecutor(), new RangingResultCallback() {
-                        @Override
-                        public void onRangingFailure(int code) {
-                            textError.setText(R.string.failure + code);
-                            textError.setTextColor(Color.RED);
-                        }
-
-                        @SuppressLint("SetTextI18n")
-                        @Override
-                        public void onRangingResults(List<RangingResult> results) {
-                            textError.setText(R.string.success);
-                            textError.setTextColor(Color.GREEN);
-                            int index = 0;
-                            for (int i = 0; i < results.size(); i++) {
-                                if (results.get(i).getStatus() == RangingResult.STATUS_SUCCESS) { // If STATUS_SUCCESS
-                                    wifiMac[index] = String.valueOf(results.get(i).getMacAddress());
-                                    wifiSignalStrength[index] = results.get(i).getRssi();
-                                    wifiDistance[index++] = results.get(i).getDistanceMm();
-                                }
-                                else { // If STATUS_FAIL
-                                    wifiMac[i] = "FAIL";
-                                    wifiSignalStrength[i] = 0;
-                                    wifiDistance[i] = 0;
-                                }
-                            }
-                            if(index > 0) {
-                                linearLayout.removeAllViews();
-                            }
-
-                            for (int i = 0; i < index; i++) {
-                                coreAPI.appendRouterList(wifiDistance[i], wifiMac[i], wifiSignalStrength[i], context); // Adds router to list of routers
-                            }
-
-                            for (int i = 0; i < index; i++) {
-                                TextView textView = new TextView(context);
-                                textView.setTextSize(20);
-                                textView.setTextColor(Color.BLACK);
-                                /*textView.setText(getString(R.string.mac)    + wifiMac[i] + "\n"
-                                        + getString(R.string.rssi)          + wifiSignalStrength[i] + "\n"
-                                        + getString(R.string.distance)      + wifiDistance[i] + "\n"
-                                        + getString(R.string.longitude)     + 0 + "\n"
-                                        + getString(R.string.latitude)      + 0 + "\n");*/
-
-                                textView.setText(getString(R.string.mac)    + coreAPI.getRouterMACAddr(i) + "\n"
-                                        + getString(R.string.rssi)          + coreAPI.getRouterRssi(i) + "\n"
-                                        + getString(R.string.distance)      + coreAPI.getRouterDist(i) + "\n"
-                                        + getString(R.string.longitude)     + coreAPI.getRouterX(i) + "\n"
-                                        + getString(R.string.latitude)      + coreAPI.getRouterY(i) + "\n");
-
-                                LinearLayout horizontalLayout = new LinearLayout(context);
-                                horizontalLayout.setOrientation(LinearLayout.HORIZONTAL);
-                                linearLayout.addView(horizontalLayout);
-                                horizontalLayout.addView(textView, 0);
-                                LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(150, 150);
-                                layoutParams.setMargins(125, 0, 0, 0);
-
-
-                                // Handling of button
-                                ImageButton placeMapButton = new ImageButton(context);
-                                placeMapButton.setBackgroundColor(0xFF2452A2); // Sets color to kettering blue
-                                placeMapButton.setBackgroundResource(R.drawable.place_router_button);
-                                placeMapButton.setImageResource(android.R.drawable.ic_dialog_map);
-                                horizontalLayout.addView(placeMapButton, 1, layoutParams);
-                                placeMapButton.setOnClickListener(v -> textView.setTextColor(Color.GREEN));
-
-                            }
-                        }
-                    });
-                }
-                else {
-                    textError.setText(R.string.no_rtt_error);
-                    textError.setTextColor(Color.RED);
-                }
-            }
+    // Maps the anchor file straight out of the APK, it is stored uncompressed so nothing is parsed or copied
+    public static AnchorDatabase loadAnchors(Context context) {
+        try (AssetFileDescriptor fd = context.getAssets().openFd("anchors.bin");
+             FileInputStream in = fd.createInputStream()) {
+            return new AnchorDatabase(in.getChannel().map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength()));
         }
-        else {
+        catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "Anchor database not loaded", e);
+            return AnchorDatabase.EMPTY;
+        }
+    }
+    public static WalkableAreas loadWalkableAreas(Context context) {
+        try (Reader in = new InputStreamReader(context.getAssets().open("walkable.csv"))) {
+            return WalkableAreas.parse(in);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "Walkable areas not loaded", e);
+            return WalkableAreas.NONE;
+        }
+    }
+    // Built from surveyed walks with the positioning-core survey task, sites without a survey ship none
+    public static FingerprintDatabase loadFingerprints(Context context) {
+        try (Reader in = new InputStreamReader(context.getAssets().open("fingerprints.csv"))) {
+            return FingerprintDatabase.parse(in);
+        }
+        catch (FileNotFoundException e) {
+            return FingerprintDatabase.NONE;
+        }
+        catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "Fingerprints not loaded", e);
+            return FingerprintDatabase.NONE;
+        }
+    }
+    public static TraceRecorder openTrace(Context context) {
+        // Keep the trace of the previous run, field reports usually come after a restart
+        File trace = new File(context.getFilesDir(), "trace.bin");
+        trace.renameTo(new File(context.getFilesDir(), "trace.prev.bin"));
+        try {
+            return new TraceRecorder(trace);
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Trace not recorded", e);
+            return null;
+        }
+    }
+    public static void writeMetrics(Context context, PositioningMetrics metrics) {
+        // Stage latencies, fix rate and failure codes of this run, next to the trace
+        try (Writer out = new FileWriter(new File(context.getFilesDir(), "metrics.csv"))) {
+            metrics.snapshot().write(out);
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Metrics not written", e);
+        }
+    }
+    @SuppressLint("SetTextI18n")
+    public void showStatus(int status){
+        if (status == 0) {
+            textError.setText(R.string.success);
+            textError.setTextColor(Color.GREEN);
+        }
+        else if (status == RangingSource.FAILURE_NO_RESPONDERS) {
+            textError.setText(R.string.no_rtt_error);
+            textError.setTextColor(Color.RED);
+        }
+        else if (status == RangingSource.FAILURE_PERMISSION) {
             textError.setText(R.string.permission_error);
             textError.setTextColor(Color.RED);
         }
+        else {
+            textError.setText(getString(R.string.failure) + status);
+            textError.setTextColor(Color.RED);
+        }
     }
+
     @SuppressLint("SetTextI18n")
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -183,12 +144,46 @@ public class MainActivity extends Activity {
         Context context = getApplicationContext();
 
         ViewFlipper viewFlipper = findViewById(R.id.myViewFlipper);
+        mapView = findViewById(R.id.mapView);
+        switch1 = findViewById(R.id.switch1);
+        textError = findViewById(R.id.textError);
+        positionText = findViewById(R.id.positionText);
 
         ActivityCompat.requestPermissions(this, new String[] {Manifest.permission.ACCESS_FINE_LOCATION}, 1);
 
         setCompatible(context);
 
-        FrameLayout map = findViewById(R.id.mapContainer);
+        // Rows are recycled and only rebound when their router's values change
+        RecyclerView routerList = findViewById(R.id.routerList);
+        routerAdapter = new RouterListAdapter(this);
+        routerList.setAdapter(routerAdapter);
+        routerList.setItemAnimator(null); // Values change every scan, animating each change only adds work
+
+        // Ranging and solving run on the pipeline's own threads, coreAPI is not touched here again
+        AnchorDatabase anchors = loadAnchors(context);
+        mapView.setAnchors(anchors);
+        coreAPI = new GPSCoreAPI(anchors);
+        coreAPI.setWalkableAreas(loadWalkableAreas(context));
+        coreAPI.setFingerprints(loadFingerprints(context));
+        GdopRangingPlanner planner = new GdopRangingPlanner(anchors);
+        WifiRttRangingSource source = new WifiRttRangingSource(context, planner);
+        // Routers that keep failing or ranging through walls are neither ranged nor solved with for a while
+        RouterQuality quality = new RouterQuality();
+        coreAPI.setRouterQuality(quality);
+        source.setRouterQuality(quality);
+        pipeline = new PositioningPipeline(coreAPI, source);
+        // Every ranging result and fix goes to a binary trace for diagnosing accuracy in the field
+        recorder = openTrace(context);
+        source.setTraceRecorder(recorder);
+        pipeline.setTraceRecorder(recorder);
+        source.setMetrics(pipeline.getMetrics());
+        mapView.setMetrics(pipeline.getMetrics());
+        // Show each fix as soon as its scan is solved instead of waiting for the next tick
+        pipeline.setFixListener(fix -> {
+            if (fix.hasPosition())
+                planner.setDevicePosition(fix.getX(), fix.getY());
+            h2.post(r3);
+        });
 
         ImageButton button = findViewById(R.id.buttonMap);
         button.setOnClickListener(new View.OnClickListener()
@@ -200,202 +195,77 @@ public class MainActivity extends Activity {
             }
         });
 
+        // Pinch zooms continuously, the buttons zoom in steps around the centre of the map
         Button buttonZoomIn = findViewById(R.id.buttonZoomIn);
-
-        buttonZoomIn.setOnClickListener(new View.OnClickListener()
-        {
-            @Override
-            public void onClick(View v)
-            {
-
-                // Get the current scale of the map
-                float currentScale = map.getScaleX();
-
-                // Decrease the scale by a factor of 1.2
-                float newScale = currentScale + 1f;
-
-                float maxScale = 4f;
-
-                if (newScale <= maxScale) {
-
-                    if(zoomLevel < 4){
-                        zoomLevel++;
-                    }
-                    dpPerMeter = constdpPerMeter * (zoomLevel);
-
-                    // Set translation for zoom
-                    map.setScaleX(newScale);
-                    map.setScaleY(newScale);
-
-                    moveMapplease((int)xGlobal, (int)yGlobal);
-                }
-            }
-        });
+        buttonZoomIn.setOnClickListener(v -> mapView.zoomBy(1.5f));
 
         Button buttonZoomOut = findViewById(R.id.buttonZoomOut);
-
-        buttonZoomOut.setOnClickListener(new View.OnClickListener()
-        {
-            @Override
-            public void onClick(View v)
-            {
-                // Get the current scale of the map
-                float currentScale = map.getScaleX();
-
-                // Decrease the scale by a factor of 1.2
-                float newScale = currentScale - 1f;
-
-                float minScale = 1f;
-
-                if (newScale >= minScale) {
-                    if(zoomLevel > 1){
-                        zoomLevel--;
-                    }
-                    dpPerMeter = constdpPerMeter * (zoomLevel);
-
-                    // Set the new scale for the map
-                    map.setScaleX(newScale);
-                    map.setScaleY(newScale);
-
-                    moveMapplease((int)xGlobal, (int)yGlobal);
-
-                }
-
-            }
-        });
-    }
-
-    public void moveMap(int x, int y) {
-        int offsetX = x; // offset not yet determined
-        int offsetY = y;
-        ImageView map = findViewById(R.id.map);
-        View rootView = findViewById(android.R.id.content).getRootView();
-        int newX = map.getLeft() + offsetX;
-        int newY = map.getTop() + offsetY;
-        int maxX = rootView.getWidth() - map.getWidth();
-        int maxY = rootView.getHeight() - map.getHeight();
-        newX = Math.min(Math.max(0, newX), maxX);
-        newY = Math.min(Math.max(0, newY), maxY);
-        map.layout(newX, newY, newX + map.getWidth(), newY + map.getHeight());
+        buttonZoomOut.setOnClickListener(v -> mapView.zoomBy(1 / 1.5f));
     }
 
     Runnable r2=new Runnable() {
         @Override
         public void run() {
 
-            Switch switch1 = findViewById(R.id.switch1);
             if (switch1.isChecked()) {
-                Context context = getApplicationContext();
-                scanWifi(context);
-
-                double[] userPosition = coreAPI.calculatePosition();
+                pipeline.requestScan();
+            }
 
-                if(userPosition[0] > 0 && userPosition[1] > 0) {
-                    xGlobal = userPosition[0];
-                    yGlobal = userPosition[1];
-                    moveMapplease((int) userPosition[0], (int) userPosition[1]);
-                    TextView position = findViewById(R.id.positionText);
-                    position.setText("(" + String.format("%.2f", userPosition[0]) + "," + String.format("%.2f", userPosition[1]) + ")");
-                    System.out.println("DATAREADING: " + userPosition[0] + "," + userPosition[1]);
-                }
+            showStatus(pipeline.getLastStatus());
+            r3.run();
 
+            // Routers age out on the pipeline's router TTL, the scan rate follows the scheduler
+            long delay = switch1.isChecked() ? pipeline.getScheduler().getIntervalMillis() : getResources().getInteger(R.integer.scan_delay);
+            h2.postDelayed(r2,delay);
+        }
+    };
+    Runnable r3=new Runnable() {
+        @Override
+        public void run() {
+            // Only the latest published fix is read, the solve already happened on the pipeline
+            PositionFix fix = pipeline.getLatestFix();
+            if (fix == null)
+                return;
+            // Fixes are published in scan order, an older sequence number is never shown over a newer one
+            if (shownFix == null || fix.getScanSequence() > shownFix.getScanSequence()) {
+                shownFix = fix;
+                routerAdapter.submit(fix);
+                // The map moves the marker between fixes on its own, every display frame
+                mapView.setFix(fix);
             }
-            clearCounter++;
-            if(clearCounter >= 10){
-                coreAPI.clearRouterList();
-                System.out.println("Clear Router List");
-                clearCounter = 0;
+
+            fix = shownFix;
+            fix.predict(SystemClock.elapsedRealtimeNanos(), userPosition);
+            if(fix.hasPosition() && userPosition[0] > 0 && userPosition[1] > 0) {
+                positionText.setText("(" + String.format("%.2f", userPosition[0]) + "," + String.format("%.2f", userPosition[1]) + ")");
             }
-            h2.postDelayed(r2,getResources().getInteger(R.integer.scan_delay));
         }
     };
     Handler h2=new Handler();
     @Override
     public void onResume() {
         super.onResume();
+        pipeline.start();
         h2.postDelayed(r2,getResources().getInteger(R.integer.scan_delay));
     }
     @Override
     public void onPause() {
         super.onPause();
         h2.removeCallbacks(r2);
-
+        h2.removeCallbacks(r3);
+        pipeline.stop();
+        writeMetrics(getApplicationContext(), pipeline.getMetrics());
     }
-
-    public void moveMapplease(float x, float y) {
-        float xDP = x*dpPerMeter; // offset not yet determined
-        float yDP = y*dpPerMeter;
-
-        //float xPositionDP =  410/2 - xDP;
-        //float yPositionDP =  630/2 - yDP;
-
-        float xPositionDP =  (380/2) * zoomLevel - xDP;
-        float yPositionDP =  (760/2) * zoomLevel - yDP;
-
-        //float xPositionDP = xDP;
-        //float yPositionDP = yDP;
-
-        //ImageView map = findViewById(R.id.map);
-        //View rootView = findViewById(android.R.id.content).getRootView();
-
-        final float scale = getResources().getDisplayMetrics().density;
-
-        int xPopsitionPx = (int) (xPositionDP * scale + 0.5f);
-        int yPopsitionPx = (int) (yPositionDP * scale + 0.5f);
-
-        FrameLayout mapContainer = findViewById(R.id.mapContainer);
-
-        //FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(mapContainer.getWidth(), mapContainer.getHeight());
-        //lp.leftMargin = xPopsitionPx;
-        //lp.topMargin = yPopsitionPx;
-        //lp.setMargins((int)xPopsitionPx, (int)yPopsitionPx, 0, 0);
-        //map.setLayoutParams(lp);
-        mapContainer.setX((int)xPopsitionPx);
-        mapContainer.setY((int)yPopsitionPx);
-
-
-        //map.setPadding(xPopsitionPx, yPopsitionPx, 0 ,0);
-
-        //LinearLayout player = findViewById(R.id.playerContainer);
-        //player.setX(xPopsitionPx);
-        //player.setY(yPopsitionPx);
-
-        /*
-        float newX = map.getLeft() + xPosition;
-        float newY = map.getTop() + yPosition;
-        float maxX = rootView.getWidth() - map.getWidth();
-        float maxY = rootView.getHeight() - map.getHeight();
-        newX = Math.min(Math.max(0, newX), maxX);
-        newY = Math.min(Math.max(0, newY), maxY);
-        map.layout((int)newX, (int)newY, (int)newX + map.getWidth(), (int)newY + map.getHeight());*/
-    }
-
-    public void placeRouter(Context context){
-        ConstraintSet constraints = new ConstraintSet();
-        ImageButton router = new ImageButton(context);
-        router.setImageResource(R.drawable.round_button);
-
-        router.setBackgroundColor(0xFF2452A2); // Sets color to kettering blue
-        router.setBackgroundResource(R.drawable.place_router_button);
-        router.setImageResource(android.R.drawable.ic_dialog_map);
-
-
-        //float[] positionMeters = this.lookupTable.get(MACAddr);
-        //float xPositionDP = positionMeters[0]*25/2.54f;
-        //float yPositionDP = positionMeters[1]*25/2.336f;
-
-        //final float scale = getResources().getDisplayMetrics().density;
-
-        //int xPopsitionPx = (int) (xPositionDP * scale + 0.5f);
-        //int yPopsitionPx = (int) (yPositionDP * scale + 0.5f);
-
-        //router.setTop(200);
-        //router.setLeft(200);
-        //router.setPadding(200,0,0,0);
-        //router.setX((int)xPositionDP);
-        //router.setY((int)yPositionDP);
-
-        router.setX(0);
-        router.setY(0);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (recorder != null) {
+            try {
+                recorder.close();
+            }
+            catch (IOException e) {
+                Log.w(TAG, "Trace not closed", e);
+            }
+        }
     }
-}
\ No newline at end of file
+}
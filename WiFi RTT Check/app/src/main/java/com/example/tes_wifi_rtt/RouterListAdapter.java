@@ -0,0 +1,195 @@
+package com.example.tes_wifi_rtt;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageButton;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * Adapter of the router list. Each fix is diffed against the rows on screen by MAC, so rows
+ * keep their views and only rows whose values changed are rebound. Row text is built into
+ * buffers owned by each row instead of new Strings. Must be used on the UI thread.
+ */
+public class RouterListAdapter extends RecyclerView.Adapter<RouterListAdapter.RowHolder> {
+
+    private final String macLabel;
+    private final String rssiLabel;
+    private final String distanceLabel;
+    private final String longitudeLabel;
+    private final String latitudeLabel;
+    // Rows on screen and the spare set the next fix is copied into, swapped after each diff
+    private Rows shown = new Rows();
+    private Rows next = new Rows();
+    // Routers whose place button was pressed, shown in green
+    private long[] placed = new long[8];
+    private int placedCount;
+
+    public RouterListAdapter(Context context) {
+        macLabel = context.getString(R.string.mac);
+        rssiLabel = context.getString(R.string.rssi);
+        distanceLabel = context.getString(R.string.distance);
+        longitudeLabel = context.getString(R.string.longitude);
+        latitudeLabel = context.getString(R.string.latitude);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Shows the routers of a fix. A fix without routers leaves the last list on screen.
+     */
+    public void submit(PositionFix fix) {
+        int count = fix.getRouterCount();
+        if (count == 0)
+            return;
+        next.ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            next.macs[i] = fix.getRouterMAC(i);
+            next.rssi[i] = fix.getRouterRssi(i);
+            next.dist[i] = fix.getRouterDist(i);
+            next.x[i] = fix.getRouterX(i);
+            next.y[i] = fix.getRouterY(i);
+        }
+        next.count = count;
+
+        final Rows before = shown;
+        final Rows after = next;
+        // Rows are ranked by RSSI, so moves are detected to keep a router's row when its rank changes
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return before.count;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return after.count;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return before.macs[oldPosition] == after.macs[newPosition];
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return before.rssi[oldPosition] == after.rssi[newPosition]
+                        && before.dist[oldPosition] == after.dist[newPosition]
+                        && before.x[oldPosition] == after.x[newPosition]
+                        && before.y[oldPosition] == after.y[newPosition];
+            }
+        });
+        shown = after;
+        next = before;
+        diff.dispatchUpdatesTo(this);
+    }
+
+    @Override
+    public int getItemCount() {
+        return shown.count;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return shown.macs[position];
+    }
+
+    @NonNull
+    @Override
+    public RowHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View row = LayoutInflater.from(parent.getContext()).inflate(R.layout.router_row, parent, false);
+        RowHolder holder = new RowHolder(row);
+        // One listener per row view, it follows whichever router the row is bound to
+        holder.placeMapButton.setOnClickListener(v -> {
+            markPlaced(holder.mac);
+            holder.text.setTextColor(Color.GREEN);
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowHolder holder, int position) {
+        Rows rows = shown;
+        holder.mac = rows.macs[position];
+        StringBuilder text = holder.builder;
+        text.setLength(0);
+        MacAddress.append(text.append(macLabel), rows.macs[position]).append('\n');
+        text.append(rssiLabel).append(rows.rssi[position]).append('\n');
+        text.append(distanceLabel).append(rows.dist[position]).append('\n');
+        text.append(longitudeLabel).append(rows.x[position]).append('\n');
+        text.append(latitudeLabel).append(rows.y[position]).append('\n');
+        holder.setText(text);
+        holder.text.setTextColor(isPlaced(holder.mac) ? Color.GREEN : Color.BLACK);
+    }
+
+    private boolean isPlaced(long mac) {
+        for (int i = 0; i < placedCount; i++) {
+            if (placed[i] == mac)
+                return true;
+        }
+        return false;
+    }
+
+    private void markPlaced(long mac) {
+        if (isPlaced(mac))
+            return;
+        if (placedCount == placed.length)
+            placed = Arrays.copyOf(placed, placedCount * 2);
+        placed[placedCount++] = mac;
+    }
+
+    /**
+     * Values of the rows of one fix as parallel arrays, grown as needed and then reused.
+     */
+    private static final class Rows {
+        long[] macs = new long[0];
+        int[] rssi = new int[0];
+        float[] dist = new float[0];
+        float[] x = new float[0];
+        float[] y = new float[0];
+        int count;
+
+        void ensureCapacity(int capacity) {
+            if (macs.length >= capacity)
+                return;
+            macs = Arrays.copyOf(macs, capacity);
+            rssi = Arrays.copyOf(rssi, capacity);
+            dist = Arrays.copyOf(dist, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+        }
+    }
+
+    /**
+     * Views of one row and the buffers its text is built in.
+     */
+    static final class RowHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+        final ImageButton placeMapButton;
+        final StringBuilder builder = new StringBuilder(160);
+        private char[] chars = new char[160];
+        long mac;
+
+        RowHolder(View row) {
+            super(row);
+            text = row.findViewById(R.id.routerText);
+            placeMapButton = row.findViewById(R.id.placeMapButton);
+        }
+
+        // TextView wraps the char array instead of copying it into a String
+        void setText(StringBuilder source) {
+            int length = source.length();
+            if (chars.length < length)
+                chars = new char[length];
+            source.getChars(0, length, chars, 0);
+            text.setText(chars, 0, length);
+        }
+    }
+}
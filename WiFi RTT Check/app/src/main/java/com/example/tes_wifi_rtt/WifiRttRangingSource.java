@@ -0,0 +1,215 @@
+package com.example.tes_wifi_rtt;
+
+import android.Manifest.permission;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.net.wifi.rtt.RangingRequest;
+import android.net.wifi.rtt.RangingResult;
+import android.net.wifi.rtt.RangingResultCallback;
+import android.net.wifi.rtt.WifiRttManager;
+import android.os.SystemClock;
+
+import androidx.core.app.ActivityCompat;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Ranging source backed by the Android Wi-Fi RTT API. Ranges against the 802.11mc responders
+ * in the responder cache, which is only refreshed from the Wi-Fi scan results on the cache's
+ * refresh interval or when ranging failures point to responders coming and going. The planner
+ * orders the responders and they are ranged in back-to-back requests of at most
+ * RangingRequest.getMaxPeers() each, merged into one scan. Responders quarantined by the
+ * router quality statistics are left out, so no airtime is spent on them.
+ */
+public class WifiRttRangingSource implements RangingSource {
+
+    private final Context context;
+    private final WifiManager mWifiManager;
+    private final WifiRttManager mWifiRttManager;
+    private final RangingPlanner planner;
+    private final ResponderCache<ScanResult> responders;
+    private long[] candidates = new long[16];
+    private long[] planned = new long[16];
+    private volatile TraceRecorder recorder;
+    private volatile PositioningMetrics metrics;
+    private volatile RouterQuality quality;
+
+    public WifiRttRangingSource(Context context, RangingPlanner planner) {
+        this(context, planner, new ResponderCache<>());
+    }
+
+    public WifiRttRangingSource(Context context, RangingPlanner planner, ResponderCache<ScanResult> responders) {
+        this.context = context.getApplicationContext();
+        this.planner = planner;
+        this.responders = responders;
+        mWifiManager = (WifiManager) this.context.getSystemService(Context.WIFI_SERVICE);
+        mWifiRttManager = (WifiRttManager) this.context.getSystemService(Context.WIFI_RTT_RANGING_SERVICE);
+    }
+
+    /**
+     * Records every ranging result, successful or not, to the given trace. Pass null to stop.
+     */
+    public void setTraceRecorder(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Counts the status of every ranging result in the given metrics. Pass null to stop.
+     */
+    public void setMetrics(PositioningMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Reports every ranging attempt to the given statistics and skips the responders they
+     * quarantine. Pass null to range every responder.
+     */
+    public void setRouterQuality(RouterQuality quality) {
+        this.quality = quality;
+    }
+
+    @Override
+    public void startRanging(RangingScan scan, Executor executor, Callback callback) {
+        if (ActivityCompat.checkSelfPermission(context, permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            executor.execute(() -> callback.onRangingFailure(FAILURE_PERMISSION));
+            return;
+        }
+        if (mWifiRttManager == null || !mWifiRttManager.isAvailable()) {
+            executor.execute(() -> callback.onRangingFailure(FAILURE_UNAVAILABLE));
+            return;
+        }
+
+        // Only the scan thread starts requests, and it waits for each scan to complete
+        long now = SystemClock.elapsedRealtimeNanos();
+        responders.evictExpired(now);
+        if (responders.needsRefresh(now))
+            refreshResponders(now);
+        if (candidates.length < responders.size()) {
+            candidates = new long[responders.size()];
+            planned = new long[responders.size()];
+        }
+        int count = responders.getResponders(candidates);
+        RouterQuality quality = this.quality;
+        if (quality != null)
+            count = quality.filter(candidates, count, now);
+        int total = planner.plan(candidates, count, RangingRequest.getMaxPeers(), planned);
+        if (total == 0) {
+            executor.execute(() -> callback.onRangingFailure(FAILURE_NO_RESPONDERS));
+            return;
+        }
+
+        scan.reset(now);
+        startBatch(scan, executor, callback, 0, total);
+    }
+
+    /**
+     * Refreshes the responder cache from the latest Wi-Fi scan results, then asks for a new
+     * Wi-Fi scan so fresh results are ready by the next refresh.
+     */
+    @SuppressWarnings("deprecation")
+    private void refreshResponders(long now) {
+        responders.beginRefresh(now);
+        List<ScanResult> scanResults = mWifiManager.getScanResults();
+        for (int i = 0; i < scanResults.size(); i++) { // Iterates through all scanned Wifi(s)
+            ScanResult result = scanResults.get(i);
+            long mac = MacAddress.pack(result.BSSID);
+            if (mac != MacAddress.INVALID) // Records whether the router is RTT supported
+                responders.put(mac, result, result.is80211mcResponder(), result.frequency, result.timestamp * 1000);
+        }
+        mWifiManager.startScan(); // Throttled by the platform, the results are picked up on the next refresh
+    }
+
+    /**
+     * Ranges the batch of planned responders starting at the given offset, then the next batch
+     * once it completes. The callback is called once, after the last batch.
+     */
+    private void startBatch(RangingScan scan, Executor executor, Callback callback, int offset, int total) {
+        int end = Math.min(total, offset + RangingRequest.getMaxPeers());
+        RangingRequest.Builder builder = new RangingRequest.Builder();
+        for (int i = offset; i < end; i++) {
+            ScanResult responder = responders.get(planned[i]);
+            if (responder != null)
+                builder.addAccessPoint(responder); // Adds access point to request range
+        }
+        RangingRequest req = builder.build(); // Builds request for distances once every access point is added
+
+        try {
+            mWifiRttManager.startRanging(req, executor, new RangingResultCallback() {
+                @Override
+                public void onRangingFailure(int code) {
+                    long now = SystemClock.elapsedRealtimeNanos();
+                    TraceRecorder trace = recorder;
+                    RouterQuality stats = quality;
+                    for (int i = offset; i < end; i++) {
+                        if (trace != null)
+                            trace.recordSample(scan.timestampNanos, planned[i], 0, 0, 0, -code);
+                        planner.onRangingResult(planned[i], false);
+                        responders.onRangingResult(planned[i], false, now);
+                        if (stats != null)
+                            stats.onRangingResult(planned[i], false, now);
+                    }
+                    finishBatch(scan, executor, callback, end, total, code);
+                }
+
+                @Override
+                public void onRangingResults(List<RangingResult> results) {
+                    int before = scan.count;
+                    TraceRecorder trace = recorder;
+                    PositioningMetrics counts = metrics;
+                    for (int i = 0; i < results.size(); i++) {
+                        RangingResult result = results.get(i);
+                        if (counts != null)
+                            counts.recordStatus(result.getStatus());
+                        if (result.getMacAddress() == null)
+                            continue;
+                        long mac = MacAddress.pack(result.getMacAddress().toString());
+                        if (result.getStatus() == RangingResult.STATUS_SUCCESS) { // If STATUS_SUCCESS
+                            scan.add(mac, result.getDistanceMm(), result.getDistanceStdDevMm(), result.getRssi());
+                            if (trace != null)
+                                trace.recordSample(scan.timestampNanos, mac, result.getDistanceMm(),
+                                        result.getDistanceStdDevMm(), result.getRssi(), RangingResult.STATUS_SUCCESS);
+                        }
+                        else if (trace != null) { // Distances are only valid on success
+                            trace.recordSample(scan.timestampNanos, mac, 0, 0, 0, result.getStatus());
+                        }
+                    }
+                    // Responders missing from the successful results count as failed attempts
+                    long now = SystemClock.elapsedRealtimeNanos();
+                    RouterQuality stats = quality;
+                    for (int i = offset; i < end; i++) {
+                        boolean success = false;
+                        for (int j = before; j < scan.count && !success; j++)
+                            success = scan.macs[j] == planned[i];
+                        planner.onRangingResult(planned[i], success);
+                        responders.onRangingResult(planned[i], success, now);
+                        if (stats != null)
+                            stats.onRangingResult(planned[i], success, now);
+                    }
+                    finishBatch(scan, executor, callback, end, total, 0);
+                }
+            });
+        }
+        catch (SecurityException e) {
+            executor.execute(() -> callback.onRangingFailure(FAILURE_PERMISSION));
+        }
+    }
+
+    /**
+     * Starts the next batch, or reports the merged scan after the last one. The scan only fails
+     * if no batch measured a range.
+     */
+    private void finishBatch(RangingScan scan, Executor executor, Callback callback, int next, int total, int code) {
+        if (next < total) {
+            startBatch(scan, executor, callback, next, total);
+        }
+        else if (scan.count > 0 || code == 0) {
+            callback.onRangingResults(scan);
+        }
+        else {
+            callback.onRangingFailure(code);
+        }
+    }
+}
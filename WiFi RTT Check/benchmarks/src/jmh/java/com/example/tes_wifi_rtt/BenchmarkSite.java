@@ -0,0 +1,71 @@
+/** \file BenchmarkSite.java
+ *  \brief This file contains the synthetic site shared by the positioning
+ *  benchmarks.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ *  \brief This class places routers on a square grid and measures them from a
+ *  device near the middle, with repeatable range noise.
+ */
+final class BenchmarkSite {
+    /* Private Variables */
+    static final double SPACING = 8;    /*!< Distance in m between neighbouring routers. */
+
+    final AnchorDatabase database;      /*!< Position of every router. */
+    final String[] macs;                /*!< MAC Address of each router. */
+    final long[] packed;                /*!< Packed MAC Address of each router. */
+    final double[] x;                   /*!< X position of each router in m. */
+    final double[] y;                   /*!< Y position of each router in m. */
+    final int[] distMm;                 /*!< Measured distance to each router in mm. */
+    final int[] stdDevMm;               /*!< Standard deviation of each distance in mm. */
+    final int[] rssi;                   /*!< Signal strength of each router. */
+    final double deviceX;               /*!< X position of the device in m. */
+    final double deviceY;               /*!< Y position of the device in m. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class BenchmarkSite.
+     *
+     *  \param routers An integer containing the number of routers.
+     */
+    BenchmarkSite(int routers) {
+        int side = (int)Math.ceil(Math.sqrt(routers));
+        this.macs = new String[routers];
+        this.packed = new long[routers];
+        this.x = new double[routers];
+        this.y = new double[routers];
+        this.distMm = new int[routers];
+        this.stdDevMm = new int[routers];
+        this.rssi = new int[routers];
+        this.deviceX = 5 + SPACING * (side - 1) / 2 + 1.3;
+        this.deviceY = 5 + SPACING * (side - 1) / 2 + 0.7;
+
+        Random noise = new Random(routers);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < routers; i++) {
+            this.packed[i] = 0x020000000000L + i;
+            this.macs[i] = MacAddress.format(this.packed[i]);
+            this.x[i] = 5 + SPACING * (i % side);
+            this.y[i] = 5 + SPACING * (i / side);
+            double distance = Math.hypot(this.deviceX - this.x[i], this.deviceY - this.y[i]);
+            this.distMm[i] = (int)Math.round(1000 * Math.max(0, distance + 0.3 * noise.nextGaussian()));
+            this.stdDevMm[i] = 300;
+            this.rssi[i] = (int)Math.round(-40 - 20 * Math.log10(Math.max(1, distance)));
+            csv.append(this.macs[i]).append(',').append(this.x[i]).append(',').append(this.y[i]).append('\n');
+        }
+        try {
+            this.database = new AnchorDatabase(AnchorDatabaseCompiler.compile(new StringReader(csv.toString())));
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/** \file FingerprintIndexBenchmark.java
+ *  \brief This file contains the build and query benchmarks of the
+ *  fingerprint k-d tree.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  \brief This class measures building the index and finding the nearest
+ *  fingerprints of a scan, for surveys of 10k and 100k fingerprints.
+ */
+@State(Scope.Thread)
+public class FingerprintIndexBenchmark {
+    /* Public Variables */
+    @Param({"10000", "100000"})
+    public int fingerprints;            /*!< Number of fingerprints in the survey. */
+
+    @Param({"16"})
+    public int accessPoints;            /*!< Number of surveyed access points. */
+
+    /* Private Variables */
+    private static final int QUERIES = 1024;    /*!< Number of scans cycled through. Power of two. */
+
+    private float[] vectors;            /*!< Signal vector of every fingerprint, row by row. */
+    private FingerprintIndex index;     /*!< Index over the vectors. */
+    private float[][] queries;          /*!< Signal vector of each scan. */
+    private final int[] ids = new int[FingerprintDatabase.DEFAULT_NEIGHBOURS];          /*!< Nearest fingerprints. */
+    private final float[] distances = new float[FingerprintDatabase.DEFAULT_NEIGHBOURS]; /*!< Distances of the nearest fingerprints. */
+    private int next;                   /*!< Index of the next scan. */
+
+    /* Methods */
+
+    /**
+     *  \brief Surveys access points spread over a floor on random positions with a log-distance
+     *         signal model, and draws scans the same way with measurement noise.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(11);
+        double[] apX = new double[this.accessPoints];
+        double[] apY = new double[this.accessPoints];
+        for (int ap = 0; ap < this.accessPoints; ap++) {
+            apX[ap] = random.nextDouble() * 200;
+            apY[ap] = random.nextDouble() * 100;
+        }
+        this.vectors = new float[this.fingerprints * this.accessPoints];
+        for (int i = 0; i < this.fingerprints; i++)
+            signals(random.nextDouble() * 200, random.nextDouble() * 100, apX, apY, random, this.vectors, i * this.accessPoints);
+        this.queries = new float[QUERIES][this.accessPoints];
+        for (int q = 0; q < QUERIES; q++)
+            signals(random.nextDouble() * 200, random.nextDouble() * 100, apX, apY, random, this.queries[q], 0);
+        this.index = new FingerprintIndex(this.vectors, this.fingerprints, this.accessPoints);
+    }
+
+    /**
+     *  \brief Writes the signal strength of every access point at a position.
+     *
+     *  \return None.
+     */
+    private void signals(double x, double y, double[] apX, double[] apY, Random random, float[] out, int offset) {
+        for (int ap = 0; ap < this.accessPoints; ap++) {
+            double distance = Math.max(1, Math.hypot(x - apX[ap], y - apY[ap]));
+            double rssi = -40 - 25 * Math.log10(distance) + 3 * random.nextGaussian();
+            out[offset + ap] = (float)Math.max(FloorClassifier.NOISE_FLOOR, Math.round(rssi));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public FingerprintIndex build() {
+        return new FingerprintIndex(this.vectors, this.fingerprints, this.accessPoints);
+    }
+
+    @Benchmark
+    public int query() {
+        float[] query = this.queries[this.next++ & (QUERIES - 1)];
+        return this.index.query(query, this.ids, this.distances);
+    }
+}
@@ -0,0 +1,70 @@
+/** \file GPSCoreAPIBenchmark.java
+ *  \brief This file contains the throughput benchmarks of the GPSCoreAPI
+ *  entry points the app calls for every scan.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  \brief This class measures updating, reading and solving the router list
+ *  for router counts from a minimal fix to a large floor.
+ */
+@State(Scope.Thread)
+public class GPSCoreAPIBenchmark {
+    /* Public Variables */
+    @Param({"3", "10", "50", "200"})
+    public int routers;                 /*!< Number of routers in view. */
+
+    /* Private Variables */
+    private BenchmarkSite site;         /*!< Routers and their measurements. */
+    private GPSCoreAPI coreAPI;         /*!< Engine under test, holding every router. */
+    private int next;                   /*!< Router updated by the next appendRouterList call. */
+    private long timestampNanos;        /*!< Time of the next ingested scan. */
+
+    /* Methods */
+
+    /**
+     *  \brief Creates the engine and ranges every router once, so the benchmarks measure updates
+     *         rather than insertions.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    @Setup
+    public void setUp() {
+        this.site = new BenchmarkSite(this.routers);
+        this.coreAPI = new GPSCoreAPI(this.site.database);
+        this.timestampNanos = 1000000000L;
+        this.coreAPI.ingestScan(this.timestampNanos, this.site.packed, this.site.distMm, this.site.stdDevMm, this.site.rssi, this.routers);
+    }
+
+    @Benchmark
+    public void appendRouterList() {
+        int i = this.next;
+        this.next = (i + 1) % this.routers;
+        this.coreAPI.appendRouterList(this.site.distMm[i], this.site.macs[i], this.site.rssi[i]);
+    }
+
+    @Benchmark
+    public double[][] getAllRouterPos() {
+        return this.coreAPI.getAllRouterPos();
+    }
+
+    @Benchmark
+    public double[] calculatePosition() {
+        return this.coreAPI.calculatePosition();
+    }
+
+    @Benchmark
+    public int ingestScan() {
+        this.timestampNanos += 100000000L;
+        return this.coreAPI.ingestScan(this.timestampNanos, this.site.packed, this.site.distMm, this.site.stdDevMm, this.site.rssi, this.routers);
+    }
+}
@@ -0,0 +1,77 @@
+/** \file GeofenceBenchmark.java
+ *  \brief This file contains the query throughput benchmarks of the walkable
+ *  area geofence.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  \brief This class measures point-in-area and projection queries on a 200 m
+ *  by 100 m floor of corridors between 40 rooms, for several grid cell sizes.
+ */
+@State(Scope.Thread)
+public class GeofenceBenchmark {
+    /* Public Variables */
+    @Param({"0.5", "1", "4"})
+    public double cellSize;             /*!< Width of a grid cell in m. */
+
+    /* Private Variables */
+    private static final int POINTS = 4096;    /*!< Number of query positions cycled through. Power of two. */
+
+    private Geofence area;              /*!< Floor under test. */
+    private double[] x;                 /*!< X coordinate of each query position. */
+    private double[] y;                 /*!< Y coordinate of each query position. */
+    private final double[] out = new double[2];  /*!< Projected position. */
+    private int next;                   /*!< Index of the next query position. */
+
+    /* Methods */
+
+    /**
+     *  \brief Builds the floor, where every room is a hole, and draws the query positions over
+     *         and around it.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    @Setup
+    public void setUp() {
+        double[][] rings = new double[41][];
+        rings[0] = new double[] {0, 0, 200, 0, 200, 100, 0, 100};
+        for (int room = 0; room < 40; room++) {
+            double left = 4 + 20 * (room % 10);
+            double bottom = 4 + 24 * (room / 10);
+            rings[room + 1] = new double[] {left, bottom, left + 16, bottom, left + 16, bottom + 20, left, bottom + 20};
+        }
+        this.area = new Geofence(rings, this.cellSize);
+
+        Random random = new Random(7);
+        this.x = new double[POINTS];
+        this.y = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            this.x[i] = random.nextDouble() * 220 - 10;
+            this.y[i] = random.nextDouble() * 120 - 10;
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        int i = this.next++ & (POINTS - 1);
+        return this.area.contains(this.x[i], this.y[i]);
+    }
+
+    @Benchmark
+    public double[] project() {
+        int i = this.next++ & (POINTS - 1);
+        this.area.project(this.x[i], this.y[i], this.out);
+        return this.out;
+    }
+}
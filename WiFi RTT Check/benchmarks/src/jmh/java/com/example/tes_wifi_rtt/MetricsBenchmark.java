@@ -0,0 +1,42 @@
+/** \file MetricsBenchmark.java
+ *  \brief This file contains the recording cost benchmarks of the positioning
+ *  metrics, alone and with threads contending for the same histogram.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  \brief This class measures recording a stage latency and counting a fix,
+ *  the work the metrics add to every scan. The gc profiler should show no
+ *  allocation.
+ */
+@State(Scope.Group)
+public class MetricsBenchmark {
+    /* Private Variables */
+    private final PositioningMetrics metrics = new PositioningMetrics();    /*!< Registry under test, shared by the group. */
+    private long nanos = 1;                                                 /*!< Next duration to record. Races between threads are harmless. */
+
+    /* Methods */
+
+    @Benchmark
+    @Group("single")
+    public void record() {
+        this.metrics.record(PositioningMetrics.STAGE_SOLVE, this.nanos = this.nanos * 5 & 0xFFFFFFFL);
+        this.metrics.increment(PositioningMetrics.COUNTER_FIXES);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public void recordContended() {
+        this.metrics.record(PositioningMetrics.STAGE_SOLVE, this.nanos = this.nanos * 5 & 0xFFFFFFFL);
+        this.metrics.increment(PositioningMetrics.COUNTER_FIXES);
+    }
+}
@@ -0,0 +1,65 @@
+/** \file PositionSolverBenchmark.java
+ *  \brief This file contains the throughput benchmarks of every position
+ *  solver on the same measurements.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  \brief This class measures one solve of each solver for router counts from
+ *  a minimal fix to a large floor.
+ */
+@State(Scope.Thread)
+public class PositionSolverBenchmark {
+    /* Public Variables */
+    @Param({"3", "10", "50", "200"})
+    public int routers;                 /*!< Number of anchors solved from. */
+
+    @Param({"wls", "lm", "particle"})
+    public String solver;               /*!< Solver under test. */
+
+    /* Private Variables */
+    private PositionSolver positionSolver;      /*!< Solver under test. */
+    private RangeMeasurements measurements;     /*!< Anchors and ranges of every solve. */
+    private final double[] position = new double[2];    /*!< Solved position. */
+
+    /* Methods */
+
+    /**
+     *  \brief Fills the measurements and creates the solver.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkSite site = new BenchmarkSite(this.routers);
+        this.measurements = new RangeMeasurements(this.routers);
+        for (int i = 0; i < this.routers; i++)
+            this.measurements.add(site.x[i], site.y[i], site.distMm[i] / 1000.0, site.stdDevMm[i] / 1000.0, site.rssi[i]);
+        this.measurements.setPrior(site.deviceX + 1, site.deviceY - 1);
+        if (this.solver.equals("wls"))
+            this.positionSolver = new WeightedLeastSquaresSolver();
+        else if (this.solver.equals("lm"))
+            this.positionSolver = new LevenbergMarquardtSolver();
+        else
+            this.positionSolver = new ParticleFilterSolver(ParticleFilterSolver.DEFAULT_PARTICLES, ForkJoinPool.commonPool(), new Random(1));
+    }
+
+    @Benchmark
+    public double[] solve() {
+        this.measurements.timestampNanos += 100000000L; // Scans 100 ms apart for the particle filter
+        this.positionSolver.solve(this.measurements, this.position);
+        return this.position;
+    }
+}
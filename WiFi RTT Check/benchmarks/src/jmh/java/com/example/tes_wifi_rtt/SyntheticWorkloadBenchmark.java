@@ -0,0 +1,83 @@
+/** \file SyntheticWorkloadBenchmark.java
+ *  \brief This file contains the benchmarks that drive the ingest path with
+ *  scans from the RTT simulator instead of one fixed scan.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ *  \brief This class measures generating scans and ingesting them while the
+ *  device walks the site, with noise, blocked paths, dropouts and routers
+ *  going offline, so router insertion and expiry are exercised as well.
+ */
+@State(Scope.Thread)
+public class SyntheticWorkloadBenchmark {
+    /* Public Variables */
+    @Param({"10", "50", "200"})
+    public int routers;                 /*!< Number of routers on the site. */
+
+    /* Private Variables */
+    private RttSimulator simulator;     /*!< Generates the scans. */
+    private GPSCoreAPI coreAPI;         /*!< Engine under test. */
+    private RangingScan scan;           /*!< Reused scan. */
+    private long ttlNanos;              /*!< Router TTL of the pipeline. */
+
+    /* Methods */
+
+    /**
+     *  \brief Creates a site and a walk along its diagonal and back.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    @Setup
+    public void setUp() {
+        BenchmarkSite site = new BenchmarkSite(this.routers);
+        double far = 5 + BenchmarkSite.SPACING * (Math.ceil(Math.sqrt(this.routers)) - 1);
+        this.simulator = new RttSimulator(site.database, new long[] {0, 60000000000L, 120000000000L},
+                new double[] {5, far, 5}, new double[] {5, far, 5}, 1);
+        this.simulator.setMaxRange(30);
+        this.simulator.setNlos(0.1, 2);
+        this.simulator.setDropout(0.1);
+        this.simulator.setChurn(0.01);
+        this.simulator.setScanInterval(200);
+        this.coreAPI = new GPSCoreAPI(site.database);
+        this.scan = new RangingScan(this.routers);
+        this.ttlNanos = PositioningPipeline.DEFAULT_ROUTER_TTL_MS * 1000000L;
+    }
+
+    /**
+     *  \brief Advances to the next scan, starting the walk over at its end.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    private void nextScan() {
+        if (!this.simulator.nextScan(this.scan)) {
+            this.simulator.reset();
+            this.coreAPI.clearRouterList(); // Time starts over
+            this.simulator.nextScan(this.scan);
+        }
+    }
+
+    @Benchmark
+    public int generateScan() {
+        nextScan();
+        return this.scan.count;
+    }
+
+    @Benchmark
+    public int ingestScan() {
+        nextScan();
+        this.coreAPI.expireRouters(this.scan.timestampNanos, this.ttlNanos);
+        return this.coreAPI.ingestScan(this.scan.timestampNanos, this.scan.macs, this.scan.distMm, this.scan.distStdDevMm,
+                this.scan.rssi, this.scan.count);
+    }
+}
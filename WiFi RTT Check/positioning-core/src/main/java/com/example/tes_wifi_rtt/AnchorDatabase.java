@@ -0,0 +1,184 @@
+/** \file AnchorDatabase.java
+ *  \brief This file contains the read only database of router positions.
+ *
+ *  The database is a binary file made by AnchorDatabaseCompiler. It is
+ *  memory-mapped rather than parsed, so opening it costs nothing however many
+ *  routers it holds, and lookups read straight from the mapping without
+ *  allocating.
+ *
+ *  File layout, all values little endian:
+ *  - Header of HEADER_SIZE bytes: magic, version, anchor count, reserved.
+ *  - count packed MAC Addresses as longs, sorted ascending.
+ *  - count X coordinates as floats, then Y, Z and floor columns the same way.
+ *  - count building ids as ints.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ *  \brief This class looks up the position of routers by MAC address in a
+ *  memory-mapped anchor file.
+ *
+ *  Anchors are found by binary search over the sorted MAC Address column and
+ *  then read by index, one column at a time. Safe to use from any thread.
+ */
+public final class AnchorDatabase {
+    /* Public Variables */
+    public static final int MAGIC = 0x48434E41;     /*!< First four bytes of an anchor file, "ANCH". */
+    public static final int VERSION = 1;            /*!< Version of the file layout. */
+    public static final int HEADER_SIZE = 16;       /*!< Size of the header in bytes. */
+    public static final int RECORD_SIZE = 28;       /*!< Size of the columns of one anchor in bytes. */
+    public static final AnchorDatabase EMPTY = new AnchorDatabase(AnchorDatabaseCompiler.write(new long[0],
+            new float[0], new float[0], new float[0], new float[0], new int[0], 0)); /*!< Database without anchors. */
+
+    /* Private Variables */
+    private final ByteBuffer buffer;    /*!< Contents of the file. Only read with absolute gets. */
+    private final int count;            /*!< Number of anchors. */
+    private final int xOffset;          /*!< Byte offset of the X column. */
+    private final int yOffset;          /*!< Byte offset of the Y column. */
+    private final int zOffset;          /*!< Byte offset of the Z column. */
+    private final int floorOffset;      /*!< Byte offset of the floor column. */
+    private final int buildingOffset;   /*!< Byte offset of the building column. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class AnchorDatabase. Reads the database from a buffer, which
+     *         is usually a memory-mapped file. Only the header is checked.
+     *
+     *  \param buffer The contents of an anchor file, from position 0 to its limit.
+     *  \throws IllegalArgumentException If the buffer is not an anchor file of this version.
+     */
+    public AnchorDatabase(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.limit() < HEADER_SIZE || this.buffer.getInt(0) != MAGIC)
+            throw new IllegalArgumentException("Not an anchor database");
+        if (this.buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Unsupported anchor database version " + this.buffer.getInt(4));
+        this.count = this.buffer.getInt(8);
+        if (this.count < 0 || this.buffer.limit() < HEADER_SIZE + (long)this.count * RECORD_SIZE)
+            throw new IllegalArgumentException("Truncated anchor database");
+        this.xOffset = HEADER_SIZE + this.count * 8;
+        this.yOffset = this.xOffset + this.count * 4;
+        this.zOffset = this.yOffset + this.count * 4;
+        this.floorOffset = this.zOffset + this.count * 4;
+        this.buildingOffset = this.floorOffset + this.count * 4;
+    }
+
+    /**
+     *  \brief Opens an anchor file by memory-mapping it.
+     *
+     *  \param file The anchor file.
+     *  \return The database.
+     *  \throws IOException If the file could not be mapped.
+     */
+    public static AnchorDatabase open(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            // The mapping stays valid after the channel is closed
+            return new AnchorDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of anchors.
+     *
+     *  \param None.
+     *  \return An integer containing the number of anchors.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     *  \brief Finds the anchor with the given MAC address by binary search. Does not allocate.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return The index of the anchor, or -1 if the MAC address is not in the database.
+     */
+    public int indexOf(long mac) {
+        int low = 0;
+        int high = this.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long key = this.buffer.getLong(HEADER_SIZE + mid * 8);
+            if (key < mac)
+                low = mid + 1;
+            else if (key > mac)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     *  \brief Gets the packed MAC address of an anchor.
+     *
+     *  \param i An integer containing the index of the anchor.
+     *  \return A long containing the packed MAC address.
+     */
+    public long getMAC(int i) {
+        return this.buffer.getLong(HEADER_SIZE + i * 8);
+    }
+
+    /**
+     *  \brief Gets the X coordinate of an anchor.
+     *
+     *  \param i An integer containing the index of the anchor.
+     *  \return A float containing the X coordinate in m.
+     */
+    public float getX(int i) {
+        return this.buffer.getFloat(this.xOffset + i * 4);
+    }
+
+    /**
+     *  \brief Gets the Y coordinate of an anchor.
+     *
+     *  \param i An integer containing the index of the anchor.
+     *  \return A float containing the Y coordinate in m.
+     */
+    public float getY(int i) {
+        return this.buffer.getFloat(this.yOffset + i * 4);
+    }
+
+    /**
+     *  \brief Gets the height of an anchor above the floor it is on.
+     *
+     *  \param i An integer containing the index of the anchor.
+     *  \return A float containing the Z coordinate in m.
+     */
+    public float getZ(int i) {
+        return this.buffer.getFloat(this.zOffset + i * 4);
+    }
+
+    /**
+     *  \brief Gets the floor an anchor is on.
+     *
+     *  \param i An integer containing the index of the anchor.
+     *  \return A float containing the floor number.
+     */
+    public float getFloor(int i) {
+        return this.buffer.getFloat(this.floorOffset + i * 4);
+    }
+
+    /**
+     *  \brief Gets the building an anchor is in.
+     *
+     *  \param i An integer containing the index of the anchor.
+     *  \return An integer containing the building id.
+     */
+    public int getBuilding(int i) {
+        return this.buffer.getInt(this.buildingOffset + i * 4);
+    }
+}
@@ -0,0 +1,168 @@
+/** \file AnchorDatabaseCompiler.java
+ *  \brief This file contains the tool that compiles a CSV list of router
+ *  positions into a binary anchor file.
+ *
+ *  Each CSV line is "mac,x,y[,z[,floor[,building]]]" with coordinates in
+ *  meters. Blank lines, lines starting with '#' and a header line before
+ *  the first anchor are skipped. Run from the command line as
+ *      java com.example.tes_wifi_rtt.AnchorDatabaseCompiler anchors.csv anchors.bin
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ *  \brief This class parses anchor CSV files and writes them in the layout read
+ *  by AnchorDatabase.
+ */
+public final class AnchorDatabaseCompiler {
+    /* Constructor(s) */
+
+    /**
+     *  \brief Private constructor. This class only contains static methods.
+     *
+     *  \param None.
+     */
+    private AnchorDatabaseCompiler() {
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Compiles a CSV file into an anchor file.
+     *
+     *  \param args A String array containing the CSV path and the output path.
+     *  \return None.
+     *  \throws IOException If a file could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: AnchorDatabaseCompiler <anchors.csv> <anchors.bin>");
+            System.exit(2);
+        }
+        ByteBuffer compiled;
+        try (Reader in = new FileReader(args[0])) {
+            compiled = compile(in);
+        }
+        try (OutputStream out = new FileOutputStream(new File(args[1]))) {
+            out.write(compiled.array(), 0, compiled.limit());
+        }
+        System.out.println("Compiled " + new AnchorDatabase(compiled).size() + " anchors into " + args[1]);
+    }
+
+    /**
+     *  \brief Parses anchor CSV text and compiles it into the contents of an anchor file.
+     *
+     *  \param csv A Reader containing the CSV text.
+     *  \return A heap ByteBuffer containing the anchor file, from position 0 to its limit.
+     *  \throws IOException If the CSV could not be read.
+     *  \throws IllegalArgumentException If a line is malformed or a MAC address is repeated.
+     */
+    public static ByteBuffer compile(Reader csv) throws IOException {
+        int capacity = 64;
+        long[] macs = new long[capacity];
+        float[][] columns = new float[4][capacity];
+        int[] buildings = new int[capacity];
+        int count = 0;
+
+        BufferedReader reader = new BufferedReader(csv);
+        String line;
+        int lineNumber = 0;
+        boolean firstLine = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split(",");
+            long mac = MacAddress.pack(fields[0]);
+            boolean header = firstLine;
+            firstLine = false;
+            if (mac == MacAddress.INVALID) {
+                if (header)
+                    continue; // Header line
+                throw new IllegalArgumentException("Line " + lineNumber + ": invalid MAC address \"" + fields[0].trim() + "\"");
+            }
+            if (fields.length < 3 || fields.length > 6)
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected mac,x,y[,z[,floor[,building]]]");
+
+            if (count == capacity) {
+                capacity *= 2;
+                macs = Arrays.copyOf(macs, capacity);
+                for (int c = 0; c < columns.length; c++)
+                    columns[c] = Arrays.copyOf(columns[c], capacity);
+                buildings = Arrays.copyOf(buildings, capacity);
+            }
+            try {
+                macs[count] = mac;
+                for (int c = 0; c < columns.length; c++)
+                    columns[c][count] = fields.length > c + 1 ? Float.parseFloat(fields[c + 1].trim()) : 0;
+                buildings[count] = fields.length > 5 ? Integer.parseInt(fields[5].trim()) : 0;
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+            count++;
+        }
+
+        // Sort every column by MAC address
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        final long[] keys = macs;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        long[] sortedMacs = new long[count];
+        float[][] sortedColumns = new float[4][count];
+        int[] sortedBuildings = new int[count];
+        for (int i = 0; i < count; i++) {
+            int from = order[i];
+            sortedMacs[i] = macs[from];
+            if (i > 0 && sortedMacs[i] == sortedMacs[i - 1])
+                throw new IllegalArgumentException("Duplicate MAC address " + MacAddress.format(sortedMacs[i]));
+            for (int c = 0; c < columns.length; c++)
+                sortedColumns[c][i] = columns[c][from];
+            sortedBuildings[i] = buildings[from];
+        }
+        return write(sortedMacs, sortedColumns[0], sortedColumns[1], sortedColumns[2], sortedColumns[3], sortedBuildings, count);
+    }
+
+    /**
+     *  \brief Writes sorted anchor columns in the anchor file layout.
+     *
+     *  \param macs A long array containing the packed MAC addresses, sorted ascending.
+     *  \param x A float array containing the X coordinates in m.
+     *  \param y A float array containing the Y coordinates in m.
+     *  \param z A float array containing the Z coordinates in m.
+     *  \param floor A float array containing the floor numbers.
+     *  \param building An integer array containing the building ids.
+     *  \param count An integer containing the number of anchors to write.
+     *  \return A heap ByteBuffer containing the anchor file, from position 0 to its limit.
+     */
+    static ByteBuffer write(long[] macs, float[] x, float[] y, float[] z, float[] floor, int[] building, int count) {
+        ByteBuffer out = ByteBuffer.allocate(AnchorDatabase.HEADER_SIZE + count * AnchorDatabase.RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(AnchorDatabase.MAGIC).putInt(AnchorDatabase.VERSION).putInt(count).putInt(0);
+        for (int i = 0; i < count; i++)
+            out.putLong(macs[i]);
+        for (float[] column : new float[][] {x, y, z, floor}) {
+            for (int i = 0; i < count; i++)
+                out.putFloat(column[i]);
+        }
+        for (int i = 0; i < count; i++)
+            out.putInt(building[i]);
+        out.flip();
+        return out;
+    }
+}
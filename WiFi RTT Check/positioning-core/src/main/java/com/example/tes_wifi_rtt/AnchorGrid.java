@@ -0,0 +1,160 @@
+/** \file AnchorGrid.java
+ *  \brief This file contains a spatial index of the anchors in an anchor
+ *  database.
+ *
+ *  Anchors are bucketed into square cells per building and floor. Finding the
+ *  anchors near a position only visits the few cells the search circle
+ *  covers, so its cost depends on how densely anchors are placed rather than
+ *  on how many the site has.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+
+/**
+ *  \brief This class is a uniform grid over the anchors of an anchor database,
+ *  stored as sorted primitive arrays.
+ *
+ *  Each occupied cell has a key made of its building, floor and cell
+ *  coordinates. The keys are sorted so a cell is found by binary search, and
+ *  the anchors of each cell are stored next to each other. Queries do not
+ *  allocate. Safe to use from any thread once built.
+ */
+public final class AnchorGrid {
+    /* Public Variables */
+    public static final double DEFAULT_CELL_SIZE = 16;     /*!< Default width of a cell in m. */
+
+    /* Private Variables */
+    private final AnchorDatabase database;  /*!< Anchors the grid indexes. */
+    private final double cellSize;          /*!< Width of a cell in m. */
+    private final long[] cellKeys;          /*!< Key of each occupied cell, sorted ascending. */
+    private final int[] cellStart;          /*!< Index into anchors of the first anchor of each cell, plus a final end index. */
+    private final int[] anchors;            /*!< Anchor database indexes grouped by cell. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class AnchorGrid. Uses the default cell size.
+     *
+     *  \param database The anchors to index.
+     */
+    public AnchorGrid(AnchorDatabase database) {
+        this(database, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     *  \brief Constructor for the class AnchorGrid.
+     *
+     *  \param database The anchors to index.
+     *  \param cellSize A double containing the width of a cell in m.
+     */
+    public AnchorGrid(AnchorDatabase database, double cellSize) {
+        this.database = database;
+        this.cellSize = cellSize;
+
+        int count = database.size();
+        long[] keys = new long[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(database.getBuilding(i), database.getFloor(i), cell(database.getX(i)), cell(database.getY(i)));
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        this.anchors = new int[count];
+        long[] cells = new long[count];
+        int[] starts = new int[count + 1];
+        int cellCount = 0;
+        for (int i = 0; i < count; i++) {
+            int anchor = order[i];
+            this.anchors[i] = anchor;
+            if (cellCount == 0 || cells[cellCount - 1] != keys[anchor]) {
+                cells[cellCount] = keys[anchor];
+                starts[cellCount] = i;
+                cellCount++;
+            }
+        }
+        starts[cellCount] = count;
+        this.cellKeys = Arrays.copyOf(cells, cellCount);
+        this.cellStart = Arrays.copyOf(starts, cellCount + 1);
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of occupied cells.
+     *
+     *  \param None.
+     *  \return An integer containing the number of cells holding at least one anchor.
+     */
+    public int getCellCount() {
+        return this.cellKeys.length;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Finds the anchors on a building and floor within a radius of a position.
+     *
+     *  \param building An integer containing the building id.
+     *  \param floor A float containing the floor.
+     *  \param x A double containing the X coordinate of the centre in m.
+     *  \param y A double containing the Y coordinate of the centre in m.
+     *  \param radius A double containing the search radius in m.
+     *  \param out An integer array the anchor database indexes are written to.
+     *  \return An integer containing the number of anchors found. Anchors that do not fit in out
+     *          are counted but not written.
+     */
+    public int query(int building, float floor, double x, double y, double radius, int[] out) {
+        int found = 0;
+        double radiusSquared = radius * radius;
+        int minX = cell(x - radius);
+        int maxX = cell(x + radius);
+        int minY = cell(y - radius);
+        int maxY = cell(y + radius);
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                int c = Arrays.binarySearch(this.cellKeys, key(building, floor, cx, cy));
+                if (c < 0)
+                    continue;
+                for (int i = this.cellStart[c]; i < this.cellStart[c + 1]; i++) {
+                    int anchor = this.anchors[i];
+                    double dx = this.database.getX(anchor) - x;
+                    double dy = this.database.getY(anchor) - y;
+                    if (dx * dx + dy * dy <= radiusSquared) {
+                        if (found < out.length)
+                            out[found] = anchor;
+                        found++;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     *  \brief Gets the cell coordinate containing a position along one axis.
+     *
+     *  \param value A double containing the position in m.
+     *  \return An integer containing the cell coordinate.
+     */
+    private int cell(double value) {
+        return (int)Math.floor(value / this.cellSize);
+    }
+
+    /**
+     *  \brief Packs a building, floor and cell into one key. Each part keeps its low 16 bits.
+     *
+     *  \param building An integer containing the building id.
+     *  \param floor A float containing the floor, rounded to a whole floor.
+     *  \param cx An integer containing the X cell coordinate.
+     *  \param cy An integer containing the Y cell coordinate.
+     *  \return A long containing the key.
+     */
+    private static long key(int building, float floor, int cx, int cy) {
+        return ((long)(building & 0xFFFF) << 48) | ((long)(Math.round(floor) & 0xFFFF) << 32)
+                | ((long)(cx & 0xFFFF) << 16) | (cy & 0xFFFF);
+    }
+}
@@ -0,0 +1,138 @@
+/** \file DropOldestQueue.java
+ *  \brief This file contains a bounded queue that drops its oldest element
+ *  when full.
+ *
+ *  Stages of the positioning pipeline hand work to each other through these
+ *  queues. When a later stage falls behind, old scans are dropped rather than
+ *  blocking the earlier stage, since only the newest data matters for the
+ *  current position.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  \brief This class is a fixed size ring buffer shared between threads.
+ *
+ *  Adding to a full queue removes and returns the oldest element so the
+ *  caller can recycle it. Adding and removing do not allocate.
+ *
+ *  \param <T> Type of the queued elements.
+ */
+public final class DropOldestQueue<T> {
+    /* Private Variables */
+    private final Object[] elements;    /*!< Ring buffer of queued elements. */
+    private int head;                   /*!< Index of the oldest element. */
+    private int size;                   /*!< Number of queued elements. */
+    private long dropCount;             /*!< Number of elements dropped because the queue was full. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class DropOldestQueue.
+     *
+     *  \param capacity An integer containing the number of elements the queue can hold.
+     */
+    public DropOldestQueue(int capacity) {
+        this.elements = new Object[Math.max(1, capacity)];
+        this.head = 0;
+        this.size = 0;
+        this.dropCount = 0;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of queued elements.
+     *
+     *  \param None.
+     *  \return An integer containing the number of elements.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     *  \brief Gets the number of elements dropped because the queue was full.
+     *
+     *  \param None.
+     *  \return A long containing the number of dropped elements.
+     */
+    public synchronized long getDropCount() {
+        return this.dropCount;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Adds an element to the queue, dropping the oldest element if the queue is full.
+     *
+     *  \param element The element to add. Must not be null.
+     *  \return The dropped element, or null if nothing was dropped.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T offer(T element) {
+        T dropped = null;
+        if (this.size == this.elements.length) {
+            dropped = (T)this.elements[this.head];
+            this.elements[this.head] = null;
+            this.head = (this.head + 1) % this.elements.length;
+            this.size--;
+            this.dropCount++;
+        }
+        this.elements[(this.head + this.size) % this.elements.length] = element;
+        this.size++;
+        notifyAll();
+        return dropped;
+    }
+
+    /**
+     *  \brief Removes the oldest element without waiting.
+     *
+     *  \param None.
+     *  \return The oldest element, or null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T poll() {
+        if (this.size == 0)
+            return null;
+        T element = (T)this.elements[this.head];
+        this.elements[this.head] = null;
+        this.head = (this.head + 1) % this.elements.length;
+        this.size--;
+        return element;
+    }
+
+    /**
+     *  \brief Removes the oldest element, waiting for one to be added if the queue is empty.
+     *
+     *  \param timeout A long containing the longest time to wait.
+     *  \param unit The unit of the timeout.
+     *  \return The oldest element, or null if none was added before the timeout.
+     *  \throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (this.size == 0 && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return poll();
+    }
+
+    /**
+     *  \brief Removes the oldest element, waiting as long as needed for one to be added.
+     *
+     *  \param None.
+     *  \return The oldest element.
+     *  \throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized T take() throws InterruptedException {
+        while (this.size == 0)
+            wait();
+        return poll();
+    }
+}
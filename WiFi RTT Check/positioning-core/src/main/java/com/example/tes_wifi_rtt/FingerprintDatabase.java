@@ -0,0 +1,263 @@
+/** \file FingerprintDatabase.java
+ *  \brief This file contains the surveyed Wi-Fi fingerprints of a site and the
+ *  loader for their CSV format.
+ *
+ *  A fingerprint is the signal strength of every surveyed access point at one
+ *  known position. The first line of the CSV is "x,y,floor,building" followed
+ *  by the MAC address of every access point, and each further line is one
+ *  fingerprint with the signal strength of each access point in the same
+ *  order. An empty field means the access point was not heard. Blank lines
+ *  and lines starting with '#' are skipped.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  \brief This class estimates the device position by matching the signal
+ *  strengths of a scan against the fingerprints of the device's floor.
+ *
+ *  Each floor has its own FingerprintIndex. Access points that were not heard
+ *  count as FloorClassifier.NOISE_FLOOR on both sides of the match. The
+ *  estimate is the mean of the nearest fingerprints weighted by how closely
+ *  they match. Reuses one query buffer, so locate is not thread safe.
+ */
+public final class FingerprintDatabase {
+    /* Public Variables */
+    public static final FingerprintDatabase NONE = new FingerprintDatabase(new long[0], new HashMap<>());   /*!< Site without fingerprints. */
+    public static final int DEFAULT_NEIGHBOURS = 4;     /*!< Number of fingerprints averaged into an estimate. */
+    public static final int MIN_HEARD = 2;              /*!< Fewest surveyed access points a scan has to hear to be matched. */
+    public static final double MIN_VARIANCE = 1;        /*!< Smallest variance in m^2 given to an estimate. */
+
+    /* Private Variables */
+    private final long[] accessPoints;          /*!< Packed MAC Address of each surveyed access point, sorted ascending. */
+    private final HashMap<Long, Floor> floors;  /*!< Fingerprints of each floor, keyed by building and floor. */
+    private final float[] query;                /*!< Reused signal vector of the scan being matched. */
+    private final int[] neighbours;             /*!< Reused ids of the nearest fingerprints. */
+    private final float[] distances;            /*!< Reused squared signal distances of the nearest fingerprints. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class FingerprintDatabase.
+     *
+     *  \param accessPoints A long array containing the packed MAC Address of each access point,
+     *                      sorted ascending.
+     *  \param floors A HashMap containing the fingerprints of each floor, keyed with key().
+     */
+    private FingerprintDatabase(long[] accessPoints, HashMap<Long, Floor> floors) {
+        this.accessPoints = accessPoints;
+        this.floors = floors;
+        this.query = new float[accessPoints.length];
+        this.neighbours = new int[DEFAULT_NEIGHBOURS];
+        this.distances = new float[DEFAULT_NEIGHBOURS];
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of fingerprints on all floors.
+     *
+     *  \param None.
+     *  \return An integer containing the number of fingerprints.
+     */
+    public int size() {
+        int size = 0;
+        for (Floor floor : this.floors.values())
+            size += floor.index.size();
+        return size;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Estimates the device position from the signal strengths of a scan.
+     *
+     *  \param building An integer containing the building the device is in.
+     *  \param floor A float containing the floor the device is on.
+     *  \param macs A long array containing the packed MAC Address of each access point heard.
+     *  \param rssi An integer array containing the signal strength of each access point heard.
+     *  \param count An integer containing the number of access points to read from the arrays.
+     *  \param out A double array of at least 3 elements receiving {X, Y, variance in m^2}.
+     *  \return Returns true if a position was estimated, else returns false when the floor has no
+     *          fingerprints or fewer than MIN_HEARD surveyed access points were heard.
+     */
+    public boolean locate(int building, float floor, long[] macs, int[] rssi, int count, double[] out) {
+        Floor fingerprints = this.floors.get(key(building, floor));
+        if (fingerprints == null)
+            return false;
+
+        Arrays.fill(this.query, FloorClassifier.NOISE_FLOOR);
+        int heard = 0;
+        for (int i = 0; i < count; i++) {
+            int ap = Arrays.binarySearch(this.accessPoints, macs[i]);
+            if (ap >= 0) {
+                this.query[ap] = Math.max(FloorClassifier.NOISE_FLOOR, rssi[i]);
+                heard++;
+            }
+        }
+        if (heard < MIN_HEARD)
+            return false;
+
+        int found = fingerprints.index.query(this.query, this.neighbours, this.distances);
+        double total = 0;
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < found; i++) {
+            double weight = 1 / (Math.sqrt(this.distances[i]) + 1); // Signal distance in dB, 1 dB keeps exact matches finite
+            total += weight;
+            x += weight * fingerprints.x[this.neighbours[i]];
+            y += weight * fingerprints.y[this.neighbours[i]];
+        }
+        x /= total;
+        y /= total;
+        double variance = 0;
+        for (int i = 0; i < found; i++) {
+            double weight = 1 / (Math.sqrt(this.distances[i]) + 1);
+            double dx = fingerprints.x[this.neighbours[i]] - x;
+            double dy = fingerprints.y[this.neighbours[i]] - y;
+            variance += weight * (dx * dx + dy * dy);
+        }
+        out[0] = x;
+        out[1] = y;
+        out[2] = Math.max(MIN_VARIANCE, variance / total);
+        return true;
+    }
+
+    /**
+     *  \brief Parses fingerprint CSV text and builds the index of every floor in it.
+     *
+     *  \param csv A Reader containing the CSV text.
+     *  \return The fingerprint database.
+     *  \throws IOException If the text could not be read.
+     *  \throws IllegalArgumentException If the header or a line is malformed.
+     */
+    public static FingerprintDatabase parse(Reader csv) throws IOException {
+        BufferedReader reader = new BufferedReader(csv);
+        String line;
+        int lineNumber = 0;
+        long[] columns = null;
+        HashMap<Long, ArrayList<float[]>> rows = new HashMap<>();
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split(",", -1);
+            if (columns == null) {
+                if (fields.length < 5 || !fields[0].trim().equals("x"))
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected x,y,floor,building followed by access point MAC addresses");
+                columns = new long[fields.length - 4];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = MacAddress.pack(fields[i + 4]);
+                    if (columns[i] == MacAddress.INVALID)
+                        throw new IllegalArgumentException("Line " + lineNumber + ": invalid MAC address \"" + fields[i + 4].trim() + "\"");
+                }
+                continue;
+            }
+            if (fields.length != columns.length + 4)
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected " + (columns.length + 4) + " fields");
+
+            // Row layout: x, y, then the signal strength of every access point in header order
+            float[] row = new float[2 + columns.length];
+            long floorKey;
+            try {
+                row[0] = Float.parseFloat(fields[0].trim());
+                row[1] = Float.parseFloat(fields[1].trim());
+                floorKey = key(Integer.parseInt(fields[3].trim()), Float.parseFloat(fields[2].trim()));
+                for (int i = 0; i < columns.length; i++) {
+                    String value = fields[i + 4].trim();
+                    row[2 + i] = value.isEmpty() ? FloorClassifier.NOISE_FLOOR : Math.max(FloorClassifier.NOISE_FLOOR, Float.parseFloat(value));
+                }
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+            ArrayList<float[]> floorRows = rows.get(floorKey);
+            if (floorRows == null) {
+                floorRows = new ArrayList<>();
+                rows.put(floorKey, floorRows);
+            }
+            floorRows.add(row);
+        }
+        if (columns == null)
+            return NONE;
+
+        // Store the access points sorted so a scan can be matched by binary search
+        Integer[] order = new Integer[columns.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        final long[] macs = columns;
+        Arrays.sort(order, (a, b) -> Long.compare(macs[a], macs[b]));
+        long[] accessPoints = new long[columns.length];
+        for (int i = 0; i < order.length; i++) {
+            accessPoints[i] = columns[order[i]];
+            if (i > 0 && accessPoints[i] == accessPoints[i - 1])
+                throw new IllegalArgumentException("Duplicate MAC address " + MacAddress.format(accessPoints[i]));
+        }
+
+        HashMap<Long, Floor> floors = new HashMap<>();
+        for (Map.Entry<Long, ArrayList<float[]>> entry : rows.entrySet()) {
+            ArrayList<float[]> floorRows = entry.getValue();
+            int count = floorRows.size();
+            float[] x = new float[count];
+            float[] y = new float[count];
+            float[] vectors = new float[count * accessPoints.length];
+            for (int i = 0; i < count; i++) {
+                float[] row = floorRows.get(i);
+                x[i] = row[0];
+                y[i] = row[1];
+                for (int ap = 0; ap < accessPoints.length; ap++)
+                    vectors[i * accessPoints.length + ap] = row[2 + order[ap]];
+            }
+            floors.put(entry.getKey(), new Floor(new FingerprintIndex(vectors, count, accessPoints.length), x, y));
+        }
+        return new FingerprintDatabase(accessPoints, floors);
+    }
+
+    /**
+     *  \brief Packs a building and floor into one key.
+     *
+     *  \param building An integer containing the building id.
+     *  \param floor A float containing the floor, rounded to a whole floor.
+     *  \return A long containing the key.
+     */
+    private static long key(int building, float floor) {
+        return ((long)building << 32) | (Math.round(floor) & 0xFFFFFFFFL);
+    }
+
+    /* Sub-Classes */
+
+    /**
+     *  \brief This class holds the fingerprints of one floor.
+     */
+    private static final class Floor {
+        /* Private Variables */
+        private final FingerprintIndex index;   /*!< Signal vectors of the fingerprints. */
+        private final float[] x;                /*!< X position of each fingerprint in meters(m). */
+        private final float[] y;                /*!< Y position of each fingerprint in meters(m). */
+
+        /* Constructor(s) */
+
+        /**
+         *  \brief Constructor for the class Floor.
+         *
+         *  \param index The index over the signal vectors of the fingerprints.
+         *  \param x A float array containing the X position of each fingerprint.
+         *  \param y A float array containing the Y position of each fingerprint.
+         */
+        Floor(FingerprintIndex index, float[] x, float[] y) {
+            this.index = index;
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/** \file FingerprintIndex.java
+ *  \brief This file contains a k-d tree for finding the fingerprints whose
+ *  signal vectors are closest to a measured one.
+ *
+ *  The tree is implicit: the points are reordered so the node splitting any
+ *  range of points is the middle point of that range, and only the dimension
+ *  each node splits on is stored. Building sorts nothing but the ranges
+ *  around each median, and a search skips every subtree whose splitting plane
+ *  is further away than the worst neighbour found so far.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class finds the k nearest neighbours of a vector among a fixed
+ *  set of vectors by Euclidean distance.
+ *
+ *  Vectors are stored row by row in one float array. Queries do not allocate.
+ *  Safe to use from any thread once built.
+ */
+public final class FingerprintIndex {
+    /* Private Variables */
+    private final int dimensions;   /*!< Length of every vector. */
+    private final int count;        /*!< Number of vectors. */
+    private final float[] points;   /*!< Vectors in tree order, row by row. */
+    private final int[] ids;        /*!< Index each vector had in the array it was built from, in tree order. */
+    private final byte[] splitDim;  /*!< Dimension each node splits its range on. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class FingerprintIndex. Builds the tree.
+     *
+     *  \param vectors A float array containing count vectors of the given length, row by row.
+     *  \param count An integer containing the number of vectors.
+     *  \param dimensions An integer containing the length of each vector, at most 127.
+     *  \throws IllegalArgumentException If there are too many dimensions or too few values.
+     */
+    public FingerprintIndex(float[] vectors, int count, int dimensions) {
+        if (dimensions < 1 || dimensions > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Unsupported number of dimensions " + dimensions);
+        if (vectors.length < count * dimensions)
+            throw new IllegalArgumentException("Expected " + count * dimensions + " values");
+        this.dimensions = dimensions;
+        this.count = count;
+        this.ids = new int[count];
+        for (int i = 0; i < count; i++)
+            this.ids[i] = i;
+        this.splitDim = new byte[count];
+        build(vectors, 0, count);
+
+        this.points = new float[count * dimensions];
+        for (int i = 0; i < count; i++)
+            System.arraycopy(vectors, this.ids[i] * dimensions, this.points, i * dimensions, dimensions);
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of vectors in the index.
+     *
+     *  \param None.
+     *  \return An integer containing the number of vectors.
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     *  \brief Gets the length of every vector in the index.
+     *
+     *  \param None.
+     *  \return An integer containing the number of dimensions.
+     */
+    public int getDimensions() {
+        return this.dimensions;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Finds the nearest vectors to a query vector.
+     *
+     *  \param query A float array containing the query vector.
+     *  \param ids An integer array receiving the indexes of the nearest vectors, nearest first.
+     *             Its length is the number of neighbours to find.
+     *  \param distances A float array of at least the same length receiving the squared distance
+     *                   of each neighbour.
+     *  \return An integer containing the number of neighbours found, which is less than the length
+     *          of ids only when the index holds fewer vectors.
+     */
+    public int query(float[] query, int[] ids, float[] distances) {
+        int found = search(query, 0, this.count, ids, distances, 0);
+
+        // The results are a max-heap, sort them nearest first
+        for (int i = 1; i < found; i++) {
+            int id = ids[i];
+            float distance = distances[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > distance) {
+                ids[j + 1] = ids[j];
+                distances[j + 1] = distances[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            distances[j + 1] = distance;
+        }
+        return found;
+    }
+
+    /**
+     *  \brief Searches the subtree over a range of points, keeping the nearest found in a bounded
+     *         max-heap.
+     *
+     *  \param query A float array containing the query vector.
+     *  \param lo An integer containing the first point of the range.
+     *  \param hi An integer containing the end of the range.
+     *  \param heapIds An integer array holding the ids in the heap.
+     *  \param heapDistances A float array holding the squared distances in the heap.
+     *  \param found An integer containing the number of entries in the heap.
+     *  \return An integer containing the number of entries in the heap after the search.
+     */
+    private int search(float[] query, int lo, int hi, int[] heapIds, float[] heapDistances, int found) {
+        if (lo >= hi)
+            return found;
+        int mid = (lo + hi) >>> 1;
+        int k = heapIds.length;
+
+        float distance = 0;
+        int offset = mid * this.dimensions;
+        for (int d = 0; d < this.dimensions; d++) {
+            float diff = query[d] - this.points[offset + d];
+            distance += diff * diff;
+        }
+        if (found < k)
+            found = heapPush(heapIds, heapDistances, found, this.ids[mid], distance);
+        else if (distance < heapDistances[0])
+            heapReplaceTop(heapIds, heapDistances, found, this.ids[mid], distance);
+
+        int dim = this.splitDim[mid];
+        float plane = query[dim] - this.points[offset + dim];
+        boolean leftFirst = plane < 0;
+        found = search(query, leftFirst ? lo : mid + 1, leftFirst ? mid : hi, heapIds, heapDistances, found);
+        if (found < k || plane * plane < heapDistances[0])
+            found = search(query, leftFirst ? mid + 1 : lo, leftFirst ? hi : mid, heapIds, heapDistances, found);
+        return found;
+    }
+
+    /**
+     *  \brief Builds the subtree over a range of ids by moving the median along the dimension with
+     *         the largest spread to the middle.
+     *
+     *  \param vectors A float array containing the vectors, indexed by id.
+     *  \param lo An integer containing the first id of the range.
+     *  \param hi An integer containing the end of the range.
+     *  \return None.
+     */
+    private void build(float[] vectors, int lo, int hi) {
+        while (hi - lo > 1) {
+            int dim = 0;
+            float widest = -1;
+            for (int d = 0; d < this.dimensions; d++) {
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                for (int i = lo; i < hi; i++) {
+                    float value = vectors[this.ids[i] * this.dimensions + d];
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                if (max - min > widest) {
+                    widest = max - min;
+                    dim = d;
+                }
+            }
+            int mid = (lo + hi) >>> 1;
+            select(vectors, lo, hi - 1, mid, dim);
+            this.splitDim[mid] = (byte)dim;
+            build(vectors, lo, mid);
+            lo = mid + 1; // Loop on the right half instead of recursing
+        }
+    }
+
+    /**
+     *  \brief Reorders a range of ids so the id at nth has the value it would have if the range
+     *         were sorted along one dimension, with smaller values before it and larger after.
+     *
+     *  \param vectors A float array containing the vectors, indexed by id.
+     *  \param left An integer containing the first id of the range.
+     *  \param right An integer containing the last id of the range.
+     *  \param nth An integer containing the position to select.
+     *  \param dim An integer containing the dimension to compare along.
+     *  \return None.
+     */
+    private void select(float[] vectors, int left, int right, int nth, int dim) {
+        while (left < right) {
+            float pivot = vectors[this.ids[(left + right) >>> 1] * this.dimensions + dim];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (vectors[this.ids[i] * this.dimensions + dim] < pivot)
+                    i++;
+                while (vectors[this.ids[j] * this.dimensions + dim] > pivot)
+                    j--;
+                if (i <= j) {
+                    int t = this.ids[i];
+                    this.ids[i] = this.ids[j];
+                    this.ids[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (nth <= j)
+                right = j;
+            else if (nth >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     *  \brief Adds an entry to a max-heap of squared distances.
+     *
+     *  \return An integer containing the number of entries after the push.
+     */
+    private static int heapPush(int[] ids, float[] distances, int size, int id, float distance) {
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (distances[parent] >= distance)
+                break;
+            ids[i] = ids[parent];
+            distances[i] = distances[parent];
+            i = parent;
+        }
+        ids[i] = id;
+        distances[i] = distance;
+        return size + 1;
+    }
+
+    /**
+     *  \brief Replaces the furthest entry of a max-heap of squared distances.
+     *
+     *  \return None.
+     */
+    private static void heapReplaceTop(int[] ids, float[] distances, int size, int id, float distance) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && distances[child + 1] > distances[child])
+                child++;
+            if (distances[child] <= distance)
+                break;
+            ids[i] = ids[child];
+            distances[i] = distances[child];
+            i = child;
+        }
+        ids[i] = id;
+        distances[i] = distance;
+    }
+}
@@ -0,0 +1,136 @@
+/** \file FingerprintSurveyCompiler.java
+ *  \brief This file contains the tool that turns recorded walks into the
+ *  fingerprint CSV read by FingerprintDatabase.
+ *
+ *  A survey is walked like any other recorded walk: the app records a trace
+ *  and the surveyor notes the waypoints in "<walk>.waypoints.csv" next to it.
+ *  Every scan within the waypoints becomes one fingerprint at the ground
+ *  truth position, with the signal strength of every router it ranged. Walk
+ *  each floor into its own directory. Run from the command line as
+ *      java com.example.tes_wifi_rtt.FingerprintSurveyCompiler walks/ fingerprints.csv [floor [building]]
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ *  \brief This class writes the scans of surveyed walks as fingerprints.
+ */
+public final class FingerprintSurveyCompiler {
+    /* Constructor(s) */
+
+    /**
+     *  \brief Private constructor. This class only contains static methods.
+     *
+     *  \param None.
+     */
+    private FingerprintSurveyCompiler() {
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Compiles the walks of a directory into a fingerprint file.
+     *
+     *  \param args A String array containing the walk directory, the output path, and optionally
+     *              the floor and building id of the walks.
+     *  \return None.
+     *  \throws IOException If a file could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: FingerprintSurveyCompiler <walk dir> <fingerprints.csv> [floor [building]]");
+            System.exit(2);
+        }
+        List<ReplayTrace> walks = ReplayEngine.loadWalks(new File(args[0]));
+        if (walks.isEmpty()) {
+            System.err.println("No walks found in " + args[0]);
+            System.exit(1);
+        }
+        float floor = args.length > 2 ? Float.parseFloat(args[2]) : 0;
+        int building = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int count;
+        try (Writer out = new FileWriter(args[1])) {
+            count = compile(walks, floor, building, out);
+        }
+        System.out.println("Compiled " + count + " fingerprints from " + walks.size() + " walks into " + args[1]);
+    }
+
+    /**
+     *  \brief Writes every scan of the walks within their ground truth as a fingerprint CSV.
+     *         The access points are every router ranged in any of the walks, sorted by MAC.
+     *
+     *  \param walks The surveyed walks, all on the same floor.
+     *  \param floor A float containing the floor the walks are on.
+     *  \param building An integer containing the building id the walks are in.
+     *  \param out A Writer receiving the CSV text.
+     *  \return An integer containing the number of fingerprints written.
+     *  \throws IOException If the text could not be written.
+     */
+    public static int compile(List<ReplayTrace> walks, float floor, int building, Writer out) throws IOException {
+        RangingScan scan = new RangingScan();
+
+        // Every router ranged by any walk gets a column
+        long[] accessPoints = new long[64];
+        int count = 0;
+        for (ReplayTrace walk : walks) {
+            for (int s = 0; s < walk.getScanCount(); s++) {
+                walk.copyScan(s, scan);
+                for (int i = 0; i < scan.count; i++) {
+                    if (count == accessPoints.length)
+                        accessPoints = Arrays.copyOf(accessPoints, count * 2);
+                    accessPoints[count++] = scan.macs[i];
+                }
+            }
+        }
+        Arrays.sort(accessPoints, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || accessPoints[i] != accessPoints[unique - 1])
+                accessPoints[unique++] = accessPoints[i];
+        }
+        accessPoints = Arrays.copyOf(accessPoints, unique);
+
+        StringBuilder line = new StringBuilder("x,y,floor,building");
+        for (long ap : accessPoints)
+            line.append(',').append(MacAddress.format(ap));
+        out.write(line.append('\n').toString());
+
+        String place = "," + floor + "," + building;
+        double[] truth = new double[2];
+        int[] rssi = new int[accessPoints.length];
+        boolean[] heard = new boolean[accessPoints.length];
+        int fingerprints = 0;
+        for (ReplayTrace walk : walks) {
+            for (int s = 0; s < walk.getScanCount(); s++) {
+                if (!walk.getTruth(walk.getScanTime(s), truth))
+                    continue;
+                walk.copyScan(s, scan);
+                Arrays.fill(heard, false);
+                for (int i = 0; i < scan.count; i++) {
+                    int ap = Arrays.binarySearch(accessPoints, scan.macs[i]);
+                    rssi[ap] = scan.rssi[i];
+                    heard[ap] = true;
+                }
+                line.setLength(0);
+                line.append(String.format(Locale.ROOT, "%.2f,%.2f", truth[0], truth[1])).append(place);
+                for (int ap = 0; ap < accessPoints.length; ap++) {
+                    line.append(',');
+                    if (heard[ap]) // Not heard is left empty
+                        line.append(rssi[ap]);
+                }
+                out.write(line.append('\n').toString());
+                fingerprints++;
+            }
+        }
+        return fingerprints;
+    }
+}
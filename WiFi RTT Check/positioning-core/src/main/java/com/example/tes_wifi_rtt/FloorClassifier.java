@@ -0,0 +1,170 @@
+/** \file FloorClassifier.java
+ *  \brief This file contains the classifier that decides which building and
+ *  floor the device is on.
+ *
+ *  Floors attenuate Wi-Fi strongly, so the routers that answer a scan, and how
+ *  strongly, are mostly on the device's own floor. Each responding router
+ *  votes for its floor with a weight that grows with its signal strength.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class tallies the floor votes of one scan at a time and keeps
+ *  the current building and floor.
+ *
+ *  To stop the floor flickering when routers on two floors answer about as
+ *  strongly, the current floor only changes when another floor outvotes it by
+ *  SWITCH_RATIO. Tallying does not allocate.
+ */
+public final class FloorClassifier {
+    /* Public Variables */
+    public static final double SWITCH_RATIO = 1.5;  /*!< Factor another floor has to outvote the current floor by to replace it. */
+    public static final int NOISE_FLOOR = -100;     /*!< RSSI that carries no weight. */
+
+    /* Private Variables */
+    private static final int MAX_CANDIDATES = 16;   /*!< Most distinct floors tallied per scan. Further floors are ignored. */
+
+    private final int[] buildings;      /*!< Building of each floor voted for in this scan. */
+    private final float[] floors;       /*!< Floor of each floor voted for in this scan. */
+    private final double[] votes;       /*!< Total vote of each floor in this scan. */
+    private int candidates;             /*!< Number of floors voted for in this scan. */
+    private boolean hasFloor;           /*!< True once a floor has been chosen. */
+    private int building;               /*!< Building the device is in. */
+    private float floor;                /*!< Floor the device is on. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Starts without a floor.
+     *
+     *  \param None.
+     */
+    public FloorClassifier() {
+        this.buildings = new int[MAX_CANDIDATES];
+        this.floors = new float[MAX_CANDIDATES];
+        this.votes = new double[MAX_CANDIDATES];
+        this.candidates = 0;
+        this.hasFloor = false;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets whether a floor has been chosen.
+     *
+     *  \param None.
+     *  \return Returns true once any scan has voted.
+     */
+    public boolean hasFloor() {
+        return this.hasFloor;
+    }
+
+    /**
+     *  \brief Gets the building the device is in.
+     *
+     *  \param None.
+     *  \return An integer containing the building id, or 0 if no floor has been chosen.
+     */
+    public int getBuilding() {
+        return this.building;
+    }
+
+    /**
+     *  \brief Gets the floor the device is on.
+     *
+     *  \param None.
+     *  \return A float containing the floor number, or 0 if no floor has been chosen.
+     */
+    public float getFloor() {
+        return this.floor;
+    }
+
+    /**
+     *  \brief Gets whether a router on the given building and floor is on the device's floor.
+     *         Every floor matches until a floor has been chosen.
+     *
+     *  \param building An integer containing the building id of the router.
+     *  \param floor A float containing the floor of the router.
+     *  \return Returns true if the router is on the device's floor.
+     */
+    public boolean matches(int building, float floor) {
+        return !this.hasFloor || (this.building == building && this.floor == floor);
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Starts tallying a new scan.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void begin() {
+        this.candidates = 0;
+    }
+
+    /**
+     *  \brief Adds the vote of a router that answered the scan.
+     *
+     *  \param building An integer containing the building id of the router.
+     *  \param floor A float containing the floor of the router.
+     *  \param rssi An integer containing the signal strength of the router.
+     *  \return None.
+     */
+    public void vote(int building, float floor, int rssi) {
+        double weight = Math.max(1, rssi - NOISE_FLOOR);
+        for (int i = 0; i < this.candidates; i++) {
+            if (this.buildings[i] == building && this.floors[i] == floor) {
+                this.votes[i] += weight;
+                return;
+            }
+        }
+        if (this.candidates < MAX_CANDIDATES) {
+            this.buildings[this.candidates] = building;
+            this.floors[this.candidates] = floor;
+            this.votes[this.candidates] = weight;
+            this.candidates++;
+        }
+    }
+
+    /**
+     *  \brief Finishes tallying the scan and moves to the winning floor if it outvoted the current
+     *         floor by SWITCH_RATIO. A scan without votes keeps the current floor.
+     *
+     *  \param None.
+     *  \return Returns true if the floor changed.
+     */
+    public boolean finish() {
+        int best = -1;
+        double current = 0;
+        for (int i = 0; i < this.candidates; i++) {
+            if (best < 0 || this.votes[i] > this.votes[best])
+                best = i;
+            if (this.hasFloor && this.buildings[i] == this.building && this.floors[i] == this.floor)
+                current = this.votes[i];
+        }
+        if (best < 0)
+            return false;
+        if (this.hasFloor && (this.votes[best] <= SWITCH_RATIO * current
+                || (this.buildings[best] == this.building && this.floors[best] == this.floor)))
+            return false;
+        this.hasFloor = true;
+        this.building = this.buildings[best];
+        this.floor = this.floors[best];
+        return true;
+    }
+
+    /**
+     *  \brief Forgets the current floor.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void reset() {
+        this.candidates = 0;
+        this.hasFloor = false;
+        this.building = 0;
+        this.floor = 0;
+    }
+}
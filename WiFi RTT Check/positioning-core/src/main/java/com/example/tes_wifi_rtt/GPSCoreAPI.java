@@ -0,0 +1,1529 @@
+/** \file GPSCoreAPI.java
+ *  \brief This file contains all methods and sub-classes for interfacing
+ *  with the GPS algorithms
+ *
+ *  This file contains the core structure of the GPS API. All relevant
+ *  methods, sub-classes, and data structures are contained in the main
+ *  GPSCoreAPI class. Methods for converting data between the separate
+ *  algorithms are also contained in this file. All separate algorithms
+ *  and APIs must interface directly with the main class in this file
+ *  for getting, setting, converting or sending information between
+ *  interfaces.
+ *
+ *  \author Brenden Newman
+ *  \date 18 Apr 2023
+ */
+
+/** TODO:
+ * Error check necessary variables.
+ * Exceptions?
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.lang.String;
+import java.util.Arrays;
+
+/**
+ *  \brief This class contains methods and sub-classes for general GPS
+ *  data storage and conversion.
+ *
+ *  Any important data structures are stored inside this class. Methods
+ *  for obtaining, setting, and converting data for going between APIs
+ *  and algorithms are contained in this class. Communication methods
+ *  are also contained inside this class for interfacing with outside
+ *  interfaces.
+ */
+public class GPSCoreAPI {
+    /* Public Variables */
+    /* Private Variables */
+    private final Device device;                        /*!< Object containing information for a single device to record on the GPS. */
+    private final AnchorDatabase anchors;                /*!< Database of MAC Addresses and their corresponding X and Y coordinates. */
+    private PositionSolver solver;                      /*!< Algorithm used to solve the device position from the router list. */
+    private final LevenbergMarquardtSolver refiner;     /*!< Iterative refinement applied to the solver output. */
+    private boolean refinementEnabled;                  /*!< True if the solver output is refined before it is used. */
+    private final RangeMeasurements measurements;       /*!< Reused buffer of anchors passed to the solver. */
+    private final double[] solution;                    /*!< Reused buffer the solver writes the position into. */
+    private double fixVariance;                         /*!< Variance in m^2 of the most recent calculated position. */
+
+    private final FloorClassifier floors;               /*!< Building and floor the device is on, voted by responding routers. */
+    private AnchorGrid grid;                            /*!< Spatial index of the anchor database. Built when first needed. */
+    private int[] nearby;                               /*!< Reused buffer of anchor database indexes near the device. */
+    private float deviceHeight;                         /*!< Height of the device above its floor in meters(m). */
+    private WalkableAreas walkableAreas;                /*!< Walkable area of each floor. Positions are kept inside the area of the device's floor. */
+    private final double[] projected;                   /*!< Reused buffer a position projected onto the walkable area is written to. */
+    private FingerprintDatabase fingerprints;           /*!< Surveyed signal strengths used when too few routers can be ranged. */
+    private final double[] fingerprint;                 /*!< Reused buffer of the fingerprint estimate {X, Y, variance}. */
+    private long[] heardMacs;                           /*!< Reused buffer of the MAC Address of every measured router. */
+    private int[] heardRssi;                            /*!< Reused buffer of the signal strength of every measured router. */
+    private RouterQuality routerQuality;                /*!< Ranging statistics of each router. Quarantined routers are not used to solve. Null if not kept. */
+    private long scanNanos;                             /*!< Time of the latest ingested scan in nanoseconds. */
+    private final double[] predicted;                   /*!< Reused buffer of the position predicted for a scan. */
+    private final double[] trackerCovariance;           /*!< Reused buffer of the position tracker covariance. */
+
+    private static final double MIN_FIX_VARIANCE = 0.25; /*!< Smallest variance in m^2 given to a calculated position. */
+    private static final double SEARCH_RADIUS = 40;     /*!< Routers further than this in m from the last position are not used. */
+    private static final int GRID_MIN_ROUTERS = 32;     /*!< Router list size above which routers are found through the anchor grid. */
+    private static final double MAP_MARGIN = 2;         /*!< Distance in m a position may be outside the anchors used and still be valid. */
+    private static final int FIT_ITERATIONS = 5;        /*!< Gauss-Newton steps fitting the ranges around a fingerprint estimate. */
+
+    /* Sub-Classes */
+    /**
+     *  \brief This class contains data relevant to a single router.
+     *
+     *  Each router object stores relevant data for a single router
+     *  that is needed for algorithms and interfaces. Methods for
+     *  obtaining data are provided. The class is only visible inside
+     *  the package so the router table can reuse router objects.
+     */
+    static class Router {
+        /* Public Variables */
+        /* Private Variables */
+        private float x;          /*!< X coordinate of router on cartesian grid. */
+        private float y;          /*!< Y coordinate of router on cartesian grid.  */
+        private final RangeFilter dist = new RangeFilter(); /*!< Filtered distance from the router in meters(m). */
+        private float distStdDev; /*!< Standard deviation of the latest distance measurement in meters(m). */
+        private long mac;         /*!< MAC address of the router packed into 48 bits. */
+        private String MACAddr;   /*!< Human readable string of the MAC address of the router. Created when first requested. */
+        private int rssi;         /*!< Signal strength of the router; typical range: -55 to -90. */
+        private boolean positioned; /*!< True if the X and Y position of the router is known. */
+        private int anchorIndex;  /*!< Index of the router in the anchor database, or -1 if it is not in it. */
+        private int building;     /*!< Building id of the router from the anchor database. */
+        private float floor;      /*!< Floor of the router from the anchor database. */
+        private float z;          /*!< Height of the router above its floor in meters(m). */
+
+        /* Constructor(s) */
+
+        /**
+         *  \brief Empty constructor. Initializes all variables as null.
+         *
+         *  \param None.
+         */
+        public Router() {
+            this.x = 0;
+            this.y = 0;
+            this.distStdDev = 0;
+            this.mac = MacAddress.INVALID;
+            this.MACAddr = null;
+            this.rssi = 0;
+            this.positioned = false;
+            this.anchorIndex = -1;
+            this.building = 0;
+            this.floor = 0;
+            this.z = 0;
+        }
+
+        /* Gets */
+
+        /**
+        *  \brief Gets the current X position on a cartesian grid of the router.
+        *
+        *  \param None.
+        *  \return A floating integer representing the X position on a cartesian grid.
+        */
+        public float getX() {
+            return this.x;
+        }
+
+        /**
+        *  \brief Gets the current Y position on a cartesian grid of the router.
+        *
+        *  \param None.
+        *  \return A floating integer representing the Y position on a cartesian grid.
+        */
+        public float getY() {
+            return this.y;
+        }
+
+        /**
+        *  \brief Gets the current distance in meters(m) from a device, filtered over every
+        *         measurement so far.
+        *
+        *  \param None.
+        *  \return A floating integer representing the distance from the parent device in meters(m).
+        */
+        public float getDist() {
+            return (float)this.dist.getRange();
+        }
+
+        /**
+         *  \brief Gets the variance of the filtered distance as of the latest measurement.
+         *
+         *  \param None.
+         *  \return A double containing the variance in m^2.
+         */
+        public double getDistVariance() {
+            return this.dist.getVariance();
+        }
+
+        /**
+         *  \brief Gets the variance of the filtered distance at a given time, grown with the time
+         *         since the latest measurement.
+         *
+         *  \param timestampNanos A long containing the time in nanoseconds.
+         *  \return A double containing the variance in m^2.
+         */
+        public double getDistVariance(long timestampNanos) {
+            return this.dist.predictVariance(timestampNanos);
+        }
+
+        /**
+         *  \brief Gets the standard deviation of the latest distance measurement in meters(m).
+         *
+         *  \param None.
+         *  \return A floating integer containing the standard deviation in meters(m).
+         */
+        public float getDistStdDev() {
+            return this.distStdDev;
+        }
+
+        /**
+         *  \brief Gets the time the router was last measured.
+         *
+         *  \param None.
+         *  \return A long containing the time of the latest measurement in nanoseconds.
+         */
+        public long getTimestamp() {
+            return this.dist.getTimestamp();
+        }
+
+        /**
+         *  \brief Gets the router's current MAC Address.
+         *
+         *  \param None.
+         *  \return A String object containing the MAC Address of the router.
+         */
+        public String getMACAddr() {
+            if (this.MACAddr == null && this.mac != MacAddress.INVALID)
+                this.MACAddr = MacAddress.format(this.mac);
+            return this.MACAddr;
+        }
+
+        /**
+         *  \brief Gets the router's MAC Address packed into a long.
+         *
+         *  \param None.
+         *  \return A long containing the packed MAC Address of the router.
+         */
+        public long getMAC() {
+            return this.mac;
+        }
+
+        /**
+         *  \brief Gets the current signal strength to the parent device. Represented as a negative
+         *         number.
+         *
+         *  \param None.
+         *  \return An integer representing the signal strength to the parent device.
+         */
+        public int getRSSI() {
+            return this.rssi;
+        }
+
+        /**
+         *  \brief Gets whether the position of the router is known, either from the anchor
+         *         database or from being set directly.
+         *
+         *  \param None.
+         *  \return Returns true if the router can be used as an anchor for solving a position.
+         */
+        public boolean isPositioned() {
+            return this.positioned;
+        }
+
+        /**
+         *  \brief Gets whether the router has a distance measurement. Any timestamp, 0 included,
+         *         can be a measurement time, so this is counted rather than read from the time.
+         *
+         *  \param None.
+         *  \return Returns true if the router was measured since it was added.
+         */
+        public boolean isMeasured() {
+            return this.dist.getCount() > 0;
+        }
+
+        /**
+         *  \brief Gets the index of the router in the anchor database.
+         *
+         *  \param None.
+         *  \return An integer containing the index, or -1 if the router is not in the database.
+         */
+        public int getAnchorIndex() {
+            return this.anchorIndex;
+        }
+
+        /**
+         *  \brief Gets the building the router is in.
+         *
+         *  \param None.
+         *  \return An integer containing the building id.
+         */
+        public int getBuilding() {
+            return this.building;
+        }
+
+        /**
+         *  \brief Gets the floor the router is on.
+         *
+         *  \param None.
+         *  \return A float containing the floor number.
+         */
+        public float getFloor() {
+            return this.floor;
+        }
+
+        /**
+         *  \brief Gets the height of the router above its floor.
+         *
+         *  \param None.
+         *  \return A float containing the height in meters(m).
+         */
+        public float getZ() {
+            return this.z;
+        }
+
+        /* Sets */
+
+        /**
+         *  \brief Sets the router's X position on a cartesian grid.
+         *
+         *  \param x A floating integer containing the X position on a cartesian grid.
+         *  \return None.
+         */
+        public void setX(float x) {
+            this.x = x;
+        }
+
+        /**
+         *  \brief Sets the router's Y position on a cartesian grid.
+         *
+         *  \param y A floating integer containing the Y position on a cartesian grid.
+         *  \return None.
+         */
+        public void setY(float y) {
+            this.y = y;
+        }
+
+        /**
+         *  \brief Sets whether the position of the router is known.
+         *
+         *  \param positioned A boolean that is true if the X and Y position are valid.
+         *  \return None.
+         */
+        public void setPositioned(boolean positioned) {
+            this.positioned = positioned;
+        }
+
+        /**
+         *  \brief Sets where the router is in the anchor database and the floor it is on.
+         *
+         *  \param anchorIndex An integer containing the index in the anchor database.
+         *  \param building An integer containing the building id.
+         *  \param floor A float containing the floor number.
+         *  \param z A float containing the height above the floor in meters(m).
+         *  \return None.
+         */
+        void setAnchor(int anchorIndex, int building, float floor, float z) {
+            this.anchorIndex = anchorIndex;
+            this.building = building;
+            this.floor = floor;
+            this.z = z;
+        }
+
+        /**
+         *  \brief Adds a distance measurement from the parent device to the router's range filter.
+         *
+         *  \param dist A floating integer containing the distance in millimeters(mm) from the parent device.
+         *  \param distStdDev A floating integer containing the standard deviation of the distance in millimeters(mm).
+         *  \param timestamp A long containing the time of the measurement in nanoseconds.
+         *  \return None.
+         */
+        public void setDist(float dist, float distStdDev, long timestamp) {
+            this.distStdDev = distStdDev/1000f;
+            this.dist.update(dist/1000.0, this.distStdDev, timestamp);
+        }
+
+        /**
+         *  \brief Sets the router's signal strength from the parent device. Input should always be
+         *         a number below, or equal to zero, i.e. negative. The router table must be re-ranked
+         *         afterwards, since it ranks routers by RSSI.
+         *
+         *  \param rssi An integer containing the signal strength from the parent device.
+         *  \return None.
+         */
+        void setRSSI(int rssi) {
+            this.rssi = rssi;
+        }
+
+        /* Methods */
+
+        /**
+         *  \brief Clears all data in the router so its object can be reused for a new MAC Address.
+         *
+         *  \param mac A long containing the packed MAC Address the router now represents.
+         *  \return None.
+         */
+        void reset(long mac) {
+            this.x = 0;
+            this.y = 0;
+            this.dist.reset();
+            this.distStdDev = 0;
+            this.mac = mac;
+            this.MACAddr = null;
+            this.rssi = 0;
+            this.positioned = false;
+            this.anchorIndex = -1;
+            this.building = 0;
+            this.floor = 0;
+            this.z = 0;
+        }
+
+        /**
+         *  \brief This function compares the input object to this
+         *  object and outputs whether the objects are equal.
+         *
+         *  \param o An Object to compare this object to
+         *  \return Returns true if the objects or MAC Addresses are equal.
+         */
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            else if (o instanceof Router) {
+                Router temp = (Router)o;
+                return (this.getMAC() == temp.getMAC());
+            }
+            return false;
+        }
+
+        /**
+         *  \brief Gets a hash code consistent with equals.
+         *
+         *  \param None.
+         *  \return An integer hash of the MAC Address.
+         */
+        public int hashCode() {
+            return Long.hashCode(this.mac);
+        }
+    }
+
+    /**
+     *  \brief This class contains information relevant to a single device that
+     *  will be used in the GPS.
+     *
+     *  Any relevant information that is needed by the GPS algorithms and interfaces
+     *  is stored inside this class. It is designed for scalability to make adding
+     *  additional devices to the GPS easier while abstracting out unnecessary information.
+     */
+    private static class Device {
+        /* Public Variables */
+        /* Private Variables */
+        private final PositionTracker tracker;              /*!< Filtered position and velocity on a cartesian grid. */
+        private final RouterTable routerList;               /*!< Contains the routers used for triangulating the parent devices position. Ranked by RSSI. */
+
+        /* Constructor(s) */
+
+        /**
+         *  \brief Empty constructor. Initializes the position to zero and the router list to an
+         *         empty table.
+         *
+         *  \param None.
+         */
+        public Device() {
+            this.tracker = new PositionTracker();
+            this.routerList = new RouterTable();
+        }
+
+        /* Gets */
+
+        /**
+         * \brief Gets the devices current X position on the map.
+         *
+         * \param None
+         * \return An floating integer containing the X position of the device.
+         */
+        public float getX() {
+            return (float)this.tracker.getX();
+        }
+
+        /**
+         * \brief Gets the current Y position of the device.
+         *
+         * \param None.
+         * \return A floating integer containing the Y position of the device.
+         */
+        public float getY() {
+            return (float)this.tracker.getY();
+        }
+
+        /**
+         * \brief Gets the Kalman filter tracking the position and velocity of the device.
+         *
+         * \param None.
+         * \return The position tracker of the device.
+         */
+        public PositionTracker getTracker() {
+            return this.tracker;
+        }
+
+        /**
+         * \brief Gets the table of routers the device is communicating with.
+         *
+         * \param None.
+         * \return The router table containing data from RTT communications.
+         */
+        public RouterTable getRouterList() {
+            return this.routerList;
+        }
+
+        /* Methods */
+
+        /**
+         *  \brief This function compares the input object to this
+         *  object and outputs whether the objects are equal.
+         *
+         *  \param o An Object to compare this object to
+         *  \return Returns true if the objects are equal, else returns
+         *  false.
+         */
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            else if (o instanceof Device) {
+                Device temp = (Device)o;
+                if (this.getX() != temp.getX() || this.getY() != temp.getY())
+                    return false;
+                if (this.routerList.size() != temp.routerList.size())
+                    return false;
+                for (int i = 0; i < this.routerList.size(); i++) {
+                    if (!this.routerList.getByRank(i).equals(temp.routerList.getByRank(i)))
+                        return false;
+                }
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /* Constructor(s) */
+
+    /**
+     * \brief Empty constructor. Initializes all variables with an empty object. No router has a
+     *        pre-set position until one is set with setRouterPos.
+     *
+     * \param None.
+     */
+    public GPSCoreAPI() {
+        this(AnchorDatabase.EMPTY);
+    }
+
+    /**
+     * \brief Constructor for the GPSCoreAPI class. Initializes all variables with an empty object
+     *        and looks up the pre-set position of each router in the given anchor database.
+     *
+     * \param anchors The database of router positions, usually memory-mapped from an anchor file.
+     */
+    public GPSCoreAPI(AnchorDatabase anchors) {
+        this.device = new Device();
+        this.solver = new WeightedLeastSquaresSolver();
+        this.refiner = new LevenbergMarquardtSolver();
+        this.refinementEnabled = true;
+        this.measurements = new RangeMeasurements();
+        this.solution = new double[2];
+        this.fixVariance = MIN_FIX_VARIANCE;
+        this.anchors = anchors;
+        this.floors = new FloorClassifier();
+        this.grid = null;
+        this.nearby = new int[64];
+        this.deviceHeight = 0;
+        this.walkableAreas = WalkableAreas.NONE;
+        this.projected = new double[2];
+        this.fingerprints = FingerprintDatabase.NONE;
+        this.fingerprint = new double[3];
+        this.heardMacs = new long[16];
+        this.heardRssi = new int[16];
+        this.routerQuality = null;
+        this.scanNanos = 0;
+        this.predicted = new double[2];
+        this.trackerCovariance = new double[16];
+    }
+
+    /**
+     * \brief Constructor for the GPSCoreAPI class. Initializes all variables with the input data
+     *        and creates a list of routers with one object. The router list starts without an
+     *        anchor database, so the router stays at the origin until it is positioned.
+     *
+     * \param dist A floating integer containing the distance between a router and device.
+     * \param MACAddr A String object containing the MAC address of the router.
+     * \rssi An integer containing the signal strength of the router.
+     */
+    public GPSCoreAPI(float dist, String MACAddr, int rssi) {
+        this();
+        // Create the router at the origin, matching the position of a router missing from the anchor database
+        long mac = MacAddress.pack(MACAddr);
+        if (mac != MacAddress.INVALID) {
+            Router router = this.device.getRouterList().add(mac);
+            router.setDist(dist, 0, System.nanoTime());
+            this.device.getRouterList().updateRssi(mac, rssi);
+        }
+    }
+
+    /* Gets */
+
+    /**
+     * \brief Gets the devices position and returns it as an floating integer array. Index 0 contains the X
+     *        position and index 1 contains the Y position.
+     *
+     * \param None.
+     * \return A floating integer array containing the positional data of the device.
+     */
+    public float[] getDevicePos() {
+        return new float[] {this.device.getX(), this.device.getY()};
+    }
+
+    /**
+     * \brief Predicts the devices position at a given time from its tracked position and
+     *        velocity. Can be called between scans, e.g. at display rate. Does not allocate.
+     *
+     * \param timestampNanos A long containing the time to predict at in nanoseconds, on the same
+     *        clock as the scans passed to ingestScan.
+     * \param position A double array of at least two elements receiving {X, Y}.
+     * \return Returns true if the device has a tracked position, else returns false and leaves
+     *         position unchanged.
+     */
+    public boolean predictDevicePos(long timestampNanos, double[] position) {
+        PositionTracker tracker = this.device.getTracker();
+        if (!tracker.isInitialized())
+            return false;
+        tracker.predict(timestampNanos, position);
+        return true;
+    }
+
+    /**
+     * \brief Predicts the largest position variance of the device at a given time, grown from
+     *        the latest fix by the tracker's motion model.
+     *
+     * \param timestampNanos A long containing the time to predict at in nanoseconds, on the same
+     *        clock as the scans passed to ingestScan.
+     * \return A double containing the variance in m^2, or 0 if the device has no tracked position.
+     */
+    public double predictDeviceVariance(long timestampNanos) {
+        PositionTracker tracker = this.device.getTracker();
+        if (!tracker.isInitialized())
+            return 0;
+        return tracker.predictPositionVariance(timestampNanos);
+    }
+
+    /**
+     * \brief Gets the devices velocity. Index 0 contains the X velocity and index 1 contains
+     *        the Y velocity, both in m/s.
+     *
+     * \param None.
+     * \return A floating integer array containing the velocity of the device.
+     */
+    public float[] getDeviceVelocity() {
+        PositionTracker tracker = this.device.getTracker();
+        return new float[] {(float)tracker.getVelocityX(), (float)tracker.getVelocityY()};
+    }
+
+    /**
+     * \brief Gets the covariance of the devices tracked state {X, Y, VX, VY} as a 4x4 row major
+     *        array.
+     *
+     * \param None.
+     * \return A double array of 16 elements containing the covariance.
+     */
+    public double[] getDeviceCovariance() {
+        double[] covariance = new double[16];
+        this.device.getTracker().getCovariance(covariance);
+        return covariance;
+    }
+
+    /**
+     * \brief Gets a specific routers positional data using an input index of the array list.
+     *        Index 0 of the array contains the distance, index 1 contains the X position, and
+     *        index 2 contains the Y position.
+     *
+     * \param index An integer containing the index of the router in the array list.
+     * \return A floating integer array containing the positional data of the router.
+     */
+    public float[] getRouterPos(int index) {
+        // Get router at the input rank, null if the index is invalid
+        Router router = this.device.getRouterList().getByRank(index);
+        if (router != null) {
+            // Return array containing positional data
+            return new float[] {router.getDist(), router.getX(), router.getY()};
+        }
+
+        // Input array index is invalid or router list is empty so return null
+        return null; // Exceptions?
+    }
+
+    /**
+     * \brief Gets a specific routers positional data using an input MAC Address. It searches the
+     *        router list for the MAC Address and returns the positional data in the following
+     *        format: {Distance, X, Y}. Returns null if the MAC Address was not found in the list.
+     *
+     * \param MACAddr A String object containing the MAC Address of the router to search for.
+     * \return A floating integer array containing the positional data of the specified router.
+     */
+    public float[] getRouterPos(String MACAddr) {
+        // Look up the router by its packed MAC address
+        Router router = this.device.getRouterList().get(MacAddress.pack(MACAddr));
+        if (router != null) {
+            // Store positional data from router into the array
+            return new float[] {router.getDist(), router.getY(), router.getX()};
+        }
+
+        // MAC address was not found so return null
+        return null;
+    }
+
+    /**
+     * \brief Gets the positional data of all routers in the list. Returns the data as a double
+     *        array using the following format: {Distance, X, Y}{Router Index}.
+     *
+     * \param None.
+     * \return A double sized array containing the positional data of every router in the list.
+     */
+    public double[][] getAllRouterPos() {
+        // Get current router list
+        RouterTable routerList = this.device.getRouterList();
+        // Check if the current router list has any routers
+        if (routerList.size() > 0) {
+            // Create two dimensional array to store positional data for each listed router
+            double[][] routerListPos = new double[routerList.size()][3];
+            // Iterate through the router list and store the positional data
+            for (int i = 0; i < routerList.size(); i++) {
+                Router router = routerList.getByRank(i);
+                routerListPos[i][0] = router.getDist();
+                routerListPos[i][1] = router.getX();
+                routerListPos[i][2] = router.getY();
+            }
+
+            // Return the array with populated data
+            return routerListPos;
+        }
+
+        // Router list was empty so return null
+        return null; // Exceptions?
+    }
+
+    /**
+     * \brief Gets a specific routers X position using an index value in the router array list.
+     *
+     * \param i An integer containing the index of the router in the array list.
+     * \return A floating integer containing the specified routers X position.
+     */
+    public float getRouterX(int i) {
+        Router router = this.device.getRouterList().getByRank(i);
+        if (router != null) {
+            return router.getX();
+        }
+
+        return 0;
+    }
+
+    /**
+     * \brief Gets a specific routers Y position using an index value in the router array list.
+     *
+     * \param i An integer containing the index of the router in the array list.
+     * \return A floating integer containing the specified routers Y position.
+     */
+    public float getRouterY(int i) {
+        Router router = this.device.getRouterList().getByRank(i);
+        if (router != null) {
+            return router.getY();
+        }
+
+        return 0;
+    }
+
+    /**
+     * \brief Gets a specific routers distance using an index value in the router array list.
+     *
+     * \param i An integer containing the index of the router in the array list.
+     * \return A floating integer containing the specified routers distance.
+     */
+    public float getRouterDist(int i) {
+        Router router = this.device.getRouterList().getByRank(i);
+        if (router != null) {
+            return router.getDist();
+        }
+
+        return 0;
+    }
+
+    /**
+     * \brief Gets a specific routers signal strength using an index value in the router array list.
+     *
+     * \param i An integer containing the index of the router in the array list.
+     * \return An integer containing the specified routers signal strength.
+     */
+    public int getRouterRssi(int i) {
+        // Get router at the input rank, null if the index is invalid
+        Router router = this.device.getRouterList().getByRank(i);
+        if (router != null) {
+            return router.getRSSI();
+        }
+
+        return 0;
+    }
+
+    /**
+     * \brief Gets a specific routers MAC Address using an index value in the router array list.
+     *
+     * \param i An integer containing the index of the router in the array list.
+     * \return A String object containing the specified routers MAC Address.
+     */
+    public String getRouterMACAddr(int i) {
+        Router router = this.device.getRouterList().getByRank(i);
+        if (router != null) {
+            return router.getMACAddr();
+        }
+
+        return null;
+    }
+
+    /**
+     * \brief Gets a specific routers packed MAC Address using an index value in the router array list.
+     *
+     * \param i An integer containing the index of the router in the array list.
+     * \return A long containing the specified routers packed MAC Address, or MacAddress.INVALID.
+     */
+    public long getRouterMAC(int i) {
+        Router router = this.device.getRouterList().getByRank(i);
+        if (router != null) {
+            return router.getMAC();
+        }
+
+        return MacAddress.INVALID;
+    }
+
+    /**
+     * \brief Gets a specific routers signal strength using a MAC Address.
+     *
+     * \param MACAddr A String object containing the MAC Address of the router to search for.
+     * \return An integer containing the signal strength of the specified router.
+     */
+    public int getRouterRssi(String MACAddr) {
+        // Look up the router by its packed MAC address
+        Router router = this.device.getRouterList().get(MacAddress.pack(MACAddr));
+        if (router != null) {
+            return router.getRSSI();
+        }
+
+        // MAC address was not found so return 0
+        return 0;
+    }
+
+    /**
+     * \brief Gets the number of routers currently in the router list.
+     *
+     * \param None.
+     * \return An integer containing the number of routers.
+     */
+    public int getRouterCount() {
+        return this.device.getRouterList().size();
+    }
+
+    /**
+     * \brief Gets the database of pre-set router positions.
+     *
+     * \param None.
+     * \return The anchor database.
+     */
+    public AnchorDatabase getAnchorDatabase() {
+        return this.anchors;
+    }
+
+    /**
+     * \brief Gets the epoch of the router list, which increases every time the list is cleared.
+     *
+     * \param None.
+     * \return An integer containing the number of times the router list has been cleared.
+     */
+    public int getRouterEpoch() {
+        return this.device.getRouterList().getEpoch();
+    }
+
+    /**
+     * \brief Gets the algorithm used to solve the device position.
+     *
+     * \param None.
+     * \return The current position solver.
+     */
+    public PositionSolver getPositionSolver() {
+        return this.solver;
+    }
+
+    /**
+     * \brief Gets whether the building and floor of the device are known.
+     *
+     * \param None.
+     * \return Returns true once routers from the anchor database have answered a scan.
+     */
+    public boolean hasFloor() {
+        return this.floors.hasFloor();
+    }
+
+    /**
+     * \brief Gets the building the device is in, as voted by the routers that answer scans.
+     *
+     * \param None.
+     * \return An integer containing the building id, or 0 if it is not known.
+     */
+    public int getBuilding() {
+        return this.floors.getBuilding();
+    }
+
+    /**
+     * \brief Gets the floor the device is on, as voted by the routers that answer scans.
+     *
+     * \param None.
+     * \return A float containing the floor number, or 0 if it is not known.
+     */
+    public float getFloor() {
+        return this.floors.getFloor();
+    }
+
+    /**
+     * \brief Gets the ranging statistics kept for each router.
+     *
+     * \param None.
+     * \return The router quality statistics, or null if none are kept.
+     */
+    public RouterQuality getRouterQuality() {
+        return this.routerQuality;
+    }
+
+    /**
+     * \brief Gets the refinement stage applied to the solver output. Its counters describe the
+     *        most recent refinement.
+     *
+     * \param None.
+     * \return The Levenberg-Marquardt refinement stage.
+     */
+    public LevenbergMarquardtSolver getRefiner() {
+        return this.refiner;
+    }
+
+    /* Sets */
+
+    /**
+     * \brief Sets the height of the device above its floor. Ranges to routers mounted at a
+     *        different height are projected onto the floor before solving.
+     *
+     * \param height A float containing the height in meters(m).
+     * \return None.
+     */
+    public void setDeviceHeight(float height) {
+        this.deviceHeight = height;
+    }
+
+    /**
+     * \brief Sets the walkable area of each floor. Solved positions outside the area of the
+     *        device's floor are moved to the nearest point inside it. On floors without an area
+     *        positions outside the routers used are rejected instead.
+     *
+     * \param areas The walkable areas, or WalkableAreas.NONE.
+     * \return None.
+     */
+    public void setWalkableAreas(WalkableAreas areas) {
+        this.walkableAreas = areas;
+    }
+
+    /**
+     * \brief Sets the surveyed fingerprints of the site. When fewer than three routers with a
+     *        known position are in view, the position is estimated from the signal strength of
+     *        every measured router and the ranges there are are fitted around that estimate.
+     *
+     * \param fingerprints The fingerprint database, or FingerprintDatabase.NONE.
+     * \return None.
+     */
+    public void setFingerprints(FingerprintDatabase fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * \brief Sets the ranging statistics kept for each router. Every ingested range is judged
+     *        against the position predicted for its scan, and routers the statistics quarantine
+     *        stay in the router list but are not used to solve.
+     *
+     * \param quality The router quality statistics, or null to use every router.
+     * \return None.
+     */
+    public void setRouterQuality(RouterQuality quality) {
+        this.routerQuality = quality;
+    }
+
+    /**
+     * \brief Sets whether the solver output is refined with Levenberg-Marquardt iterations
+     *        before it is used. Enabled by default. Positions solved from fewer than three
+     *        ranges are used as solved.
+     *
+     * \param enabled A boolean that is true to refine every solved position.
+     * \return None.
+     */
+    public void setRefinementEnabled(boolean enabled) {
+        this.refinementEnabled = enabled;
+    }
+
+    /**
+     * \brief Sets the algorithm used to solve the device position.
+     *
+     * \param solver The position solver to use for every following calculation.
+     * \return None.
+     */
+    public void setPositionSolver(PositionSolver solver) {
+        if (solver != null)
+            this.solver = solver;
+    }
+
+    /**
+     * \brief Sets the devices positional data using the given inputs. Inputs should follow the
+     *        given format: {X, Y}.
+     *
+     * \param devicePos An integer array containing the positional data to store.
+     * \return None.
+     */
+    public void setDevicePos(int[] devicePos) {
+        setDevicePos(devicePos[0], devicePos[1]);
+    }
+
+    /**
+     * \brief Sets the devices positional data using the given inputs. The position tracker is
+     *        restarted at the new position with zero velocity. Inputs below or equal to zero
+     *        keep the current value of that axis.
+     *
+     * \param x A floating integer containing the X position to store.
+     * \param y A floating integer containing the Y position to store.
+     * \return None.
+     */
+    public void setDevicePos(float x, float y) {
+        if (x > 0 || y > 0)
+            this.device.getTracker().reset(x > 0 ? x : this.device.getX(), y > 0 ? y : this.device.getY(), MIN_FIX_VARIANCE);
+    }
+
+    /**
+     * \brief Sets a specific router's positional data using an index in the router array list.
+     *
+     * \param x A floating integer containing the X position to store.
+     * \param y A floating integer containing the Y position to store.
+     * \param index An integer containing the index of the router to store the data to in the array list.
+     * \return None.
+     */
+    public void setRouterPos(float x, float y, int index) {
+        // If input index is valid then set X and Y position
+        Router router = this.device.getRouterList().getByRank(index);
+        if (router != null) {
+            router.setX(x);
+            router.setY(y);
+            router.setPositioned(true);
+        }
+    }
+
+    /**
+     * \brief Sets a specific routes positional data using the MAC Address of the router.
+     *
+     * \param x A floating integer containing the X position to store.
+     * \param y A floating integer containing the Y position to store.
+     * \param MACAddr A String object containing the MAC Address of the router to store to.
+     * \return None.
+     */
+    public void setRouterPos(float x, float y, String MACAddr) {
+        // If MAC ID is found then set X and Y position
+        Router router = this.device.getRouterList().get(MacAddress.pack(MACAddr));
+        if (router != null) {
+            router.setX(x);
+            router.setY(y);
+            router.setPositioned(true);
+        }
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief This function updates the router with the input MAC Address, adding it to the
+     *  list of routers if it is new. The router list stays ranked by RSSI. Updating a router
+     *  already in the list does not allocate.
+     *
+     *  \param dist An integer containing the distance in mm from the device. The measurement
+     *         is timestamped with System.nanoTime.
+     *  \param MACAddr String object containing the router's MAC ID.
+     *  \param rssi An integer containing the signal strength of the router.
+     *  \return None.
+     */
+    public void appendRouterList(float dist, String MACAddr, int rssi) {
+        long mac = MacAddress.pack(MACAddr);
+        if (mac == MacAddress.INVALID) // Ignore anything that is not a MAC address, e.g. failed results
+            return;
+
+        RouterTable routerList = this.device.getRouterList();
+        Router router = routerList.get(mac);
+        if (router == null) { // New router so take a slot and look up its position once
+            router = routerList.add(mac);
+            placeRouter(router);
+        }
+        router.setDist(dist, 0, System.nanoTime());
+        routerList.updateRssi(mac, rssi); // Moves the router to its new rank
+    }
+
+    /**
+     *  \brief This function applies every result of one ranging scan to the list of routers in
+     *  a single pass, then solves the device position once, as applyScan followed by solveScan
+     *  if any result was applied.
+     *
+     *  \param timestampNanos A long containing the time of the scan in nanoseconds.
+     *  \param macs A long array containing the packed MAC Address of each result.
+     *  \param distMm An integer array containing the distance of each result in mm.
+     *  \param distStdDevMm An integer array containing the standard deviation of each distance in mm.
+     *  \param rssi An integer array containing the signal strength of each result.
+     *  \param count An integer containing the number of results to read from the arrays.
+     *  \return An integer containing the number of results applied to the router list.
+     */
+    public int ingestScan(long timestampNanos, long[] macs, int[] distMm, int[] distStdDevMm, int[] rssi, int count) {
+        int applied = applyScan(timestampNanos, macs, distMm, distStdDevMm, rssi, count);
+        if (applied > 0)
+            solveScan(timestampNanos);
+        return applied;
+    }
+
+    /**
+     *  \brief This function applies every result of one ranging scan to the list of routers in
+     *  a single pass without solving the position. New routers are added, known routers are
+     *  updated in place, and the list is re-ranked by RSSI after all results are applied.
+     *  Routers from the anchor database vote for the floor the device is on. Entries with an
+     *  invalid MAC Address are skipped. With router quality statistics, each range is first
+     *  compared with the distance from the position predicted for the scan.
+     *
+     *  \param timestampNanos A long containing the time of the scan in nanoseconds.
+     *  \param macs A long array containing the packed MAC Address of each result.
+     *  \param distMm An integer array containing the distance of each result in mm.
+     *  \param distStdDevMm An integer array containing the standard deviation of each distance in mm.
+     *  \param rssi An integer array containing the signal strength of each result.
+     *  \param count An integer containing the number of results to read from the arrays.
+     *  \return An integer containing the number of results applied to the router list.
+     */
+    public int applyScan(long timestampNanos, long[] macs, int[] distMm, int[] distStdDevMm, int[] rssi, int count) {
+        RouterTable routerList = this.device.getRouterList();
+        int applied = 0;
+        this.scanNanos = timestampNanos;
+
+        // Judge the ranges against the fix before they move it
+        RouterQuality quality = this.routerQuality;
+        boolean judged = quality != null && predictDevicePos(timestampNanos, this.predicted);
+        double predictedVariance = Double.NaN;
+        if (judged) {
+            this.device.getTracker().getCovariance(this.trackerCovariance);
+            predictedVariance = Math.max(this.trackerCovariance[0], this.trackerCovariance[5]);
+        }
+
+        this.floors.begin();
+        for (int i = 0; i < count; i++) {
+            long mac = macs[i];
+            if (mac == MacAddress.INVALID)
+                continue;
+
+            Router router = routerList.get(mac);
+            if (router == null) { // New router so take a slot and look up its position once
+                router = routerList.add(mac);
+                placeRouter(router);
+            }
+            router.setDist(distMm[i], distStdDevMm[i], timestampNanos);
+            router.setRSSI(rssi[i]); // Ranked after the whole scan is applied
+            if (quality != null) {
+                double range = distMm[i] / 1000.0;
+                double innovation = Double.NaN;
+                if (judged && router.isPositioned()) {
+                    double dx = router.getX() - this.predicted[0];
+                    double dy = router.getY() - this.predicted[1];
+                    double dz = router.getZ() - this.deviceHeight;
+                    innovation = range - Math.sqrt(dx * dx + dy * dy + dz * dz);
+                }
+                quality.onRange(mac, range, distStdDevMm[i] / 1000.0, innovation, predictedVariance, timestampNanos);
+            }
+            if (router.getAnchorIndex() >= 0) // Only routers with a known floor vote
+                this.floors.vote(router.getBuilding(), router.getFloor(), rssi[i]);
+            applied++;
+        }
+        this.floors.finish();
+
+        if (applied > 0)
+            routerList.sortByRssi();
+        return applied;
+    }
+
+    /**
+     *  \brief This function solves the device position from the router list after a scan was
+     *  applied with applyScan. A valid position is added to the device's position tracker.
+     *
+     *  \param timestampNanos A long containing the time of the scan in nanoseconds.
+     *  \return Returns true if the scan gave a valid position, else returns false and the
+     *           tracker keeps its previous state.
+     */
+    public boolean solveScan(long timestampNanos) {
+        double[] position = calculatePosition();
+        if (position[0] <= 0 || position[1] <= 0) // Only track valid positions
+            return false;
+        this.device.getTracker().update(timestampNanos, position[0], position[1], this.fixVariance);
+        return true;
+    }
+
+    /**
+     *  \brief This function sets the position of a newly added router from the anchor database.
+     *  Routers missing from the database stay at the default position of 0,0.
+     *
+     *  \param router The router to place.
+     *  \return None.
+     */
+    private void placeRouter(Router router) {
+        int index = this.anchors.indexOf(router.getMAC()); // Search for the MAC Address in the anchor database
+        if (index >= 0) {
+            router.setX(this.anchors.getX(index));
+            router.setY(this.anchors.getY(index));
+            router.setPositioned(true);
+            router.setAnchor(index, this.anchors.getBuilding(index), this.anchors.getFloor(index), this.anchors.getZ(index));
+        }
+    }
+
+    /**
+     *  \brief Removes every router that has not been measured within the given time, so routers
+     *  that went out of range age out one at a time instead of the whole list being cleared.
+     *  Routers that have never been measured are removed as well.
+     *
+     *  \param nowNanos A long containing the current time in nanoseconds.
+     *  \param ttlNanos A long containing how long a router is kept after its last measurement.
+     *  \return An integer containing the number of routers removed.
+     */
+    public int expireRouters(long nowNanos, long ttlNanos) {
+        RouterTable routerList = this.device.getRouterList();
+        int removed = 0;
+        // Weakest first so removing a router never moves one that is still to be checked
+        for (int i = routerList.size() - 1; i >= 0; i--) {
+            Router router = routerList.getByRank(i);
+            if (!router.isMeasured() || nowNanos - router.getTimestamp() > ttlNanos) {
+                routerList.remove(router.getMAC());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     *  \brief Removes every router from the router list and increases the router epoch.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void clearRouterList() {
+        this.device.getRouterList().clear();
+    }
+
+
+    /**
+     *  \brief This function compares the input object to this object and outputs whether the
+     *         objects are equal.
+     *
+     *  \param o An Object to compare this object to.
+     *  \return Returns true if the objects are equal.
+     */
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        else if (o instanceof GPSCoreAPI) {
+            GPSCoreAPI temp = (GPSCoreAPI)o;
+            return (this.device == temp.device);
+        }
+        return false;
+    }
+
+
+    /**
+     *  \brief This function solves the device position from the routers with a known position
+     *  on the device's floor and near its last position, using the current position solver
+     *  followed by the refinement stage if it is enabled. Solutions far from the strongest router
+     *  are clamped towards it and then moved inside the walkable area of the floor. On a floor
+     *  without a walkable area, solutions outside the area covered by the routers are rejected.
+     *  With fewer than three such routers the fingerprints give the position, blended with the
+     *  ranges that were measured.
+     *
+     *  \param None.
+     *  \return A double array containing {X, Y}, or {0, 0} if no valid position was solved.
+     */
+    public double[] calculatePosition() {
+        double[] output = {0, 0};
+
+        boolean hasPosition = this.device.getX() > 0 && this.device.getY() > 0;
+        collectAnchors(hasPosition);
+        if (hasPosition && measurements.count < 3) // Too few near the last position, it may be wrong
+            collectAnchors(false);
+
+        Geofence area = this.walkableAreas.get(this.floors.getBuilding(), this.floors.getFloor());
+        measurements.area = area;
+
+        // Let the refinement start from the previous fix if there is one
+        if (hasPosition) {
+            measurements.setPrior(this.device.getX(), this.device.getY());
+        }
+
+        boolean solved = solver.solve(measurements, solution);
+        if (solved && refinementEnabled) {
+            // Declines with fewer than three ranges and leaves the solver's position as it is
+            refiner.refine(measurements, solution, true);
+        }
+
+        // Too few ranges to rely on, so start from the fingerprints and fit the ranges there are around them
+        boolean fingerprinted = measurements.count < 3 && locateByFingerprint();
+        if (fingerprinted) {
+            if (!solved) {
+                solution[0] = fingerprint[0];
+                solution[1] = fingerprint[1];
+            }
+            fitRangesNear(fingerprint[0], fingerprint[1], fingerprint[2]);
+            solved = true;
+        }
+        if (!solved) {
+            return output;
+        }
+        double outX = solution[0];
+        double outY = solution[1];
+
+        double positionX = outX;
+        double positionY = outY;
+        double routerX = measurements.x[0];
+        double routerY = measurements.y[0];
+        double rad = measurements.range[0];
+        if (area != null || fingerprinted || withinAnchors(outX, outY)) { // Checks that value is within map, if not don't update position
+            if (rad > 10) {
+                rad = 10;
+            }
+            if (measurements.count == 0) { // Nothing to clamp towards
+                routerX = positionX;
+                routerY = positionY;
+                rad = 0;
+            }
+            double minX = routerX - rad;
+            double maxX = routerX + rad;
+            double minY = routerY - rad;
+            double maxY = routerY + rad;
+
+            if (positionX < minX) {
+                positionX = minX;
+            } else if (positionX > maxX) {
+                positionX = maxX;
+            }
+
+            if (positionY < minY) {
+                positionY = minY;
+            } else if (positionY > maxY) {
+                positionY = maxY;
+            }
+
+            // Move positions through walls or outside the building back to where the device can be
+            if (area != null && area.project(positionX, positionY, projected)) {
+                positionX = projected[0];
+                positionY = projected[1];
+            }
+        } else {
+            positionX = 0;
+            positionY = 0;
+        }
+
+        output[0] = positionX;
+        output[1] = positionY;
+
+        // Use the spread of the range residuals as the uncertainty of the position
+        double sum = 0;
+        for (int i = 0; i < measurements.count; i++) {
+            double dx = positionX - measurements.x[i];
+            double dy = positionY - measurements.y[i];
+            double residual = Math.sqrt(dx * dx + dy * dy) - measurements.range[i];
+            sum += residual * residual;
+        }
+        fixVariance = Math.max(MIN_FIX_VARIANCE, measurements.count > 0 ? sum / measurements.count : 0);
+        if (fingerprinted) // Each range shrinks the uncertainty of the fingerprint estimate
+            fixVariance = Math.max(fixVariance, fingerprint[2] / (1 + measurements.count));
+        return output;
+    }
+
+    /**
+     *  \brief This function estimates the device position from the signal strength of every
+     *  measured router, matched against the fingerprints of the device's floor.
+     *
+     *  \param None.
+     *  \return Returns true if the fingerprint buffer holds an estimate.
+     */
+    private boolean locateByFingerprint() {
+        if (this.fingerprints.size() == 0)
+            return false;
+        RouterTable routerList = this.device.getRouterList();
+        if (this.heardMacs.length < routerList.size()) {
+            this.heardMacs = new long[Integer.highestOneBit(routerList.size()) << 1];
+            this.heardRssi = new int[this.heardMacs.length];
+        }
+        int heard = 0;
+        for (int i = 0; i < routerList.size(); i++) {
+            Router router = routerList.getByRank(i);
+            if (!router.isMeasured())
+                continue;
+            this.heardMacs[heard] = router.getMAC();
+            this.heardRssi[heard] = router.getRSSI();
+            heard++;
+        }
+        return this.fingerprints.locate(this.floors.getBuilding(), this.floors.getFloor(), this.heardMacs, this.heardRssi, heard, this.fingerprint);
+    }
+
+    /**
+     *  \brief This function moves the solution to best fit the ranges in the measurement buffer
+     *  while staying close to a prior position, weighted by the variance of each. A few
+     *  Gauss-Newton steps are run from the current solution. The prior keeps the fit defined
+     *  with fewer than three ranges.
+     *
+     *  \param priorX A double containing the X coordinate of the prior position in meters(m).
+     *  \param priorY A double containing the Y coordinate of the prior position in meters(m).
+     *  \param priorVariance A double containing the variance of the prior position in m^2.
+     *  \return None.
+     */
+    private void fitRangesNear(double priorX, double priorY, double priorVariance) {
+        double x = solution[0];
+        double y = solution[1];
+        double priorWeight = 1 / priorVariance;
+        for (int iteration = 0; iteration < FIT_ITERATIONS; iteration++) {
+            double jj00 = priorWeight, jj01 = 0, jj11 = priorWeight;
+            double jr0 = priorWeight * (x - priorX);
+            double jr1 = priorWeight * (y - priorY);
+            for (int i = 0; i < measurements.count; i++) {
+                double dx = x - measurements.x[i];
+                double dy = y - measurements.y[i];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (d < 1e-6)
+                    continue;
+                double j0 = dx / d;
+                double j1 = dy / d;
+                double w = WeightedLeastSquaresSolver.weight(measurements.stdDev[i], measurements.rssi[i]);
+                double r = d - measurements.range[i];
+                jj00 += w * j0 * j0;
+                jj01 += w * j0 * j1;
+                jj11 += w * j1 * j1;
+                jr0 += w * j0 * r;
+                jr1 += w * j1 * r;
+            }
+            double det = jj00 * jj11 - jj01 * jj01;
+            double stepX = -(jj11 * jr0 - jj01 * jr1) / det;
+            double stepY = -(jj00 * jr1 - jj01 * jr0) / det;
+            x += stepX;
+            y += stepY;
+            if (stepX * stepX + stepY * stepY < 1e-6)
+                break;
+        }
+        solution[0] = x;
+        solution[1] = y;
+    }
+
+    /**
+     *  \brief This function fills the measurement buffer with the routers that have a known
+     *  position, are on the device's floor and are not quarantined, strongest first. Near the last position the
+     *  routers are found through the anchor grid once the router list is large, so the cost
+     *  depends on the routers nearby rather than on the size of the list. In that case routers
+     *  positioned with setRouterPos rather than the anchor database are not used.
+     *
+     *  \param nearby A boolean that is true to only use routers near the last position.
+     *  \return None.
+     */
+    private void collectAnchors(boolean nearby) {
+        RouterTable routerList = this.device.getRouterList();
+        double deviceX = this.device.getX();
+        double deviceY = this.device.getY();
+        measurements.clear();
+
+        if (nearby && this.floors.hasFloor() && routerList.size() > GRID_MIN_ROUTERS && this.anchors.size() > 0) {
+            if (this.grid == null)
+                this.grid = new AnchorGrid(this.anchors);
+            int found = this.grid.query(this.floors.getBuilding(), this.floors.getFloor(), deviceX, deviceY, SEARCH_RADIUS, this.nearby);
+            if (found > this.nearby.length) {
+                this.nearby = new int[Integer.highestOneBit(found) << 1];
+                found = this.grid.query(this.floors.getBuilding(), this.floors.getFloor(), deviceX, deviceY, SEARCH_RADIUS, this.nearby);
+            }
+            int strongest = -1;
+            for (int i = 0; i < found; i++) {
+                Router router = routerList.get(this.anchors.getMAC(this.nearby[i]));
+                if (router != null && router.isPositioned() && router.isMeasured()
+                        && this.floors.matches(router.getBuilding(), router.getFloor()) && !isQuarantined(router)) {
+                    addMeasurement(router);
+                    if (strongest < 0 || router.getRSSI() > measurements.rssi[strongest])
+                        strongest = measurements.count - 1;
+                }
+            }
+            if (strongest > 0) // Keep the strongest router first for the clamp in calculatePosition
+                measurements.swap(0, strongest);
+            return;
+        }
+
+        // Collect every router that can be used as an anchor, strongest first
+        double radiusSquared = SEARCH_RADIUS * SEARCH_RADIUS;
+        for (int i = 0; i < routerList.size(); i++) {
+            Router router = routerList.getByRank(i);
+            if (!router.isPositioned() || isQuarantined(router))
+                continue;
+            if (router.getAnchorIndex() >= 0 && !this.floors.matches(router.getBuilding(), router.getFloor()))
+                continue;
+            double dx = router.getX() - deviceX;
+            double dy = router.getY() - deviceY;
+            if (nearby && dx * dx + dy * dy > radiusSquared)
+                continue;
+            addMeasurement(router);
+        }
+    }
+
+    /**
+     *  \brief This function checks whether the router quality statistics keep a router out of
+     *  solving at the time of the latest scan.
+     *
+     *  \param router The router to check.
+     *  \return Returns true if the router is quarantined.
+     */
+    private boolean isQuarantined(Router router) {
+        RouterQuality quality = this.routerQuality;
+        return quality != null && quality.isQuarantined(router.getMAC(), this.scanNanos);
+    }
+
+    /**
+     *  \brief This function adds a router to the measurement buffer. The range to a router mounted
+     *  higher or lower than the device is projected onto the floor. The range is weighted by its
+     *  filter's variance at the time of the scan, so routers the latest scans missed count less.
+     *
+     *  \param router The router to add.
+     *  \return None.
+     */
+    private void addMeasurement(Router router) {
+        double range = router.getDist();
+        double dz = router.getZ() - this.deviceHeight;
+        if (dz != 0)
+            range = Math.sqrt(Math.max(0, range * range - dz * dz));
+        measurements.add(router.getX(), router.getY(), range, Math.sqrt(router.getDistVariance(this.scanNanos)), router.getRSSI());
+        measurements.timestampNanos = Math.max(measurements.timestampNanos, router.getTimestamp());
+    }
+
+    /**
+     *  \brief This function checks that a position is inside the area covered by the routers in
+     *  the measurement buffer, widened by MAP_MARGIN.
+     *
+     *  \param x A double containing the X coordinate in meters(m).
+     *  \param y A double containing the Y coordinate in meters(m).
+     *  \return Returns true if the position is inside the area.
+     */
+    private boolean withinAnchors(double x, double y) {
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < measurements.count; i++) {
+            minX = Math.min(minX, measurements.x[i]);
+            maxX = Math.max(maxX, measurements.x[i]);
+            minY = Math.min(minY, measurements.y[i]);
+            maxY = Math.max(maxY, measurements.y[i]);
+        }
+        return x > minX - MAP_MARGIN && x < maxX + MAP_MARGIN && y > minY - MAP_MARGIN && y < maxY + MAP_MARGIN;
+    }
+}
@@ -0,0 +1,381 @@
+/** \file GdopRangingPlanner.java
+ *  \brief This file contains a ranging planner that ranks responders by how
+ *  much they improve the geometry of the fix.
+ *
+ *  The geometric dilution of precision (GDOP) of a range fix depends on the
+ *  directions from the device to the routers: routers spread around the
+ *  device give a small GDOP, routers in a line give a large one. Each range
+ *  adds u*u^T to the 2x2 information matrix of the fix, where u is the unit
+ *  vector towards the router, and GDOP is the square root of the trace of its
+ *  inverse. Picking routers that maximise the determinant of the matrix keeps
+ *  the GDOP low.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+
+/**
+ *  \brief This class orders responders greedily by their expected
+ *  contribution to the information matrix of the fix.
+ *
+ *  Each router's contribution is weighted by its recent ranging success rate,
+ *  so routers that rarely answer are tried last. Candidates that were left out
+ *  of a plan gain priority each time, so on floors with more responders than
+ *  fit in the batches every responder is eventually ranged. Routers without a
+ *  known position, from the anchor database or setAnchorPosition, are ranged
+ *  after every positioned router. Routers are kept in an open addressing map
+ *  of primitive arrays, as in RouterTable, so planning only allocates when a
+ *  router is seen for the first time. Safe to use from any thread.
+ */
+public final class GdopRangingPlanner implements RangingPlanner {
+    /* Public Variables */
+    public static final int DEFAULT_MAX_BATCHES = 3;            /*!< Default number of batches ranged per scan. */
+    public static final double PRIOR_SUCCESS_RATE = 0.75;      /*!< Success rate assumed for a router never ranged before. */
+
+    /* Private Variables */
+    private static final double SUCCESS_SMOOTHING = 0.2;        /*!< Weight of the newest outcome in the success rate. */
+    private static final double ROTATION_BONUS = 0.25;          /*!< Priority gained per plan a router was left out of. */
+    private static final double TRACE_WEIGHT = 1e-3;            /*!< Weight of the trace, which breaks ties while the determinant is still 0. */
+    private static final double MIN_DISTANCE = 0.5;             /*!< Routers closer than this in m give no direction. */
+    private static final long EMPTY = -1L;                      /*!< Marks an unused key in the hash map. Never a valid 48-bit MAC address. */
+    private static final int DEFAULT_CAPACITY = 64;             /*!< Default number of routers before the arrays grow. */
+
+    private final int maxBatches;               /*!< Number of batches ranged per scan. */
+    private final AnchorDatabase database;      /*!< Positions of routers not set with setAnchorPosition. */
+    private boolean hasPosition;                /*!< True once a device position has been set. */
+    private double deviceX;                     /*!< X coordinate of the device in m. */
+    private double deviceY;                     /*!< Y coordinate of the device in m. */
+
+    private long[] keys;                        /*!< Hash map keys. Packed MAC addresses, or EMPTY. */
+    private int[] values;                       /*!< Hash map values. Router index for the key at the same index. */
+    private int mask;                           /*!< Hash map capacity minus one. The capacity is always a power of two. */
+    private int size;                           /*!< Number of routers known. */
+    private boolean[] placed;                   /*!< True for each router whose position is known. */
+    private double[] anchorX;                   /*!< X coordinate of each router in m. */
+    private double[] anchorY;                   /*!< Y coordinate of each router in m. */
+    private double[] successRate;               /*!< Smoothed fraction of ranging attempts of each router that measured a range. */
+    private int[] skipped;                      /*!< Number of plans in a row each router was left out of. */
+
+    private int[] candidateIndex;               /*!< Router index of each candidate. Reused between plans. */
+    private double[] unitX;                     /*!< X component of the unit vector to each candidate. */
+    private double[] unitY;                     /*!< Y component of the unit vector to each candidate. */
+    private boolean[] picked;                   /*!< True for each candidate already in the plan. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Plans up to DEFAULT_MAX_BATCHES batches per scan.
+     *
+     *  \param None.
+     */
+    public GdopRangingPlanner() {
+        this(AnchorDatabase.EMPTY, DEFAULT_MAX_BATCHES);
+    }
+
+    /**
+     *  \brief Constructor for the class GdopRangingPlanner. Plans up to DEFAULT_MAX_BATCHES
+     *         batches per scan.
+     *
+     *  \param database The anchor database router positions are looked up in.
+     */
+    public GdopRangingPlanner(AnchorDatabase database) {
+        this(database, DEFAULT_MAX_BATCHES);
+    }
+
+    /**
+     *  \brief Constructor for the class GdopRangingPlanner.
+     *
+     *  \param maxBatches An integer containing the largest number of batches ranged per scan.
+     */
+    public GdopRangingPlanner(int maxBatches) {
+        this(AnchorDatabase.EMPTY, maxBatches);
+    }
+
+    /**
+     *  \brief Constructor for the class GdopRangingPlanner.
+     *
+     *  \param database The anchor database router positions are looked up in.
+     *  \param maxBatches An integer containing the largest number of batches ranged per scan.
+     */
+    public GdopRangingPlanner(AnchorDatabase database, int maxBatches) {
+        this.database = database;
+        this.maxBatches = Math.max(1, maxBatches);
+        this.hasPosition = false;
+        this.size = 0;
+        this.placed = new boolean[DEFAULT_CAPACITY];
+        this.anchorX = new double[DEFAULT_CAPACITY];
+        this.anchorY = new double[DEFAULT_CAPACITY];
+        this.successRate = new double[DEFAULT_CAPACITY];
+        this.skipped = new int[DEFAULT_CAPACITY];
+        allocateMap(DEFAULT_CAPACITY);
+        this.candidateIndex = new int[0];
+        this.unitX = new double[0];
+        this.unitY = new double[0];
+        this.picked = new boolean[0];
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the smoothed ranging success rate of a router.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return A double between 0 and 1, PRIOR_SUCCESS_RATE if the router was never ranged.
+     */
+    public synchronized double getSuccessRate(long mac) {
+        int anchor = find(mac);
+        return anchor < 0 ? PRIOR_SUCCESS_RATE : this.successRate[anchor];
+    }
+
+    /* Sets */
+
+    /**
+     *  \brief Sets the known position of a router.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \param x A double containing the X coordinate of the router in m.
+     *  \param y A double containing the Y coordinate of the router in m.
+     *  \return None.
+     */
+    public synchronized void setAnchorPosition(long mac, double x, double y) {
+        int anchor = getAnchor(mac);
+        this.placed[anchor] = true;
+        this.anchorX[anchor] = x;
+        this.anchorY[anchor] = y;
+    }
+
+    @Override
+    public synchronized void setDevicePosition(double x, double y) {
+        this.hasPosition = true;
+        this.deviceX = x;
+        this.deviceY = y;
+    }
+
+    /* Methods */
+
+    @Override
+    public synchronized int plan(long[] candidates, int count, int maxPeers, long[] ordered) {
+        if (maxPeers <= 0 || count <= 0)
+            return 0;
+        ensureCapacity(count);
+        int limit = Math.min(count, this.maxBatches * maxPeers);
+
+        // Judge directions from the device, or from the middle of the routers before the first fix
+        double originX = this.deviceX;
+        double originY = this.deviceY;
+        if (!this.hasPosition) {
+            int placed = 0;
+            originX = 0;
+            originY = 0;
+            for (int i = 0; i < count; i++) {
+                int anchor = getAnchor(candidates[i]);
+                if (this.placed[anchor]) {
+                    originX += this.anchorX[anchor];
+                    originY += this.anchorY[anchor];
+                    placed++;
+                }
+            }
+            if (placed > 0) {
+                originX /= placed;
+                originY /= placed;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int anchor = getAnchor(candidates[i]);
+            this.candidateIndex[i] = anchor;
+            this.picked[i] = false;
+            this.unitX[i] = 0;
+            this.unitY[i] = 0;
+            if (this.placed[anchor]) {
+                double dx = this.anchorX[anchor] - originX;
+                double dy = this.anchorY[anchor] - originY;
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                if (distance > MIN_DISTANCE) {
+                    this.unitX[i] = dx / distance;
+                    this.unitY[i] = dy / distance;
+                }
+            }
+        }
+
+        // Information matrix of the routers picked so far, {xx, xy, yy}
+        double fxx = 0;
+        double fxy = 0;
+        double fyy = 0;
+        for (int n = 0; n < limit; n++) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                if (this.picked[i])
+                    continue;
+                int anchor = this.candidateIndex[i];
+                double rotation = 1 + ROTATION_BONUS * this.skipped[anchor];
+                double score;
+                if (this.placed[anchor]) {
+                    double w = this.successRate[anchor];
+                    double ux = this.unitX[i];
+                    double uy = this.unitY[i];
+                    // det(F + w*u*u^T) = det(F) + w*u^T*adj(F)*u
+                    double det = fxx * fyy - fxy * fxy + w * (ux * ux * fyy - 2 * ux * uy * fxy + uy * uy * fxx);
+                    double trace = fxx + fyy + w * (ux * ux + uy * uy);
+                    score = (det + TRACE_WEIGHT * trace) * rotation;
+                }
+                else {
+                    // No position, so only useful for the router list, after every positioned router
+                    score = -1 / (1 + this.successRate[anchor] * rotation);
+                }
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+
+            this.picked[best] = true;
+            ordered[n] = candidates[best];
+            int anchor = this.candidateIndex[best];
+            if (this.placed[anchor]) {
+                double w = this.successRate[anchor];
+                fxx += w * this.unitX[best] * this.unitX[best];
+                fxy += w * this.unitX[best] * this.unitY[best];
+                fyy += w * this.unitY[best] * this.unitY[best];
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int anchor = this.candidateIndex[i];
+            this.skipped[anchor] = this.picked[i] ? 0 : this.skipped[anchor] + 1;
+        }
+        return limit;
+    }
+
+    @Override
+    public synchronized void onRangingResult(long mac, boolean success) {
+        int anchor = getAnchor(mac);
+        this.successRate[anchor] += SUCCESS_SMOOTHING * ((success ? 1 : 0) - this.successRate[anchor]);
+    }
+
+    /**
+     *  \brief Finds the index of a router.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return An integer containing the router index, or -1 if the router is not known.
+     */
+    private int find(long mac) {
+        if (mac == EMPTY)
+            return -1;
+        int index = mix(mac) & this.mask;
+        while (this.keys[index] != EMPTY) {
+            if (this.keys[index] == mac)
+                return this.values[index];
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     *  \brief Gets the index of a router, adding it if the router is new. A new router is
+     *         placed from the anchor database if it is in it. Only allocates when the arrays
+     *         have to grow.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return An integer containing the router index.
+     */
+    private int getAnchor(long mac) {
+        int index = mix(mac) & this.mask;
+        while (this.keys[index] != EMPTY) {
+            if (this.keys[index] == mac)
+                return this.values[index];
+            index = (index + 1) & this.mask;
+        }
+
+        if (this.size == this.placed.length) {
+            grow();
+            // Map was rebuilt so the probe position has to be found again
+            index = mix(mac) & this.mask;
+            while (this.keys[index] != EMPTY)
+                index = (index + 1) & this.mask;
+        }
+
+        int anchor = this.size++;
+        this.keys[index] = mac;
+        this.values[index] = anchor;
+        int entry = this.database.indexOf(mac);
+        this.placed[anchor] = entry >= 0;
+        this.anchorX[anchor] = entry >= 0 ? this.database.getX(entry) : 0;
+        this.anchorY[anchor] = entry >= 0 ? this.database.getY(entry) : 0;
+        this.successRate[anchor] = PRIOR_SUCCESS_RATE;
+        this.skipped[anchor] = 0;
+        return anchor;
+    }
+
+    /**
+     *  \brief Doubles the number of routers the arrays hold and rebuilds the hash map.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    private void grow() {
+        int capacity = this.placed.length * 2;
+        this.placed = Arrays.copyOf(this.placed, capacity);
+        this.anchorX = Arrays.copyOf(this.anchorX, capacity);
+        this.anchorY = Arrays.copyOf(this.anchorY, capacity);
+        this.successRate = Arrays.copyOf(this.successRate, capacity);
+        this.skipped = Arrays.copyOf(this.skipped, capacity);
+
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        allocateMap(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = mix(oldKeys[i]) & this.mask;
+                while (this.keys[index] != EMPTY)
+                    index = (index + 1) & this.mask;
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     *  \brief Allocates an empty hash map sized so it is never more than half full.
+     *
+     *  \param capacity An integer containing the number of routers.
+     *  \return None.
+     */
+    private void allocateMap(int capacity) {
+        int mapSize = Integer.highestOneBit(capacity) << 2;
+        this.keys = new long[mapSize];
+        this.values = new int[mapSize];
+        this.mask = mapSize - 1;
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     *  \brief Spreads the bits of a MAC address so neighbouring addresses from the same vendor do
+     *         not cluster in the hash map.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return An integer hash of the address.
+     */
+    private static int mix(long mac) {
+        long h = mac * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    /**
+     *  \brief Grows the candidate scratch arrays to hold at least the given number of candidates.
+     *
+     *  \param count An integer containing the number of candidates.
+     *  \return None.
+     */
+    private void ensureCapacity(int count) {
+        if (this.picked.length >= count)
+            return;
+        this.candidateIndex = new int[count];
+        this.unitX = new double[count];
+        this.unitY = new double[count];
+        this.picked = new boolean[count];
+    }
+}
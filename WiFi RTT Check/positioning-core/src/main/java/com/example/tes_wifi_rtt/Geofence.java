@@ -0,0 +1,390 @@
+/** \file Geofence.java
+ *  \brief This file contains the walkable area of one floor and the queries
+ *  that keep positions inside it.
+ *
+ *  The area is a set of polygon rings combined with the even-odd rule, so a
+ *  ring inside another ring is a hole, such as a stairwell or a courtyard. A
+ *  grid precomputed over the area answers most queries without looking at a
+ *  single edge: a cell entirely inside or outside the area gives the answer
+ *  directly, and a cell the boundary passes through lists only the edges that
+ *  cross it.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class tests whether positions are in a walkable area and moves
+ *  positions outside it to the nearest point inside.
+ *
+ *  Queries do not allocate. Safe to use from any thread once built.
+ */
+public final class Geofence {
+    /* Public Variables */
+    public static final double DEFAULT_CELL_SIZE = 1.0;    /*!< Default width of a grid cell in m. */
+
+    /* Private Variables */
+    private static final byte OUTSIDE = 0;          /*!< Cell entirely outside the area. */
+    private static final byte INSIDE = 1;           /*!< Cell entirely inside the area. */
+    private static final byte BOUNDARY = 2;         /*!< Cell crossed by at least one edge. */
+    private static final double INSET = 0.01;       /*!< Distance in m a projected position is moved past the boundary into the area. */
+
+    private final double[] edgeX0;      /*!< X coordinate of the start of each edge. */
+    private final double[] edgeY0;      /*!< Y coordinate of the start of each edge. */
+    private final double[] edgeX1;      /*!< X coordinate of the end of each edge. */
+    private final double[] edgeY1;      /*!< Y coordinate of the end of each edge. */
+    private final double cellSize;      /*!< Width of a grid cell in m. */
+    private final double originX;       /*!< X coordinate of the corner of the grid. */
+    private final double originY;       /*!< Y coordinate of the corner of the grid. */
+    private final int columns;          /*!< Number of grid cells along X. */
+    private final int rows;             /*!< Number of grid cells along Y. */
+    private final byte[] state;         /*!< OUTSIDE, INSIDE or BOUNDARY for each cell. */
+    private final boolean[] centreInside; /*!< True for each boundary cell whose centre is inside the area. */
+    private final int[] cellStart;      /*!< Index into cellEdges of the first edge of each cell, plus a final end index. */
+    private final int[] cellEdges;      /*!< Edge indexes grouped by the cells they cross. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class Geofence. Uses the default cell size.
+     *
+     *  \param rings An array of polygon rings, each a double array of {x0, y0, x1, y1, ...}. Rings
+     *               are closed automatically.
+     */
+    public Geofence(double[][] rings) {
+        this(rings, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     *  \brief Constructor for the class Geofence.
+     *
+     *  \param rings An array of polygon rings, each a double array of {x0, y0, x1, y1, ...}. Rings
+     *               are closed automatically.
+     *  \param cellSize A double containing the width of a grid cell in m.
+     *  \throws IllegalArgumentException If there are no rings or a ring has fewer than 3 points.
+     */
+    public Geofence(double[][] rings, double cellSize) {
+        int edges = 0;
+        for (double[] ring : rings) {
+            if (ring.length < 6 || ring.length % 2 != 0)
+                throw new IllegalArgumentException("A ring needs at least 3 points");
+            edges += ring.length / 2;
+        }
+        if (edges == 0)
+            throw new IllegalArgumentException("No rings");
+
+        this.edgeX0 = new double[edges];
+        this.edgeY0 = new double[edges];
+        this.edgeX1 = new double[edges];
+        this.edgeY1 = new double[edges];
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        int e = 0;
+        for (double[] ring : rings) {
+            int points = ring.length / 2;
+            for (int i = 0; i < points; i++) {
+                int j = (i + 1) % points;
+                this.edgeX0[e] = ring[2 * i];
+                this.edgeY0[e] = ring[2 * i + 1];
+                this.edgeX1[e] = ring[2 * j];
+                this.edgeY1[e] = ring[2 * j + 1];
+                minX = Math.min(minX, ring[2 * i]);
+                minY = Math.min(minY, ring[2 * i + 1]);
+                maxX = Math.max(maxX, ring[2 * i]);
+                maxY = Math.max(maxY, ring[2 * i + 1]);
+                e++;
+            }
+        }
+
+        // One cell of margin so every boundary cell has outside neighbours
+        this.cellSize = cellSize;
+        this.originX = minX - cellSize;
+        this.originY = minY - cellSize;
+        this.columns = (int)Math.ceil((maxX - this.originX) / cellSize) + 1;
+        this.rows = (int)Math.ceil((maxY - this.originY) / cellSize) + 1;
+        int cells = this.columns * this.rows;
+
+        // Count then list the edges crossing each cell
+        this.cellStart = new int[cells + 1];
+        this.listCrossings(null, null);
+        for (int cell = 0; cell < cells; cell++)
+            this.cellStart[cell + 1] += this.cellStart[cell];
+        this.cellEdges = new int[this.cellStart[cells]];
+        this.listCrossings(this.cellEdges, new int[cells]);
+
+        // Classify every cell, only ray casting again after crossing a boundary cell
+        this.state = new byte[cells];
+        this.centreInside = new boolean[cells];
+        for (int r = 0; r < this.rows; r++) {
+            boolean known = false;
+            boolean inside = false;
+            for (int c = 0; c < this.columns; c++) {
+                int cell = r * this.columns + c;
+                double cx = this.originX + (c + 0.5) * cellSize;
+                double cy = this.originY + (r + 0.5) * cellSize;
+                if (this.cellStart[cell + 1] > this.cellStart[cell]) {
+                    this.state[cell] = BOUNDARY;
+                    this.centreInside[cell] = rayCast(cx, cy);
+                    known = false;
+                }
+                else {
+                    if (!known) {
+                        inside = rayCast(cx, cy);
+                        known = true;
+                    }
+                    this.state[cell] = inside ? INSIDE : OUTSIDE;
+                }
+            }
+        }
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Gets whether a position is inside the walkable area.
+     *
+     *  \param x A double containing the X coordinate in m.
+     *  \param y A double containing the Y coordinate in m.
+     *  \return Returns true if the position is inside the area.
+     */
+    public boolean contains(double x, double y) {
+        int c = (int)Math.floor((x - this.originX) / this.cellSize);
+        int r = (int)Math.floor((y - this.originY) / this.cellSize);
+        if (c < 0 || r < 0 || c >= this.columns || r >= this.rows)
+            return false;
+        int cell = r * this.columns + c;
+        if (this.state[cell] != BOUNDARY)
+            return this.state[cell] == INSIDE;
+
+        // Walk from the cell centre, whose side is known, and count the boundary crossings on the way
+        double cx = this.originX + (c + 0.5) * this.cellSize;
+        double cy = this.originY + (r + 0.5) * this.cellSize;
+        boolean inside = this.centreInside[cell];
+        for (int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++) {
+            int e = this.cellEdges[i];
+            if (segmentsCross(cx, cy, x, y, this.edgeX0[e], this.edgeY0[e], this.edgeX1[e], this.edgeY1[e]))
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     *  \brief Moves a position outside the walkable area to the nearest point inside it.
+     *         Positions already inside are returned unchanged.
+     *
+     *  \param x A double containing the X coordinate in m.
+     *  \param y A double containing the Y coordinate in m.
+     *  \param out A double array of length 2 the position {X, Y} is written to.
+     *  \return Returns true if the position was moved.
+     */
+    public boolean project(double x, double y, double[] out) {
+        out[0] = x;
+        out[1] = y;
+        if (contains(x, y))
+            return false;
+
+        int c = (int)Math.floor((x - this.originX) / this.cellSize);
+        int r = (int)Math.floor((y - this.originY) / this.cellSize);
+        double best = Double.MAX_VALUE;
+        if (c < 0 || r < 0 || c >= this.columns || r >= this.rows) {
+            // Outside the grid, which is rare enough to check every edge
+            for (int e = 0; e < this.edgeX0.length; e++)
+                best = closer(e, x, y, best, out);
+        }
+        else {
+            // Search rings of cells outwards until no unsearched edge can be closer
+            int maxRing = Math.max(this.columns, this.rows);
+            for (int ring = 0; ring <= maxRing; ring++) {
+                for (int rr = r - ring; rr <= r + ring; rr++) {
+                    if (rr < 0 || rr >= this.rows)
+                        continue;
+                    boolean edgeRow = rr == r - ring || rr == r + ring;
+                    for (int cc = c - ring; cc <= c + ring; cc += edgeRow ? 1 : 2 * ring) {
+                        if (cc >= 0 && cc < this.columns) {
+                            int cell = rr * this.columns + cc;
+                            for (int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++)
+                                best = closer(this.cellEdges[i], x, y, best, out);
+                        }
+                        if (ring == 0)
+                            break;
+                    }
+                }
+                if (best <= ring * this.cellSize * ring * this.cellSize)
+                    break;
+            }
+        }
+
+        // Step just past the boundary so the position counts as inside
+        double dx = out[0] - x;
+        double dy = out[1] - y;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (distance > 0) {
+            double insetX = out[0] + dx / distance * INSET;
+            double insetY = out[1] + dy / distance * INSET;
+            if (contains(insetX, insetY)) {
+                out[0] = insetX;
+                out[1] = insetY;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *  \brief Visits every cell each edge passes through. Counts the edges of each cell into
+     *         cellStart, or once cellStart holds the offsets, writes them into list.
+     *
+     *  \param list An integer array to write edge indexes into, or null to count them.
+     *  \param fill An integer array containing the number of edges already written for each cell.
+     *  \return None.
+     */
+    private void listCrossings(int[] list, int[] fill) {
+        for (int e = 0; e < this.edgeX0.length; e++) {
+            int c0 = clampColumn(Math.min(this.edgeX0[e], this.edgeX1[e]));
+            int c1 = clampColumn(Math.max(this.edgeX0[e], this.edgeX1[e]));
+            int r0 = clampRow(Math.min(this.edgeY0[e], this.edgeY1[e]));
+            int r1 = clampRow(Math.max(this.edgeY0[e], this.edgeY1[e]));
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    if (!crossesCell(e, c, r))
+                        continue;
+                    int cell = r * this.columns + c;
+                    if (list == null)
+                        this.cellStart[cell + 1]++;
+                    else
+                        list[this.cellStart[cell] + fill[cell]++] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     *  \brief Writes the closest point of an edge to a position if it is closer than the best so
+     *         far.
+     *
+     *  \param e An integer containing the edge index.
+     *  \param x A double containing the X coordinate of the position.
+     *  \param y A double containing the Y coordinate of the position.
+     *  \param best A double containing the squared distance of the best point so far.
+     *  \param out A double array of length 2 holding the best point so far.
+     *  \return A double containing the squared distance of the best point after this edge.
+     */
+    private double closer(int e, double x, double y, double best, double[] out) {
+        double ax = this.edgeX0[e];
+        double ay = this.edgeY0[e];
+        double dx = this.edgeX1[e] - ax;
+        double dy = this.edgeY1[e] - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? ((x - ax) * dx + (y - ay) * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        double px = ax + t * dx;
+        double py = ay + t * dy;
+        double distance = (px - x) * (px - x) + (py - y) * (py - y);
+        if (distance < best) {
+            out[0] = px;
+            out[1] = py;
+            return distance;
+        }
+        return best;
+    }
+
+    /**
+     *  \brief Gets whether a position is inside the area by casting a ray along +X and counting
+     *         the edges it crosses. Checks every edge.
+     *
+     *  \param x A double containing the X coordinate.
+     *  \param y A double containing the Y coordinate.
+     *  \return Returns true if the ray crosses an odd number of edges.
+     */
+    private boolean rayCast(double x, double y) {
+        boolean inside = false;
+        for (int e = 0; e < this.edgeX0.length; e++) {
+            double x0 = this.edgeX0[e];
+            double y0 = this.edgeY0[e];
+            double x1 = this.edgeX1[e];
+            double y1 = this.edgeY1[e];
+            if ((y0 > y) != (y1 > y) && x < x0 + (y - y0) * (x1 - x0) / (y1 - y0))
+                inside = !inside;
+        }
+        return inside;
+    }
+
+    /**
+     *  \brief Gets whether an edge passes through a grid cell, by clipping the edge to the cell.
+     *
+     *  \param e An integer containing the edge index.
+     *  \param c An integer containing the cell column.
+     *  \param r An integer containing the cell row.
+     *  \return Returns true if part of the edge is inside the cell.
+     */
+    private boolean crossesCell(int e, int c, int r) {
+        double x0 = this.edgeX0[e];
+        double y0 = this.edgeY0[e];
+        double dx = this.edgeX1[e] - x0;
+        double dy = this.edgeY1[e] - y0;
+        double left = this.originX + c * this.cellSize;
+        double bottom = this.originY + r * this.cellSize;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x0 - left, left + this.cellSize - x0, y0 - bottom, bottom + this.cellSize - y0};
+        double t0 = 0;
+        double t1 = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0)
+                    return false;
+            }
+            else {
+                double t = q[i] / p[i];
+                if (p[i] < 0)
+                    t0 = Math.max(t0, t);
+                else
+                    t1 = Math.min(t1, t);
+            }
+        }
+        return t0 <= t1;
+    }
+
+    /**
+     *  \brief Gets whether two line segments cross.
+     *
+     *  \return Returns true if segment a-b and segment c-d intersect.
+     */
+    private static boolean segmentsCross(double ax, double ay, double bx, double by,
+                                         double cx, double cy, double dx, double dy) {
+        double d1 = cross(cx, cy, dx, dy, ax, ay);
+        double d2 = cross(cx, cy, dx, dy, bx, by);
+        double d3 = cross(ax, ay, bx, by, cx, cy);
+        double d4 = cross(ax, ay, bx, by, dx, dy);
+        return ((d1 > 0) != (d2 > 0)) && ((d3 > 0) != (d4 > 0));
+    }
+
+    /**
+     *  \brief Gets the cross product of (b - a) and (p - a), whose sign says which side of the
+     *         line a-b the point p is on.
+     *
+     *  \return A double containing the cross product.
+     */
+    private static double cross(double ax, double ay, double bx, double by, double px, double py) {
+        return (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+    }
+
+    /**
+     *  \brief Gets the grid column containing an X coordinate, clamped to the grid.
+     *
+     *  \param x A double containing the X coordinate.
+     *  \return An integer containing the column.
+     */
+    private int clampColumn(double x) {
+        return Math.max(0, Math.min(this.columns - 1, (int)Math.floor((x - this.originX) / this.cellSize)));
+    }
+
+    /**
+     *  \brief Gets the grid row containing a Y coordinate, clamped to the grid.
+     *
+     *  \param y A double containing the Y coordinate.
+     *  \return An integer containing the row.
+     */
+    private int clampRow(double y) {
+        return Math.max(0, Math.min(this.rows - 1, (int)Math.floor((y - this.originY) / this.cellSize)));
+    }
+}
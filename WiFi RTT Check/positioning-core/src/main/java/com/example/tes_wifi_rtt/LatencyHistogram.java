@@ -0,0 +1,181 @@
+/** \file LatencyHistogram.java
+ *  \brief This file contains a lock-free histogram of durations with a fixed
+ *  relative precision.
+ *
+ *  Durations are counted in log-linear buckets, as in HdrHistogram: every
+ *  power of two is split into SUB_BUCKETS equal buckets, so a reported
+ *  duration is within 1 / SUB_BUCKETS of the recorded one from 1 ns up to
+ *  about 36 minutes, in a fixed array of counts. Longer durations are counted
+ *  in the last bucket.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  \brief This class counts durations in nanoseconds. Recording is a few
+ *  atomic updates and never allocates or locks, so it can be left on in the
+ *  positioning loop. Safe to use from any thread.
+ *
+ *  Readers see each update as it happens, so a percentile read while
+ *  recording may mix recordings from before and after the read. Read a copy
+ *  for consistent values.
+ */
+public final class LatencyHistogram {
+    /* Public Variables */
+    public static final int SUB_BUCKET_BITS = 5;                    /*!< Log2 of the buckets per power of two. */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;     /*!< Buckets per power of two, 32 gives 3 % precision. */
+    public static final int MAX_EXPONENT = 40;                      /*!< Power of two of the longest duration told apart, 2^41 ns is 36 min. */
+
+    /* Private Variables */
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS; /*!< Number of buckets. */
+
+    private final AtomicLongArray counts;   /*!< Number of durations in each bucket. */
+    private final AtomicLong count;         /*!< Number of durations recorded. */
+    private final AtomicLong sum;           /*!< Sum of the durations recorded in ns. */
+    private final AtomicLong max;           /*!< Longest duration recorded in ns. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class LatencyHistogram. The histogram starts empty.
+     *
+     *  \param None.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of durations recorded.
+     *
+     *  \param None.
+     *  \return A long containing the number of durations.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     *  \brief Gets the mean of the durations recorded.
+     *
+     *  \param None.
+     *  \return A double containing the mean in ns, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : (double)this.sum.get() / count;
+    }
+
+    /**
+     *  \brief Gets the longest duration recorded.
+     *
+     *  \param None.
+     *  \return A long containing the duration in ns, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     *  \brief Gets a percentile of the recorded durations, using the nearest rank. The duration
+     *         returned is the upper end of its bucket, but never above the longest duration, and
+     *         the longest duration for the last bucket.
+     *
+     *  \param percent A double containing the percentile, from 0 to 100.
+     *  \return A long containing the duration in ns, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percent) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += this.counts.get(i);
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long)Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank)
+                return i == BUCKET_COUNT - 1 ? this.max.get() : Math.min(highestInBucket(i), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Records a duration.
+     *
+     *  \param nanos A long containing the duration in ns. Negative durations count as 0.
+     *  \return None.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        this.counts.incrementAndGet(bucketOf(nanos));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(nanos);
+        long longest;
+        while (nanos > (longest = this.max.get()) && !this.max.compareAndSet(longest, nanos)) {
+            // Another thread raised the maximum, check against it
+        }
+    }
+
+    /**
+     *  \brief Copies the histogram, e.g. to read percentiles that do not change while reading.
+     *
+     *  \param None.
+     *  \return A new histogram with the counts of this one.
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long n = this.counts.get(i);
+            copy.counts.set(i, n);
+            count += n;
+        }
+        copy.count.set(count);
+        copy.sum.set(this.sum.get());
+        copy.max.set(this.max.get());
+        return copy;
+    }
+
+    /**
+     *  \brief Gets the bucket a duration is counted in.
+     *
+     *  \param nanos A long containing the duration in ns, not negative.
+     *  \return An integer containing the bucket index.
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int)nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT)
+            return BUCKET_COUNT - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     *  \brief Gets the longest duration counted in a bucket.
+     *
+     *  \param bucket An integer containing the bucket index.
+     *  \return A long containing the duration in ns.
+     */
+    static long highestInBucket(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
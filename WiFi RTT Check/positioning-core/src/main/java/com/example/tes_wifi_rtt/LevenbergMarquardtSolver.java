@@ -0,0 +1,293 @@
+/** \file LevenbergMarquardtSolver.java
+ *  \brief This file contains an iterative solver that refines a position by
+ *  minimizing the weighted range residuals directly.
+ *
+ *  Linearized multilateration squares the ranges, which biases the result
+ *  when they are noisy. This solver starts from a seed position and runs a
+ *  bounded number of Levenberg-Marquardt steps on the true range equations,
+ *  stopping early once the steps become small.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class refines the output of another position solver using
+ *  Levenberg-Marquardt iterations over all anchors.
+ *
+ *  The seed is the output of the wrapped solver, or of another solver when
+ *  used through refine, or the previous device position from
+ *  RangeMeasurements, whichever fits the ranges better. The
+ *  number of iterations and the residuals of the most recent solve are kept
+ *  for monitoring.
+ */
+public class LevenbergMarquardtSolver implements PositionSolver {
+    /* Public Variables */
+    public static final int DEFAULT_MAX_ITERATIONS = 10;    /*!< Default limit on iterations per solve. */
+    public static final double DEFAULT_TOLERANCE = 1e-3;    /*!< Default step size in meters(m) below which the solve has converged. */
+
+    /* Private Variables */
+    private static final double MIN_DISTANCE = 1e-6;        /*!< Distances to an anchor below this have no usable gradient. */
+    private static final double MAX_LAMBDA = 1e7;           /*!< Damping above which no downhill step can be found. */
+
+    private final PositionSolver seedSolver;                /*!< Solver providing the starting position. */
+    private final int maxIterations;                        /*!< Limit on iterations per solve. */
+    private final double tolerance;                         /*!< Step size in meters(m) below which the solve has converged. */
+    private final double[] seed = new double[2];            /*!< Reused buffer for the seed position. */
+    private double[] weights = new double[16];              /*!< Reused buffer of per anchor weights. */
+
+    private int iterations;                                 /*!< Iterations run by the most recent solve. */
+    private boolean converged;                              /*!< True if the most recent solve stopped before the iteration limit. */
+    private double initialResidual;                         /*!< RMS range residual in meters(m) at the seed of the most recent solve. */
+    private double finalResidual;                           /*!< RMS range residual in meters(m) at the result of the most recent solve. */
+    private long solveCount;                                /*!< Number of successful solves. */
+    private long iterationCount;                            /*!< Iterations run over every solve. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Refines the output of a WeightedLeastSquaresSolver with the
+     *         default limits.
+     *
+     *  \param None.
+     */
+    public LevenbergMarquardtSolver() {
+        this(new WeightedLeastSquaresSolver(), DEFAULT_MAX_ITERATIONS, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     *  \brief Constructor for the class LevenbergMarquardtSolver.
+     *
+     *  \param seedSolver The solver providing the starting position.
+     *  \param maxIterations An integer containing the limit on iterations per solve.
+     *  \param tolerance A double containing the step size in meters(m) below which the solve
+     *         has converged.
+     */
+    public LevenbergMarquardtSolver(PositionSolver seedSolver, int maxIterations, double tolerance) {
+        this.seedSolver = seedSolver;
+        this.maxIterations = Math.max(0, maxIterations);
+        this.tolerance = tolerance;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of iterations run by the most recent solve.
+     *
+     *  \param None.
+     *  \return An integer containing the number of iterations.
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     *  \brief Gets whether the most recent solve converged before the iteration limit.
+     *
+     *  \param None.
+     *  \return Returns true if the solve converged.
+     */
+    public boolean isConverged() {
+        return this.converged;
+    }
+
+    /**
+     *  \brief Gets the RMS range residual at the seed of the most recent solve.
+     *
+     *  \param None.
+     *  \return A double containing the residual in meters(m).
+     */
+    public double getInitialResidual() {
+        return this.initialResidual;
+    }
+
+    /**
+     *  \brief Gets the RMS range residual at the result of the most recent solve.
+     *
+     *  \param None.
+     *  \return A double containing the residual in meters(m).
+     */
+    public double getFinalResidual() {
+        return this.finalResidual;
+    }
+
+    /**
+     *  \brief Gets the number of successful solves.
+     *
+     *  \param None.
+     *  \return A long containing the number of solves.
+     */
+    public long getSolveCount() {
+        return this.solveCount;
+    }
+
+    /**
+     *  \brief Gets the number of iterations run over every solve.
+     *
+     *  \param None.
+     *  \return A long containing the number of iterations.
+     */
+    public long getIterationCount() {
+        return this.iterationCount;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Solves the device position by refining a seed position.
+     *
+     *  \param measurements The anchors and measured ranges to solve from.
+     *  \param position A double array receiving {X, Y}.
+     *  \return Returns true if a position was solved, else returns false when there are fewer
+     *          than three anchors or no seed position is available.
+     */
+    @Override
+    public boolean solve(RangeMeasurements measurements, double[] position) {
+        boolean seeded = measurements.count >= 3 && this.seedSolver.solve(measurements, this.seed);
+        if (!refine(measurements, this.seed, seeded))
+            return false;
+        position[0] = this.seed[0];
+        position[1] = this.seed[1];
+        return true;
+    }
+
+    /**
+     *  \brief Refines a position already solved by another solver. The previous device position
+     *         in RangeMeasurements is used instead of the given position if it fits the ranges
+     *         better, or if no position was given.
+     *
+     *  \param measurements The anchors and measured ranges to solve from.
+     *  \param position A double array containing the seed {X, Y}, replaced by the refined position.
+     *  \param seeded A boolean that is true if position holds a seed.
+     *  \return Returns true if a position was solved, else returns false when there are fewer
+     *          than three anchors or no seed position is available.
+     */
+    public boolean refine(RangeMeasurements measurements, double[] position, boolean seeded) {
+        final int count = measurements.count;
+        this.iterations = 0;
+        this.converged = false;
+        if (count < 3)
+            return false;
+
+        if (this.weights.length < count)
+            this.weights = new double[measurements.x.length];
+        for (int i = 0; i < count; i++)
+            this.weights[i] = WeightedLeastSquaresSolver.weight(measurements.stdDev[i], measurements.rssi[i]);
+
+        // Start from whichever of the seed and the previous fix fits the ranges better
+        double x = position[0];
+        double y = position[1];
+        double cost = seeded ? cost(measurements, x, y) : Double.MAX_VALUE;
+        if (measurements.hasPrior) {
+            double priorCost = cost(measurements, measurements.priorX, measurements.priorY);
+            if (priorCost < cost) {
+                x = measurements.priorX;
+                y = measurements.priorY;
+                cost = priorCost;
+                seeded = true;
+            }
+        }
+        if (!seeded)
+            return false;
+
+        this.initialResidual = rmsResidual(measurements, x, y);
+        double lambda = 1e-3;
+        while (this.iterations < this.maxIterations) {
+            this.iterations++;
+
+            // Accumulate JtWJ and JtWr for the residuals |p - a| - r
+            double jj00 = 0, jj01 = 0, jj11 = 0, jr0 = 0, jr1 = 0;
+            for (int i = 0; i < count; i++) {
+                double dx = x - measurements.x[i];
+                double dy = y - measurements.y[i];
+                double d = Math.sqrt(dx * dx + dy * dy);
+                if (d < MIN_DISTANCE)
+                    continue;
+                double j0 = dx / d;
+                double j1 = dy / d;
+                double w = this.weights[i];
+                double r = d - measurements.range[i];
+                jj00 += w * j0 * j0;
+                jj01 += w * j0 * j1;
+                jj11 += w * j1 * j1;
+                jr0 += w * j0 * r;
+                jr1 += w * j1 * r;
+            }
+
+            // Increase damping until a step lowers the cost
+            boolean stepped = false;
+            while (lambda <= MAX_LAMBDA) {
+                double a00 = jj00 * (1 + lambda);
+                double a11 = jj11 * (1 + lambda);
+                double det = a00 * a11 - jj01 * jj01;
+                if (det <= 0) {
+                    lambda *= 10;
+                    continue;
+                }
+                double stepX = -(jr0 * a11 - jr1 * jj01) / det;
+                double stepY = -(jr1 * a00 - jr0 * jj01) / det;
+                double nextCost = cost(measurements, x + stepX, y + stepY);
+                if (nextCost < cost) {
+                    x += stepX;
+                    y += stepY;
+                    lambda = Math.max(lambda / 10, 1e-9);
+                    stepped = true;
+                    if (Math.sqrt(stepX * stepX + stepY * stepY) < this.tolerance)
+                        this.converged = true;
+                    cost = nextCost;
+                    break;
+                }
+                lambda *= 10;
+            }
+            // No downhill step at any damping means the seed is already a minimum
+            if (!stepped)
+                this.converged = true;
+            if (this.converged)
+                break;
+        }
+
+        this.finalResidual = rmsResidual(measurements, x, y);
+        this.solveCount++;
+        this.iterationCount += this.iterations;
+        position[0] = x;
+        position[1] = y;
+        return true;
+    }
+
+    /**
+     *  \brief Gets the weighted sum of squared range residuals at a position.
+     *
+     *  \param measurements The anchors and measured ranges.
+     *  \param x A double containing the X position in meters(m).
+     *  \param y A double containing the Y position in meters(m).
+     *  \return A double containing the cost.
+     */
+    private double cost(RangeMeasurements measurements, double x, double y) {
+        double cost = 0;
+        for (int i = 0; i < measurements.count; i++) {
+            double dx = x - measurements.x[i];
+            double dy = y - measurements.y[i];
+            double r = Math.sqrt(dx * dx + dy * dy) - measurements.range[i];
+            cost += this.weights[i] * r * r;
+        }
+        return cost;
+    }
+
+    /**
+     *  \brief Gets the unweighted RMS range residual at a position.
+     *
+     *  \param measurements The anchors and measured ranges.
+     *  \param x A double containing the X position in meters(m).
+     *  \param y A double containing the Y position in meters(m).
+     *  \return A double containing the residual in meters(m).
+     */
+    private static double rmsResidual(RangeMeasurements measurements, double x, double y) {
+        double sum = 0;
+        for (int i = 0; i < measurements.count; i++) {
+            double dx = x - measurements.x[i];
+            double dy = y - measurements.y[i];
+            double r = Math.sqrt(dx * dx + dy * dy) - measurements.range[i];
+            sum += r * r;
+        }
+        return Math.sqrt(sum / measurements.count);
+    }
+}
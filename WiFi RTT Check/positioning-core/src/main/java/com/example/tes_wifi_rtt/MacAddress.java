@@ -0,0 +1,109 @@
+/** \file MacAddress.java
+ *  \brief This file contains helpers for converting MAC addresses between
+ *  their human readable form and a packed 48-bit integer.
+ *
+ *  Router data is keyed by MAC address throughout the GPS API. Keeping the
+ *  address packed into the low 48 bits of a long allows it to be hashed,
+ *  compared and stored without creating String objects on every update.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class contains static methods for packing and formatting
+ *  MAC addresses.
+ */
+public final class MacAddress {
+    /* Public Variables */
+    public static final long INVALID = -1L;   /*!< Returned when a MAC address could not be parsed. Never a valid 48-bit address. */
+
+    /* Private Variables */
+    private static final char[] HEX = "0123456789abcdef".toCharArray(); /*!< Lower case hex digits used for formatting. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Private constructor. This class only contains static methods.
+     *
+     *  \param None.
+     */
+    private MacAddress() {
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Packs a MAC address of the form "aa:bb:cc:dd:ee:ff" into the low 48 bits of a long.
+     *         Upper and lower case digits, '-' separators and surrounding whitespace are accepted.
+     *         Does not allocate.
+     *
+     *  \param MACAddr A String object containing the MAC address.
+     *  \return The packed address, or INVALID if the input is not a MAC address.
+     */
+    public static long pack(String MACAddr) {
+        if (MACAddr == null)
+            return INVALID;
+
+        int start = 0;
+        int end = MACAddr.length();
+        // Trim surrounding whitespace without creating a new String
+        while (start < end && MACAddr.charAt(start) <= ' ')
+            start++;
+        while (end > start && MACAddr.charAt(end - 1) <= ' ')
+            end--;
+        if (end - start != 17)
+            return INVALID;
+
+        long packed = 0;
+        for (int i = 0; i < 6; i++) {
+            int offset = start + i * 3;
+            int high = Character.digit(MACAddr.charAt(offset), 16);
+            int low = Character.digit(MACAddr.charAt(offset + 1), 16);
+            if (high < 0 || low < 0)
+                return INVALID;
+            if (i < 5) {
+                char separator = MACAddr.charAt(offset + 2);
+                if (separator != ':' && separator != '-')
+                    return INVALID;
+            }
+            packed = (packed << 8) | (high << 4) | low;
+        }
+        return packed;
+    }
+
+    /**
+     *  \brief Formats a packed MAC address as a lower case "aa:bb:cc:dd:ee:ff" String.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return A String object containing the human readable MAC address.
+     */
+    public static String format(long mac) {
+        char[] out = new char[17];
+        for (int i = 0; i < 6; i++) {
+            int octet = (int)(mac >>> (40 - i * 8)) & 0xFF;
+            out[i * 3] = HEX[octet >>> 4];
+            out[i * 3 + 1] = HEX[octet & 0x0F];
+            if (i < 5)
+                out[i * 3 + 2] = ':';
+        }
+        return new String(out);
+    }
+
+    /**
+     *  \brief Appends a packed MAC address as lower case "aa:bb:cc:dd:ee:ff" without creating a
+     *         String, e.g. when rebuilding UI text for every scan.
+     *
+     *  \param out The StringBuilder to append to.
+     *  \param mac A long containing the packed MAC address.
+     *  \return The StringBuilder, for chaining.
+     */
+    public static StringBuilder append(StringBuilder out, long mac) {
+        for (int i = 0; i < 6; i++) {
+            int octet = (int)(mac >>> (40 - i * 8)) & 0xFF;
+            out.append(HEX[octet >>> 4]).append(HEX[octet & 0x0F]);
+            if (i < 5)
+                out.append(':');
+        }
+        return out;
+    }
+}
@@ -0,0 +1,433 @@
+/** \file ParticleFilterSolver.java
+ *  \brief This file contains a particle filter that tracks the device position
+ *  from range measurements and the walkable area of the floor.
+ *
+ *  The closed form solvers need three well spread anchors, which corridors
+ *  rarely provide: the anchors are nearly collinear and the solution jumps
+ *  along and across the corridor between scans. The particle filter instead
+ *  keeps a cloud of candidate positions between scans, moves it by a walking
+ *  model, drops candidates that walk through walls and weights the rest by how
+ *  well they explain every measured range. One or two anchors are enough to
+ *  keep a position once the cloud has converged.
+ *
+ *  To use it in place of trilateration:
+ *      coreAPI.setPositionSolver(new ParticleFilterSolver());
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *  \brief This class is a sampling importance resampling particle filter
+ *  implementing the PositionSolver interface.
+ *
+ *  Particles are stored as parallel primitive arrays. Weighting costs one
+ *  distance per particle and anchor, so large clouds are weighted in parallel
+ *  chunks on a ForkJoinPool. The number of particles can be changed at any
+ *  time from any thread and takes effect at the next resampling. Solving is
+ *  not thread safe, like every other PositionSolver.
+ */
+public class ParticleFilterSolver implements PositionSolver {
+    /* Public Variables */
+    public static final int DEFAULT_PARTICLES = 2000;       /*!< Default number of particles. */
+    public static final int MIN_PARTICLES = 16;             /*!< Fewest particles the filter runs with. */
+    public static final int CHUNK_SIZE = 1024;              /*!< Particles weighted per parallel task. Fewer particles are weighted on the calling thread. */
+    public static final double WALK_SPEED = 1.5;            /*!< Standard deviation of the device speed in m/s used to move particles. */
+    public static final double MIN_DIFFUSION = 0.2;         /*!< Smallest standard deviation in m particles are moved by per scan. */
+    public static final double MAX_GAP = 5;                 /*!< Time in s between scans after which the cloud is spread out again. */
+
+    /* Private Variables */
+    private static final int INIT_ATTEMPTS = 20;            /*!< Tries to draw an initial particle inside the walkable area. */
+
+    private final ForkJoinPool pool;    /*!< Runs the weighting chunks. */
+    private final Random random;        /*!< Source of the motion noise and resampling offsets. */
+    private volatile int targetCount;   /*!< Number of particles to resample into. */
+    private int count;                  /*!< Number of particles in the arrays. */
+    private double[] x;                 /*!< X position of each particle in meters(m). */
+    private double[] y;                 /*!< Y position of each particle in meters(m). */
+    private double[] logWeight;         /*!< Log likelihood of each particle for the current scan. */
+    private double[] nextX;             /*!< Resampled X positions, swapped with x after resampling. */
+    private double[] nextY;             /*!< Resampled Y positions, swapped with y after resampling. */
+    private double[] sigma;             /*!< Reused buffer of the range standard deviation of each anchor. */
+    private double[] chunkMax;          /*!< Largest log likelihood found by each chunk. */
+    private Chunk[] chunks;             /*!< Reused weighting tasks, one per chunk. */
+    private RangeMeasurements current;  /*!< Measurements of the solve in progress, read by the chunks. */
+    private boolean initialized;        /*!< True once the cloud has been drawn. */
+    private long lastTimestamp;         /*!< Time of the previous solve in nanoseconds. */
+    private double spread;              /*!< Weighted variance in m^2 of the cloud at the most recent solve. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Uses the default number of particles and the common ForkJoinPool.
+     *
+     *  \param None.
+     */
+    public ParticleFilterSolver() {
+        this(DEFAULT_PARTICLES, ForkJoinPool.commonPool(), new Random());
+    }
+
+    /**
+     *  \brief Constructor for the class ParticleFilterSolver.
+     *
+     *  \param particles An integer containing the number of particles.
+     *  \param pool The ForkJoinPool the weighting chunks run on.
+     *  \param random The source of randomness, seeded for repeatable runs.
+     */
+    public ParticleFilterSolver(int particles, ForkJoinPool pool, Random random) {
+        this.pool = pool;
+        this.random = random;
+        this.targetCount = Math.max(MIN_PARTICLES, particles);
+        this.count = 0;
+        this.x = new double[0];
+        this.y = new double[0];
+        this.logWeight = new double[0];
+        this.nextX = new double[0];
+        this.nextY = new double[0];
+        this.sigma = new double[16];
+        this.chunkMax = new double[0];
+        this.chunks = new Chunk[0];
+        this.initialized = false;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of particles the filter is running with.
+     *
+     *  \param None.
+     *  \return An integer containing the number of particles.
+     */
+    public int getParticleCount() {
+        return this.targetCount;
+    }
+
+    /**
+     *  \brief Gets the spread of the cloud at the most recent solve. A converged cloud has a small
+     *         spread.
+     *
+     *  \param None.
+     *  \return A double containing the larger of the X and Y variance in m^2.
+     */
+    public double getSpread() {
+        return this.spread;
+    }
+
+    /* Sets */
+
+    /**
+     *  \brief Sets the number of particles. Takes effect at the next solve. Can be called from
+     *         any thread.
+     *
+     *  \param particles An integer containing the number of particles, at least MIN_PARTICLES.
+     *  \return None.
+     */
+    public void setParticleCount(int particles) {
+        this.targetCount = Math.max(MIN_PARTICLES, particles);
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Forgets the cloud, so the next solve draws it again around the strongest anchor.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void reset() {
+        this.initialized = false;
+    }
+
+    /**
+     *  \brief Moves the cloud by the time since the previous scan, weights it by the measured
+     *         ranges and the walkable area in measurements, and resamples it.
+     *
+     *  \param measurements The anchors and measured ranges to solve from.
+     *  \param position A double array receiving the weighted mean {X, Y} of the cloud.
+     *  \return Returns true if a position was solved, else returns false when there are no
+     *          anchors.
+     */
+    @Override
+    public boolean solve(RangeMeasurements measurements, double[] position) {
+        final int anchors = measurements.count;
+        if (anchors == 0)
+            return false;
+
+        double dt = (measurements.timestampNanos - this.lastTimestamp) * 1e-9;
+        if (!this.initialized || dt > MAX_GAP || dt < 0) {
+            initialize(measurements);
+            dt = 0;
+        }
+        this.lastTimestamp = measurements.timestampNanos;
+
+        if (this.sigma.length < anchors)
+            this.sigma = new double[measurements.x.length];
+        for (int i = 0; i < anchors; i++)
+            this.sigma[i] = 1 / Math.sqrt(WeightedLeastSquaresSolver.weight(measurements.stdDev[i], measurements.rssi[i]));
+
+        move(dt, measurements.area);
+        if (!weigh(measurements)) {
+            // Every particle left the walkable area or the ranges moved too far, so start again
+            initialize(measurements);
+            if (!weigh(measurements))
+                return false;
+        }
+        estimate(position);
+        resample(this.targetCount);
+        return true;
+    }
+
+    /**
+     *  \brief Draws the cloud on a ring around the strongest anchor at its measured range,
+     *         keeping particles inside the walkable area where possible.
+     *
+     *  \param measurements The anchors and measured ranges to draw from.
+     *  \return None.
+     */
+    private void initialize(RangeMeasurements measurements) {
+        int particles = this.targetCount;
+        ensureCapacity(particles);
+        double sigma0 = 1 / Math.sqrt(WeightedLeastSquaresSolver.weight(measurements.stdDev[0], measurements.rssi[0]));
+        for (int p = 0; p < particles; p++) {
+            for (int attempt = 0; attempt < INIT_ATTEMPTS; attempt++) {
+                double radius = Math.max(0, measurements.range[0] + sigma0 * this.random.nextGaussian());
+                double angle = 2 * Math.PI * this.random.nextDouble();
+                this.x[p] = measurements.x[0] + radius * Math.cos(angle);
+                this.y[p] = measurements.y[0] + radius * Math.sin(angle);
+                if (measurements.area == null || measurements.area.contains(this.x[p], this.y[p]))
+                    break;
+            }
+        }
+        this.count = particles;
+        this.initialized = true;
+    }
+
+    /**
+     *  \brief Moves every particle by a random walk scaled by the time since the previous scan.
+     *         Particles that leave the walkable area are marked dead with a NaN position.
+     *
+     *  \param dt A double containing the time since the previous scan in s.
+     *  \param area The walkable area of the floor, or null.
+     *  \return None.
+     */
+    private void move(double dt, Geofence area) {
+        double step = Math.max(MIN_DIFFUSION, WALK_SPEED * dt);
+        for (int p = 0; p < this.count; p++) {
+            double px = this.x[p] + step * this.random.nextGaussian();
+            double py = this.y[p] + step * this.random.nextGaussian();
+            if (area != null && !area.contains(px, py)) {
+                if (area.contains(this.x[p], this.y[p]))
+                    continue; // Blocked by a wall, stay put
+                px = Double.NaN;
+            }
+            this.x[p] = px;
+            this.y[p] = py;
+        }
+    }
+
+    /**
+     *  \brief Sets the log likelihood of every particle, in parallel chunks when the cloud is
+     *         large.
+     *
+     *  \param measurements The anchors and measured ranges to weight by.
+     *  \return Returns true if at least one particle has a non-zero weight.
+     */
+    private boolean weigh(RangeMeasurements measurements) {
+        int chunkCount = (this.count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.current = measurements;
+        if (chunkCount <= 1 || this.pool.getParallelism() <= 1) {
+            for (int c = 0; c < chunkCount; c++)
+                this.chunks[c].weigh();
+        }
+        else {
+            for (int c = 0; c < chunkCount; c++)
+                this.chunks[c].reinitialize();
+            this.pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(Arrays.asList(chunks).subList(0, chunkCount));
+                }
+            });
+        }
+        this.current = null;
+
+        double max = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < chunkCount; c++)
+            max = Math.max(max, this.chunkMax[c]);
+        if (max == Double.NEGATIVE_INFINITY)
+            return false;
+        for (int p = 0; p < this.count; p++)
+            this.logWeight[p] = Math.exp(this.logWeight[p] - max); // Now a relative weight
+        return true;
+    }
+
+    /**
+     *  \brief Writes the weighted mean of the cloud and records its spread.
+     *
+     *  \param position A double array receiving {X, Y}.
+     *  \return None.
+     */
+    private void estimate(double[] position) {
+        double total = 0;
+        double sumX = 0;
+        double sumY = 0;
+        for (int p = 0; p < this.count; p++) {
+            double w = this.logWeight[p];
+            if (w == 0)
+                continue;
+            total += w;
+            sumX += w * this.x[p];
+            sumY += w * this.y[p];
+        }
+        double meanX = sumX / total;
+        double meanY = sumY / total;
+        double varX = 0;
+        double varY = 0;
+        for (int p = 0; p < this.count; p++) {
+            double w = this.logWeight[p];
+            if (w == 0)
+                continue;
+            varX += w * (this.x[p] - meanX) * (this.x[p] - meanX);
+            varY += w * (this.y[p] - meanY) * (this.y[p] - meanY);
+        }
+        this.spread = Math.max(varX, varY) / total;
+        position[0] = meanX;
+        position[1] = meanY;
+    }
+
+    /**
+     *  \brief Draws a new cloud from the weighted one with systematic resampling, which also
+     *         changes the number of particles if it was set since the last solve.
+     *
+     *  \param particles An integer containing the number of particles to draw.
+     *  \return None.
+     */
+    private void resample(int particles) {
+        double total = 0;
+        for (int p = 0; p < this.count; p++)
+            total += this.logWeight[p];
+        if (this.nextX.length < particles) {
+            this.nextX = new double[particles];
+            this.nextY = new double[particles];
+        }
+
+        double step = total / particles;
+        double target = this.random.nextDouble() * step;
+        double cumulative = this.logWeight[0];
+        int from = 0;
+        for (int p = 0; p < particles; p++) {
+            while (cumulative < target && from < this.count - 1)
+                cumulative += this.logWeight[++from];
+            this.nextX[p] = this.x[from];
+            this.nextY[p] = this.y[from];
+            target += step;
+        }
+
+        double[] swap = this.x;
+        this.x = this.nextX;
+        this.nextX = swap;
+        swap = this.y;
+        this.y = this.nextY;
+        this.nextY = swap;
+        this.count = particles;
+        ensureCapacity(particles);
+    }
+
+    /**
+     *  \brief Grows the particle buffers and weighting tasks to hold a number of particles.
+     *
+     *  \param particles An integer containing the number of particles.
+     *  \return None.
+     */
+    private void ensureCapacity(int particles) {
+        if (this.x.length < particles) {
+            this.x = Arrays.copyOf(this.x, particles);
+            this.y = Arrays.copyOf(this.y, particles);
+        }
+        if (this.logWeight.length < particles)
+            this.logWeight = new double[particles];
+        int chunkCount = (particles + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (this.chunks.length < chunkCount) {
+            this.chunks = new Chunk[chunkCount];
+            this.chunkMax = new double[chunkCount];
+            for (int c = 0; c < chunkCount; c++)
+                this.chunks[c] = new Chunk(c);
+        }
+    }
+
+    /* Sub-Classes */
+
+    /**
+     *  \brief This class weights one chunk of CHUNK_SIZE particles.
+     */
+    private final class Chunk extends RecursiveAction {
+        /* Private Variables */
+        private static final long serialVersionUID = 1L;    /*!< Version of the serialized form. */
+
+        private final int index;    /*!< Index of the chunk. */
+
+        /* Constructor(s) */
+
+        /**
+         *  \brief Constructor for the class Chunk.
+         *
+         *  \param index An integer containing the index of the chunk.
+         */
+        Chunk(int index) {
+            this.index = index;
+        }
+
+        /* Methods */
+
+        /**
+         *  \brief Weights the chunk when run on the pool.
+         *
+         *  \param None.
+         *  \return None.
+         */
+        @Override
+        protected void compute() {
+            weigh();
+        }
+
+        /**
+         *  \brief Sets the log likelihood of every particle in the chunk from the Gaussian range
+         *         error of every anchor, and records the largest one. Dead particles get
+         *         negative infinity.
+         *
+         *  \param None.
+         *  \return None.
+         */
+        void weigh() {
+            RangeMeasurements measurements = current;
+            int anchors = measurements.count;
+            int start = this.index * CHUNK_SIZE;
+            int end = Math.min(count, start + CHUNK_SIZE);
+            double max = Double.NEGATIVE_INFINITY;
+            for (int p = start; p < end; p++) {
+                double px = x[p];
+                double py = y[p];
+                if (Double.isNaN(px)) {
+                    logWeight[p] = Double.NEGATIVE_INFINITY;
+                    continue;
+                }
+                double log = 0;
+                for (int i = 0; i < anchors; i++) {
+                    double dx = px - measurements.x[i];
+                    double dy = py - measurements.y[i];
+                    double error = (Math.sqrt(dx * dx + dy * dy) - measurements.range[i]) / sigma[i];
+                    log -= 0.5 * error * error;
+                }
+                logWeight[p] = log;
+                max = Math.max(max, log);
+            }
+            chunkMax[this.index] = max;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/** \file PositionFix.java
+ *  \brief This file contains an immutable snapshot of the device position and
+ *  router list, published by the positioning pipeline.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class holds one published position of the device together with
+ *  the routers it was solved from.
+ *
+ *  Fixes are created on the solver thread and read on the UI thread. All
+ *  fields are final and the arrays are never changed after construction, so
+ *  a fix can be shared between threads without locking.
+ */
+public final class PositionFix {
+    /* Private Variables */
+    private final long timestampNanos;  /*!< Time of the scan the fix was solved from in nanoseconds. */
+    private final long scanSequence;    /*!< Sequence number of the scan the fix was solved from. */
+    private final int epoch;            /*!< Epoch of the router list the fix was solved from. */
+    private final boolean hasPosition;  /*!< True if the device position is known. */
+    private final double x;             /*!< X position of the device in meters(m). */
+    private final double y;             /*!< Y position of the device in meters(m). */
+    private final double velocityX;     /*!< X velocity of the device in m/s. */
+    private final double velocityY;     /*!< Y velocity of the device in m/s. */
+    private final double variance;      /*!< Position variance of the device in m^2. */
+    private final boolean hasFloor;     /*!< True if the building and floor of the device are known. */
+    private final int building;         /*!< Building id the device is in. */
+    private final float floor;          /*!< Floor the device is on. */
+    private final long[] routerMacs;    /*!< Packed MAC Address of each router, strongest first. */
+    private final float[] routerDist;   /*!< Filtered distance to each router in meters(m). */
+    private final int[] routerRssi;     /*!< Signal strength of each router. */
+    private final float[] routerX;      /*!< X position of each router in meters(m). */
+    private final float[] routerY;      /*!< Y position of each router in meters(m). */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class PositionFix. Copies the device state and router list
+     *         from a GPSCoreAPI. Must be called on the thread that owns the GPSCoreAPI.
+     *
+     *  \param coreAPI The GPSCoreAPI to copy from.
+     *  \param timestampNanos A long containing the time of the scan the fix was solved from.
+     *  \param scanSequence A long containing the sequence number of the scan the fix was solved from.
+     */
+    public PositionFix(GPSCoreAPI coreAPI, long timestampNanos, long scanSequence) {
+        this.timestampNanos = timestampNanos;
+        this.scanSequence = scanSequence;
+        this.epoch = coreAPI.getRouterEpoch();
+        double[] position = new double[2];
+        this.hasPosition = coreAPI.predictDevicePos(timestampNanos, position);
+        this.x = position[0];
+        this.y = position[1];
+        float[] velocity = coreAPI.getDeviceVelocity();
+        this.velocityX = velocity[0];
+        this.velocityY = velocity[1];
+        double[] covariance = coreAPI.getDeviceCovariance();
+        this.variance = Math.max(covariance[0], covariance[5]);
+        this.hasFloor = coreAPI.hasFloor();
+        this.building = coreAPI.getBuilding();
+        this.floor = coreAPI.getFloor();
+
+        int count = coreAPI.getRouterCount();
+        this.routerMacs = new long[count];
+        this.routerDist = new float[count];
+        this.routerRssi = new int[count];
+        this.routerX = new float[count];
+        this.routerY = new float[count];
+        for (int i = 0; i < count; i++) {
+            this.routerMacs[i] = coreAPI.getRouterMAC(i);
+            this.routerDist[i] = coreAPI.getRouterDist(i);
+            this.routerRssi[i] = coreAPI.getRouterRssi(i);
+            this.routerX[i] = coreAPI.getRouterX(i);
+            this.routerY[i] = coreAPI.getRouterY(i);
+        }
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the time of the scan the fix was solved from.
+     *
+     *  \param None.
+     *  \return A long containing the time in nanoseconds.
+     */
+    public long getTimestamp() {
+        return this.timestampNanos;
+    }
+
+    /**
+     *  \brief Gets the sequence number of the scan the fix was solved from. Later scans have
+     *         larger sequence numbers.
+     *
+     *  \param None.
+     *  \return A long containing the scan sequence number.
+     */
+    public long getScanSequence() {
+        return this.scanSequence;
+    }
+
+    /**
+     *  \brief Gets the epoch of the router list the fix was solved from. Every router in the
+     *         fix was measured after the router list was last cleared.
+     *
+     *  \param None.
+     *  \return An integer containing the router list epoch.
+     */
+    public int getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     *  \brief Gets whether the fix contains a device position.
+     *
+     *  \param None.
+     *  \return Returns true if the device position is known.
+     */
+    public boolean hasPosition() {
+        return this.hasPosition;
+    }
+
+    /**
+     *  \brief Gets whether the fix contains the building and floor of the device.
+     *
+     *  \param None.
+     *  \return Returns true if the building and floor are known.
+     */
+    public boolean hasFloor() {
+        return this.hasFloor;
+    }
+
+    /**
+     *  \brief Gets the building the device is in.
+     *
+     *  \param None.
+     *  \return An integer containing the building id.
+     */
+    public int getBuilding() {
+        return this.building;
+    }
+
+    /**
+     *  \brief Gets the floor the device is on.
+     *
+     *  \param None.
+     *  \return A float containing the floor number.
+     */
+    public float getFloor() {
+        return this.floor;
+    }
+
+    /**
+     *  \brief Gets the X position of the device at the time of the fix.
+     *
+     *  \param None.
+     *  \return A double containing the X position in meters(m).
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     *  \brief Gets the Y position of the device at the time of the fix.
+     *
+     *  \param None.
+     *  \return A double containing the Y position in meters(m).
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     *  \brief Gets the position variance of the device.
+     *
+     *  \param None.
+     *  \return A double containing the variance in m^2.
+     */
+    public double getVariance() {
+        return this.variance;
+    }
+
+    /**
+     *  \brief Gets the speed of the device.
+     *
+     *  \param None.
+     *  \return A double containing the speed in m/s.
+     */
+    public double getSpeed() {
+        return Math.sqrt(this.velocityX * this.velocityX + this.velocityY * this.velocityY);
+    }
+
+    /**
+     *  \brief Gets the number of routers in the fix.
+     *
+     *  \param None.
+     *  \return An integer containing the number of routers.
+     */
+    public int getRouterCount() {
+        return this.routerMacs.length;
+    }
+
+    /**
+     *  \brief Gets the packed MAC Address of a router.
+     *
+     *  \param i An integer containing the index of the router, strongest first.
+     *  \return A long containing the packed MAC Address.
+     */
+    public long getRouterMAC(int i) {
+        return this.routerMacs[i];
+    }
+
+    /**
+     *  \brief Gets the filtered distance to a router.
+     *
+     *  \param i An integer containing the index of the router, strongest first.
+     *  \return A floating integer containing the distance in meters(m).
+     */
+    public float getRouterDist(int i) {
+        return this.routerDist[i];
+    }
+
+    /**
+     *  \brief Gets the signal strength of a router.
+     *
+     *  \param i An integer containing the index of the router, strongest first.
+     *  \return An integer containing the signal strength.
+     */
+    public int getRouterRssi(int i) {
+        return this.routerRssi[i];
+    }
+
+    /**
+     *  \brief Gets the X position of a router.
+     *
+     *  \param i An integer containing the index of the router, strongest first.
+     *  \return A floating integer containing the X position in meters(m).
+     */
+    public float getRouterX(int i) {
+        return this.routerX[i];
+    }
+
+    /**
+     *  \brief Gets the Y position of a router.
+     *
+     *  \param i An integer containing the index of the router, strongest first.
+     *  \return A floating integer containing the Y position in meters(m).
+     */
+    public float getRouterY(int i) {
+        return this.routerY[i];
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Predicts the device position at a later time from the velocity of the fix.
+     *         Times more than PositionTracker.MAX_PREDICTION_NANOS after the fix are predicted
+     *         at that limit.
+     *
+     *  \param timestampNanos A long containing the time to predict at in nanoseconds.
+     *  \param out A double array of at least two elements receiving {X, Y}.
+     *  \return None.
+     */
+    public void predict(long timestampNanos, double[] out) {
+        long elapsed = Math.min(Math.max(0, timestampNanos - this.timestampNanos), PositionTracker.MAX_PREDICTION_NANOS);
+        double dt = elapsed * 1e-9;
+        out[0] = this.x + this.velocityX * dt;
+        out[1] = this.y + this.velocityY * dt;
+    }
+}
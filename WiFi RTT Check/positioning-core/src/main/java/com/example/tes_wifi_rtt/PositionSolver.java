@@ -0,0 +1,26 @@
+/** \file PositionSolver.java
+ *  \brief This file contains the interface implemented by every algorithm
+ *  that turns range measurements into a device position.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This interface is implemented by position solving algorithms.
+ *
+ *  A solver is given the anchors and ranges of one scan and writes the
+ *  solved position into an output array. Solvers may keep internal buffers
+ *  between calls and so are not thread safe.
+ */
+public interface PositionSolver {
+    /**
+     *  \brief Solves the device position from a set of range measurements.
+     *
+     *  \param measurements The anchors and measured ranges to solve from.
+     *  \param position A double array of at least two elements. On success index 0 is set to
+     *         the X position and index 1 to the Y position.
+     *  \return Returns true if a position was solved, else returns false and leaves position
+     *          unchanged.
+     */
+    boolean solve(RangeMeasurements measurements, double[] position);
+}
@@ -0,0 +1,252 @@
+/** \file PositionTracker.java
+ *  \brief This file contains a constant velocity Kalman filter tracking the
+ *  position of a device.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+
+/**
+ *  \brief This class tracks the position and velocity of a device from
+ *  solved positions.
+ *
+ *  The state is {X, Y, VX, VY}. The X and Y axes are filtered independently
+ *  since position fixes have the same variance in both directions, so each
+ *  axis keeps a 2x2 covariance of primitives that is updated in place. The
+ *  position can be predicted at any time between fixes, for example to draw
+ *  the map at display rate.
+ */
+public final class PositionTracker {
+    /* Public Variables */
+    public static final double DEFAULT_ACCELERATION_NOISE = 0.5;   /*!< Spectral density of the random acceleration in m^2/s^3. */
+    public static final double INITIAL_VELOCITY_VARIANCE = 1.0;    /*!< Velocity variance in m^2/s^2 given to a new track. */
+    public static final long MAX_PREDICTION_NANOS = 2000000000L;    /*!< Time past the latest fix beyond which the position is not extrapolated. */
+
+    /* Private Variables */
+    private final double accelerationNoise; /*!< Spectral density of the random acceleration in m^2/s^3. */
+    private final double[] position = new double[2];    /*!< Position {X, Y} in meters(m). */
+    private final double[] velocity = new double[2];    /*!< Velocity {VX, VY} in m/s. */
+    private final double[] pp = new double[2];          /*!< Position variance of each axis in m^2. */
+    private final double[] pv = new double[2];          /*!< Position and velocity covariance of each axis in m^2/s. */
+    private final double[] vv = new double[2];          /*!< Velocity variance of each axis in m^2/s^2. */
+    private long timestamp;                             /*!< Time of the latest fix in nanoseconds. */
+    private boolean initialized;                        /*!< True once the first fix has been added. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Creates a tracker with the default acceleration noise.
+     *
+     *  \param None.
+     */
+    public PositionTracker() {
+        this(DEFAULT_ACCELERATION_NOISE);
+    }
+
+    /**
+     *  \brief Constructor for the class PositionTracker.
+     *
+     *  \param accelerationNoise A double containing the spectral density of the random
+     *         acceleration in m^2/s^3. Larger values follow changes in direction faster.
+     */
+    public PositionTracker(double accelerationNoise) {
+        this.accelerationNoise = accelerationNoise;
+        this.initialized = false;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets whether the tracker has a position.
+     *
+     *  \param None.
+     *  \return Returns true once the first fix has been added.
+     */
+    public boolean isInitialized() {
+        return this.initialized;
+    }
+
+    /**
+     *  \brief Gets the X position as of the latest fix.
+     *
+     *  \param None.
+     *  \return A double containing the X position in meters(m).
+     */
+    public double getX() {
+        return this.position[0];
+    }
+
+    /**
+     *  \brief Gets the Y position as of the latest fix.
+     *
+     *  \param None.
+     *  \return A double containing the Y position in meters(m).
+     */
+    public double getY() {
+        return this.position[1];
+    }
+
+    /**
+     *  \brief Gets the X velocity.
+     *
+     *  \param None.
+     *  \return A double containing the X velocity in m/s.
+     */
+    public double getVelocityX() {
+        return this.velocity[0];
+    }
+
+    /**
+     *  \brief Gets the Y velocity.
+     *
+     *  \param None.
+     *  \return A double containing the Y velocity in m/s.
+     */
+    public double getVelocityY() {
+        return this.velocity[1];
+    }
+
+    /**
+     *  \brief Gets the time of the latest fix.
+     *
+     *  \param None.
+     *  \return A long containing the time in nanoseconds.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     *  \brief Gets the covariance of the state {X, Y, VX, VY} as of the latest fix.
+     *
+     *  \param covariance A double array of at least 16 elements receiving the 4x4 covariance in
+     *         row major order.
+     *  \return None.
+     */
+    public void getCovariance(double[] covariance) {
+        Arrays.fill(covariance, 0, 16, 0);
+        for (int axis = 0; axis < 2; axis++) {
+            covariance[axis * 4 + axis] = this.pp[axis];
+            covariance[axis * 4 + axis + 2] = this.pv[axis];
+            covariance[(axis + 2) * 4 + axis] = this.pv[axis];
+            covariance[(axis + 2) * 4 + axis + 2] = this.vv[axis];
+        }
+    }
+
+    /**
+     *  \brief Gets the largest position variance of the two axes.
+     *
+     *  \param None.
+     *  \return A double containing the variance in m^2.
+     */
+    public double getPositionVariance() {
+        return Math.max(this.pp[0], this.pp[1]);
+    }
+
+    /**
+     *  \brief Gets the speed of the device.
+     *
+     *  \param None.
+     *  \return A double containing the speed in m/s.
+     */
+    public double getSpeed() {
+        return Math.sqrt(this.velocity[0] * this.velocity[0] + this.velocity[1] * this.velocity[1]);
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Predicts the position at a given time without changing the state. Times more than
+     *         MAX_PREDICTION_NANOS after the latest fix are predicted at that limit.
+     *
+     *  \param timestampNanos A long containing the time to predict at in nanoseconds.
+     *  \param out A double array of at least two elements receiving {X, Y}.
+     *  \return None.
+     */
+    public void predict(long timestampNanos, double[] out) {
+        long elapsed = Math.min(Math.max(0, timestampNanos - this.timestamp), MAX_PREDICTION_NANOS);
+        double dt = elapsed * 1e-9;
+        out[0] = this.position[0] + this.velocity[0] * dt;
+        out[1] = this.position[1] + this.velocity[1] * dt;
+    }
+
+    /**
+     *  \brief Predicts the largest position variance of the two axes at a given time without
+     *         changing the state. The variance keeps growing with the time since the latest fix.
+     *
+     *  \param timestampNanos A long containing the time to predict at in nanoseconds.
+     *  \return A double containing the variance in m^2.
+     */
+    public double predictPositionVariance(long timestampNanos) {
+        double dt = Math.max(0, timestampNanos - this.timestamp) * 1e-9;
+        double q = this.accelerationNoise;
+        double variance = 0;
+        for (int axis = 0; axis < 2; axis++) {
+            double p00 = this.pp[axis] + dt * (2 * this.pv[axis] + dt * this.vv[axis]) + q * dt * dt * dt / 3;
+            variance = Math.max(variance, p00);
+        }
+        return variance;
+    }
+
+    /**
+     *  \brief Adds a position fix to the tracker.
+     *
+     *  \param timestampNanos A long containing the time of the fix in nanoseconds.
+     *  \param x A double containing the X position of the fix in meters(m).
+     *  \param y A double containing the Y position of the fix in meters(m).
+     *  \param variance A double containing the variance of the fix in each axis in m^2.
+     *  \return None.
+     */
+    public void update(long timestampNanos, double x, double y, double variance) {
+        if (!this.initialized) {
+            reset(x, y, variance);
+            this.timestamp = timestampNanos;
+            return;
+        }
+
+        double dt = Math.max(0, timestampNanos - this.timestamp) * 1e-9;
+        double q = this.accelerationNoise;
+        for (int axis = 0; axis < 2; axis++) {
+            // Predict with F = [1 dt; 0 1] and the white acceleration process noise
+            this.position[axis] += this.velocity[axis] * dt;
+            double p00 = this.pp[axis] + dt * (2 * this.pv[axis] + dt * this.vv[axis]) + q * dt * dt * dt / 3;
+            double p01 = this.pv[axis] + dt * this.vv[axis] + q * dt * dt / 2;
+            double p11 = this.vv[axis] + q * dt;
+
+            // Update with H = [1 0]
+            double innovation = (axis == 0 ? x : y) - this.position[axis];
+            double s = p00 + variance;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+            this.position[axis] += k0 * innovation;
+            this.velocity[axis] += k1 * innovation;
+            this.pp[axis] = (1 - k0) * p00;
+            this.pv[axis] = (1 - k0) * p01;
+            this.vv[axis] = p11 - k1 * p01;
+        }
+        if (timestampNanos > this.timestamp)
+            this.timestamp = timestampNanos;
+    }
+
+    /**
+     *  \brief Restarts the track at a known position with zero velocity.
+     *
+     *  \param x A double containing the X position in meters(m).
+     *  \param y A double containing the Y position in meters(m).
+     *  \param variance A double containing the variance of the position in each axis in m^2.
+     *  \return None.
+     */
+    public void reset(double x, double y, double variance) {
+        this.position[0] = x;
+        this.position[1] = y;
+        for (int axis = 0; axis < 2; axis++) {
+            this.velocity[axis] = 0;
+            this.pp[axis] = variance;
+            this.pv[axis] = 0;
+            this.vv[axis] = INITIAL_VELOCITY_VARIANCE;
+        }
+        this.initialized = true;
+    }
+}
@@ -0,0 +1,366 @@
+/** \file PositioningMetrics.java
+ *  \brief This file contains the registry of counters and latency histograms
+ *  of the positioning loop.
+ *
+ *  Each stage of the loop has a LatencyHistogram:
+ *  - scan: starting a ranging request, i.e. picking and planning responders.
+ *  - range: the ranging round trip, from the request to its callback.
+ *  - ingest: expiring routers and adding the scan to the router list.
+ *  - solve: solving the position and building the fix.
+ *  - render: drawing a frame of the map.
+ *  Counters track requests, failures and fixes, and failure codes of ranging
+ *  requests and statuses of single ranging results are counted per code.
+ *  Everything is recorded without locks or allocation, and snapshot copies
+ *  it all for reading or export.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  \brief This class holds the metrics of one positioning pipeline. Safe to
+ *  use from any thread.
+ */
+public final class PositioningMetrics {
+    /* Public Variables */
+    public static final int STAGE_SCAN = 0;             /*!< Starting a ranging request. */
+    public static final int STAGE_RANGE = 1;            /*!< Ranging round trip. */
+    public static final int STAGE_INGEST = 2;           /*!< Expiring routers and ingesting a scan. */
+    public static final int STAGE_SOLVE = 3;            /*!< Solving a position and building its fix. */
+    public static final int STAGE_RENDER = 4;           /*!< Drawing a frame. */
+    public static final int STAGE_COUNT = 5;            /*!< Number of stages. */
+
+    public static final int COUNTER_REQUESTS = 0;       /*!< Ranging requests started. */
+    public static final int COUNTER_RANGED = 1;         /*!< Ranging requests that returned results. */
+    public static final int COUNTER_FAILED = 2;         /*!< Ranging requests that failed. */
+    public static final int COUNTER_FIXES = 3;          /*!< Fixes published. */
+    public static final int COUNTER_POSITIONED = 4;     /*!< Fixes whose own scan gave a position. */
+    public static final int COUNTER_COUNT = 5;          /*!< Number of counters. */
+
+    public static final int MIN_CODE = -16;             /*!< Lowest failure code or status counted on its own. */
+    public static final int MAX_CODE = 15;              /*!< Highest failure code or status counted on its own. */
+
+    /* Private Variables */
+    private static final String[] STAGE_NAMES = {"scan", "range", "ingest", "solve", "render"};                /*!< Names of the stages in exports. */
+    private static final String[] COUNTER_NAMES = {"requests", "ranged", "failed", "fixes", "positioned"};    /*!< Names of the counters in exports. */
+    private static final int CODE_SLOTS = MAX_CODE - MIN_CODE + 2;  /*!< One slot per code and one for the codes out of range. */
+
+    private final LatencyHistogram[] stages;    /*!< Latency histogram of each stage. */
+    private final AtomicLongArray counters;     /*!< Value of each counter. */
+    private final AtomicLongArray failures;     /*!< Number of failed ranging requests per failure code. */
+    private final AtomicLongArray statuses;     /*!< Number of single ranging results per status. */
+    private final long startNanos;              /*!< System.nanoTime when the registry was created. */
+
+    /* Sub-Classes */
+    /**
+     *  \brief This class is a copy of every metric at one time. Values do not change once taken.
+     */
+    public static final class Snapshot {
+        private final long elapsedNanos;            /*!< Time from the creation of the registry to the snapshot. */
+        private final LatencyHistogram[] stages;    /*!< Copies of the stage histograms. */
+        private final long[] counters;              /*!< Counter values. */
+        private final long[] failures;              /*!< Failure counts per code slot. */
+        private final long[] statuses;              /*!< Status counts per code slot. */
+
+        /**
+         *  \brief Constructor for the class Snapshot.
+         *
+         *  \param metrics The registry to copy.
+         *  \param nowNanos A long containing the System.nanoTime of the snapshot.
+         */
+        private Snapshot(PositioningMetrics metrics, long nowNanos) {
+            this.elapsedNanos = nowNanos - metrics.startNanos;
+            this.stages = new LatencyHistogram[STAGE_COUNT];
+            for (int i = 0; i < STAGE_COUNT; i++)
+                this.stages[i] = metrics.stages[i].copy();
+            this.counters = toArray(metrics.counters);
+            this.failures = toArray(metrics.failures);
+            this.statuses = toArray(metrics.statuses);
+        }
+
+        /**
+         *  \brief Gets the time from the creation of the registry to the snapshot.
+         *
+         *  \param None.
+         *  \return A long containing the time in ns.
+         */
+        public long getElapsedNanos() {
+            return this.elapsedNanos;
+        }
+
+        /**
+         *  \brief Gets the latencies of a stage.
+         *
+         *  \param stage An integer containing one of the STAGE constants.
+         *  \return The histogram of the stage. Must not be recorded to.
+         */
+        public LatencyHistogram getStage(int stage) {
+            return this.stages[stage];
+        }
+
+        /**
+         *  \brief Gets the value of a counter.
+         *
+         *  \param counter An integer containing one of the COUNTER constants.
+         *  \return A long containing the value.
+         */
+        public long getCount(int counter) {
+            return this.counters[counter];
+        }
+
+        /**
+         *  \brief Gets the number of ranging requests that failed with a code.
+         *
+         *  \param code An integer containing the failure code.
+         *  \return A long containing the number of requests. Codes out of MIN_CODE to MAX_CODE
+         *          share one count.
+         */
+        public long getFailureCount(int code) {
+            return this.failures[slotOf(code)];
+        }
+
+        /**
+         *  \brief Gets the number of single ranging results that had a status.
+         *
+         *  \param status An integer containing the status.
+         *  \return A long containing the number of results. Statuses out of MIN_CODE to MAX_CODE
+         *          share one count.
+         */
+        public long getStatusCount(int status) {
+            return this.statuses[slotOf(status)];
+        }
+
+        /**
+         *  \brief Gets the mean fix rate since the registry was created.
+         *
+         *  \param None.
+         *  \return A double containing the fixes per second.
+         */
+        public double getFixRate() {
+            return this.elapsedNanos <= 0 ? 0 : this.counters[COUNTER_FIXES] * 1e9 / this.elapsedNanos;
+        }
+
+        /**
+         *  \brief Gets the fix rate between an earlier snapshot of the same registry and this one.
+         *
+         *  \param earlier The earlier snapshot.
+         *  \return A double containing the fixes per second.
+         */
+        public double getFixRate(Snapshot earlier) {
+            long nanos = this.elapsedNanos - earlier.elapsedNanos;
+            return nanos <= 0 ? 0 : (this.counters[COUNTER_FIXES] - earlier.counters[COUNTER_FIXES]) * 1e9 / nanos;
+        }
+
+        /**
+         *  \brief Writes the snapshot as CSV lines "metric,value", with durations in ms. Failure
+         *         codes and statuses that never occurred are left out.
+         *
+         *  \param out The Writer to write to.
+         *  \return None.
+         *  \throws IOException If the snapshot could not be written.
+         */
+        public void write(Writer out) throws IOException {
+            out.write("metric,value\n");
+            write(out, "elapsed_s", this.elapsedNanos * 1e-9);
+            write(out, "fix_rate_hz", getFixRate());
+            for (int i = 0; i < COUNTER_COUNT; i++)
+                out.write(COUNTER_NAMES[i] + "," + this.counters[i] + "\n");
+            for (int i = 0; i < STAGE_COUNT; i++) {
+                LatencyHistogram stage = this.stages[i];
+                String name = STAGE_NAMES[i];
+                out.write(name + ".count," + stage.getCount() + "\n");
+                write(out, name + ".mean_ms", stage.getMean() * 1e-6);
+                write(out, name + ".p50_ms", stage.getPercentile(50) * 1e-6);
+                write(out, name + ".p90_ms", stage.getPercentile(90) * 1e-6);
+                write(out, name + ".p99_ms", stage.getPercentile(99) * 1e-6);
+                write(out, name + ".max_ms", stage.getMax() * 1e-6);
+            }
+            writeCodes(out, "failure.", this.failures);
+            writeCodes(out, "status.", this.statuses);
+        }
+
+        /**
+         *  \brief Writes one "metric,value" line with a decimal value.
+         *
+         *  \param out The Writer to write to.
+         *  \param name A String object containing the metric name.
+         *  \param value A double containing the value.
+         *  \return None.
+         *  \throws IOException If the line could not be written.
+         */
+        private static void write(Writer out, String name, double value) throws IOException {
+            out.write(String.format(Locale.ROOT, "%s,%.3f\n", name, value));
+        }
+
+        /**
+         *  \brief Writes a line for every code that occurred, and one for the codes out of range.
+         *
+         *  \param out The Writer to write to.
+         *  \param prefix A String object containing the metric name before the code.
+         *  \param counts A long array containing the count of each code slot.
+         *  \return None.
+         *  \throws IOException If a line could not be written.
+         */
+        private static void writeCodes(Writer out, String prefix, long[] counts) throws IOException {
+            for (int code = MIN_CODE; code <= MAX_CODE; code++) {
+                if (counts[slotOf(code)] != 0)
+                    out.write(prefix + code + "," + counts[slotOf(code)] + "\n");
+            }
+            if (counts[CODE_SLOTS - 1] != 0)
+                out.write(prefix + "other," + counts[CODE_SLOTS - 1] + "\n");
+        }
+
+        /**
+         *  \brief Copies an atomic array.
+         *
+         *  \param array The array to copy.
+         *  \return A new long array with its values.
+         */
+        private static long[] toArray(AtomicLongArray array) {
+            long[] values = new long[array.length()];
+            for (int i = 0; i < values.length; i++)
+                values[i] = array.get(i);
+            return values;
+        }
+    }
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class PositioningMetrics. Every metric starts at 0, and the fix
+     *         rate is measured from now.
+     *
+     *  \param None.
+     */
+    public PositioningMetrics() {
+        this.stages = new LatencyHistogram[STAGE_COUNT];
+        for (int i = 0; i < STAGE_COUNT; i++)
+            this.stages[i] = new LatencyHistogram();
+        this.counters = new AtomicLongArray(COUNTER_COUNT);
+        this.failures = new AtomicLongArray(CODE_SLOTS);
+        this.statuses = new AtomicLongArray(CODE_SLOTS);
+        this.startNanos = System.nanoTime();
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the live latency histogram of a stage.
+     *
+     *  \param stage An integer containing one of the STAGE constants.
+     *  \return The histogram of the stage.
+     */
+    public LatencyHistogram getStage(int stage) {
+        return this.stages[stage];
+    }
+
+    /**
+     *  \brief Gets the current value of a counter.
+     *
+     *  \param counter An integer containing one of the COUNTER constants.
+     *  \return A long containing the value.
+     */
+    public long getCount(int counter) {
+        return this.counters.get(counter);
+    }
+
+    /**
+     *  \brief Gets the name a stage is exported under.
+     *
+     *  \param stage An integer containing one of the STAGE constants.
+     *  \return A String object containing the name.
+     */
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    /**
+     *  \brief Gets the name a counter is exported under.
+     *
+     *  \param counter An integer containing one of the COUNTER constants.
+     *  \return A String object containing the name.
+     */
+    public static String getCounterName(int counter) {
+        return COUNTER_NAMES[counter];
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Records the duration of one run of a stage.
+     *
+     *  \param stage An integer containing one of the STAGE constants.
+     *  \param nanos A long containing the duration in ns.
+     *  \return None.
+     */
+    public void record(int stage, long nanos) {
+        this.stages[stage].record(nanos);
+    }
+
+    /**
+     *  \brief Adds one to a counter.
+     *
+     *  \param counter An integer containing one of the COUNTER constants.
+     *  \return None.
+     */
+    public void increment(int counter) {
+        this.counters.incrementAndGet(counter);
+    }
+
+    /**
+     *  \brief Counts a failed ranging request under its failure code and in COUNTER_FAILED.
+     *
+     *  \param code An integer containing the failure code of the ranging API, or one of the
+     *         RangingSource FAILURE constants.
+     *  \return None.
+     */
+    public void recordFailure(int code) {
+        this.failures.incrementAndGet(slotOf(code));
+        this.counters.incrementAndGet(COUNTER_FAILED);
+    }
+
+    /**
+     *  \brief Counts the status of a single ranging result, successful or not.
+     *
+     *  \param status An integer containing the status of the result.
+     *  \return None.
+     */
+    public void recordStatus(int status) {
+        this.statuses.incrementAndGet(slotOf(status));
+    }
+
+    /**
+     *  \brief Copies every metric.
+     *
+     *  \param None.
+     *  \return A new snapshot.
+     */
+    public Snapshot snapshot() {
+        return snapshot(System.nanoTime());
+    }
+
+    /**
+     *  \brief Copies every metric as if taken at a given time.
+     *
+     *  \param nowNanos A long containing the System.nanoTime of the snapshot.
+     *  \return A new snapshot.
+     */
+    Snapshot snapshot(long nowNanos) {
+        return new Snapshot(this, nowNanos);
+    }
+
+    /**
+     *  \brief Gets the slot a failure code or status is counted in.
+     *
+     *  \param code An integer containing the code.
+     *  \return An integer containing the slot, the last one for codes out of range.
+     */
+    private static int slotOf(int code) {
+        return code < MIN_CODE || code > MAX_CODE ? CODE_SLOTS - 1 : code - MIN_CODE;
+    }
+}
@@ -0,0 +1,445 @@
+/** \file PositioningPipeline.java
+ *  \brief This file contains the staged pipeline that ranges, solves and
+ *  publishes the device position away from the UI thread.
+ *
+ *  The pipeline has three stages, each on its own thread:
+ *  1. The scan stage waits for a scan trigger and starts a ranging request.
+ *  2. Ranging callbacks run on a background executor and queue the results.
+ *  3. The solver stage applies each scan to the GPSCoreAPI and publishes a
+ *     PositionFix.
+ *  Stages are connected by bounded queues that drop the oldest entry when
+ *  full, and the newest fix is published in a single atomic slot that the UI
+ *  reads without locking.
+ *
+ *  Every ranging request is stamped with a sequence number and with the
+ *  number of router list clears requested before it started. The solver only
+ *  applies a scan if it is newer than the last one applied and was started
+ *  after the last clear, so a fix never mixes routers from before and after a
+ *  clear and never goes back in time.
+ *
+ *  Routers that have not been measured within the router TTL are removed
+ *  before each scan is applied, and every fix and failure is passed to a
+ *  ScanScheduler that sets the rate the caller should request scans at.
+ *
+ *  The scan, range, ingest and solve stages, requests, failures and fixes are
+ *  recorded in a PositioningMetrics registry.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *  \brief This class runs ranging and position solving on background threads.
+ *
+ *  The GPSCoreAPI given to the pipeline is only used from the solver thread
+ *  once the pipeline is started. Other threads read the results through
+ *  getLatestFix.
+ */
+public class PositioningPipeline {
+    /* Public Variables */
+    public static final long RANGING_TIMEOUT_MS = 5000;    /*!< Longest time the scan stage waits for a ranging request to complete. */
+    public static final long DEFAULT_ROUTER_TTL_MS = 10000; /*!< Default time a router is kept after its last measurement. */
+
+    /* Private Variables */
+    private static final int SCAN_QUEUE_CAPACITY = 2;       /*!< Scans waiting for the solver before the oldest is dropped. */
+    private static final Object TRIGGER = new Object();     /*!< Element queued to request a scan. */
+
+    private final GPSCoreAPI coreAPI;                       /*!< Positioning core. Only used on the solver thread. */
+    private final RangingSource source;                     /*!< Source of ranging measurements. */
+    private final DropOldestQueue<Object> triggers;         /*!< Scan requests waiting for the scan stage. Holds one so requests coalesce. */
+    private final DropOldestQueue<Request> scans;           /*!< Completed scans waiting for the solver stage. */
+    private final DropOldestQueue<Request> freeRequests;    /*!< Requests ready for reuse. */
+    private final AtomicReference<PositionFix> latestFix;   /*!< Most recently published fix. */
+    private final AtomicInteger clearCount;                 /*!< Number of router list clears requested. */
+    private final ScanScheduler scheduler;                  /*!< Chooses the interval between scan requests. */
+    private final PositioningMetrics metrics;               /*!< Latencies and counts of the stages. */
+
+    private ExecutorService callbackExecutor;               /*!< Runs ranging callbacks. */
+    private Thread scanThread;                              /*!< Runs the scan stage. */
+    private Thread solverThread;                            /*!< Runs the solver stage. */
+    private volatile boolean running;                       /*!< True between start and stop. */
+    private volatile int lastStatus;                        /*!< Failure code of the latest ranging request, or 0 if it succeeded. */
+    private volatile long staleScanCount;                   /*!< Scans discarded because they were out of order or started before a clear. */
+    private volatile FixListener fixListener;               /*!< Told about every published fix, or null. */
+    private volatile TraceRecorder traceRecorder;           /*!< Records every published fix, or null. */
+    private volatile long routerTtlNanos;                   /*!< Time a router is kept after its last measurement in nanoseconds. */
+    private volatile long expiredRouterCount;               /*!< Number of routers removed by the router TTL. */
+    private long nextSequence;                              /*!< Sequence number of the next ranging request. Only used on the scan thread. */
+    private long appliedSequence;                           /*!< Sequence number of the last scan applied. Only used on the solver thread. */
+    private int appliedClearCount;                          /*!< Number of clears applied to the router list. Only used on the solver thread. */
+
+    /* Sub-Classes */
+    /**
+     *  \brief This interface is told when the pipeline publishes a fix, so the fix can be shown
+     *         as soon as it is solved rather than on the next poll.
+     */
+    public interface FixListener {
+        /**
+         *  \brief Called on the solver thread after a fix is published.
+         *
+         *  \param fix The fix that was published.
+         *  \return None.
+         */
+        void onFix(PositionFix fix);
+    }
+
+    /**
+     *  \brief This class is one reusable ranging request and the scan it fills.
+     */
+    private final class Request implements RangingSource.Callback {
+        private final RangingScan scan = new RangingScan();    /*!< Buffer the ranging source fills. */
+        private final Semaphore complete = new Semaphore(0);    /*!< Released when this request completes. */
+        private long startNanos;                                /*!< System.nanoTime when the request was started. */
+
+        @Override
+        public void onRangingResults(RangingScan scan) {
+            metrics.record(PositioningMetrics.STAGE_RANGE, System.nanoTime() - this.startNanos);
+            metrics.increment(PositioningMetrics.COUNTER_RANGED);
+            lastStatus = 0;
+            Request dropped = scans.offer(this);
+            if (dropped != null)
+                freeRequests.offer(dropped);
+            this.complete.release();
+        }
+
+        @Override
+        public void onRangingFailure(int code) {
+            metrics.recordFailure(code);
+            lastStatus = code;
+            scheduler.onFailure();
+            freeRequests.offer(this);
+            this.complete.release();
+        }
+    }
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class PositioningPipeline. Uses a ScanScheduler with the default
+     *         intervals.
+     *
+     *  \param coreAPI The positioning core to apply scans to.
+     *  \param source The source of ranging measurements.
+     */
+    public PositioningPipeline(GPSCoreAPI coreAPI, RangingSource source) {
+        this(coreAPI, source, new ScanScheduler());
+    }
+
+    /**
+     *  \brief Constructor for the class PositioningPipeline.
+     *
+     *  \param coreAPI The positioning core to apply scans to.
+     *  \param source The source of ranging measurements.
+     *  \param scheduler The scheduler told about every fix and failure.
+     */
+    public PositioningPipeline(GPSCoreAPI coreAPI, RangingSource source, ScanScheduler scheduler) {
+        this.coreAPI = coreAPI;
+        this.source = source;
+        this.triggers = new DropOldestQueue<>(1);
+        this.scans = new DropOldestQueue<>(SCAN_QUEUE_CAPACITY);
+        this.freeRequests = new DropOldestQueue<>(SCAN_QUEUE_CAPACITY + 2);
+        this.latestFix = new AtomicReference<>();
+        this.clearCount = new AtomicInteger();
+        this.scheduler = scheduler;
+        this.metrics = new PositioningMetrics();
+        this.routerTtlNanos = DEFAULT_ROUTER_TTL_MS * 1000000L;
+        this.expiredRouterCount = 0;
+        this.running = false;
+        this.lastStatus = 0;
+        this.staleScanCount = 0;
+        this.nextSequence = 1;
+        this.appliedSequence = 0;
+        this.appliedClearCount = 0;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the most recently published fix. Safe to call from any thread.
+     *
+     *  \param None.
+     *  \return The latest fix, or null if none has been published.
+     */
+    public PositionFix getLatestFix() {
+        return this.latestFix.get();
+    }
+
+    /**
+     *  \brief Gets the outcome of the latest ranging request.
+     *
+     *  \param None.
+     *  \return An integer containing 0 if the request succeeded, else its failure code.
+     */
+    public int getLastStatus() {
+        return this.lastStatus;
+    }
+
+    /**
+     *  \brief Gets the number of scans dropped because the solver fell behind.
+     *
+     *  \param None.
+     *  \return A long containing the number of dropped scans.
+     */
+    public long getDroppedScanCount() {
+        return this.scans.getDropCount();
+    }
+
+    /**
+     *  \brief Gets the number of scans discarded because a newer scan had already been applied
+     *         or the router list was cleared after they started.
+     *
+     *  \param None.
+     *  \return A long containing the number of stale scans.
+     */
+    public long getStaleScanCount() {
+        return this.staleScanCount;
+    }
+
+    /**
+     *  \brief Gets the number of routers removed because they were not measured within the
+     *         router TTL.
+     *
+     *  \param None.
+     *  \return A long containing the number of expired routers.
+     */
+    public long getExpiredRouterCount() {
+        return this.expiredRouterCount;
+    }
+
+    /**
+     *  \brief Gets the scheduler that sets the interval between scan requests.
+     *
+     *  \param None.
+     *  \return The scan scheduler.
+     */
+    public ScanScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     *  \brief Gets the latencies and counts of the pipeline stages.
+     *
+     *  \param None.
+     *  \return The metrics registry. The render stage is left to the caller.
+     */
+    public PositioningMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     *  \brief Gets whether the pipeline is running.
+     *
+     *  \param None.
+     *  \return Returns true between start and stop.
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    /* Sets */
+
+    /**
+     *  \brief Sets the listener told about every published fix. The listener runs on the solver
+     *         thread and should hand the fix over to its own thread quickly.
+     *
+     *  \param listener The listener, or null to remove it.
+     *  \return None.
+     */
+    public void setFixListener(FixListener listener) {
+        this.fixListener = listener;
+    }
+
+    /**
+     *  \brief Sets the recorder every published fix is written to. Safe to call from any thread.
+     *
+     *  \param recorder The trace recorder, or null to stop recording.
+     *  \return None.
+     */
+    public void setTraceRecorder(TraceRecorder recorder) {
+        this.traceRecorder = recorder;
+    }
+
+    /**
+     *  \brief Sets how long a router is kept after its last measurement. Safe to call from any
+     *         thread.
+     *
+     *  \param ttlMs A long containing the router TTL in ms.
+     *  \return None.
+     */
+    public void setRouterTtl(long ttlMs) {
+        this.routerTtlNanos = ttlMs * 1000000L;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Starts the pipeline threads. Does nothing if already running.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public synchronized void start() {
+        if (this.running)
+            return;
+        this.running = true;
+        this.callbackExecutor = Executors.newSingleThreadExecutor(r -> newThread(r, "rtt-callback"));
+        this.scanThread = newThread(this::runScanStage, "rtt-scan");
+        this.solverThread = newThread(this::runSolverStage, "rtt-solver");
+        this.scanThread.start();
+        this.solverThread.start();
+    }
+
+    /**
+     *  \brief Stops the pipeline threads. Queued scans are discarded. The latest fix is kept.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public synchronized void stop() {
+        if (!this.running)
+            return;
+        this.running = false;
+        this.scanThread.interrupt();
+        this.solverThread.interrupt();
+        this.callbackExecutor.shutdownNow();
+        try {
+            this.scanThread.join(RANGING_TIMEOUT_MS);
+            this.solverThread.join(RANGING_TIMEOUT_MS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Request request;
+        while ((request = this.scans.poll()) != null)
+            this.freeRequests.offer(request);
+        this.triggers.poll();
+    }
+
+    /**
+     *  \brief Requests a ranging scan. Requests made while a scan is in progress are merged into
+     *         one. Safe to call from any thread.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void requestScan() {
+        this.triggers.offer(TRIGGER);
+    }
+
+    /**
+     *  \brief Requests that the router list is cleared before the next scan is applied. Scans
+     *         that started before this call are discarded, so their routers do not reappear in
+     *         the cleared list. Safe to call from any thread.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void clearRouterList() {
+        this.clearCount.incrementAndGet();
+    }
+
+    /**
+     *  \brief Waits for scan triggers and starts one ranging request at a time.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    private void runScanStage() {
+        try {
+            while (this.running) {
+                this.triggers.take();
+                Request request = this.freeRequests.poll();
+                if (request == null)
+                    request = new Request();
+                request.complete.drainPermits();
+                request.scan.sequence = this.nextSequence++;
+                request.scan.epoch = this.clearCount.get();
+                this.metrics.increment(PositioningMetrics.COUNTER_REQUESTS);
+                long start = System.nanoTime();
+                request.startNanos = start;
+                this.source.startRanging(request.scan, this.callbackExecutor, request);
+                this.metrics.record(PositioningMetrics.STAGE_SCAN, System.nanoTime() - start);
+                // Wait for the request so ranging requests never overlap. A request that times out
+                // and completes later only releases its own semaphore.
+                request.complete.tryAcquire(RANGING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     *  \brief Applies completed scans to the positioning core and publishes a fix for each, as
+     *         soon as the scan's ranging results arrive.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    private void runSolverStage() {
+        try {
+            while (this.running) {
+                Request request = this.scans.take();
+                int clears = this.clearCount.get();
+                if (clears != this.appliedClearCount) {
+                    this.appliedClearCount = clears;
+                    this.coreAPI.clearRouterList();
+                }
+                RangingScan scan = request.scan;
+                if (scan.sequence <= this.appliedSequence || scan.epoch != this.appliedClearCount) {
+                    this.staleScanCount++;
+                    this.freeRequests.offer(request);
+                    continue;
+                }
+                this.appliedSequence = scan.sequence;
+                long timestampNanos = scan.timestampNanos;
+                long sequence = scan.sequence;
+                long start = System.nanoTime();
+                this.expiredRouterCount += this.coreAPI.expireRouters(timestampNanos, this.routerTtlNanos);
+                int applied = this.coreAPI.applyScan(timestampNanos, scan.macs, scan.distMm, scan.distStdDevMm, scan.rssi, scan.count);
+                this.freeRequests.offer(request);
+                long ingested = System.nanoTime();
+                this.metrics.record(PositioningMetrics.STAGE_INGEST, ingested - start);
+
+                boolean solved = applied > 0 && this.coreAPI.solveScan(timestampNanos);
+                PositionFix fix = new PositionFix(this.coreAPI, timestampNanos, sequence);
+                this.metrics.record(PositioningMetrics.STAGE_SOLVE, System.nanoTime() - ingested);
+                this.metrics.increment(PositioningMetrics.COUNTER_FIXES);
+                if (solved) // The fix may still have a position predicted from earlier scans
+                    this.metrics.increment(PositioningMetrics.COUNTER_POSITIONED);
+                this.latestFix.set(fix);
+                TraceRecorder recorder = this.traceRecorder;
+                if (recorder != null)
+                    recorder.recordFix(fix);
+                // A failed solve is no position to the scheduler, however confident the track was
+                this.scheduler.onFix(solved, fix.getSpeed(), this.coreAPI.predictDeviceVariance(timestampNanos));
+                FixListener listener = this.fixListener;
+                if (listener != null)
+                    listener.onFix(fix);
+            }
+        }
+        catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     *  \brief Creates a daemon thread for a pipeline stage.
+     *
+     *  \param runnable The code the thread runs.
+     *  \param name A String object containing the name of the thread.
+     *  \return The new thread, not yet started.
+     */
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,151 @@
+/** \file RangeFilter.java
+ *  \brief This file contains a one dimensional Kalman filter for the range
+ *  to a single router.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class smooths the measured distance to one router.
+ *
+ *  The range is modelled as a random walk whose variance grows with the time
+ *  since the last measurement, so old ranges are trusted less than new ones.
+ *  Each measurement is weighted by its RTT standard deviation. The state is a
+ *  handful of primitives updated in place.
+ */
+public final class RangeFilter {
+    /* Public Variables */
+    public static final double DEFAULT_PROCESS_NOISE = 2.0;    /*!< Growth of the range variance per second in m^2/s. Covers walking pace. */
+    public static final double MIN_MEASUREMENT_STD_DEV = 0.3;  /*!< Smallest measurement standard deviation trusted in meters(m). */
+
+    /* Private Variables */
+    private final double processNoise;  /*!< Growth of the range variance per second in m^2/s. */
+    private double range;               /*!< Filtered range in meters(m). */
+    private double variance;            /*!< Variance of the filtered range in m^2. */
+    private long timestamp;             /*!< Time of the latest measurement in nanoseconds. */
+    private int count;                  /*!< Number of measurements since the last reset. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Creates a filter with the default process noise.
+     *
+     *  \param None.
+     */
+    public RangeFilter() {
+        this(DEFAULT_PROCESS_NOISE);
+    }
+
+    /**
+     *  \brief Constructor for the class RangeFilter.
+     *
+     *  \param processNoise A double containing the growth of the range variance per second in m^2/s.
+     */
+    public RangeFilter(double processNoise) {
+        this.processNoise = processNoise;
+        reset();
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the filtered range.
+     *
+     *  \param None.
+     *  \return A double containing the range in meters(m), or 0 if there are no measurements.
+     */
+    public double getRange() {
+        return this.range;
+    }
+
+    /**
+     *  \brief Gets the variance of the filtered range as of the latest measurement.
+     *
+     *  \param None.
+     *  \return A double containing the variance in m^2.
+     */
+    public double getVariance() {
+        return this.variance;
+    }
+
+    /**
+     *  \brief Gets the variance of the filtered range at a given time. The variance grows with
+     *         the time since the latest measurement, as the device may have moved since.
+     *
+     *  \param timestampNanos A long containing the time in nanoseconds. Times before the latest
+     *         measurement give the variance as of that measurement.
+     *  \return A double containing the variance in m^2.
+     */
+    public double predictVariance(long timestampNanos) {
+        long elapsed = Math.max(0, timestampNanos - this.timestamp);
+        return this.variance + this.processNoise * (elapsed * 1e-9);
+    }
+
+    /**
+     *  \brief Gets the time of the latest measurement.
+     *
+     *  \param None.
+     *  \return A long containing the time in nanoseconds.
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     *  \brief Gets the number of measurements since the last reset.
+     *
+     *  \param None.
+     *  \return An integer containing the number of measurements.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Adds a range measurement to the filter.
+     *
+     *  \param range A double containing the measured range in meters(m).
+     *  \param stdDev A double containing the standard deviation of the measurement in meters(m).
+     *  \param timestampNanos A long containing the time of the measurement in nanoseconds.
+     *  \return None.
+     */
+    public void update(double range, double stdDev, long timestampNanos) {
+        double sigma = Math.max(stdDev, MIN_MEASUREMENT_STD_DEV);
+        double measurementVariance = sigma * sigma;
+
+        if (this.count == 0) {
+            this.range = range;
+            this.variance = measurementVariance;
+        }
+        else {
+            // Predict: the range may have drifted since the last measurement
+            long elapsed = timestampNanos - this.timestamp;
+            if (elapsed > 0)
+                this.variance += this.processNoise * (elapsed * 1e-9);
+
+            // Update
+            double gain = this.variance / (this.variance + measurementVariance);
+            this.range += gain * (range - this.range);
+            this.variance *= (1 - gain);
+        }
+
+        if (timestampNanos > this.timestamp || this.count == 0)
+            this.timestamp = timestampNanos;
+        this.count++;
+    }
+
+    /**
+     *  \brief Clears the filter so the next measurement is taken as is.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void reset() {
+        this.range = 0;
+        this.variance = 0;
+        this.timestamp = 0;
+        this.count = 0;
+    }
+}
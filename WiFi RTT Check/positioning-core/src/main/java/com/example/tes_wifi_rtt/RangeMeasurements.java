@@ -0,0 +1,135 @@
+/** \file RangeMeasurements.java
+ *  \brief This file contains the buffer of range measurements passed to a
+ *  position solver.
+ *
+ *  The measurements are stored as parallel primitive arrays that are filled
+ *  in place before every solve, so passing anchors to a solver does not
+ *  allocate once the buffer is large enough.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+
+/**
+ *  \brief This class contains the anchors and measured ranges for one solve.
+ *
+ *  Index i of every array describes the same anchor. Only the first count
+ *  entries are valid.
+ */
+public final class RangeMeasurements {
+    /* Public Variables */
+    public double[] x;          /*!< X position of each anchor on the cartesian grid in meters(m). */
+    public double[] y;          /*!< Y position of each anchor on the cartesian grid in meters(m). */
+    public double[] range;      /*!< Measured distance to each anchor in meters(m). */
+    public double[] stdDev;     /*!< Standard deviation of each measured distance in meters(m). */
+    public int[] rssi;          /*!< Signal strength of each anchor. */
+    public int count;           /*!< Number of valid anchors. */
+    public boolean hasPrior;    /*!< True if priorX and priorY hold a previous position of the device. */
+    public double priorX;       /*!< Previous X position of the device, used by iterative solvers as a starting point. */
+    public double priorY;       /*!< Previous Y position of the device, used by iterative solvers as a starting point. */
+    public long timestampNanos; /*!< Time of the newest measurement in nanoseconds, used by solvers that track the device between scans. */
+    public Geofence area;       /*!< Walkable area of the device's floor, or null if it has none. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Creates a buffer for 16 anchors.
+     *
+     *  \param None.
+     */
+    public RangeMeasurements() {
+        this(16);
+    }
+
+    /**
+     *  \brief Constructor for the class RangeMeasurements. Creates a buffer for the given number
+     *         of anchors.
+     *
+     *  \param capacity An integer containing the number of anchors to reserve space for.
+     */
+    public RangeMeasurements(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.range = new double[capacity];
+        this.stdDev = new double[capacity];
+        this.rssi = new int[capacity];
+        this.count = 0;
+        this.hasPrior = false;
+        this.timestampNanos = 0;
+        this.area = null;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Appends an anchor to the buffer, growing it if it is full.
+     *
+     *  \param x A double containing the X position of the anchor in meters(m).
+     *  \param y A double containing the Y position of the anchor in meters(m).
+     *  \param range A double containing the measured distance in meters(m).
+     *  \param stdDev A double containing the standard deviation of the distance in meters(m).
+     *  \param rssi An integer containing the signal strength of the anchor.
+     *  \return None.
+     */
+    public void add(double x, double y, double range, double stdDev, int rssi) {
+        if (this.count == this.x.length) {
+            int capacity = this.count * 2;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.range = Arrays.copyOf(this.range, capacity);
+            this.stdDev = Arrays.copyOf(this.stdDev, capacity);
+            this.rssi = Arrays.copyOf(this.rssi, capacity);
+        }
+        this.x[this.count] = x;
+        this.y[this.count] = y;
+        this.range[this.count] = range;
+        this.stdDev[this.count] = stdDev;
+        this.rssi[this.count] = rssi;
+        this.count++;
+    }
+
+    /**
+     *  \brief Sets the previous position of the device.
+     *
+     *  \param x A double containing the previous X position in meters(m).
+     *  \param y A double containing the previous Y position in meters(m).
+     *  \return None.
+     */
+    public void setPrior(double x, double y) {
+        this.priorX = x;
+        this.priorY = y;
+        this.hasPrior = true;
+    }
+
+    /**
+     *  \brief Swaps two anchors in the buffer.
+     *
+     *  \param i An integer containing the index of the first anchor.
+     *  \param j An integer containing the index of the second anchor.
+     *  \return None.
+     */
+    public void swap(int i, int j) {
+        double t = this.x[i]; this.x[i] = this.x[j]; this.x[j] = t;
+        t = this.y[i]; this.y[i] = this.y[j]; this.y[j] = t;
+        t = this.range[i]; this.range[i] = this.range[j]; this.range[j] = t;
+        t = this.stdDev[i]; this.stdDev[i] = this.stdDev[j]; this.stdDev[j] = t;
+        int r = this.rssi[i]; this.rssi[i] = this.rssi[j]; this.rssi[j] = r;
+    }
+
+    /**
+     *  \brief Removes every anchor, the previous position, the timestamp and the walkable area
+     *         from the buffer without releasing memory.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void clear() {
+        this.count = 0;
+        this.hasPrior = false;
+        this.timestampNanos = 0;
+        this.area = null;
+    }
+}
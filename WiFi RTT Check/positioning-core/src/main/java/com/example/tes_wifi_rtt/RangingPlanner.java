@@ -0,0 +1,49 @@
+/** \file RangingPlanner.java
+ *  \brief This file contains the interface that chooses which responders to
+ *  range against and in which batches.
+ *
+ *  The platform limits how many peers one ranging request may contain, so a
+ *  floor with more responders than the limit has to be ranged in several
+ *  back-to-back requests. A planner orders the candidates so the most useful
+ *  ones are ranged first. Planners are pure Java so they can be tested with
+ *  synthetic candidate lists.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This interface is implemented by strategies that order responders
+ *  into ranging batches.
+ */
+public interface RangingPlanner {
+    /**
+     *  \brief Orders the candidate responders for ranging. The result is split into batches of
+     *         maxPeers consecutive entries, ranged one after the other, best batch first.
+     *
+     *  \param candidates A long array containing the packed MAC Address of each candidate.
+     *  \param count An integer containing the number of candidates to read from the array.
+     *  \param maxPeers An integer containing the largest number of peers in one ranging request.
+     *  \param ordered A long array, at least count long, filled with the planned MAC Addresses.
+     *  \return An integer containing the number of MAC Addresses written to ordered. Candidates
+     *          left out are not ranged this time.
+     */
+    int plan(long[] candidates, int count, int maxPeers, long[] ordered);
+
+    /**
+     *  \brief Records the outcome of ranging against one planned responder.
+     *
+     *  \param mac A long containing the packed MAC Address of the responder.
+     *  \param success A boolean that is true if a range was measured.
+     *  \return None.
+     */
+    void onRangingResult(long mac, boolean success);
+
+    /**
+     *  \brief Sets the latest known device position, used to judge the geometry of responders.
+     *
+     *  \param x A double containing the X coordinate of the device in m.
+     *  \param y A double containing the Y coordinate of the device in m.
+     *  \return None.
+     */
+    void setDevicePosition(double x, double y);
+}
@@ -0,0 +1,90 @@
+/** \file RangingScan.java
+ *  \brief This file contains the buffer holding the results of one ranging
+ *  request.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+
+/**
+ *  \brief This class holds the successful results of one ranging request as
+ *  parallel primitive arrays, in the form taken by GPSCoreAPI.ingestScan.
+ *
+ *  Scans are reused by the positioning pipeline, so filling one does not
+ *  allocate once its arrays are large enough.
+ */
+public final class RangingScan {
+    /* Public Variables */
+    public long timestampNanos;     /*!< Time of the scan in nanoseconds. */
+    public long[] macs;             /*!< Packed MAC Address of each result. */
+    public int[] distMm;            /*!< Distance of each result in mm. */
+    public int[] distStdDevMm;      /*!< Standard deviation of each distance in mm. */
+    public int[] rssi;              /*!< Signal strength of each result. */
+    public int count;               /*!< Number of valid results. */
+    public long sequence;           /*!< Sequence number of the ranging request, set when the request is started. */
+    public int epoch;               /*!< Number of router list clears requested before the request was started. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Creates a scan with room for 16 results.
+     *
+     *  \param None.
+     */
+    public RangingScan() {
+        this(16);
+    }
+
+    /**
+     *  \brief Constructor for the class RangingScan.
+     *
+     *  \param capacity An integer containing the number of results to reserve space for.
+     */
+    public RangingScan(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.macs = new long[capacity];
+        this.distMm = new int[capacity];
+        this.distStdDevMm = new int[capacity];
+        this.rssi = new int[capacity];
+        this.count = 0;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Empties the scan and sets its time. The sequence number and epoch are kept.
+     *
+     *  \param timestampNanos A long containing the time of the scan in nanoseconds.
+     *  \return None.
+     */
+    public void reset(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+        this.count = 0;
+    }
+
+    /**
+     *  \brief Appends a successful ranging result, growing the arrays if they are full.
+     *
+     *  \param mac A long containing the packed MAC Address.
+     *  \param distMm An integer containing the distance in mm.
+     *  \param distStdDevMm An integer containing the standard deviation of the distance in mm.
+     *  \param rssi An integer containing the signal strength.
+     *  \return None.
+     */
+    public void add(long mac, int distMm, int distStdDevMm, int rssi) {
+        if (this.count == this.macs.length) {
+            int capacity = this.count * 2;
+            this.macs = Arrays.copyOf(this.macs, capacity);
+            this.distMm = Arrays.copyOf(this.distMm, capacity);
+            this.distStdDevMm = Arrays.copyOf(this.distStdDevMm, capacity);
+            this.rssi = Arrays.copyOf(this.rssi, capacity);
+        }
+        this.macs[this.count] = mac;
+        this.distMm[this.count] = distMm;
+        this.distStdDevMm[this.count] = distStdDevMm;
+        this.rssi[this.count] = rssi;
+        this.count++;
+    }
+}
@@ -0,0 +1,57 @@
+/** \file RangingSource.java
+ *  \brief This file contains the interface through which the positioning
+ *  pipeline requests ranging measurements.
+ *
+ *  The pipeline does not depend on the Android ranging API directly, so it
+ *  can be run with a fake source in JVM unit tests.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.concurrent.Executor;
+
+/**
+ *  \brief This interface is implemented by anything that can range against
+ *  routers, such as the Wi-Fi RTT manager.
+ */
+public interface RangingSource {
+    /* Public Variables */
+    int FAILURE_NO_RESPONDERS = -1;     /*!< Failure code when no RTT capable routers were found to range against. */
+    int FAILURE_PERMISSION = -2;        /*!< Failure code when the app lacks the permission to range. */
+    int FAILURE_UNAVAILABLE = -3;       /*!< Failure code when ranging is not supported or turned off. */
+
+    /**
+     *  \brief This interface receives the outcome of one ranging request. Exactly one method is
+     *  called per request.
+     */
+    interface Callback {
+        /**
+         *  \brief Called with the successful results of the request.
+         *
+         *  \param scan The scan passed to startRanging, filled with the results.
+         *  \return None.
+         */
+        void onRangingResults(RangingScan scan);
+
+        /**
+         *  \brief Called when the request failed.
+         *
+         *  \param code An integer containing the failure code of the ranging API, or one of the
+         *         FAILURE constants of this interface.
+         *  \return None.
+         */
+        void onRangingFailure(int code);
+    }
+
+    /**
+     *  \brief Starts a ranging request. Returns straight away, the callback is run later on the
+     *         given executor.
+     *
+     *  \param scan The scan to fill with results. It is reset by the source.
+     *  \param executor The executor to run the callback on.
+     *  \param callback The callback receiving the outcome of the request.
+     *  \return None.
+     */
+    void startRanging(RangingScan scan, Executor executor, Callback callback);
+}
@@ -0,0 +1,421 @@
+/** \file ReplayEngine.java
+ *  \brief This file contains the offline replay driver that re-runs recorded
+ *  walks through the positioning engine and measures its error against the
+ *  ground truth of each walk.
+ *
+ *  Run from the command line as
+ *      java com.example.tes_wifi_rtt.ReplayEngine anchors.csv walks/ [walkable.csv]
+ *  where walks/ holds trace files "<walk>.bin" next to their waypoint files
+ *  "<walk>.waypoints.csv". Each default configuration is replayed over every
+ *  walk and its error percentiles are printed.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ *  \brief This class replays walks through fresh GPSCoreAPI instances as fast
+ *  as they can be solved.
+ *
+ *  Every pair of a walk and a configuration is replayed as its own task on a
+ *  ForkJoinPool, and the errors of each configuration are pooled over all of
+ *  its walks. Scans are applied the way the positioning pipeline applies
+ *  them: routers are aged out by the router TTL, the scan is applied and
+ *  solved, and the position is predicted at the time of the scan. Scans that
+ *  give no fix count as missed. A replay only depends on the recorded
+ *  timestamps, so it gives the same result as the phone did for the same
+ *  configuration.
+ */
+public final class ReplayEngine {
+    /* Public Variables */
+    public static final String WAYPOINT_SUFFIX = ".waypoints.csv";  /*!< Ending of the waypoint file of a trace "<walk>.bin". */
+
+    /* Private Variables */
+    private final AnchorDatabase anchors;   /*!< Anchors every replay is solved against. */
+    private final ForkJoinPool pool;        /*!< Runs the replays. */
+    private long routerTtlNanos;            /*!< Time a router is kept after its last measurement. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class ReplayEngine. Uses the common ForkJoinPool.
+     *
+     *  \param anchors The anchor database every replay is solved against.
+     */
+    public ReplayEngine(AnchorDatabase anchors) {
+        this(anchors, ForkJoinPool.commonPool());
+    }
+
+    /**
+     *  \brief Constructor for the class ReplayEngine.
+     *
+     *  \param anchors The anchor database every replay is solved against.
+     *  \param pool The ForkJoinPool the replays run on.
+     */
+    public ReplayEngine(AnchorDatabase anchors, ForkJoinPool pool) {
+        this.anchors = anchors;
+        this.pool = pool;
+        this.routerTtlNanos = PositioningPipeline.DEFAULT_ROUTER_TTL_MS * 1000000L;
+    }
+
+    /* Sets */
+
+    /**
+     *  \brief Sets how long a router is kept after its last measurement, as set on the pipeline
+     *         the walks were recorded with.
+     *
+     *  \param ttlMs A long containing the router TTL in ms.
+     *  \return None.
+     */
+    public void setRouterTtl(long ttlMs) {
+        this.routerTtlNanos = ttlMs * 1000000L;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Replays every walk with every configuration. Blocks until all replays are done.
+     *
+     *  \param traces The walks to replay.
+     *  \param configurations The configurations to replay the walks with.
+     *  \return A Result array with the pooled errors of each configuration, in the order given.
+     */
+    public Result[] run(List<ReplayTrace> traces, List<Configuration> configurations) {
+        final Replay[] replays = new Replay[traces.size() * configurations.size()];
+        for (int c = 0; c < configurations.size(); c++) {
+            for (int t = 0; t < traces.size(); t++)
+                replays[c * traces.size() + t] = new Replay(traces.get(t), configurations.get(c));
+        }
+        this.pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(replays);
+            }
+        });
+
+        Result[] results = new Result[configurations.size()];
+        for (int c = 0; c < configurations.size(); c++) {
+            int fixes = 0;
+            int missed = 0;
+            for (int t = 0; t < traces.size(); t++) {
+                Replay replay = replays[c * traces.size() + t];
+                fixes += replay.count;
+                missed += replay.missed;
+            }
+            float[] errors = new float[fixes];
+            int offset = 0;
+            for (int t = 0; t < traces.size(); t++) {
+                Replay replay = replays[c * traces.size() + t];
+                System.arraycopy(replay.errors, 0, errors, offset, replay.count);
+                offset += replay.count;
+            }
+            results[c] = new Result(configurations.get(c).getName(), errors, missed);
+        }
+        return results;
+    }
+
+    /**
+     *  \brief Replays every walk in a directory with the default configurations and prints the
+     *         error percentiles of each.
+     *
+     *  \param args A String array containing the anchor CSV or binary path, the walk directory
+     *         and optionally the walkable area path.
+     *  \return None.
+     *  \throws IOException If a file could not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: ReplayEngine <anchors.csv|anchors.bin> <walk dir> [walkable.csv]");
+            System.exit(2);
+        }
+        AnchorDatabase anchors;
+        if (args[0].endsWith(".bin")) {
+            anchors = AnchorDatabase.open(new File(args[0]));
+        }
+        else {
+            try (Reader in = new FileReader(args[0])) {
+                anchors = new AnchorDatabase(AnchorDatabaseCompiler.compile(in));
+            }
+        }
+        WalkableAreas areas = WalkableAreas.NONE;
+        if (args.length == 3) {
+            try (Reader in = new FileReader(args[2])) {
+                areas = WalkableAreas.parse(in);
+            }
+        }
+
+        List<ReplayTrace> traces = loadWalks(new File(args[1]));
+        if (traces.isEmpty()) {
+            System.err.println("No walks found in " + args[1]);
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        Result[] results = new ReplayEngine(anchors).run(traces, defaultConfigurations(areas));
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(String.format(Locale.ROOT, "%-16s %8s %8s %8s %8s %8s %8s", "configuration", "fixes",
+                "missed", "p50 m", "p90 m", "p95 m", "max m"));
+        for (Result result : results) {
+            System.out.println(String.format(Locale.ROOT, "%-16s %8d %8d %8.2f %8.2f %8.2f %8.2f", result.getName(),
+                    result.getFixCount(), result.getMissedCount(), result.getPercentile(50), result.getPercentile(90),
+                    result.getPercentile(95), result.getPercentile(100)));
+        }
+        System.out.println("Replayed " + traces.size() + " walks in " + elapsedMs + " ms");
+    }
+
+    /**
+     *  \brief Loads every walk of a directory: each trace "<walk>.bin" with its waypoint file
+     *         "<walk>.waypoints.csv", in name order. Traces without waypoints are skipped.
+     *
+     *  \param directory The directory holding the walks.
+     *  \return A list of the loaded walks.
+     *  \throws IOException If a file could not be read.
+     *  \throws IllegalArgumentException If a file is malformed.
+     */
+    static List<ReplayTrace> loadWalks(File directory) throws IOException {
+        List<ReplayTrace> traces = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".bin"));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                File waypoints = new File(file.getParentFile(), name.substring(0, name.length() - 4) + WAYPOINT_SUFFIX);
+                if (waypoints.exists())
+                    traces.add(ReplayTrace.load(file, waypoints));
+                else
+                    System.err.println("Skipping " + name + ", no " + waypoints.getName());
+            }
+        }
+        return traces;
+    }
+
+    /**
+     *  \brief Creates the configurations the command line compares: each solver with the
+     *         default settings, the default solver without refinement, and the default solver
+     *         with router quarantine as in the app.
+     *
+     *  \param areas The walkable areas every configuration uses.
+     *  \return A list of configurations.
+     */
+    public static List<Configuration> defaultConfigurations(final WalkableAreas areas) {
+        List<Configuration> configurations = new ArrayList<>();
+        configurations.add(new Configuration("wls", coreAPI -> coreAPI.setWalkableAreas(areas)));
+        configurations.add(new Configuration("wls-unrefined", coreAPI -> {
+            coreAPI.setWalkableAreas(areas);
+            coreAPI.setRefinementEnabled(false);
+        }));
+        configurations.add(new Configuration("wls-quarantine", coreAPI -> {
+            coreAPI.setWalkableAreas(areas);
+            coreAPI.setRouterQuality(new RouterQuality());
+        }));
+        configurations.add(new Configuration("lm", coreAPI -> {
+            coreAPI.setWalkableAreas(areas);
+            coreAPI.setPositionSolver(new LevenbergMarquardtSolver());
+        }));
+        configurations.add(new Configuration("particle", coreAPI -> {
+            coreAPI.setWalkableAreas(areas);
+            // Seeded so repeated runs of a configuration can be compared
+            coreAPI.setPositionSolver(new ParticleFilterSolver(ParticleFilterSolver.DEFAULT_PARTICLES,
+                    ForkJoinPool.commonPool(), new Random(1)));
+        }));
+        return configurations;
+    }
+
+    /* Sub-Classes */
+
+    /**
+     *  \brief This class names a way of setting up the engine for a replay.
+     */
+    public static final class Configuration {
+        /* Private Variables */
+        private final String name;                  /*!< Name the configuration is reported under. */
+        private final Consumer<GPSCoreAPI> setup;   /*!< Sets up a fresh engine before its replay. */
+
+        /* Constructor(s) */
+
+        /**
+         *  \brief Constructor for the class Configuration.
+         *
+         *  \param name A String object containing the name the configuration is reported under.
+         *  \param setup Sets up a fresh GPSCoreAPI before each replay. Called once per replay from
+         *         the replay's thread, so stateful solvers must be created inside it.
+         */
+        public Configuration(String name, Consumer<GPSCoreAPI> setup) {
+            this.name = name;
+            this.setup = setup;
+        }
+
+        /* Gets */
+
+        /**
+         *  \brief Gets the name the configuration is reported under.
+         *
+         *  \param None.
+         *  \return A String object containing the name.
+         */
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    /**
+     *  \brief This class holds the pooled position errors of one configuration.
+     */
+    public static final class Result {
+        /* Private Variables */
+        private final String name;      /*!< Name of the configuration. */
+        private final float[] errors;   /*!< Distance of each fix from the ground truth in m, sorted. */
+        private final int missed;       /*!< Scans within the ground truth that gave no fix. */
+
+        /* Constructor(s) */
+
+        /**
+         *  \brief Constructor for the class Result.
+         *
+         *  \param name A String object containing the name of the configuration.
+         *  \param errors A float array containing the error of each fix in m. Sorted in place.
+         *  \param missed An integer containing the number of scans that gave no fix.
+         */
+        Result(String name, float[] errors, int missed) {
+            Arrays.sort(errors);
+            this.name = name;
+            this.errors = errors;
+            this.missed = missed;
+        }
+
+        /* Gets */
+
+        /**
+         *  \brief Gets the name of the configuration.
+         *
+         *  \param None.
+         *  \return A String object containing the name.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         *  \brief Gets the number of fixes compared with the ground truth.
+         *
+         *  \param None.
+         *  \return An integer containing the number of fixes.
+         */
+        public int getFixCount() {
+            return this.errors.length;
+        }
+
+        /**
+         *  \brief Gets the number of scans within the ground truth that gave no position.
+         *
+         *  \param None.
+         *  \return An integer containing the number of scans.
+         */
+        public int getMissedCount() {
+            return this.missed;
+        }
+
+        /**
+         *  \brief Gets a percentile of the error by the nearest rank.
+         *
+         *  \param percentile A double containing the percentile from 0 to 100. 100 gives the
+         *         largest error.
+         *  \return A double containing the error in m, or NaN if there are no fixes.
+         */
+        public double getPercentile(double percentile) {
+            if (this.errors.length == 0)
+                return Double.NaN;
+            int rank = (int)Math.ceil(percentile / 100 * this.errors.length);
+            return this.errors[Math.max(0, Math.min(this.errors.length, rank) - 1)];
+        }
+
+        /**
+         *  \brief Gets the mean error.
+         *
+         *  \param None.
+         *  \return A double containing the mean error in m, or NaN if there are no fixes.
+         */
+        public double getMean() {
+            double sum = 0;
+            for (float error : this.errors)
+                sum += error;
+            return sum / this.errors.length;
+        }
+    }
+
+    /**
+     *  \brief This class replays one walk with one configuration on a fresh engine.
+     */
+    private final class Replay extends RecursiveAction {
+        /* Private Variables */
+        private static final long serialVersionUID = 1L;    /*!< Version of the serialized form. */
+
+        private final ReplayTrace trace;            /*!< Walk to replay. */
+        private final Configuration configuration;  /*!< Configuration to replay it with. */
+        private float[] errors = new float[0];      /*!< Error of each fix in m, set when done. */
+        private int count;                          /*!< Number of errors. */
+        private int missed;                         /*!< Scans within the ground truth that gave no fix. */
+
+        /* Constructor(s) */
+
+        /**
+         *  \brief Constructor for the class Replay.
+         *
+         *  \param trace The walk to replay.
+         *  \param configuration The configuration to replay it with.
+         */
+        Replay(ReplayTrace trace, Configuration configuration) {
+            this.trace = trace;
+            this.configuration = configuration;
+        }
+
+        /* Methods */
+
+        /**
+         *  \brief Feeds every scan of the walk to the engine and compares the fix of each scan
+         *         with the ground truth at the time of the scan. A scan that gives no fix is
+         *         missed, even when the tracker could still predict a position from older fixes.
+         *
+         *  \param None.
+         *  \return None.
+         */
+        @Override
+        protected void compute() {
+            GPSCoreAPI coreAPI = new GPSCoreAPI(anchors);
+            this.configuration.setup.accept(coreAPI);
+            RangingScan scan = new RangingScan();
+            double[] position = new double[2];
+            double[] truth = new double[2];
+            float[] errors = new float[this.trace.getScanCount()];
+            for (int i = 0; i < this.trace.getScanCount(); i++) {
+                this.trace.copyScan(i, scan);
+                coreAPI.expireRouters(scan.timestampNanos, routerTtlNanos);
+                int applied = coreAPI.applyScan(scan.timestampNanos, scan.macs, scan.distMm, scan.distStdDevMm,
+                        scan.rssi, scan.count);
+                boolean solved = applied > 0 && coreAPI.solveScan(scan.timestampNanos);
+                if (!this.trace.getTruth(scan.timestampNanos, truth))
+                    continue;
+                if (solved && coreAPI.predictDevicePos(scan.timestampNanos, position))
+                    errors[this.count++] = (float)Math.hypot(position[0] - truth[0], position[1] - truth[1]);
+                else
+                    this.missed++;
+            }
+            this.errors = errors;
+        }
+    }
+}
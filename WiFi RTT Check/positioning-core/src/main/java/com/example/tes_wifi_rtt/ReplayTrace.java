@@ -0,0 +1,273 @@
+/** \file ReplayTrace.java
+ *  \brief This file contains one recorded walk loaded for offline replay: the
+ *  scans of a trace file and the ground truth waypoints of the walk.
+ *
+ *  Waypoint files are CSV lines "timestamp,x,y" with the timestamp in
+ *  nanoseconds on the clock of the trace and coordinates in meters, in time
+ *  order. Blank lines, lines starting with '#' and a header line are
+ *  skipped. Between two waypoints the walker is taken to move in a straight
+ *  line at constant speed.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ *  \brief This class holds the scans and waypoints of one walk in flat arrays.
+ *
+ *  Samples are grouped into scans by timestamp, keeping only successful
+ *  results as the ranging source does. A loaded trace is never modified, so
+ *  it can be replayed by any number of threads at once.
+ */
+public final class ReplayTrace {
+    /* Private Variables */
+    private final String name;          /*!< Name the trace is reported under. */
+    private final long[] scanTimes;     /*!< Timestamp of each scan in nanoseconds. */
+    private final int[] scanStart;      /*!< Index of the first result of each scan, plus one past the last scan. */
+    private final long[] macs;          /*!< Packed MAC Address of each result. */
+    private final int[] distMm;         /*!< Distance of each result in mm. */
+    private final int[] distStdDevMm;   /*!< Standard deviation of each distance in mm. */
+    private final int[] rssi;           /*!< Signal strength of each result. */
+    private final long[] waypointTimes; /*!< Time each waypoint was passed in nanoseconds, increasing. */
+    private final double[] waypointX;   /*!< X position of each waypoint in m. */
+    private final double[] waypointY;   /*!< Y position of each waypoint in m. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class ReplayTrace. Reads every record of the trace.
+     *
+     *  \param name A String object containing the name the trace is reported under.
+     *  \param trace The reader of the trace, positioned before the first record.
+     *  \param waypoints A Reader containing the waypoint CSV text.
+     *  \throws IOException If the waypoints could not be read.
+     *  \throws IllegalArgumentException If a waypoint line is malformed or out of time order.
+     */
+    public ReplayTrace(String name, TraceReader trace, Reader waypoints) throws IOException {
+        this.name = name;
+
+        int scanCapacity = 256;
+        int resultCapacity = 1024;
+        long[] scanTimes = new long[scanCapacity];
+        int[] scanStart = new int[scanCapacity + 1];
+        long[] macs = new long[resultCapacity];
+        int[] distMm = new int[resultCapacity];
+        int[] distStdDevMm = new int[resultCapacity];
+        int[] rssi = new int[resultCapacity];
+        int scans = 0;
+        int results = 0;
+        while (trace.next()) {
+            if (trace.getType() != TraceRecorder.SAMPLE || trace.getStatus() != 0)
+                continue;
+            if (scans == 0 || trace.getTimestamp() != scanTimes[scans - 1]) { // First result of a new scan
+                if (scans == scanCapacity) {
+                    scanCapacity *= 2;
+                    scanTimes = Arrays.copyOf(scanTimes, scanCapacity);
+                    scanStart = Arrays.copyOf(scanStart, scanCapacity + 1);
+                }
+                scanTimes[scans] = trace.getTimestamp();
+                scanStart[scans] = results;
+                scans++;
+            }
+            if (results == resultCapacity) {
+                resultCapacity *= 2;
+                macs = Arrays.copyOf(macs, resultCapacity);
+                distMm = Arrays.copyOf(distMm, resultCapacity);
+                distStdDevMm = Arrays.copyOf(distStdDevMm, resultCapacity);
+                rssi = Arrays.copyOf(rssi, resultCapacity);
+            }
+            macs[results] = trace.getMAC();
+            distMm[results] = trace.getDistMm();
+            distStdDevMm[results] = trace.getDistStdDevMm();
+            rssi[results] = trace.getRssi();
+            results++;
+        }
+        scanStart[scans] = results;
+        this.scanTimes = Arrays.copyOf(scanTimes, scans);
+        this.scanStart = Arrays.copyOf(scanStart, scans + 1);
+        this.macs = Arrays.copyOf(macs, results);
+        this.distMm = Arrays.copyOf(distMm, results);
+        this.distStdDevMm = Arrays.copyOf(distStdDevMm, results);
+        this.rssi = Arrays.copyOf(rssi, results);
+
+        int waypointCapacity = 64;
+        long[] waypointTimes = new long[waypointCapacity];
+        double[] waypointX = new double[waypointCapacity];
+        double[] waypointY = new double[waypointCapacity];
+        int count = 0;
+        BufferedReader reader = new BufferedReader(waypoints);
+        String line;
+        int lineNumber = 0;
+        boolean firstLine = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split(",");
+            boolean header = firstLine;
+            firstLine = false;
+            if (fields.length != 3)
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected timestamp,x,y");
+            if (count == waypointCapacity) {
+                waypointCapacity *= 2;
+                waypointTimes = Arrays.copyOf(waypointTimes, waypointCapacity);
+                waypointX = Arrays.copyOf(waypointX, waypointCapacity);
+                waypointY = Arrays.copyOf(waypointY, waypointCapacity);
+            }
+            try {
+                waypointTimes[count] = Long.parseLong(fields[0].trim());
+                waypointX[count] = Double.parseDouble(fields[1].trim());
+                waypointY[count] = Double.parseDouble(fields[2].trim());
+            }
+            catch (NumberFormatException e) {
+                if (header)
+                    continue; // Header line
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+            if (count > 0 && waypointTimes[count] <= waypointTimes[count - 1])
+                throw new IllegalArgumentException("Line " + lineNumber + ": waypoints must be in time order");
+            count++;
+        }
+        this.waypointTimes = Arrays.copyOf(waypointTimes, count);
+        this.waypointX = Arrays.copyOf(waypointX, count);
+        this.waypointY = Arrays.copyOf(waypointY, count);
+    }
+
+    /**
+     *  \brief Constructor for the class ReplayTrace. Takes ownership of already grouped scans,
+     *         e.g. from RttSimulator.
+     *
+     *  \param name A String object containing the name the trace is reported under.
+     *  \param scanTimes A long array containing the timestamp of each scan in nanoseconds.
+     *  \param scanStart An integer array containing the index of the first result of each scan,
+     *         plus one past the last scan.
+     *  \param macs A long array containing the packed MAC Address of each result.
+     *  \param distMm An integer array containing the distance of each result in mm.
+     *  \param distStdDevMm An integer array containing the standard deviation of each distance in mm.
+     *  \param rssi An integer array containing the signal strength of each result.
+     *  \param waypointTimes A long array containing the time of each waypoint in nanoseconds, increasing.
+     *  \param waypointX A double array containing the X position of each waypoint in m.
+     *  \param waypointY A double array containing the Y position of each waypoint in m.
+     */
+    ReplayTrace(String name, long[] scanTimes, int[] scanStart, long[] macs, int[] distMm, int[] distStdDevMm,
+                int[] rssi, long[] waypointTimes, double[] waypointX, double[] waypointY) {
+        this.name = name;
+        this.scanTimes = scanTimes;
+        this.scanStart = scanStart;
+        this.macs = macs;
+        this.distMm = distMm;
+        this.distStdDevMm = distStdDevMm;
+        this.rssi = rssi;
+        this.waypointTimes = waypointTimes;
+        this.waypointX = waypointX;
+        this.waypointY = waypointY;
+    }
+
+    /**
+     *  \brief Loads a trace file and its waypoint file.
+     *
+     *  \param trace The trace file written by TraceRecorder.
+     *  \param waypoints The waypoint CSV file.
+     *  \return The loaded trace, named after the trace file.
+     *  \throws IOException If a file could not be read.
+     *  \throws IllegalArgumentException If a file is malformed.
+     */
+    public static ReplayTrace load(File trace, File waypoints) throws IOException {
+        try (Reader in = new FileReader(waypoints)) {
+            return new ReplayTrace(trace.getName(), TraceReader.open(trace), in);
+        }
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the name the trace is reported under.
+     *
+     *  \param None.
+     *  \return A String object containing the name.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     *  \brief Gets the number of scans. Scans read from a trace file have at least one result.
+     *
+     *  \param None.
+     *  \return An integer containing the number of scans.
+     */
+    public int getScanCount() {
+        return this.scanTimes.length;
+    }
+
+    /**
+     *  \brief Gets the number of ground truth waypoints.
+     *
+     *  \param None.
+     *  \return An integer containing the number of waypoints.
+     */
+    public int getWaypointCount() {
+        return this.waypointTimes.length;
+    }
+
+    /**
+     *  \brief Gets the time of a scan.
+     *
+     *  \param scan An integer containing the index of the scan.
+     *  \return A long containing the timestamp in nanoseconds.
+     */
+    public long getScanTime(int scan) {
+        return this.scanTimes[scan];
+    }
+
+    /**
+     *  \brief Gets the ground truth position of the walker at a time, interpolated between the
+     *         waypoints either side of it.
+     *
+     *  \param timestampNanos A long containing the time in nanoseconds.
+     *  \param position A double array of at least two elements. On success index 0 is set to
+     *         the X position and index 1 to the Y position.
+     *  \return Returns true if the time is within the waypoints, else returns false and leaves
+     *          position unchanged.
+     */
+    public boolean getTruth(long timestampNanos, double[] position) {
+        int count = this.waypointTimes.length;
+        if (count == 0 || timestampNanos < this.waypointTimes[0] || timestampNanos > this.waypointTimes[count - 1])
+            return false;
+        int index = Arrays.binarySearch(this.waypointTimes, timestampNanos);
+        if (index >= 0) {
+            position[0] = this.waypointX[index];
+            position[1] = this.waypointY[index];
+            return true;
+        }
+        int next = -index - 1; // Between next - 1 and next
+        double t = (double)(timestampNanos - this.waypointTimes[next - 1])
+                / (this.waypointTimes[next] - this.waypointTimes[next - 1]);
+        position[0] = this.waypointX[next - 1] + t * (this.waypointX[next] - this.waypointX[next - 1]);
+        position[1] = this.waypointY[next - 1] + t * (this.waypointY[next] - this.waypointY[next - 1]);
+        return true;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Copies the results of a scan into a RangingScan.
+     *
+     *  \param scan An integer containing the index of the scan.
+     *  \param out The scan to fill. Its sequence number and epoch are left unchanged.
+     *  \return None.
+     */
+    public void copyScan(int scan, RangingScan out) {
+        out.reset(this.scanTimes[scan]);
+        for (int i = this.scanStart[scan]; i < this.scanStart[scan + 1]; i++)
+            out.add(this.macs[i], this.distMm[i], this.distStdDevMm[i], this.rssi[i]);
+    }
+}
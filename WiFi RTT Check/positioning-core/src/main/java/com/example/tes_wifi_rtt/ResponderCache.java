@@ -0,0 +1,291 @@
+/** \file ResponderCache.java
+ *  \brief This file contains the cache of access points found by Wi-Fi scans.
+ *
+ *  A full Wi-Fi scan is slow and the platform throttles how often it may run,
+ *  while the set of RTT responders on a floor rarely changes. Ranging uses the
+ *  responders in this cache, and the cache is only refreshed from a Wi-Fi scan
+ *  on a slow cadence, or sooner when ranging failures suggest responders have
+ *  come and gone.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *  \brief This class holds recently seen access points keyed by BSSID, with
+ *  LRU and TTL eviction.
+ *
+ *  Each entry records whether the access point is an 802.11mc responder, its
+ *  channel frequency and when it was last seen, along with a platform handle
+ *  such as a ScanResult that a ranging request can be built from. Safe to use
+ *  from any thread.
+ *
+ *  \param <T> Type of the platform handle stored for each access point.
+ */
+public final class ResponderCache<T> {
+    /* Public Variables */
+    public static final int DEFAULT_CAPACITY = 128;                 /*!< Default number of access points kept. */
+    public static final long DEFAULT_TTL_MS = 120000;               /*!< Default time an access point is kept after it was last seen. */
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 30000;   /*!< Default time between Wi-Fi scans. */
+    public static final int MAX_CONSECUTIVE_FAILURES = 3;           /*!< Failed rangings in a row before a responder is dropped. */
+
+    /* Private Variables */
+    private final int capacity;                     /*!< Largest number of access points kept. */
+    private final long ttlNanos;                    /*!< Time an access point is kept after it was last seen in nanoseconds. */
+    private final long refreshIntervalNanos;        /*!< Time between Wi-Fi scans in nanoseconds. */
+    private final LinkedHashMap<Long, Entry<T>> entries; /*!< Access points by packed BSSID, least recently used first. */
+    private boolean refreshed;                      /*!< True once the cache has been refreshed. */
+    private boolean refreshRequested;               /*!< True if ranging failures asked for an early refresh. */
+    private long lastRefreshNanos;                  /*!< Time of the last refresh in nanoseconds. */
+    private long hitCount;                          /*!< Number of lookups that found a cached access point. */
+    private long missCount;                         /*!< Number of lookups that found nothing. */
+    private long evictionCount;                     /*!< Number of access points evicted by LRU, TTL or failures. */
+    private long refreshCount;                      /*!< Number of refreshes from a Wi-Fi scan. */
+
+    /* Sub-Classes */
+    /**
+     *  \brief This class contains what is known about one access point.
+     */
+    private static final class Entry<T> {
+        T handle;                   /*!< Platform handle the access point was found with. */
+        boolean responder;          /*!< True if the access point supports 802.11mc ranging. */
+        int frequencyMhz;           /*!< Primary channel frequency in MHz. */
+        long lastSeenNanos;         /*!< Time the access point was last seen in nanoseconds. */
+        int failures;               /*!< Number of failed rangings in a row. */
+    }
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Uses the default capacity, TTL and refresh interval.
+     *
+     *  \param None.
+     */
+    public ResponderCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MS, DEFAULT_REFRESH_INTERVAL_MS);
+    }
+
+    /**
+     *  \brief Constructor for the class ResponderCache.
+     *
+     *  \param capacity An integer containing the largest number of access points kept.
+     *  \param ttlMs A long containing the time an access point is kept after it was last seen in ms.
+     *  \param refreshIntervalMs A long containing the time between Wi-Fi scans in ms.
+     */
+    public ResponderCache(int capacity, long ttlMs, long refreshIntervalMs) {
+        this.capacity = Math.max(1, capacity);
+        this.ttlNanos = ttlMs * 1000000L;
+        this.refreshIntervalNanos = refreshIntervalMs * 1000000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.refreshed = false;
+        this.refreshRequested = false;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of cached access points, responders or not.
+     *
+     *  \param None.
+     *  \return An integer containing the number of access points.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     *  \brief Gets the platform handle of an access point and marks it as recently used.
+     *
+     *  \param mac A long containing the packed BSSID.
+     *  \return The handle, or null if the access point is not cached.
+     */
+    public synchronized T get(long mac) {
+        Entry<T> entry = this.entries.get(mac);
+        if (entry == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        return entry.handle;
+    }
+
+    /**
+     *  \brief Gets the channel frequency of an access point.
+     *
+     *  \param mac A long containing the packed BSSID.
+     *  \return An integer containing the frequency in MHz, or 0 if the access point is not cached.
+     */
+    public synchronized int getFrequency(long mac) {
+        Entry<T> entry = this.entries.get(mac);
+        return entry == null ? 0 : entry.frequencyMhz;
+    }
+
+    /**
+     *  \brief Copies the BSSIDs of every cached 802.11mc responder, most recently used last.
+     *
+     *  \param out A long array with room for at least size() entries.
+     *  \return An integer containing the number of BSSIDs written.
+     */
+    public synchronized int getResponders(long[] out) {
+        int count = 0;
+        for (Map.Entry<Long, Entry<T>> e : this.entries.entrySet()) {
+            if (e.getValue().responder)
+                out[count++] = e.getKey();
+        }
+        return count;
+    }
+
+    /**
+     *  \brief Gets whether the cache should be refreshed from a Wi-Fi scan, because it has never
+     *         been refreshed, the refresh interval has passed, it holds no responders or ranging
+     *         failures asked for an early refresh.
+     *
+     *  \param nowNanos A long containing the current time in nanoseconds.
+     *  \return Returns true if a refresh is due.
+     */
+    public synchronized boolean needsRefresh(long nowNanos) {
+        if (!this.refreshed || this.refreshRequested)
+            return true;
+        if (nowNanos - this.lastRefreshNanos >= this.refreshIntervalNanos)
+            return true;
+        for (Entry<T> entry : this.entries.values()) {
+            if (entry.responder)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     *  \brief Gets the number of lookups that found a cached access point.
+     *
+     *  \param None.
+     *  \return A long containing the hit count.
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     *  \brief Gets the number of lookups that found nothing.
+     *
+     *  \param None.
+     *  \return A long containing the miss count.
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     *  \brief Gets the number of access points evicted by LRU, TTL or ranging failures.
+     *
+     *  \param None.
+     *  \return A long containing the eviction count.
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     *  \brief Gets the number of refreshes from a Wi-Fi scan.
+     *
+     *  \param None.
+     *  \return A long containing the refresh count.
+     */
+    public synchronized long getRefreshCount() {
+        return this.refreshCount;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Marks the start of a refresh from a Wi-Fi scan. Call put for each scan result
+     *         afterwards.
+     *
+     *  \param nowNanos A long containing the current time in nanoseconds.
+     *  \return None.
+     */
+    public synchronized void beginRefresh(long nowNanos) {
+        this.refreshed = true;
+        this.refreshRequested = false;
+        this.lastRefreshNanos = nowNanos;
+        this.refreshCount++;
+    }
+
+    /**
+     *  \brief Adds or updates an access point seen by a Wi-Fi scan. Evicts the least recently used
+     *         access point if the cache is full.
+     *
+     *  \param mac A long containing the packed BSSID.
+     *  \param handle The platform handle of the access point.
+     *  \param responder A boolean that is true if the access point supports 802.11mc ranging.
+     *  \param frequencyMhz An integer containing the primary channel frequency in MHz.
+     *  \param lastSeenNanos A long containing the time the access point was seen in nanoseconds.
+     *  \return None.
+     */
+    public synchronized void put(long mac, T handle, boolean responder, int frequencyMhz, long lastSeenNanos) {
+        Entry<T> entry = this.entries.get(mac);
+        if (entry == null) {
+            if (this.entries.size() >= this.capacity) {
+                Iterator<Entry<T>> eldest = this.entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+                this.evictionCount++;
+            }
+            entry = new Entry<>();
+            this.entries.put(mac, entry);
+        }
+        entry.handle = handle;
+        entry.responder = responder;
+        entry.frequencyMhz = frequencyMhz;
+        entry.lastSeenNanos = Math.max(entry.lastSeenNanos, lastSeenNanos);
+        entry.failures = 0;
+    }
+
+    /**
+     *  \brief Removes every access point not seen within the TTL.
+     *
+     *  \param nowNanos A long containing the current time in nanoseconds.
+     *  \return An integer containing the number of access points removed.
+     */
+    public synchronized int evictExpired(long nowNanos) {
+        int removed = 0;
+        Iterator<Entry<T>> it = this.entries.values().iterator();
+        while (it.hasNext()) {
+            if (nowNanos - it.next().lastSeenNanos > this.ttlNanos) {
+                it.remove();
+                removed++;
+            }
+        }
+        this.evictionCount += removed;
+        return removed;
+    }
+
+    /**
+     *  \brief Records the outcome of ranging against a responder. A successful range counts as
+     *         seeing the responder. A responder that fails MAX_CONSECUTIVE_FAILURES times in a row
+     *         is removed and an early refresh is requested, since it has probably moved or gone.
+     *
+     *  \param mac A long containing the packed BSSID.
+     *  \param success A boolean that is true if a range was measured.
+     *  \param nowNanos A long containing the current time in nanoseconds.
+     *  \return None.
+     */
+    public synchronized void onRangingResult(long mac, boolean success, long nowNanos) {
+        Entry<T> entry = this.entries.get(mac);
+        if (entry == null)
+            return;
+        if (success) {
+            entry.failures = 0;
+            entry.lastSeenNanos = Math.max(entry.lastSeenNanos, nowNanos);
+        }
+        else if (++entry.failures >= MAX_CONSECUTIVE_FAILURES) {
+            this.entries.remove(mac);
+            this.evictionCount++;
+            this.refreshRequested = true;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/** \file RouterQuality.java
+ *  \brief This file contains the rolling ranging statistics of each router and
+ *  the quarantine of routers that keep misbehaving.
+ *
+ *  For every router the following are smoothed over recent measurements:
+ *  - The success rate of ranging attempts.
+ *  - The range jitter, half the mean squared change between consecutive
+ *    ranges, so a walking device adds little to it.
+ *  - The innovation, the measured range minus the distance from the current
+ *    fix to the router, as a mean and as a score normalised by the expected
+ *    spread of the two.
+ *  - A multipath score, the share of ranges that were too long for the fix
+ *    or came from a burst with a large spread. Blocked and reflected paths
+ *    only ever make a range longer.
+ *  A router is quarantined when, after MIN_SAMPLES attempts or judged ranges,
+ *  its success rate is too low, its innovation score too high or its
+ *  multipath score too high. A quarantined router is neither ranged nor used
+ *  to solve until the quarantine ends, and each further quarantine of the
+ *  same router lasts twice as long, up to MAX_QUARANTINE_MS. At most a third
+ *  of the routers are held at once, so a wrong fix cannot talk the solver out
+ *  of the routers it needs to recover.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.HashMap;
+
+/**
+ *  \brief This class keeps the quality statistics of every router by packed
+ *  MAC Address. Safe to use from any thread.
+ */
+public final class RouterQuality {
+    /* Public Variables */
+    public static final int MIN_SAMPLES = 8;                    /*!< Attempts, or judged ranges, before a router can be quarantined. */
+    public static final double MIN_SUCCESS_RATE = 0.3;         /*!< Success rate below which a router is quarantined. */
+    public static final double MAX_INNOVATION_SCORE = 9;       /*!< Mean squared normalised innovation above which a router is quarantined, 3 sigma. */
+    public static final double MAX_MULTIPATH_SCORE = 0.5;      /*!< Multipath score above which a router is quarantined. */
+    public static final double MAX_FIX_VARIANCE = 4;           /*!< Fixes with a larger variance in m^2 are not used to judge ranges. */
+    public static final long DEFAULT_QUARANTINE_MS = 60000;     /*!< Default length of a first quarantine. */
+    public static final long MAX_QUARANTINE_MS = 600000;        /*!< Longest quarantine. */
+
+    /* Private Variables */
+    private static final double SMOOTHING = 0.1;                /*!< Weight of the newest sample in every statistic. */
+    private static final double NLOS_SIGMAS = 3;                /*!< Innovations longer than this many standard deviations count as multipath. */
+    private static final double MULTIPATH_STD_DEV = 1.5;        /*!< Burst standard deviation in m above which a range counts as multipath. */
+    private static final double MIN_STD_DEV = 0.3;              /*!< Smallest range standard deviation in m trusted when normalising. */
+    private static final int MAX_QUARANTINED_DIVISOR = 3;       /*!< At most one in this many routers is quarantined at once. */
+
+    private final long quarantineNanos;             /*!< Length of a first quarantine in nanoseconds. */
+    private final HashMap<Long, Stats> routers;     /*!< Statistics of each router, by packed MAC Address. */
+    private long quarantineCount;                   /*!< Number of quarantines started. */
+
+    /* Sub-Classes */
+    /**
+     *  \brief This class contains the statistics of one router since it was last released.
+     */
+    private static final class Stats {
+        int attempts;               /*!< Ranging attempts. */
+        double successRate;         /*!< Smoothed fraction of attempts that measured a range. */
+        int ranges;                 /*!< Ranges measured. */
+        double lastRange;           /*!< Latest range in m. */
+        double jitter;              /*!< Smoothed half squared change between consecutive ranges in m^2. */
+        int judged;                 /*!< Ranges compared with a fix. */
+        double innovationMean;      /*!< Smoothed innovation in m. */
+        double innovationScore;     /*!< Smoothed squared normalised innovation. */
+        double multipathScore;      /*!< Smoothed fraction of ranges that looked like multipath. */
+        long quarantinedUntil;      /*!< Time the current quarantine ends in ns, or 0. */
+        int offences;               /*!< Number of times the router was quarantined. */
+
+        Stats() {
+            reset();
+        }
+
+        void reset() {
+            this.attempts = 0;
+            this.successRate = 1;
+            this.ranges = 0;
+            this.lastRange = 0;
+            this.jitter = 0;
+            this.judged = 0;
+            this.innovationMean = 0;
+            this.innovationScore = 0;
+            this.multipathScore = 0;
+        }
+    }
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. A first quarantine lasts DEFAULT_QUARANTINE_MS.
+     *
+     *  \param None.
+     */
+    public RouterQuality() {
+        this(DEFAULT_QUARANTINE_MS);
+    }
+
+    /**
+     *  \brief Constructor for the class RouterQuality.
+     *
+     *  \param quarantineMs A long containing the length of a first quarantine in ms.
+     */
+    public RouterQuality(long quarantineMs) {
+        this.quarantineNanos = quarantineMs * 1000000L;
+        this.routers = new HashMap<>();
+        this.quarantineCount = 0;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets whether a router is quarantined.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \param nowNanos A long containing the current time in ns, on the clock of the scans.
+     *  \return Returns true if the router must not be ranged or used to solve.
+     */
+    public synchronized boolean isQuarantined(long mac, long nowNanos) {
+        Stats stats = this.routers.get(mac);
+        return stats != null && stats.quarantinedUntil > nowNanos;
+    }
+
+    /**
+     *  \brief Gets the smoothed success rate of ranging a router.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return A double from 0 to 1, 1 for a router never attempted.
+     */
+    public synchronized double getSuccessRate(long mac) {
+        Stats stats = this.routers.get(mac);
+        return stats == null ? 1 : stats.successRate;
+    }
+
+    /**
+     *  \brief Gets the range jitter of a router, half the smoothed squared change between
+     *         consecutive ranges.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return A double containing the jitter in m^2, 0 before two ranges.
+     */
+    public synchronized double getRangeVariance(long mac) {
+        Stats stats = this.routers.get(mac);
+        return stats == null ? 0 : stats.jitter;
+    }
+
+    /**
+     *  \brief Gets the smoothed innovation of a router, positive when its ranges are longer
+     *         than the fix says they should be.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return A double containing the innovation in m, 0 before a range was judged.
+     */
+    public synchronized double getInnovationMean(long mac) {
+        Stats stats = this.routers.get(mac);
+        return stats == null ? 0 : stats.innovationMean;
+    }
+
+    /**
+     *  \brief Gets the smoothed squared innovation of a router, normalised by the variance of
+     *         the range and the fix. Around 1 for a well behaved router.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return A double containing the score, 0 before a range was judged.
+     */
+    public synchronized double getInnovationScore(long mac) {
+        Stats stats = this.routers.get(mac);
+        return stats == null ? 0 : stats.innovationScore;
+    }
+
+    /**
+     *  \brief Gets the multipath score of a router, the smoothed fraction of its ranges that
+     *         were too long for the fix or came from a burst with a large spread.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return A double from 0 to 1.
+     */
+    public synchronized double getMultipathScore(long mac) {
+        Stats stats = this.routers.get(mac);
+        return stats == null ? 0 : stats.multipathScore;
+    }
+
+    /**
+     *  \brief Gets the number of quarantines started.
+     *
+     *  \param None.
+     *  \return A long containing the number of quarantines.
+     */
+    public synchronized long getQuarantineCount() {
+        return this.quarantineCount;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Records the outcome of one ranging attempt.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \param success A boolean that is true if the attempt measured a range.
+     *  \param nowNanos A long containing the current time in ns, on the clock of the scans.
+     *  \return None.
+     */
+    public synchronized void onRangingResult(long mac, boolean success, long nowNanos) {
+        Stats stats = getStats(mac);
+        if (stats.quarantinedUntil > nowNanos) // Still in flight when the quarantine started
+            return;
+        stats.attempts++;
+        stats.successRate += SMOOTHING * ((success ? 1 : 0) - stats.successRate);
+        evaluate(stats, nowNanos);
+    }
+
+    /**
+     *  \brief Records a measured range and judges it against the current fix.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \param range A double containing the measured range in m.
+     *  \param stdDev A double containing the standard deviation of the ranging burst in m.
+     *  \param innovation A double containing the range minus the distance from the fix to the
+     *         router in m, or NaN if there is no fix or the router position is unknown.
+     *  \param fixVariance A double containing the variance of the fix in m^2. Ranges are only
+     *         judged against fixes up to MAX_FIX_VARIANCE.
+     *  \param nowNanos A long containing the time of the range in ns.
+     *  \return None.
+     */
+    public synchronized void onRange(long mac, double range, double stdDev, double innovation, double fixVariance, long nowNanos) {
+        Stats stats = getStats(mac);
+        if (stats.quarantinedUntil > nowNanos)
+            return;
+        if (stats.ranges > 0) {
+            double change = range - stats.lastRange;
+            stats.jitter += SMOOTHING * (change * change / 2 - stats.jitter);
+        }
+        stats.ranges++;
+        stats.lastRange = range;
+
+        if (Double.isNaN(innovation) || !(fixVariance <= MAX_FIX_VARIANCE))
+            return;
+        double sigma = Math.max(MIN_STD_DEV, stdDev);
+        double variance = sigma * sigma + fixVariance;
+        boolean multipath = innovation > NLOS_SIGMAS * Math.sqrt(variance) || stdDev > MULTIPATH_STD_DEV;
+        stats.judged++;
+        stats.innovationMean += SMOOTHING * (innovation - stats.innovationMean);
+        stats.innovationScore += SMOOTHING * (innovation * innovation / variance - stats.innovationScore);
+        stats.multipathScore += SMOOTHING * ((multipath ? 1 : 0) - stats.multipathScore);
+        evaluate(stats, nowNanos);
+    }
+
+    /**
+     *  \brief Removes the quarantined routers from a list, keeping the order of the rest.
+     *
+     *  \param macs A long array containing the packed MAC Addresses, compacted in place.
+     *  \param count An integer containing the number of MAC Addresses to read from the array.
+     *  \param nowNanos A long containing the current time in ns, on the clock of the scans.
+     *  \return An integer containing the number of MAC Addresses left.
+     */
+    public synchronized int filter(long[] macs, int count, long nowNanos) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            Stats stats = this.routers.get(macs[i]);
+            if (stats == null || stats.quarantinedUntil <= nowNanos)
+                macs[kept++] = macs[i];
+        }
+        return kept;
+    }
+
+    /**
+     *  \brief Forgets every router, ending all quarantines.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public synchronized void clear() {
+        this.routers.clear();
+    }
+
+    /**
+     *  \brief Gets the statistics of a router, creating them if the router is new.
+     *
+     *  \param mac A long containing the packed MAC Address of the router.
+     *  \return The statistics of the router.
+     */
+    private Stats getStats(long mac) {
+        Stats stats = this.routers.get(mac);
+        if (stats == null) {
+            stats = new Stats();
+            this.routers.put(mac, stats);
+        }
+        return stats;
+    }
+
+    /**
+     *  \brief Quarantines a router whose statistics have crossed a limit, unless too many
+     *         routers are quarantined already. The statistics start over, so a released router
+     *         is judged on its behaviour after the quarantine only.
+     *
+     *  \param stats The statistics of the router.
+     *  \param nowNanos A long containing the current time in ns.
+     *  \return None.
+     */
+    private void evaluate(Stats stats, long nowNanos) {
+        boolean failing = stats.attempts >= MIN_SAMPLES && stats.successRate < MIN_SUCCESS_RATE;
+        boolean inconsistent = stats.judged >= MIN_SAMPLES
+                && (stats.innovationScore > MAX_INNOVATION_SCORE || stats.multipathScore > MAX_MULTIPATH_SCORE);
+        if (!failing && !inconsistent)
+            return;
+        int quarantined = 0;
+        for (Stats other : this.routers.values()) {
+            if (other.quarantinedUntil > nowNanos)
+                quarantined++;
+        }
+        if (quarantined >= this.routers.size() / MAX_QUARANTINED_DIVISOR)
+            return;
+        long length = Math.min(MAX_QUARANTINE_MS * 1000000L, this.quarantineNanos << Math.min(stats.offences, 16));
+        stats.quarantinedUntil = nowNanos + length;
+        stats.offences++;
+        stats.reset();
+        this.quarantineCount++;
+    }
+}
@@ -0,0 +1,362 @@
+/** \file RouterTable.java
+ *  \brief This file contains the table of routers a device is ranging against.
+ *
+ *  Routers are keyed by their packed MAC address in an open addressing hash
+ *  map made of primitive arrays. Each router lives in a reusable slot and the
+ *  slots are kept ordered by RSSI as they are updated, so updating a router
+ *  that is already in the table does not allocate.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+
+/**
+ *  \brief This class contains the routers known to a device, indexed by MAC
+ *  address and ranked by signal strength.
+ *
+ *  The rank of a router is its position in the list sorted by RSSI, strongest
+ *  first. Rank 0 is always the strongest router. When a router's RSSI changes it
+ *  is moved up or down the ranking by swapping with its neighbours, which costs
+ *  only the distance it moves rather than a full sort.
+ */
+final class RouterTable {
+    /* Private Variables */
+    private static final long EMPTY = -1L;      /*!< Marks an unused key in the hash map. Never a valid 48-bit MAC address. */
+    private static final int DEFAULT_CAPACITY = 64; /*!< Default number of router slots. Covers a typical floor of RTT responders. */
+
+    private long[] keys;                        /*!< Hash map keys. Packed MAC addresses, or EMPTY. */
+    private int[] values;                       /*!< Hash map values. Slot index of the router for the key at the same index. */
+    private int mask;                           /*!< Hash map capacity minus one. The capacity is always a power of two. */
+
+    private GPSCoreAPI.Router[] slots;          /*!< Router objects. Reused when a router is removed and another is added. */
+    private int[] order;                        /*!< Slot indexes sorted by RSSI, strongest first. Only the first size entries are valid. */
+    private int[] rank;                         /*!< Position of each slot in the order array. */
+    private int[] freeSlots;                    /*!< Stack of slot indexes not currently holding a router. */
+    private int freeCount;                      /*!< Number of entries on the free slot stack. */
+    private int size;                           /*!< Number of routers in the table. */
+    private int epoch;                          /*!< Number of times the table has been cleared. Routers from an older epoch are gone. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Creates a table with the default capacity.
+     *
+     *  \param None.
+     */
+    RouterTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     *  \brief Constructor for the class RouterTable. Creates a table able to hold the given
+     *         number of routers before it has to grow.
+     *
+     *  \param capacity An integer containing the number of routers to reserve space for.
+     */
+    RouterTable(int capacity) {
+        if (capacity < 1)
+            capacity = 1;
+        this.slots = new GPSCoreAPI.Router[capacity];
+        this.order = new int[capacity];
+        this.rank = new int[capacity];
+        this.freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++)
+            this.freeSlots[i] = capacity - 1 - i;
+        this.freeCount = capacity;
+        this.size = 0;
+        allocateMap(capacity);
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of routers in the table.
+     *
+     *  \param None.
+     *  \return An integer containing the number of routers.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     *  \brief Gets the number of times the table has been cleared.
+     *
+     *  \param None.
+     *  \return An integer containing the epoch of the table.
+     */
+    int getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     *  \brief Gets the router at the given rank. Rank 0 is the router with the strongest RSSI.
+     *
+     *  \param rank An integer containing the rank of the router.
+     *  \return The router at that rank, or null if the rank is out of range.
+     */
+    GPSCoreAPI.Router getByRank(int rank) {
+        if (rank < 0 || rank >= this.size)
+            return null;
+        return this.slots[this.order[rank]];
+    }
+
+    /**
+     *  \brief Gets the router with the given MAC address.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return The router with that MAC address, or null if it is not in the table.
+     */
+    GPSCoreAPI.Router get(long mac) {
+        int slot = findSlot(mac);
+        return slot < 0 ? null : this.slots[slot];
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Adds a router with the given MAC address to the table. The router is ranked last
+     *         until its RSSI is set with updateRssi. If the MAC address is already in the table
+     *         the existing router is returned. Only allocates when a slot is used for the first
+     *         time or the table has to grow.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return The router stored for that MAC address.
+     */
+    GPSCoreAPI.Router add(long mac) {
+        int index = mix(mac) & this.mask;
+        while (this.keys[index] != EMPTY) {
+            if (this.keys[index] == mac)
+                return this.slots[this.values[index]];
+            index = (index + 1) & this.mask;
+        }
+
+        if (this.freeCount == 0) {
+            grow();
+            // Map was rebuilt so the probe position has to be found again
+            index = mix(mac) & this.mask;
+            while (this.keys[index] != EMPTY)
+                index = (index + 1) & this.mask;
+        }
+
+        int slot = this.freeSlots[--this.freeCount];
+        GPSCoreAPI.Router router = this.slots[slot];
+        if (router == null) {
+            router = new GPSCoreAPI.Router();
+            this.slots[slot] = router;
+        }
+        router.reset(mac);
+
+        this.keys[index] = mac;
+        this.values[index] = slot;
+        this.order[this.size] = slot;
+        this.rank[slot] = this.size;
+        this.size++;
+        return router;
+    }
+
+    /**
+     *  \brief Sets the RSSI of a router in the table and moves it to its new rank.
+     *
+     *  \param mac A long containing the packed MAC address of the router.
+     *  \param rssi An integer containing the new signal strength.
+     *  \return None.
+     */
+    void updateRssi(long mac, int rssi) {
+        int slot = findSlot(mac);
+        if (slot < 0)
+            return;
+
+        this.slots[slot].setRSSI(rssi);
+        int position = this.rank[slot];
+        // Move towards rank 0 while stronger than the router above
+        while (position > 0 && this.slots[this.order[position - 1]].getRSSI() < rssi) {
+            swap(position, position - 1);
+            position--;
+        }
+        // Move away from rank 0 while weaker than the router below
+        while (position < this.size - 1 && this.slots[this.order[position + 1]].getRSSI() > rssi) {
+            swap(position, position + 1);
+            position++;
+        }
+    }
+
+    /**
+     *  \brief Re-ranks every router by RSSI after several routers were changed directly with
+     *         Router.setRSSI. Uses an insertion sort, which is linear when only a few routers
+     *         moved and keeps routers with equal RSSI in their previous order.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    void sortByRssi() {
+        for (int i = 1; i < this.size; i++) {
+            int slot = this.order[i];
+            int rssi = this.slots[slot].getRSSI();
+            int position = i;
+            while (position > 0 && this.slots[this.order[position - 1]].getRSSI() < rssi) {
+                this.order[position] = this.order[position - 1];
+                this.rank[this.order[position]] = position;
+                position--;
+            }
+            this.order[position] = slot;
+            this.rank[slot] = position;
+        }
+    }
+
+    /**
+     *  \brief Removes the router with the given MAC address. Its slot is kept for reuse.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return Returns true if a router was removed.
+     */
+    boolean remove(long mac) {
+        int index = mix(mac) & this.mask;
+        while (this.keys[index] != mac) {
+            if (this.keys[index] == EMPTY)
+                return false;
+            index = (index + 1) & this.mask;
+        }
+        int slot = this.values[index];
+        deleteKeyAt(index);
+
+        // Close the gap in the ranking, keeping the remaining order
+        for (int i = this.rank[slot]; i < this.size - 1; i++) {
+            this.order[i] = this.order[i + 1];
+            this.rank[this.order[i]] = i;
+        }
+        this.size--;
+        this.freeSlots[this.freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     *  \brief Removes every router from the table and starts a new epoch. Slots are kept for
+     *         reuse.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    void clear() {
+        this.epoch++;
+        Arrays.fill(this.keys, EMPTY);
+        for (int i = 0; i < this.size; i++)
+            this.freeSlots[this.freeCount++] = this.order[i];
+        this.size = 0;
+    }
+
+    /**
+     *  \brief Finds the slot holding the router with the given MAC address.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return The slot index, or -1 if the MAC address is not in the table.
+     */
+    private int findSlot(long mac) {
+        if (mac == EMPTY)
+            return -1;
+        int index = mix(mac) & this.mask;
+        while (this.keys[index] != EMPTY) {
+            if (this.keys[index] == mac)
+                return this.values[index];
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     *  \brief Removes the key at the given map index and shifts back any keys that probed past
+     *         it, so lookups never need tombstones.
+     *
+     *  \param index An integer containing the map index to clear.
+     *  \return None.
+     */
+    private void deleteKeyAt(int index) {
+        int hole = index;
+        int next = (hole + 1) & this.mask;
+        while (this.keys[next] != EMPTY) {
+            int home = mix(this.keys[next]) & this.mask;
+            // Move the key into the hole if the hole lies between its home and its current index
+            if (((next - home) & this.mask) >= ((next - hole) & this.mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                hole = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        this.keys[hole] = EMPTY;
+    }
+
+    /**
+     *  \brief Swaps the routers at two ranks.
+     *
+     *  \param a An integer containing the first rank.
+     *  \param b An integer containing the second rank.
+     *  \return None.
+     */
+    private void swap(int a, int b) {
+        int slotA = this.order[a];
+        int slotB = this.order[b];
+        this.order[a] = slotB;
+        this.order[b] = slotA;
+        this.rank[slotA] = b;
+        this.rank[slotB] = a;
+    }
+
+    /**
+     *  \brief Doubles the number of router slots and rebuilds the hash map.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    private void grow() {
+        int oldCapacity = this.slots.length;
+        int newCapacity = oldCapacity * 2;
+        this.slots = Arrays.copyOf(this.slots, newCapacity);
+        this.order = Arrays.copyOf(this.order, newCapacity);
+        this.rank = Arrays.copyOf(this.rank, newCapacity);
+        this.freeSlots = Arrays.copyOf(this.freeSlots, newCapacity);
+        for (int i = newCapacity - 1; i >= oldCapacity; i--)
+            this.freeSlots[this.freeCount++] = i;
+
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        allocateMap(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = mix(oldKeys[i]) & this.mask;
+                while (this.keys[index] != EMPTY)
+                    index = (index + 1) & this.mask;
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     *  \brief Allocates an empty hash map sized so it is never more than half full.
+     *
+     *  \param capacity An integer containing the number of router slots.
+     *  \return None.
+     */
+    private void allocateMap(int capacity) {
+        int mapSize = Integer.highestOneBit(capacity) << 2;
+        this.keys = new long[mapSize];
+        this.values = new int[mapSize];
+        this.mask = mapSize - 1;
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     *  \brief Spreads the bits of a MAC address so neighbouring addresses from the same vendor do
+     *         not cluster in the hash map.
+     *
+     *  \param mac A long containing the packed MAC address.
+     *  \return An integer hash of the address.
+     */
+    private static int mix(long mac) {
+        long h = mac * 0x9E3779B97F4A7C15L;
+        return (int)(h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,322 @@
+/** \file RttSimulator.java
+ *  \brief This file contains the simulator that generates synthetic ranging
+ *  scans of a device walking past a set of anchors.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ *  \brief This class generates the scans a device would measure while walking
+ *  a trajectory, with range noise, non-line-of-sight bias, dropped results and
+ *  routers going offline.
+ *
+ *  The output of a seed is the same on every run and every JVM. Scans are
+ *  written into a reused RangingScan, so generating does not allocate and
+ *  reaches millions of results per second. The trajectory is a list of
+ *  waypoints walked in straight lines, and the device is taken to be on the
+ *  floor of every anchor. Not thread safe.
+ */
+public final class RttSimulator {
+    /* Public Variables */
+    public static final double DEFAULT_NOISE = 0.3;         /*!< Default standard deviation of the range noise in m. */
+    public static final double DEFAULT_MAX_RANGE = 40;      /*!< Default distance in m beyond which routers are not heard. */
+    public static final long DEFAULT_SCAN_INTERVAL_MS = 500; /*!< Default time between scans. */
+    public static final double CHURN_RECOVERY = 0.05;       /*!< Chance per scan that an offline router comes back. */
+
+    /* Private Variables */
+    private static final double RSSI_NOISE = 2;             /*!< Standard deviation of the RSSI noise in dB. */
+    private static final double NLOS_ATTENUATION = 8;       /*!< Extra path loss of a blocked path in dB. */
+
+    private final long[] macs;          /*!< Packed MAC Address of each anchor. */
+    private final double[] anchorX;     /*!< X position of each anchor in m. */
+    private final double[] anchorY;     /*!< Y position of each anchor in m. */
+    private final double[] anchorZ;     /*!< Height of each anchor above its floor in m. */
+    private final boolean[] offline;    /*!< True for each anchor that is currently offline. */
+    private final long[] times;         /*!< Time of each waypoint in nanoseconds, increasing. */
+    private final double[] pathX;       /*!< X position of each waypoint in m. */
+    private final double[] pathY;       /*!< Y position of each waypoint in m. */
+    private final long seed;            /*!< Seed the random numbers restart from on reset. */
+    private SplittableRandom random;    /*!< Source of every random number. */
+    private double spareGaussian;       /*!< Second normal value of the last Box-Muller pair. */
+    private boolean hasSpare;           /*!< True if spareGaussian has not been used yet. */
+    private double noise;               /*!< Standard deviation of the range noise in m. */
+    private double nlosProbability;     /*!< Chance that a result has a blocked path. */
+    private double nlosBias;            /*!< Mean extra distance of a blocked path in m. */
+    private double dropout;             /*!< Chance that a heard router gives no result. */
+    private double churn;               /*!< Chance per scan that an online router goes offline. */
+    private double maxRange;            /*!< Distance in m beyond which routers are not heard. */
+    private double deviceHeight;        /*!< Height of the device above the floor in m. */
+    private long scanIntervalNanos;     /*!< Time between scans. */
+    private long nextTime;              /*!< Time of the next scan. */
+    private int segment;                /*!< Waypoint the device last passed. */
+    private double truthX;              /*!< X position of the device at the last scan in m. */
+    private double truthY;              /*!< Y position of the device at the last scan in m. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class RttSimulator. Starts with the default noise, no
+     *         non-line-of-sight bias, no dropouts and no churn.
+     *
+     *  \param anchors The anchors the device ranges to.
+     *  \param times A long array containing the time of each waypoint in nanoseconds, increasing.
+     *  \param x A double array containing the X position of each waypoint in m.
+     *  \param y A double array containing the Y position of each waypoint in m.
+     *  \param seed A long containing the seed of the random numbers.
+     *  \throws IllegalArgumentException If there are no waypoints or their times do not increase.
+     */
+    public RttSimulator(AnchorDatabase anchors, long[] times, double[] x, double[] y, long seed) {
+        if (times.length == 0 || x.length != times.length || y.length != times.length)
+            throw new IllegalArgumentException("Expected one time, x and y per waypoint");
+        for (int i = 1; i < times.length; i++) {
+            if (times[i] <= times[i - 1])
+                throw new IllegalArgumentException("Waypoints must be in time order");
+        }
+        int count = anchors.size();
+        this.macs = new long[count];
+        this.anchorX = new double[count];
+        this.anchorY = new double[count];
+        this.anchorZ = new double[count];
+        this.offline = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            this.macs[i] = anchors.getMAC(i);
+            this.anchorX[i] = anchors.getX(i);
+            this.anchorY[i] = anchors.getY(i);
+            this.anchorZ[i] = anchors.getZ(i);
+        }
+        this.times = times.clone();
+        this.pathX = x.clone();
+        this.pathY = y.clone();
+        this.seed = seed;
+        this.noise = DEFAULT_NOISE;
+        this.maxRange = DEFAULT_MAX_RANGE;
+        this.scanIntervalNanos = DEFAULT_SCAN_INTERVAL_MS * 1000000L;
+        reset();
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the position of the device at the time of the last generated scan.
+     *
+     *  \param position A double array of at least two elements receiving {X, Y}.
+     *  \return None.
+     */
+    public void getTruth(double[] position) {
+        position[0] = this.truthX;
+        position[1] = this.truthY;
+    }
+
+    /* Sets */
+
+    /**
+     *  \brief Sets the standard deviation of the range noise. Also reported as the standard
+     *         deviation of every result.
+     *
+     *  \param noise A double containing the standard deviation in m.
+     *  \return None.
+     */
+    public void setNoise(double noise) {
+        this.noise = Math.max(0, noise);
+    }
+
+    /**
+     *  \brief Sets how often a result comes from a blocked path, which is longer than the
+     *         direct one and weaker.
+     *
+     *  \param probability A double containing the chance from 0 to 1 that a result is blocked.
+     *  \param meanBias A double containing the mean extra distance of a blocked path in m. The
+     *         extra distance is exponentially distributed.
+     *  \return None.
+     */
+    public void setNlos(double probability, double meanBias) {
+        this.nlosProbability = probability;
+        this.nlosBias = meanBias;
+    }
+
+    /**
+     *  \brief Sets how often a heard router gives no result.
+     *
+     *  \param probability A double containing the chance from 0 to 1 that a result is dropped.
+     *  \return None.
+     */
+    public void setDropout(double probability) {
+        this.dropout = probability;
+    }
+
+    /**
+     *  \brief Sets how often routers go offline. An offline router comes back with the chance
+     *         CHURN_RECOVERY per scan.
+     *
+     *  \param probability A double containing the chance from 0 to 1 per scan that an online
+     *         router goes offline.
+     *  \return None.
+     */
+    public void setChurn(double probability) {
+        this.churn = probability;
+    }
+
+    /**
+     *  \brief Sets the distance beyond which routers are not heard.
+     *
+     *  \param range A double containing the distance in m.
+     *  \return None.
+     */
+    public void setMaxRange(double range) {
+        this.maxRange = range;
+    }
+
+    /**
+     *  \brief Sets the height of the device above the floor.
+     *
+     *  \param height A double containing the height in m.
+     *  \return None.
+     */
+    public void setDeviceHeight(double height) {
+        this.deviceHeight = height;
+    }
+
+    /**
+     *  \brief Sets the time between scans.
+     *
+     *  \param intervalMs A long containing the time in ms.
+     *  \return None.
+     */
+    public void setScanInterval(long intervalMs) {
+        this.scanIntervalNanos = Math.max(1, intervalMs) * 1000000L;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Restarts at the first waypoint with every router online and the random numbers
+     *         back at the seed, so the same scans are generated again.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public void reset() {
+        this.random = new SplittableRandom(this.seed);
+        this.hasSpare = false;
+        Arrays.fill(this.offline, false);
+        this.nextTime = this.times[0];
+        this.segment = 0;
+        this.truthX = this.pathX[0];
+        this.truthY = this.pathY[0];
+    }
+
+    /**
+     *  \brief Generates the next scan along the trajectory. Does not allocate once the scan has
+     *         room for every anchor.
+     *
+     *  \param scan The scan to fill with the successful results, in anchor order.
+     *  \return Returns true if a scan was generated, else returns false once the last waypoint
+     *          has been passed.
+     */
+    public boolean nextScan(RangingScan scan) {
+        long time = this.nextTime;
+        if (time > this.times[this.times.length - 1])
+            return false;
+        this.nextTime += this.scanIntervalNanos;
+
+        while (this.segment < this.times.length - 1 && this.times[this.segment + 1] < time)
+            this.segment++;
+        int i0 = this.segment;
+        int i1 = Math.min(i0 + 1, this.times.length - 1);
+        double t = i1 == i0 ? 0 : (double)(time - this.times[i0]) / (this.times[i1] - this.times[i0]);
+        this.truthX = this.pathX[i0] + t * (this.pathX[i1] - this.pathX[i0]);
+        this.truthY = this.pathY[i0] + t * (this.pathY[i1] - this.pathY[i0]);
+
+        scan.reset(time);
+        int stdDevMm = (int)Math.round(this.noise * 1000);
+        for (int i = 0; i < this.macs.length; i++) {
+            if (this.offline[i]) {
+                if (this.random.nextDouble() < CHURN_RECOVERY)
+                    this.offline[i] = false;
+                continue;
+            }
+            if (this.churn > 0 && this.random.nextDouble() < this.churn) {
+                this.offline[i] = true;
+                continue;
+            }
+            double dx = this.anchorX[i] - this.truthX;
+            double dy = this.anchorY[i] - this.truthY;
+            double dz = this.anchorZ[i] - this.deviceHeight;
+            double distance = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (distance > this.maxRange || (this.dropout > 0 && this.random.nextDouble() < this.dropout))
+                continue;
+
+            double measured = distance + this.noise * nextGaussian();
+            double rssi = -40 - 20 * Math.log10(Math.max(1, distance)) + RSSI_NOISE * nextGaussian();
+            if (this.nlosProbability > 0 && this.random.nextDouble() < this.nlosProbability) {
+                measured -= this.nlosBias * Math.log(1 - this.random.nextDouble());
+                rssi -= NLOS_ATTENUATION;
+            }
+            scan.add(this.macs[i], (int)Math.round(Math.max(0, measured) * 1000), stdDevMm, (int)Math.round(rssi));
+        }
+        return true;
+    }
+
+    /**
+     *  \brief Generates every scan of the trajectory from the start, for replaying with
+     *         ReplayEngine. The waypoints of the trajectory are the ground truth.
+     *
+     *  \param name A String object containing the name the trace is reported under.
+     *  \return The generated walk. The simulator is left at the end of the trajectory.
+     */
+    public ReplayTrace toTrace(String name) {
+        reset();
+        RangingScan scan = new RangingScan(this.macs.length);
+        int scans = (int)((this.times[this.times.length - 1] - this.times[0]) / this.scanIntervalNanos) + 1;
+        long[] scanTimes = new long[scans];
+        int[] scanStart = new int[scans + 1];
+        int capacity = Math.max(16, scans * Math.min(this.macs.length, 16));
+        long[] macs = new long[capacity];
+        int[] distMm = new int[capacity];
+        int[] distStdDevMm = new int[capacity];
+        int[] rssi = new int[capacity];
+        int results = 0;
+        for (int s = 0; s < scans && nextScan(scan); s++) {
+            if (results + scan.count > capacity) {
+                capacity = Math.max(capacity * 2, results + scan.count);
+                macs = Arrays.copyOf(macs, capacity);
+                distMm = Arrays.copyOf(distMm, capacity);
+                distStdDevMm = Arrays.copyOf(distStdDevMm, capacity);
+                rssi = Arrays.copyOf(rssi, capacity);
+            }
+            scanTimes[s] = scan.timestampNanos;
+            scanStart[s] = results;
+            System.arraycopy(scan.macs, 0, macs, results, scan.count);
+            System.arraycopy(scan.distMm, 0, distMm, results, scan.count);
+            System.arraycopy(scan.distStdDevMm, 0, distStdDevMm, results, scan.count);
+            System.arraycopy(scan.rssi, 0, rssi, results, scan.count);
+            results += scan.count;
+        }
+        scanStart[scans] = results;
+        return new ReplayTrace(name, scanTimes, scanStart, Arrays.copyOf(macs, results), Arrays.copyOf(distMm, results),
+                Arrays.copyOf(distStdDevMm, results), Arrays.copyOf(rssi, results), this.times, this.pathX, this.pathY);
+    }
+
+    /**
+     *  \brief Draws a standard normal value with the Box-Muller transform, two at a time.
+     *
+     *  \param None.
+     *  \return A double containing the value.
+     */
+    private double nextGaussian() {
+        if (this.hasSpare) {
+            this.hasSpare = false;
+            return this.spareGaussian;
+        }
+        double u = 1 - this.random.nextDouble(); // Never 0, so the log is finite
+        double v = this.random.nextDouble();
+        double r = Math.sqrt(-2 * Math.log(u));
+        this.spareGaussian = r * Math.sin(2 * Math.PI * v);
+        this.hasSpare = true;
+        return r * Math.cos(2 * Math.PI * v);
+    }
+}
@@ -0,0 +1,136 @@
+/** \file ScanScheduler.java
+ *  \brief This file contains the scheduler that chooses how often to range.
+ *
+ *  Ranging costs battery and radio time, and on dense deployments every
+ *  request also competes with other devices for the responders. The
+ *  scheduler ranges quickly while the device is moving or its position is
+ *  uncertain, slowly while it is standing still with a good fix, and backs
+ *  off while ranging keeps failing.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class works out the delay before the next ranging request from
+ *  the latest fix and the number of failed requests.
+ *
+ *  The interval shortens straight away when the device starts moving, but
+ *  only lengthens by a limited factor per fix so a single still fix does not
+ *  slow ranging down while walking. Safe to use from any thread.
+ */
+public final class ScanScheduler {
+    /* Public Variables */
+    public static final long DEFAULT_MIN_INTERVAL_MS = 250;     /*!< Interval while walking or without a position. */
+    public static final long DEFAULT_MAX_INTERVAL_MS = 4000;    /*!< Interval while stationary with a good fix. */
+    public static final long MAX_BACKOFF_MS = 30000;            /*!< Longest interval while ranging keeps failing. */
+    public static final double STATIONARY_SPEED = 0.2;          /*!< Speeds at or below this in m/s count as standing still. */
+    public static final double WALKING_SPEED = 1.0;             /*!< Speeds at or above this in m/s range at the fastest rate. */
+    public static final double GOOD_VARIANCE = 1.0;             /*!< Position variances at or below this in m^2 count as a good fix. */
+    public static final double POOR_VARIANCE = 4.0;             /*!< Position variances at or above this in m^2 range at the fastest rate. */
+
+    /* Private Variables */
+    private static final double MAX_SLOWDOWN = 1.5;             /*!< Largest factor the interval grows by per fix. */
+
+    private final long minIntervalMs;   /*!< Shortest interval between requests in ms. */
+    private final long maxIntervalMs;   /*!< Longest interval between requests in ms, not counting failures. */
+    private long intervalMs;            /*!< Current interval between requests in ms. */
+    private int failureCount;           /*!< Number of requests failed in a row. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Empty constructor. Uses the default intervals.
+     *
+     *  \param None.
+     */
+    public ScanScheduler() {
+        this(DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS);
+    }
+
+    /**
+     *  \brief Constructor for the class ScanScheduler.
+     *
+     *  \param minIntervalMs A long containing the interval while moving in ms.
+     *  \param maxIntervalMs A long containing the interval while stationary in ms.
+     */
+    public ScanScheduler(long minIntervalMs, long maxIntervalMs) {
+        this.minIntervalMs = Math.max(1, minIntervalMs);
+        this.maxIntervalMs = Math.max(this.minIntervalMs, maxIntervalMs);
+        this.intervalMs = this.minIntervalMs;
+        this.failureCount = 0;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the delay before the next ranging request.
+     *
+     *  \param None.
+     *  \return A long containing the interval in ms.
+     */
+    public synchronized long getIntervalMillis() {
+        return this.intervalMs;
+    }
+
+    /**
+     *  \brief Gets the number of ranging requests that failed in a row.
+     *
+     *  \param None.
+     *  \return An integer containing the number of failures since the last fix.
+     */
+    public synchronized int getFailureCount() {
+        return this.failureCount;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Updates the interval from a new fix.
+     *
+     *  \param hasPosition A boolean that is true if the fix contains a position.
+     *  \param speed A double containing the speed of the device in m/s.
+     *  \param variance A double containing the position variance of the device in m^2.
+     *  \return None.
+     */
+    public synchronized void onFix(boolean hasPosition, double speed, double variance) {
+        this.failureCount = 0;
+        double urgency = 1;
+        if (hasPosition) {
+            double moving = ramp(speed, STATIONARY_SPEED, WALKING_SPEED);
+            double uncertain = ramp(variance, GOOD_VARIANCE, POOR_VARIANCE);
+            urgency = Math.max(moving, uncertain);
+        }
+        long target = Math.round(this.maxIntervalMs - urgency * (this.maxIntervalMs - this.minIntervalMs));
+        // Speed up at once, slow down gradually
+        long slowest = (long)(Math.max(this.intervalMs, this.minIntervalMs) * MAX_SLOWDOWN);
+        this.intervalMs = Math.min(target, slowest);
+    }
+
+    /**
+     *  \brief Updates the interval after a failed ranging request. The interval doubles with each
+     *         failure in a row, up to MAX_BACKOFF_MS.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public synchronized void onFailure() {
+        this.failureCount++;
+        this.intervalMs = Math.min(MAX_BACKOFF_MS, Math.max(this.intervalMs, this.minIntervalMs) * 2);
+    }
+
+    /**
+     *  \brief Maps a value to 0 at or below low, 1 at or above high and linearly in between.
+     *
+     *  \param value A double containing the value.
+     *  \param low A double containing the value that maps to 0.
+     *  \param high A double containing the value that maps to 1.
+     *  \return A double between 0 and 1.
+     */
+    private static double ramp(double value, double low, double high) {
+        if (value <= low)
+            return 0;
+        if (value >= high)
+            return 1;
+        return (value - low) / (high - low);
+    }
+}
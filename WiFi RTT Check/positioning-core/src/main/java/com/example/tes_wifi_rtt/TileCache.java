@@ -0,0 +1,221 @@
+/** \file TileCache.java
+ *  \brief This file contains the least recently used cache of decoded
+ *  floorplan tiles.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ *  \brief This class keeps decoded tiles up to a total size in bytes, evicting
+ *  the least recently drawn first, and tracks the tiles waiting to be decoded.
+ *
+ *  The drawing thread asks for the tiles it needs with get, and request
+ *  marks a missing tile as pending exactly once. The decoding thread checks
+ *  isPending before decoding, so tiles that scrolled out of view before
+ *  their turn are skipped, and hands the result back with put. Safe to use
+ *  from any thread.
+ *
+ *  \param <T> The type of a decoded tile, e.g. a Bitmap.
+ */
+public final class TileCache<T> {
+    /* Private Variables */
+    private final long maxBytes;                    /*!< Total size the cache is trimmed to. */
+    private final ToIntFunction<T> sizeOf;          /*!< Size of a tile in bytes. */
+    private final LinkedHashMap<Long, T> tiles;     /*!< Cached tiles, least recently used first. */
+    private final HashSet<Long> pending;            /*!< Tiles requested but not decoded yet. */
+    private long bytes;                             /*!< Total size of the cached tiles. */
+    private long hits;                              /*!< Number of gets that found their tile. */
+    private long misses;                            /*!< Number of gets that did not. */
+    private long evictions;                         /*!< Number of tiles evicted to stay within maxBytes. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class TileCache.
+     *
+     *  \param maxBytes A long containing the total size in bytes the cache is trimmed to.
+     *  \param sizeOf Gives the size of a tile in bytes.
+     */
+    public TileCache(long maxBytes, ToIntFunction<T> sizeOf) {
+        this.maxBytes = maxBytes;
+        this.sizeOf = sizeOf;
+        this.tiles = new LinkedHashMap<>(64, 0.75f, true);
+        this.pending = new HashSet<>();
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets a cached tile and marks it as the most recently used.
+     *
+     *  \param key A long containing the key of the tile, see TilePyramid.key.
+     *  \return The tile, or null if it is not cached.
+     */
+    public synchronized T get(long key) {
+        T tile = this.tiles.get(key);
+        if (tile != null)
+            this.hits++;
+        else
+            this.misses++;
+        return tile;
+    }
+
+    /**
+     *  \brief Gets a cached tile without counting a hit or miss, e.g. to draw a coarser tile
+     *         while a finer one is decoded. The tile is still marked as used, so coarse tiles in
+     *         use as fallbacks are kept.
+     *
+     *  \param key A long containing the key of the tile.
+     *  \return The tile, or null if it is not cached.
+     */
+    public synchronized T peek(long key) {
+        return this.tiles.get(key);
+    }
+
+    /**
+     *  \brief Gets whether a tile is waiting to be decoded.
+     *
+     *  \param key A long containing the key of the tile.
+     *  \return Returns true if the tile was requested and not yet put, failed or cancelled.
+     */
+    public synchronized boolean isPending(long key) {
+        return this.pending.contains(key);
+    }
+
+    /**
+     *  \brief Gets the total size of the cached tiles.
+     *
+     *  \param None.
+     *  \return A long containing the size in bytes.
+     */
+    public synchronized long getSize() {
+        return this.bytes;
+    }
+
+    /**
+     *  \brief Gets the number of cached tiles.
+     *
+     *  \param None.
+     *  \return An integer containing the number of tiles.
+     */
+    public synchronized int getCount() {
+        return this.tiles.size();
+    }
+
+    /**
+     *  \brief Gets the number of gets that found their tile.
+     *
+     *  \param None.
+     *  \return A long containing the number of hits.
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     *  \brief Gets the number of gets that did not find their tile.
+     *
+     *  \param None.
+     *  \return A long containing the number of misses.
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     *  \brief Gets the number of tiles evicted to stay within the size limit.
+     *
+     *  \param None.
+     *  \return A long containing the number of evictions.
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictions;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Marks a tile as waiting to be decoded, unless it is cached or already waiting.
+     *
+     *  \param key A long containing the key of the tile.
+     *  \return Returns true if the caller should have the tile decoded, else returns false.
+     */
+    public synchronized boolean request(long key) {
+        if (this.tiles.containsKey(key))
+            return false;
+        return this.pending.add(key);
+    }
+
+    /**
+     *  \brief Adds a decoded tile as the most recently used and evicts the least recently used
+     *         tiles beyond the size limit. A tile larger than the limit is not kept.
+     *
+     *  \param key A long containing the key of the tile.
+     *  \param tile The decoded tile.
+     *  \return None.
+     */
+    public synchronized void put(long key, T tile) {
+        this.pending.remove(key);
+        T previous = this.tiles.put(key, tile);
+        if (previous != null)
+            this.bytes -= this.sizeOf.applyAsInt(previous);
+        this.bytes += this.sizeOf.applyAsInt(tile);
+        Iterator<Map.Entry<Long, T>> eldest = this.tiles.entrySet().iterator();
+        while (this.bytes > this.maxBytes && eldest.hasNext()) {
+            this.bytes -= this.sizeOf.applyAsInt(eldest.next().getValue());
+            eldest.remove();
+            this.evictions++;
+        }
+    }
+
+    /**
+     *  \brief Clears the pending mark of a tile that could not be decoded, so it can be
+     *         requested again.
+     *
+     *  \param key A long containing the key of the tile.
+     *  \return None.
+     */
+    public synchronized void fail(long key) {
+        this.pending.remove(key);
+    }
+
+    /**
+     *  \brief Cancels every pending tile that is not in a list, e.g. the tiles still in view.
+     *
+     *  \param keys A long array containing the keys to keep pending.
+     *  \param count An integer containing the number of keys to read from the array.
+     *  \return None.
+     */
+    public synchronized void cancelPendingExcept(long[] keys, int count) {
+        if (this.pending.isEmpty())
+            return;
+        Iterator<Long> it = this.pending.iterator();
+        while (it.hasNext()) {
+            long key = it.next();
+            boolean keep = false;
+            for (int i = 0; i < count && !keep; i++)
+                keep = keys[i] == key;
+            if (!keep)
+                it.remove();
+        }
+    }
+
+    /**
+     *  \brief Removes every tile and pending mark.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    public synchronized void clear() {
+        this.tiles.clear();
+        this.pending.clear();
+        this.bytes = 0;
+    }
+}
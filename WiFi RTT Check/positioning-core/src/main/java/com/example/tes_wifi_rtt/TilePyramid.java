@@ -0,0 +1,333 @@
+/** \file TilePyramid.java
+ *  \brief This file contains the layout of a floorplan split into square tiles
+ *  at several resolutions, and its manifest file.
+ *
+ *  Level 0 is the full resolution image and every following level halves it,
+ *  until the whole image fits in one tile. Tile (column, row) of a level
+ *  covers the pixels from column * tileSize and row * tileSize of that level,
+ *  and tiles on the right and bottom edges are cut to the image. The
+ *  manifest is one CSV line
+ *      width,height,tileSize,pxPerMeter,originX,originY
+ *  with the size of the level 0 image in pixels and the calibration that
+ *  maps meters to level 0 pixels: pixel = meter * pxPerMeter + origin. Blank
+ *  lines, lines starting with '#' and a header line are skipped.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ *  \brief This class maps between tiles, floorplan pixels and meters, and picks
+ *  the tiles that cover a part of the floorplan at a given zoom.
+ */
+public final class TilePyramid {
+    /* Public Variables */
+    public static final int DEFAULT_TILE_SIZE = 256;        /*!< Default width and height of a tile in pixels. */
+    public static final String MANIFEST = "floorplan.csv";  /*!< Name of the manifest next to the level directories. */
+
+    /* Private Variables */
+    private final int width;            /*!< Width of the level 0 image in pixels. */
+    private final int height;           /*!< Height of the level 0 image in pixels. */
+    private final int tileSize;         /*!< Width and height of a tile in pixels. */
+    private final int levels;           /*!< Number of levels, the last one fits in one tile. */
+    private final double pxPerMeter;    /*!< Level 0 pixels per meter. */
+    private final double originX;       /*!< Level 0 X pixel of X = 0 m. */
+    private final double originY;       /*!< Level 0 Y pixel of Y = 0 m. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class TilePyramid.
+     *
+     *  \param width An integer containing the width of the level 0 image in pixels.
+     *  \param height An integer containing the height of the level 0 image in pixels.
+     *  \param tileSize An integer containing the width and height of a tile in pixels.
+     *  \param pxPerMeter A double containing the level 0 pixels per meter.
+     *  \param originX A double containing the level 0 X pixel of X = 0 m.
+     *  \param originY A double containing the level 0 Y pixel of Y = 0 m.
+     *  \throws IllegalArgumentException If a size or the scale is not positive.
+     */
+    public TilePyramid(int width, int height, int tileSize, double pxPerMeter, double originX, double originY) {
+        if (width <= 0 || height <= 0 || tileSize <= 0 || !(pxPerMeter > 0))
+            throw new IllegalArgumentException("Sizes and scale must be positive");
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        this.pxPerMeter = pxPerMeter;
+        this.originX = originX;
+        this.originY = originY;
+        int levels = 1;
+        while (Math.max(getLevelWidth(levels - 1), getLevelHeight(levels - 1)) > tileSize)
+            levels++;
+        this.levels = levels;
+    }
+
+    /**
+     *  \brief Parses a manifest.
+     *
+     *  \param manifest A Reader containing the manifest text.
+     *  \return The pyramid described by the manifest.
+     *  \throws IOException If the manifest could not be read.
+     *  \throws IllegalArgumentException If the manifest is malformed or empty.
+     */
+    public static TilePyramid parse(Reader manifest) throws IOException {
+        BufferedReader reader = new BufferedReader(manifest);
+        String line;
+        int lineNumber = 0;
+        boolean firstLine = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split(",");
+            boolean header = firstLine;
+            firstLine = false;
+            if (fields.length != 6)
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected width,height,tileSize,pxPerMeter,originX,originY");
+            try {
+                return new TilePyramid(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()),
+                        Integer.parseInt(fields[2].trim()), Double.parseDouble(fields[3].trim()),
+                        Double.parseDouble(fields[4].trim()), Double.parseDouble(fields[5].trim()));
+            }
+            catch (NumberFormatException e) {
+                if (header)
+                    continue; // Header line
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        throw new IllegalArgumentException("Manifest is empty");
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the width of the level 0 image.
+     *
+     *  \param None.
+     *  \return An integer containing the width in pixels.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     *  \brief Gets the height of the level 0 image.
+     *
+     *  \param None.
+     *  \return An integer containing the height in pixels.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     *  \brief Gets the width and height of a tile.
+     *
+     *  \param None.
+     *  \return An integer containing the tile size in pixels.
+     */
+    public int getTileSize() {
+        return this.tileSize;
+    }
+
+    /**
+     *  \brief Gets the number of levels.
+     *
+     *  \param None.
+     *  \return An integer containing the number of levels, at least 1.
+     */
+    public int getLevels() {
+        return this.levels;
+    }
+
+    /**
+     *  \brief Gets the level 0 pixels per meter.
+     *
+     *  \param None.
+     *  \return A double containing the scale.
+     */
+    public double getPxPerMeter() {
+        return this.pxPerMeter;
+    }
+
+    /**
+     *  \brief Gets the level 0 X pixel of X = 0 m.
+     *
+     *  \param None.
+     *  \return A double containing the pixel.
+     */
+    public double getOriginX() {
+        return this.originX;
+    }
+
+    /**
+     *  \brief Gets the level 0 Y pixel of Y = 0 m.
+     *
+     *  \param None.
+     *  \return A double containing the pixel.
+     */
+    public double getOriginY() {
+        return this.originY;
+    }
+
+    /**
+     *  \brief Gets the width of the image of a level.
+     *
+     *  \param level An integer containing the level.
+     *  \return An integer containing the width in pixels, rounded up.
+     */
+    public int getLevelWidth(int level) {
+        return (int)((this.width + (1L << level) - 1) >> level);
+    }
+
+    /**
+     *  \brief Gets the height of the image of a level.
+     *
+     *  \param level An integer containing the level.
+     *  \return An integer containing the height in pixels, rounded up.
+     */
+    public int getLevelHeight(int level) {
+        return (int)((this.height + (1L << level) - 1) >> level);
+    }
+
+    /**
+     *  \brief Gets the number of tile columns of a level.
+     *
+     *  \param level An integer containing the level.
+     *  \return An integer containing the number of columns.
+     */
+    public int getColumns(int level) {
+        return (getLevelWidth(level) + this.tileSize - 1) / this.tileSize;
+    }
+
+    /**
+     *  \brief Gets the number of tile rows of a level.
+     *
+     *  \param level An integer containing the level.
+     *  \return An integer containing the number of rows.
+     */
+    public int getRows(int level) {
+        return (getLevelHeight(level) + this.tileSize - 1) / this.tileSize;
+    }
+
+    /**
+     *  \brief Gets the path of a tile relative to the manifest.
+     *
+     *  \param key A long containing the key of the tile.
+     *  \return A String object containing "level/column_row.jpg".
+     */
+    public static String getPath(long key) {
+        return getLevel(key) + "/" + getColumn(key) + "_" + getRow(key) + ".jpg";
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Packs a tile into a key.
+     *
+     *  \param level An integer containing the level, below 256.
+     *  \param column An integer containing the column, below 2^24.
+     *  \param row An integer containing the row, below 2^24.
+     *  \return A long containing the key.
+     */
+    public static long key(int level, int column, int row) {
+        return ((long)level << 48) | ((long)column << 24) | row;
+    }
+
+    /**
+     *  \brief Gets the level of a tile key.
+     *
+     *  \param key A long containing the key.
+     *  \return An integer containing the level.
+     */
+    public static int getLevel(long key) {
+        return (int)(key >>> 48);
+    }
+
+    /**
+     *  \brief Gets the column of a tile key.
+     *
+     *  \param key A long containing the key.
+     *  \return An integer containing the column.
+     */
+    public static int getColumn(long key) {
+        return (int)(key >>> 24) & 0xFFFFFF;
+    }
+
+    /**
+     *  \brief Gets the row of a tile key.
+     *
+     *  \param key A long containing the key.
+     *  \return An integer containing the row.
+     */
+    public static int getRow(long key) {
+        return (int)key & 0xFFFFFF;
+    }
+
+    /**
+     *  \brief Picks the coarsest level that still has at least one pixel per screen pixel.
+     *
+     *  \param pxPerScreenPx A double containing the level 0 pixels covered by one screen pixel.
+     *  \return An integer containing the level.
+     */
+    public int chooseLevel(double pxPerScreenPx) {
+        int level = 0;
+        while (level < this.levels - 1 && (2L << level) <= pxPerScreenPx)
+            level++;
+        return level;
+    }
+
+    /**
+     *  \brief Lists the tiles of a level that overlap a rectangle of the floorplan.
+     *
+     *  \param level An integer containing the level.
+     *  \param left A double containing the left edge in level 0 pixels.
+     *  \param top A double containing the top edge in level 0 pixels.
+     *  \param right A double containing the right edge in level 0 pixels.
+     *  \param bottom A double containing the bottom edge in level 0 pixels.
+     *  \param keys A long array receiving the key of each tile, row by row.
+     *  \return An integer containing the number of tiles, or minus the number needed if keys is
+     *          too short, in which case keys is not filled.
+     */
+    public int visibleTiles(int level, double left, double top, double right, double bottom, long[] keys) {
+        double span = (double)this.tileSize * (1L << level); // Level 0 pixels per tile
+        int column0 = Math.max(0, (int)Math.floor(left / span));
+        int row0 = Math.max(0, (int)Math.floor(top / span));
+        int column1 = Math.min(getColumns(level), (int)Math.ceil(right / span));
+        int row1 = Math.min(getRows(level), (int)Math.ceil(bottom / span));
+        if (column1 <= column0 || row1 <= row0)
+            return 0;
+        int count = (column1 - column0) * (row1 - row0);
+        if (count > keys.length)
+            return -count;
+        int i = 0;
+        for (int row = row0; row < row1; row++) {
+            for (int column = column0; column < column1; column++)
+                keys[i++] = key(level, column, row);
+        }
+        return count;
+    }
+
+    /**
+     *  \brief Writes the manifest of the pyramid.
+     *
+     *  \param out The Writer to write to.
+     *  \return None.
+     *  \throws IOException If the manifest could not be written.
+     */
+    public void write(Writer out) throws IOException {
+        out.write("width,height,tileSize,pxPerMeter,originX,originY\n");
+        out.write(String.format(Locale.ROOT, "%d,%d,%d,%s,%s,%s\n", this.width, this.height, this.tileSize,
+                Double.toString(this.pxPerMeter), Double.toString(this.originX), Double.toString(this.originY)));
+    }
+}
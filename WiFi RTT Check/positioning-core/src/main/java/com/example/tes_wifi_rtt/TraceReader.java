@@ -0,0 +1,229 @@
+/** \file TraceReader.java
+ *  \brief This file contains the reader of the binary trace files written by
+ *  TraceRecorder.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ *  \brief This class steps through the records of a trace one at a time.
+ *
+ *  The fields of the current record are read through the getters for its
+ *  type. A trace cut short by a crash ends at the last complete record.
+ *  Not thread safe.
+ */
+public final class TraceReader {
+    /* Private Variables */
+    private final ByteBuffer buffer;    /*!< Trace contents, positioned at the next record. */
+    private byte type;                  /*!< Type of the current record, or 0 before the first. */
+    private long timestampNanos;        /*!< Timestamp of the current record. */
+    private long mac;                   /*!< Packed MAC Address of the current sample. */
+    private int distMm;                 /*!< Distance of the current sample in mm. */
+    private int distStdDevMm;           /*!< Standard deviation of the current sample in mm. */
+    private int rssi;                   /*!< Signal strength of the current sample. */
+    private int status;                 /*!< Ranging status of the current sample. */
+    private long scanSequence;          /*!< Scan sequence number of the current fix. */
+    private double x;                   /*!< X position of the current fix in m. */
+    private double y;                   /*!< Y position of the current fix in m. */
+    private float variance;             /*!< Variance of the current fix in m^2. */
+    private int flags;                  /*!< Flags of the current fix. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class TraceReader.
+     *
+     *  \param buffer A ByteBuffer containing a trace file from its position to its limit.
+     *  \throws IllegalArgumentException If the buffer does not start with a trace header.
+     */
+    public TraceReader(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.remaining() < TraceRecorder.HEADER_SIZE || this.buffer.getInt(0) != TraceRecorder.MAGIC)
+            throw new IllegalArgumentException("Not a trace file");
+        if (this.buffer.getInt(4) != TraceRecorder.VERSION)
+            throw new IllegalArgumentException("Unsupported trace version " + this.buffer.getInt(4));
+        this.buffer.position(TraceRecorder.HEADER_SIZE);
+    }
+
+    /**
+     *  \brief Memory-maps a trace file.
+     *
+     *  \param file The trace file.
+     *  \return A reader positioned before the first record.
+     *  \throws IOException If the file could not be read.
+     *  \throws IllegalArgumentException If the file is not a trace.
+     */
+    public static TraceReader open(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return new TraceReader(in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length()));
+        }
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the type of the current record.
+     *
+     *  \param None.
+     *  \return A byte containing TraceRecorder.SAMPLE, TraceRecorder.FIX or another type.
+     */
+    public byte getType() {
+        return this.type;
+    }
+
+    /**
+     *  \brief Gets the timestamp of the current record: the time of the scan of a sample, or of
+     *         the scan a fix was solved from.
+     *
+     *  \param None.
+     *  \return A long containing the timestamp in nanoseconds.
+     */
+    public long getTimestamp() {
+        return this.timestampNanos;
+    }
+
+    /**
+     *  \brief Gets the packed MAC Address of the current sample.
+     *
+     *  \param None.
+     *  \return A long containing the packed MAC Address.
+     */
+    public long getMAC() {
+        return this.mac;
+    }
+
+    /**
+     *  \brief Gets the distance of the current sample.
+     *
+     *  \param None.
+     *  \return An integer containing the distance in mm.
+     */
+    public int getDistMm() {
+        return this.distMm;
+    }
+
+    /**
+     *  \brief Gets the standard deviation of the distance of the current sample.
+     *
+     *  \param None.
+     *  \return An integer containing the standard deviation in mm.
+     */
+    public int getDistStdDevMm() {
+        return this.distStdDevMm;
+    }
+
+    /**
+     *  \brief Gets the signal strength of the current sample.
+     *
+     *  \param None.
+     *  \return An integer containing the RSSI.
+     */
+    public int getRssi() {
+        return this.rssi;
+    }
+
+    /**
+     *  \brief Gets the ranging status of the current sample.
+     *
+     *  \param None.
+     *  \return An integer containing 0 on success, see TraceRecorder.recordSample.
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     *  \brief Gets the sequence number of the scan the current fix was solved from.
+     *
+     *  \param None.
+     *  \return A long containing the scan sequence number.
+     */
+    public long getScanSequence() {
+        return this.scanSequence;
+    }
+
+    /**
+     *  \brief Gets the X position of the current fix.
+     *
+     *  \param None.
+     *  \return A double containing the X position in m.
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     *  \brief Gets the Y position of the current fix.
+     *
+     *  \param None.
+     *  \return A double containing the Y position in m.
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     *  \brief Gets the variance of the current fix.
+     *
+     *  \param None.
+     *  \return A float containing the variance in m^2.
+     */
+    public float getVariance() {
+        return this.variance;
+    }
+
+    /**
+     *  \brief Gets whether the current fix has a position.
+     *
+     *  \param None.
+     *  \return Returns true if the fix has a position.
+     */
+    public boolean hasPosition() {
+        return (this.flags & TraceRecorder.FLAG_HAS_POSITION) != 0;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Moves to the next record.
+     *
+     *  \param None.
+     *  \return Returns true if there is another complete record, else returns false at the end of
+     *          the trace.
+     */
+    public boolean next() {
+        if (this.buffer.remaining() < 2)
+            return false;
+        int length = this.buffer.getShort() & 0xFFFF;
+        if (length == 0 || this.buffer.remaining() < length)
+            return false;
+        int end = this.buffer.position() + length;
+        this.type = this.buffer.get();
+        if (this.type == TraceRecorder.SAMPLE && length >= TraceRecorder.SAMPLE_SIZE) {
+            this.timestampNanos = this.buffer.getLong();
+            this.mac = this.buffer.getLong();
+            this.distMm = this.buffer.getInt();
+            this.distStdDevMm = this.buffer.getInt();
+            this.rssi = this.buffer.getShort();
+            this.status = this.buffer.get();
+        }
+        else if (this.type == TraceRecorder.FIX && length >= TraceRecorder.FIX_SIZE) {
+            this.timestampNanos = this.buffer.getLong();
+            this.scanSequence = this.buffer.getLong();
+            this.x = this.buffer.getDouble();
+            this.y = this.buffer.getDouble();
+            this.variance = this.buffer.getFloat();
+            this.flags = this.buffer.get();
+        }
+        this.buffer.position(end); // Skips fields added by later versions and unknown records
+        return true;
+    }
+}
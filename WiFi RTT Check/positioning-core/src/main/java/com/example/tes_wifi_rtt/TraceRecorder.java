@@ -0,0 +1,274 @@
+/** \file TraceRecorder.java
+ *  \brief This file contains the recorder that logs raw ranging samples and
+ *  published fixes to a compact binary trace file.
+ *
+ *  The file starts with a 16 byte header {MAGIC, VERSION, 0, 0} followed by
+ *  records. Every record is an unsigned 16-bit length, then that many bytes
+ *  starting with the record type. All values are little-endian.
+ *      SAMPLE: type, timestamp (long), MAC (long), distance mm (int),
+ *              standard deviation mm (int), RSSI (short), status (byte)
+ *      FIX:    type, timestamp (long), scan sequence (long), X (double),
+ *              Y (double), variance (float), flags (byte)
+ *  Readers skip record types they do not know by their length.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *  \brief This class appends trace records to a preallocated ring buffer and
+ *  writes the buffer to a file from a background thread.
+ *
+ *  Appending copies a few bytes under a short lock and never touches the file,
+ *  so it can stay enabled on the ranging and solver threads in production. If
+ *  the file falls so far behind that the ring is full, new records are dropped
+ *  and counted rather than blocking the caller. Safe to use from any thread.
+ */
+public final class TraceRecorder implements Closeable {
+    /* Public Variables */
+    public static final int MAGIC = 0x45435254;         /*!< "TRCE" in the first 4 bytes of a trace file. */
+    public static final int VERSION = 1;                /*!< Layout version of the trace file. */
+    public static final int HEADER_SIZE = 16;           /*!< Bytes before the first record. */
+    public static final byte SAMPLE = 1;                /*!< Record type of one ranging result. */
+    public static final byte FIX = 2;                   /*!< Record type of one published fix. */
+    public static final int SAMPLE_SIZE = 28;           /*!< Bytes in a sample record after its length. */
+    public static final int FIX_SIZE = 38;              /*!< Bytes in a fix record after its length. */
+    public static final int FLAG_HAS_POSITION = 1;      /*!< Fix flag set when the fix has a position. */
+    public static final int FLAG_HAS_FLOOR = 2;         /*!< Fix flag set when the fix has a floor. */
+    public static final int DEFAULT_CAPACITY = 1 << 18; /*!< Default ring buffer size in bytes, about 8000 samples. */
+    public static final long FLUSH_INTERVAL_MS = 2000;  /*!< Longest time a record waits in the ring before it is written. */
+
+    /* Private Variables */
+    private static final int LENGTH_SIZE = 2;           /*!< Bytes in the length prefix of a record. */
+
+    private final FileChannel channel;  /*!< File the trace is written to. */
+    private final byte[] ring;          /*!< Records waiting to be written. Size is a power of two. */
+    private final int mask;             /*!< Size of the ring minus one. */
+    private final ByteBuffer record;    /*!< Reused buffer a record is encoded into before it is copied into the ring. */
+    private final ByteBuffer out;       /*!< Reused buffer the flusher moves records into for writing. Only used by the flusher. */
+    private final Thread flusher;       /*!< Writes the ring to the file. */
+    private long head;                  /*!< Total bytes appended to the ring. */
+    private long tail;                  /*!< Total bytes moved out of the ring. */
+    private long dropped;               /*!< Records dropped because the ring was full. */
+    private long recorded;              /*!< Records appended to the ring. */
+    private boolean closed;             /*!< True once close has been called. */
+    private IOException error;          /*!< First write error, after which the trace stops. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class TraceRecorder. Uses the default capacity.
+     *
+     *  \param file The file to write the trace to. An existing file is replaced.
+     *  \throws IOException If the file could not be opened.
+     */
+    public TraceRecorder(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     *  \brief Constructor for the class TraceRecorder. Writes the header and starts the flusher
+     *         thread.
+     *
+     *  \param file The file to write the trace to. An existing file is replaced.
+     *  \param capacity An integer containing the ring buffer size in bytes, rounded up to a power
+     *                  of two.
+     *  \throws IOException If the file could not be opened.
+     */
+    public TraceRecorder(File file, int capacity) throws IOException {
+        capacity = Integer.highestOneBit(Math.max(capacity, 256) - 1) << 1;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+        while (header.hasRemaining())
+            this.channel.write(header);
+
+        this.ring = new byte[capacity];
+        this.mask = capacity - 1;
+        this.record = ByteBuffer.allocate(LENGTH_SIZE + Math.max(SAMPLE_SIZE, FIX_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        this.out = ByteBuffer.allocateDirect(capacity);
+        this.flusher = new Thread(this::runFlusher, "trace-flush");
+        this.flusher.setDaemon(true);
+        this.flusher.setPriority(Thread.MIN_PRIORITY);
+        this.flusher.start();
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the number of records appended to the ring.
+     *
+     *  \param None.
+     *  \return A long containing the number of records.
+     */
+    public synchronized long getRecordedCount() {
+        return this.recorded;
+    }
+
+    /**
+     *  \brief Gets the number of records dropped because the ring was full.
+     *
+     *  \param None.
+     *  \return A long containing the number of records.
+     */
+    public synchronized long getDroppedCount() {
+        return this.dropped;
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Records one ranging result. Does not allocate.
+     *
+     *  \param timestampNanos A long containing the time of the scan the result belongs to.
+     *  \param mac A long containing the packed MAC Address of the responder.
+     *  \param distMm An integer containing the distance in mm.
+     *  \param distStdDevMm An integer containing the standard deviation of the distance in mm.
+     *  \param rssi An integer containing the signal strength.
+     *  \param status An integer containing the ranging status, 0 on success. Negative for every
+     *                responder of a request that failed as a whole, holding the failure code.
+     *  \return None.
+     */
+    public synchronized void recordSample(long timestampNanos, long mac, int distMm, int distStdDevMm, int rssi, int status) {
+        if (this.closed)
+            return;
+        this.record.clear();
+        this.record.putShort((short)SAMPLE_SIZE).put(SAMPLE).putLong(timestampNanos).putLong(mac)
+                .putInt(distMm).putInt(distStdDevMm).putShort((short)rssi).put((byte)status);
+        append();
+    }
+
+    /**
+     *  \brief Records a published fix. Does not allocate.
+     *
+     *  \param fix The fix to record.
+     *  \return None.
+     */
+    public synchronized void recordFix(PositionFix fix) {
+        if (this.closed)
+            return;
+        int flags = (fix.hasPosition() ? FLAG_HAS_POSITION : 0) | (fix.hasFloor() ? FLAG_HAS_FLOOR : 0);
+        this.record.clear();
+        this.record.putShort((short)FIX_SIZE).put(FIX).putLong(fix.getTimestamp()).putLong(fix.getScanSequence())
+                .putDouble(fix.getX()).putDouble(fix.getY()).putFloat((float)fix.getVariance()).put((byte)flags);
+        append();
+    }
+
+    /**
+     *  \brief Writes every record appended so far to the file. Blocks until written.
+     *
+     *  \param None.
+     *  \return None.
+     *  \throws IOException If the file could not be written.
+     */
+    public void flush() throws IOException {
+        synchronized (this.out) {
+            synchronized (this) {
+                if (this.error != null)
+                    throw this.error;
+                int length = (int)(this.head - this.tail);
+                int start = (int)(this.tail & this.mask);
+                int first = Math.min(length, this.ring.length - start);
+                this.out.clear();
+                this.out.put(this.ring, start, first);
+                this.out.put(this.ring, 0, length - first);
+                this.tail = this.head;
+            }
+            this.out.flip();
+            try {
+                while (this.out.hasRemaining())
+                    this.channel.write(this.out);
+            }
+            catch (IOException e) {
+                synchronized (this) {
+                    this.error = e;
+                    this.closed = true;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     *  \brief Stops recording, writes the remaining records and closes the file.
+     *
+     *  \param None.
+     *  \return None.
+     *  \throws IOException If the file could not be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.closed = true;
+            notifyAll();
+        }
+        try {
+            this.flusher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush(); // Also reports an earlier write error
+        }
+        finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     *  \brief Copies the encoded record into the ring, or drops it if the ring is full. Wakes the
+     *         flusher once the ring is half full. Must hold the lock.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    private void append() {
+        int length = this.record.position();
+        if (this.head - this.tail + length > this.ring.length) {
+            this.dropped++;
+            return;
+        }
+        int start = (int)(this.head & this.mask);
+        int first = Math.min(length, this.ring.length - start);
+        System.arraycopy(this.record.array(), 0, this.ring, start, first);
+        System.arraycopy(this.record.array(), first, this.ring, 0, length - first);
+        this.head += length;
+        this.recorded++;
+        if (this.head - this.tail > this.ring.length / 2)
+            notifyAll();
+    }
+
+    /**
+     *  \brief Writes the ring to the file every FLUSH_INTERVAL_MS, or sooner once it is half full,
+     *         until closed or a write fails.
+     *
+     *  \param None.
+     *  \return None.
+     */
+    private void runFlusher() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (!this.closed && this.head - this.tail <= this.ring.length / 2)
+                        wait(FLUSH_INTERVAL_MS);
+                    if (this.closed)
+                        return;
+                }
+                flush();
+            }
+        }
+        catch (InterruptedException | IOException e) {
+            // Closed, or the error is kept and reported by close
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/** \file WalkableAreas.java
+ *  \brief This file contains the walkable areas of every floor of a site and
+ *  the loader for their text format.
+ *
+ *  Each line is "building,floor,x0,y0,x1,y1,..." and describes one polygon
+ *  ring in meters. A floor may have several rings; a ring inside another ring
+ *  is a hole. Blank lines and lines starting with '#' are skipped.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  \brief This class maps each building and floor to its Geofence.
+ *
+ *  Safe to use from any thread once loaded.
+ */
+public final class WalkableAreas {
+    /* Public Variables */
+    public static final WalkableAreas NONE = new WalkableAreas(new HashMap<>());   /*!< Site without walkable areas. */
+
+    /* Private Variables */
+    private final HashMap<Long, Geofence> areas;    /*!< Walkable area of each floor, keyed by building and floor. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Constructor for the class WalkableAreas.
+     *
+     *  \param areas A HashMap containing the walkable area of each floor, keyed with key().
+     */
+    private WalkableAreas(HashMap<Long, Geofence> areas) {
+        this.areas = areas;
+    }
+
+    /* Gets */
+
+    /**
+     *  \brief Gets the walkable area of a floor.
+     *
+     *  \param building An integer containing the building id.
+     *  \param floor A float containing the floor, rounded to a whole floor.
+     *  \return The Geofence of the floor, or null if the floor has no walkable area.
+     */
+    public Geofence get(int building, float floor) {
+        return this.areas.get(key(building, floor));
+    }
+
+    /**
+     *  \brief Gets the number of floors with a walkable area.
+     *
+     *  \param None.
+     *  \return An integer containing the number of floors.
+     */
+    public int size() {
+        return this.areas.size();
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Parses walkable area text and builds the Geofence of every floor in it. Uses the
+     *         default cell size.
+     *
+     *  \param text A Reader containing the walkable area text.
+     *  \return The walkable areas.
+     *  \throws IOException If the text could not be read.
+     *  \throws IllegalArgumentException If a line is malformed.
+     */
+    public static WalkableAreas parse(Reader text) throws IOException {
+        return parse(text, Geofence.DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     *  \brief Parses walkable area text and builds the Geofence of every floor in it.
+     *
+     *  \param text A Reader containing the walkable area text.
+     *  \param cellSize A double containing the width in m of a Geofence grid cell.
+     *  \return The walkable areas.
+     *  \throws IOException If the text could not be read.
+     *  \throws IllegalArgumentException If a line is malformed.
+     */
+    public static WalkableAreas parse(Reader text, double cellSize) throws IOException {
+        HashMap<Long, ArrayList<double[]>> rings = new HashMap<>();
+        BufferedReader reader = new BufferedReader(text);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split(",");
+            if (fields.length < 8 || fields.length % 2 != 0)
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected building,floor followed by at least 3 x,y points");
+            try {
+                int building = Integer.parseInt(fields[0].trim());
+                float floor = Float.parseFloat(fields[1].trim());
+                double[] ring = new double[fields.length - 2];
+                for (int i = 0; i < ring.length; i++)
+                    ring[i] = Double.parseDouble(fields[i + 2].trim());
+                ArrayList<double[]> floorRings = rings.get(key(building, floor));
+                if (floorRings == null) {
+                    floorRings = new ArrayList<>();
+                    rings.put(key(building, floor), floorRings);
+                }
+                floorRings.add(ring);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        HashMap<Long, Geofence> areas = new HashMap<>();
+        for (Map.Entry<Long, ArrayList<double[]>> entry : rings.entrySet())
+            areas.put(entry.getKey(), new Geofence(entry.getValue().toArray(new double[0][]), cellSize));
+        return new WalkableAreas(areas);
+    }
+
+    /**
+     *  \brief Packs a building and floor into one key.
+     *
+     *  \param building An integer containing the building id.
+     *  \param floor A float containing the floor, rounded to a whole floor.
+     *  \return A long containing the key.
+     */
+    private static long key(int building, float floor) {
+        return ((long)building << 32) | (Math.round(floor) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,110 @@
+/** \file WeightedLeastSquaresSolver.java
+ *  \brief This file contains a linearized weighted least squares
+ *  multilateration solver.
+ *
+ *  Every range equation is subtracted from the equation of a reference
+ *  anchor, which removes the squared unknowns and leaves a linear system in
+ *  X and Y with one row per additional anchor. The rows are weighted by how
+ *  much each range can be trusted and reduced to 2x2 normal equations, so
+ *  any number of anchors can be used without allocating.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/**
+ *  \brief This class solves a position from all available anchors using
+ *  linearized weighted least squares.
+ *
+ *  Weights are the inverse variance of each range. The variance comes from
+ *  the RTT standard deviation, which is inflated for anchors with weak RSSI
+ *  since those are more likely to be affected by multipath.
+ */
+public class WeightedLeastSquaresSolver implements PositionSolver {
+    /* Public Variables */
+    public static final double MIN_STD_DEV = 0.3;       /*!< Smallest standard deviation trusted in meters(m). RTT rarely does better than this indoors. */
+    public static final int RSSI_REFERENCE = -60;       /*!< RSSI at or above which ranges are not penalised. */
+    public static final double RSSI_PENALTY_DB = 20;    /*!< Every RSSI_PENALTY_DB below RSSI_REFERENCE multiplies the standard deviation by 10. */
+
+    /* Private Variables */
+    private final double[] normal = new double[3];      /*!< Upper triangle of the normal matrix: {AtWA[0][0], AtWA[0][1], AtWA[1][1]}. */
+    private final double[] rhs = new double[2];         /*!< Right hand side of the normal equations: AtWb. */
+
+    /* Methods */
+
+    /**
+     *  \brief Gets the least squares weight of a single range measurement.
+     *
+     *  \param stdDev A double containing the standard deviation of the range in meters(m).
+     *  \param rssi An integer containing the signal strength of the anchor.
+     *  \return A double containing the inverse variance of the range.
+     */
+    public static double weight(double stdDev, int rssi) {
+        double sigma = Math.max(stdDev, MIN_STD_DEV);
+        if (rssi < RSSI_REFERENCE && rssi != 0)
+            sigma *= Math.pow(10, (RSSI_REFERENCE - rssi) / RSSI_PENALTY_DB);
+        return 1.0 / (sigma * sigma);
+    }
+
+    /**
+     *  \brief Solves the device position from at least three anchors.
+     *
+     *  \param measurements The anchors and measured ranges to solve from.
+     *  \param position A double array receiving {X, Y}.
+     *  \return Returns true if a position was solved, else returns false when there are fewer
+     *          than three anchors or they are collinear.
+     */
+    @Override
+    public boolean solve(RangeMeasurements measurements, double[] position) {
+        final int count = measurements.count;
+        if (count < 3)
+            return false;
+
+        final double[] x = measurements.x;
+        final double[] y = measurements.y;
+        final double[] range = measurements.range;
+
+        // Use the most trusted anchor as the reference so its error is spread the least
+        int reference = 0;
+        double referenceWeight = weight(measurements.stdDev[0], measurements.rssi[0]);
+        for (int i = 1; i < count; i++) {
+            double w = weight(measurements.stdDev[i], measurements.rssi[i]);
+            if (w > referenceWeight) {
+                reference = i;
+                referenceWeight = w;
+            }
+        }
+
+        final double xr = x[reference];
+        final double yr = y[reference];
+        final double kr = xr * xr + yr * yr - range[reference] * range[reference];
+
+        normal[0] = normal[1] = normal[2] = 0;
+        rhs[0] = rhs[1] = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == reference)
+                continue;
+            // 2(xi - xr)X + 2(yi - yr)Y = (xi^2 + yi^2 - ri^2) - (xr^2 + yr^2 - rr^2)
+            double a0 = 2 * (x[i] - xr);
+            double a1 = 2 * (y[i] - yr);
+            double b = (x[i] * x[i] + y[i] * y[i] - range[i] * range[i]) - kr;
+            // Each row carries the error of both anchors, so combine their variances
+            double wi = weight(measurements.stdDev[i], measurements.rssi[i]);
+            double w = (wi * referenceWeight) / (wi + referenceWeight);
+
+            normal[0] += w * a0 * a0;
+            normal[1] += w * a0 * a1;
+            normal[2] += w * a1 * a1;
+            rhs[0] += w * a0 * b;
+            rhs[1] += w * a1 * b;
+        }
+
+        double det = normal[0] * normal[2] - normal[1] * normal[1];
+        // Relative tolerance so the check does not depend on the weight scale
+        if (Math.abs(det) <= 1e-12 * (normal[0] * normal[2] + 1e-300))
+            return false;
+
+        position[0] = (rhs[0] * normal[2] - rhs[1] * normal[1]) / det;
+        position[1] = (rhs[1] * normal[0] - rhs[0] * normal[1]) / det;
+        return true;
+    }
+}
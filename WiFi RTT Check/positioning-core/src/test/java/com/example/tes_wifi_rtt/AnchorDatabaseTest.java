@@ -0,0 +1,107 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the anchor database and its CSV compiler.
+ */
+public class AnchorDatabaseTest {
+    /** Same routers as app/anchors.csv. */
+    static final String FIXTURE_CSV = "mac,x,y,z,floor,building\n"
+            + "d8:6c:63:d6:5f:aa,32.24,37.12\n"
+            + "9c:4f:5f:0b:a9:5a,31.26,47.87\n"
+            + "9c:4f:5f:0b:ad:6f,32.24,55.68\n"
+            + "70:3a:cb:6e:ce:85,31.26,65.45\n"
+            + "70:3a:cb:29:4b:3a,37.12,42.98\n"
+            + "9c:4f:5f:0b:ac:b4,46.89,42.98\n"
+            + "60:b7:6e:a3:72:07,38.10,51.78\n"
+            + "60:b7:6e:a3:73:1a,41.03,54.71\n"
+            + "60:b7:6e:8c:78:98,46.89,58.62\n";
+
+    /**
+     * Compiles the fixture routers into an in-memory database.
+     */
+    static AnchorDatabase fixture() {
+        try {
+            return new AnchorDatabase(AnchorDatabaseCompiler.compile(new StringReader(FIXTURE_CSV)));
+        }
+        catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void compile_sortsAndLooksUpEveryColumn() throws IOException {
+        String csv = "# comment\n"
+                + "mac,x,y,z,floor,building\n"
+                + "00:00:00:00:00:03,3.5,-1,2.5,1,7\n"
+                + "\n"
+                + "00:00:00:00:00:01,1,2\n"
+                + "ff:ff:ff:ff:ff:ff,9,9,0,-1,2\n";
+        AnchorDatabase database = new AnchorDatabase(AnchorDatabaseCompiler.compile(new StringReader(csv)));
+
+        assertEquals(3, database.size());
+        assertEquals(1L, database.getMAC(0));
+        assertEquals(0xffffffffffffL, database.getMAC(2));
+        int index = database.indexOf(3L);
+        assertEquals(1, index);
+        assertEquals(3.5f, database.getX(index), 0);
+        assertEquals(-1f, database.getY(index), 0);
+        assertEquals(2.5f, database.getZ(index), 0);
+        assertEquals(1f, database.getFloor(index), 0);
+        assertEquals(7, database.getBuilding(index));
+        assertEquals(0, database.getBuilding(0));
+        assertEquals(-1f, database.getFloor(2), 0);
+        assertEquals(-1, database.indexOf(2L));
+        assertEquals(-1, database.indexOf(0L));
+        assertEquals(-1, AnchorDatabase.EMPTY.indexOf(1L));
+    }
+
+    @Test
+    public void compile_rejectsBadInput() throws IOException {
+        String[] bad = {"00:00:00:00:00:01,1,2\nbad,1,2\n", "00:00:00:00:00:01,1\n",
+                "00:00:00:00:00:01,1,2\n00:00:00:00:00:01,3,4\n", "00:00:00:00:00:01,x,2\n"};
+        for (String csv : bad) {
+            try {
+                AnchorDatabaseCompiler.compile(new StringReader(csv));
+                fail("Accepted " + csv);
+            }
+            catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+        try {
+            new AnchorDatabase(ByteBuffer.wrap(new byte[32]));
+            fail("Accepted a buffer without the magic number");
+        }
+        catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void open_mapsCompiledFile() throws IOException {
+        ByteBuffer compiled = AnchorDatabaseCompiler.compile(new StringReader(FIXTURE_CSV));
+        File file = File.createTempFile("anchors", ".bin");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(compiled.array(), 0, compiled.limit());
+        }
+
+        AnchorDatabase database = AnchorDatabase.open(file);
+        assertEquals(9, database.size());
+        int index = database.indexOf(MacAddress.pack("60:b7:6e:a3:72:07"));
+        assertEquals(38.10f, database.getX(index), 0);
+        assertEquals(51.78f, database.getY(index), 0);
+        for (int i = 1; i < database.size(); i++)
+            assertTrue(database.getMAC(i - 1) < database.getMAC(i));
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the anchor grid, the floor classifier and multi-floor solving.
+ */
+public class AnchorGridTest {
+    private static AnchorDatabase compile(StringBuilder csv) throws IOException {
+        return new AnchorDatabase(AnchorDatabaseCompiler.compile(new StringReader(csv.toString())));
+    }
+
+    private static void anchor(StringBuilder csv, long mac, double x, double y, int floor, int building) {
+        csv.append(MacAddress.format(mac)).append(',').append(x).append(',').append(y)
+                .append(",0,").append(floor).append(',').append(building).append('\n');
+    }
+
+    @Test
+    public void query_findsAnchorsOnFloorWithinRadius() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        long mac = 1;
+        for (int x = 0; x < 100; x += 5) {
+            for (int y = 0; y < 100; y += 5) {
+                anchor(csv, mac++, x, y, 0, 0);
+                anchor(csv, mac++, x, y, 1, 0);
+            }
+        }
+        anchor(csv, mac, 50, 50, 0, 3);
+        AnchorDatabase database = compile(csv);
+        AnchorGrid grid = new AnchorGrid(database, 16);
+
+        int[] out = new int[64];
+        int found = grid.query(0, 1, 50, 50, 7.5, out);
+        // 50,50 itself, four at 5 m and four diagonals at 7.07 m
+        assertEquals(9, found);
+        for (int i = 0; i < found; i++) {
+            assertEquals(1f, database.getFloor(out[i]), 0);
+            assertEquals(0, database.getBuilding(out[i]));
+            assertTrue(Math.hypot(database.getX(out[i]) - 50, database.getY(out[i]) - 50) <= 7.5);
+        }
+        assertEquals(1, grid.query(3, 0, 50, 50, 1, out));
+        assertEquals(0, grid.query(2, 0, 50, 50, 100, out));
+        // Results that do not fit are counted
+        assertEquals(9, grid.query(0, 0, 50, 50, 7.5, new int[2]));
+    }
+
+    @Test
+    public void floorClassifier_switchesOnlyWhenOutvoted() {
+        FloorClassifier floors = new FloorClassifier();
+        assertTrue(floors.matches(5, 5));
+        floors.begin();
+        floors.vote(0, 1, -50);
+        floors.vote(0, 2, -70);
+        assertTrue(floors.finish());
+        assertEquals(1f, floors.getFloor(), 0);
+        assertFalse(floors.matches(0, 2));
+
+        // Slightly stronger votes for another floor are not enough
+        floors.begin();
+        floors.vote(0, 1, -60);
+        floors.vote(0, 2, -55);
+        assertFalse(floors.finish());
+        assertEquals(1f, floors.getFloor(), 0);
+
+        floors.begin();
+        floors.vote(0, 2, -50);
+        floors.vote(0, 2, -55);
+        floors.vote(0, 1, -85);
+        assertTrue(floors.finish());
+        assertEquals(2f, floors.getFloor(), 0);
+    }
+
+    @Test
+    public void ingestScan_solvesOnClassifiedFloor() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        double[][] corners = {{10, 10}, {30, 10}, {10, 30}, {30, 30}};
+        for (int i = 0; i < corners.length; i++) {
+            anchor(csv, 0x100 + i, corners[i][0], corners[i][1], 0, 0);
+            anchor(csv, 0x200 + i, corners[i][0] + 1, corners[i][1] - 1, 1, 0);
+        }
+        GPSCoreAPI coreAPI = new GPSCoreAPI(compile(csv));
+
+        // Floor 1 answers strongly with true ranges, floor 0 weakly with misleading ones
+        long[] macs = new long[8];
+        int[] dist = new int[8];
+        int[] stdDev = new int[8];
+        int[] rssi = new int[8];
+        for (int i = 0; i < 4; i++) {
+            macs[i] = 0x200 + i;
+            dist[i] = (int)Math.round(Math.hypot(16 - corners[i][0] - 1, 14 - corners[i][1] + 1) * 1000);
+            rssi[i] = -50 - i;
+            macs[4 + i] = 0x100 + i;
+            dist[4 + i] = 3000;
+            rssi[4 + i] = -80;
+        }
+        Arrays.fill(stdDev, 100);
+        coreAPI.ingestScan(1000000000L, macs, dist, stdDev, rssi, 8);
+
+        assertTrue(coreAPI.hasFloor());
+        assertEquals(1f, coreAPI.getFloor(), 0);
+        double[] position = coreAPI.calculatePosition();
+        assertEquals(16, position[0], 0.05);
+        assertEquals(14, position[1], 0.05);
+    }
+
+    @Test
+    public void ingestScan_onlyUsesAnchorsNearLastFix() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        double[][] near = {{40, 40}, {60, 40}, {40, 60}, {60, 60}, {50, 35}, {35, 50}};
+        for (int i = 0; i < near.length; i++)
+            anchor(csv, 0x100 + i, near[i][0], near[i][1], 0, 0);
+        for (int i = 0; i < 40; i++)
+            anchor(csv, 0x200 + i, 150 + 5 * i, 150, 0, 0);
+        GPSCoreAPI coreAPI = new GPSCoreAPI(compile(csv));
+
+        int count = near.length + 40;
+        long[] macs = new long[count];
+        int[] dist = new int[count];
+        int[] stdDev = new int[count];
+        int[] rssi = new int[count];
+        Arrays.fill(stdDev, 100);
+        for (int i = 0; i < near.length; i++) {
+            macs[i] = 0x100 + i;
+            dist[i] = (int)Math.round(Math.hypot(47 - near[i][0], 45 - near[i][1]) * 1000);
+            rssi[i] = -50 - i;
+        }
+        coreAPI.ingestScan(1000000000L, macs, dist, stdDev, rssi, near.length);
+        assertEquals(47, coreAPI.getDevicePos()[0], 0.05);
+
+        // Far routers answer with misleading ranges once the list is large enough for the grid
+        for (int i = 0; i < 40; i++) {
+            macs[near.length + i] = 0x200 + i;
+            dist[near.length + i] = 5000;
+            rssi[near.length + i] = -90;
+        }
+        coreAPI.ingestScan(1100000000L, macs, dist, stdDev, rssi, count);
+        assertEquals(count, coreAPI.getRouterCount());
+        double[] position = coreAPI.calculatePosition();
+        assertEquals(47, position[0], 0.05);
+        assertEquals(45, position[1], 0.05);
+    }
+}
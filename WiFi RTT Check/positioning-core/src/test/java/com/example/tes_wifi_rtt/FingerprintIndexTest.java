@@ -0,0 +1,113 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the fingerprint k-d tree and database.
+ */
+public class FingerprintIndexTest {
+    @Test
+    public void query_matchesBruteForce() {
+        int count = 3000;
+        int dimensions = 6;
+        Random random = new Random(5);
+        float[] vectors = new float[count * dimensions];
+        for (int i = 0; i < vectors.length; i++)
+            vectors[i] = -100 + random.nextInt(60); // Whole dB values, so many ties
+        FingerprintIndex index = new FingerprintIndex(vectors, count, dimensions);
+
+        int[] ids = new int[5];
+        float[] distances = new float[5];
+        float[] query = new float[dimensions];
+        float[] all = new float[count];
+        for (int q = 0; q < 200; q++) {
+            for (int d = 0; d < dimensions; d++)
+                query[d] = -100 + 60 * random.nextFloat();
+            assertEquals(5, index.query(query, ids, distances));
+
+            for (int i = 0; i < count; i++) {
+                float sum = 0;
+                for (int d = 0; d < dimensions; d++) {
+                    float diff = query[d] - vectors[i * dimensions + d];
+                    sum += diff * diff;
+                }
+                all[i] = sum;
+            }
+            Arrays.sort(all);
+            for (int k = 0; k < 5; k++) {
+                assertEquals(all[k], distances[k], 1e-3f);
+                float check = 0;
+                for (int d = 0; d < dimensions; d++) {
+                    float diff = query[d] - vectors[ids[k] * dimensions + d];
+                    check += diff * diff;
+                }
+                assertEquals(distances[k], check, 1e-3f);
+            }
+        }
+
+        // Fewer vectors than neighbours asked for
+        FingerprintIndex small = new FingerprintIndex(vectors, 3, dimensions);
+        assertEquals(3, small.query(query, ids, distances));
+    }
+
+    @Test
+    public void locate_averagesNearestFingerprintsOnFloor() throws Exception {
+        FingerprintDatabase database = FingerprintDatabase.parse(new StringReader(
+                "# Survey\n"
+                + "x,y,floor,building,02:00:00:00:00:01,02:00:00:00:00:02,02:00:00:00:00:03\n"
+                + "0,0,0,0,-40,-70,-80\n"
+                + "10,0,0,0,-70,-40,-80\n"
+                + "0,10,0,0,-70,-80,-40\n"
+                + "5,5,1,0,-40,-40,\n"));
+        assertEquals(4, database.size());
+
+        double[] out = new double[3];
+        long[] macs = {MacAddress.pack("02:00:00:00:00:02"), MacAddress.pack("02:00:00:00:00:01"), 99L,
+                MacAddress.pack("02:00:00:00:00:03")};
+        int[] rssi = {-41, -69, -50, -80};
+        assertTrue(database.locate(0, 0, macs, rssi, 4, out));
+        assertTrue(out[0] > 6); // Pulled towards the fingerprint at (10, 0)
+        assertTrue(out[1] < 3);
+        assertTrue(out[2] >= FingerprintDatabase.MIN_VARIANCE);
+
+        // Only one surveyed access point heard, or a floor without fingerprints
+        assertFalse(database.locate(0, 0, macs, rssi, 1, out));
+        assertFalse(database.locate(0, 2, macs, rssi, 3, out));
+    }
+
+    @Test
+    public void surveyCompiler_turnsWalkIntoFingerprints() throws Exception {
+        // A 60 s loop through the corridors of the fixture site
+        long[] times = {0, 15000000000L, 30000000000L, 45000000000L, 60000000000L};
+        double[] x = {33, 45, 45, 33, 33};
+        double[] y = {40, 40, 56, 56, 40};
+        RttSimulator survey = new RttSimulator(AnchorDatabaseTest.fixture(), times, x, y, 1);
+        StringWriter csv = new StringWriter();
+        int count = FingerprintSurveyCompiler.compile(Collections.singletonList(survey.toTrace("survey")), 2, 1, csv);
+        assertEquals(121, count);
+        assertTrue(csv.toString().startsWith("x,y,floor,building,"));
+        FingerprintDatabase database = FingerprintDatabase.parse(new StringReader(csv.toString()));
+        assertEquals(count, database.size());
+
+        // A later walk along the same loop is placed near where it is
+        RttSimulator walk = new RttSimulator(AnchorDatabaseTest.fixture(), times, x, y, 2);
+        RangingScan scan = new RangingScan();
+        double[] truth = new double[2];
+        double[] out = new double[3];
+        for (int i = 0; i <= 45; i++)
+            walk.nextScan(scan);
+        walk.getTruth(truth);
+        assertTrue(database.locate(1, 2, scan.macs, scan.rssi, scan.count, out));
+        assertEquals(truth[0], out[0], 3);
+        assertEquals(truth[1], out[1], 3);
+        assertFalse(database.locate(0, 0, scan.macs, scan.rssi, scan.count, out));
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the GPS core API.
+ */
+public class GPSCoreAPITest {
+    @Test
+    public void ingestScan_appliesWholeScan() {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        int count = 12;
+        long[] macs = new long[count];
+        int[] dist = new int[count];
+        int[] stdDev = new int[count];
+        int[] rssi = new int[count];
+        for (int i = 0; i < count; i++) {
+            macs[i] = 0x0200000000L + i;
+            dist[i] = 1000 * (i + 1);
+            stdDev[i] = 100;
+            rssi[i] = -80 + i;
+        }
+        macs[3] = MacAddress.INVALID;
+
+        assertEquals(count - 1, coreAPI.ingestScan(1000L, macs, dist, stdDev, rssi, count));
+        assertEquals(count - 1, coreAPI.getRouterCount());
+        assertEquals(-69, coreAPI.getRouterRssi(0));
+        assertEquals(12.0f, coreAPI.getRouterDist(0), 1e-6f);
+        for (int i = 1; i < coreAPI.getRouterCount(); i++)
+            assertTrue(coreAPI.getRouterRssi(i - 1) >= coreAPI.getRouterRssi(i));
+
+        // A second scan updates the same routers rather than adding new ones
+        rssi[0] = -40;
+        assertEquals(1, coreAPI.ingestScan(2000L, macs, dist, stdDev, rssi, 1));
+        assertEquals(count - 1, coreAPI.getRouterCount());
+        assertEquals(MacAddress.format(macs[0]), coreAPI.getRouterMACAddr(0));
+    }
+
+    @Test
+    public void expireRouters_removesOnlyStaleRouters() {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        long[] macs = {1L, 2L, 3L};
+        int[] dist = {1000, 2000, 3000};
+        int[] stdDev = {100, 100, 100};
+        int[] rssi = {-50, -60, -70};
+        coreAPI.ingestScan(1000000000L, macs, dist, stdDev, rssi, 3);
+        coreAPI.ingestScan(5000000000L, new long[] {2L}, dist, stdDev, rssi, 1);
+
+        assertEquals(0, coreAPI.expireRouters(5000000000L, 4000000000L));
+        assertEquals(2, coreAPI.expireRouters(6000000000L, 4000000000L));
+        assertEquals(1, coreAPI.getRouterCount());
+        assertEquals(2L, coreAPI.getRouterMAC(0));
+        assertEquals(0, coreAPI.getRouterEpoch());
+    }
+
+    @Test
+    public void scanAtTimeZero_isKeptAndSolved() {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        long[] macs = {0xd86c63d65faaL, 0x9c4f5f0ba95aL, 0x9c4f5f0bad6fL, 0x703acb294b3aL, 0x9c4f5f0bacb4L,
+                0x60b76ea37207L};
+        double[][] anchors = {{32.24, 37.12}, {31.26, 47.87}, {32.24, 55.68}, {37.12, 42.98}, {46.89, 42.98},
+                {38.10, 51.78}};
+        int[] dist = new int[macs.length];
+        int[] stdDev = new int[macs.length];
+        int[] rssi = new int[macs.length];
+        for (int i = 0; i < macs.length; i++) {
+            dist[i] = (int)Math.round(Math.hypot(36 - anchors[i][0], 45 - anchors[i][1]) * 1000);
+            stdDev[i] = 100;
+            rssi[i] = -60 - i;
+        }
+
+        // Simulated scans start their clock at 0, which is a measurement like any other
+        assertEquals(macs.length, coreAPI.applyScan(0, macs, dist, stdDev, rssi, macs.length));
+        assertEquals(0, coreAPI.expireRouters(1000000000L, 4000000000L));
+        assertTrue(coreAPI.solveScan(0));
+        double[] position = new double[2];
+        assertTrue(coreAPI.predictDevicePos(0, position));
+        assertEquals(36, position[0], 0.1);
+        assertEquals(45, position[1], 0.1);
+        assertEquals(macs.length, coreAPI.expireRouters(5000000001L, 4000000000L));
+    }
+
+    @Test
+    public void calculatePosition_trustsRoutersMissedByLatestScanLess() {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        long[] macs = {0xd86c63d65faaL, 0x9c4f5f0ba95aL, 0x9c4f5f0bad6fL, 0x703acb294b3aL, 0x9c4f5f0bacb4L,
+                0x60b76ea37207L};
+        double[][] anchors = {{32.24, 37.12}, {31.26, 47.87}, {32.24, 55.68}, {37.12, 42.98}, {46.89, 42.98},
+                {38.10, 51.78}};
+        int[] dist = new int[macs.length];
+        int[] stdDev = new int[macs.length];
+        int[] rssi = new int[macs.length];
+        for (int i = 0; i < macs.length; i++) {
+            dist[i] = (int)Math.round(Math.hypot(36 - anchors[i][0], 45 - anchors[i][1]) * 1000);
+            stdDev[i] = 100;
+            rssi[i] = -55;
+        }
+        coreAPI.ingestScan(1000000000L, macs, dist, stdDev, rssi, macs.length);
+
+        // Five seconds later at (40, 46) only the first four routers answer
+        for (int i = 0; i < 4; i++)
+            dist[i] = (int)Math.round(Math.hypot(40 - anchors[i][0], 46 - anchors[i][1]) * 1000);
+        coreAPI.applyScan(6000000000L, macs, dist, stdDev, rssi, 4);
+        double[] position = coreAPI.calculatePosition();
+        assertEquals(40, position[0], 0.3);
+        assertEquals(46, position[1], 0.3);
+    }
+
+    @Test
+    public void calculatePosition_usesEveryKnownRouter() {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        String[] macs = {"d8:6c:63:d6:5f:aa", "9c:4f:5f:0b:a9:5a", "9c:4f:5f:0b:ad:6f", "70:3a:cb:29:4b:3a",
+                "9c:4f:5f:0b:ac:b4", "60:b7:6e:a3:72:07"};
+        float[][] anchors = {{32.24f, 37.12f}, {31.26f, 47.87f}, {32.24f, 55.68f}, {37.12f, 42.98f},
+                {46.89f, 42.98f}, {38.10f, 51.78f}};
+        for (int i = 0; i < macs.length; i++) {
+            double range = Math.hypot(36 - anchors[i][0], 45 - anchors[i][1]);
+            coreAPI.appendRouterList((float)(range * 1000), macs[i], -60 - i);
+        }
+        // A router missing from the lookup table is not used as an anchor
+        coreAPI.appendRouterList(1000, "00:11:22:33:44:55", -40);
+
+        double[] position = coreAPI.calculatePosition();
+        assertEquals(36, position[0], 0.01);
+        assertEquals(45, position[1], 0.01);
+        assertEquals(7, coreAPI.getAllRouterPos().length);
+        assertEquals(38.10, coreAPI.getAllRouterPos()[6][1], 1e-5); // Last router is filled in too
+    }
+
+    @Test
+    public void calculatePosition_keepsSolverPositionWhenRefinementDeclines() {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        // A solver that needs fewer than three routers, as the particle filter does once converged
+        coreAPI.setPositionSolver((measurements, position) -> {
+            position[0] = 35.3;
+            position[1] = 45.6;
+            return true;
+        });
+        coreAPI.appendRouterList((float)(Math.hypot(35.3 - 37.12, 45.6 - 42.98) * 1000), "70:3a:cb:29:4b:3a", -50);
+        coreAPI.appendRouterList((float)(Math.hypot(35.3 - 31.26, 45.6 - 47.87) * 1000), "9c:4f:5f:0b:a9:5a", -60);
+
+        double[] position = coreAPI.calculatePosition();
+        assertEquals(35.3, position[0], 0.01);
+        assertEquals(45.6, position[1], 0.01);
+    }
+
+    @Test
+    public void calculatePosition_blendsFingerprintsWithTooFewRanges() throws Exception {
+        String[] macs = {"d8:6c:63:d6:5f:aa", "9c:4f:5f:0b:a9:5a", "9c:4f:5f:0b:ad:6f", "70:3a:cb:6e:ce:85",
+                "70:3a:cb:29:4b:3a", "9c:4f:5f:0b:ac:b4", "60:b7:6e:a3:72:07", "60:b7:6e:a3:73:1a", "60:b7:6e:8c:78:98"};
+        float[][] anchors = {{32.24f, 37.12f}, {31.26f, 47.87f}, {32.24f, 55.68f}, {31.26f, 65.45f}, {37.12f, 42.98f},
+                {46.89f, 42.98f}, {38.10f, 51.78f}, {41.03f, 54.71f}, {46.89f, 58.62f}};
+
+        // Survey every access point on a 2 m grid with a log-distance signal model
+        StringBuilder csv = new StringBuilder("x,y,floor,building");
+        for (String mac : macs)
+            csv.append(',').append(mac);
+        for (int x = 30; x <= 48; x += 2) {
+            for (int y = 38; y <= 64; y += 2) {
+                csv.append('\n').append(x).append(',').append(y).append(",0,0");
+                for (float[] anchor : anchors)
+                    csv.append(',').append(rssiAt(x, y, anchor));
+            }
+        }
+
+        // Only two routers have a known position
+        GPSCoreAPI coreAPI = new GPSCoreAPI(new AnchorDatabase(AnchorDatabaseCompiler.compile(new StringReader(
+                "70:3a:cb:29:4b:3a,37.12,42.98\n9c:4f:5f:0b:a9:5a,31.26,47.87\n"))));
+        coreAPI.setFingerprints(FingerprintDatabase.parse(new StringReader(csv.toString())));
+        double truthX = 35.3;
+        double truthY = 45.6;
+        for (int i = 0; i < macs.length; i++) {
+            double range = Math.hypot(truthX - anchors[i][0], truthY - anchors[i][1]);
+            coreAPI.appendRouterList((float)(range * 1000), macs[i], rssiAt(truthX, truthY, anchors[i]));
+        }
+
+        double[] position = coreAPI.calculatePosition();
+        assertEquals(truthX, position[0], 1.0);
+        assertEquals(truthY, position[1], 1.0);
+    }
+
+    private static int rssiAt(double x, double y, float[] anchor) {
+        return (int)Math.round(-40 - 20 * Math.log10(Math.max(1, Math.hypot(x - anchor[0], y - anchor[1]))));
+    }
+
+    @Test
+    public void calculatePosition_projectsOntoWalkableArea() throws Exception {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        coreAPI.setWalkableAreas(WalkableAreas.parse(new StringReader("0,0,29,37,34,37,34,66,29,66")));
+        String[] macs = {"d8:6c:63:d6:5f:aa", "9c:4f:5f:0b:a9:5a", "9c:4f:5f:0b:ad:6f", "70:3a:cb:29:4b:3a"};
+        float[][] anchors = {{32.24f, 37.12f}, {31.26f, 47.87f}, {32.24f, 55.68f}, {37.12f, 42.98f}};
+        for (int i = 0; i < macs.length; i++) {
+            double range = Math.hypot(36 - anchors[i][0], 45 - anchors[i][1]);
+            coreAPI.appendRouterList((float)(range * 1000), macs[i], -60 - i);
+        }
+
+        // The solution is outside the walkable area, so it is moved to its edge rather than dropped
+        double[] position = coreAPI.calculatePosition();
+        assertEquals(34, position[0], 0.02);
+        assertEquals(45, position[1], 0.02);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the GDOP ranging planner, using synthetic candidate lists.
+ */
+public class GdopRangingPlannerTest {
+    @Test
+    public void plan_prefersRoutersThatSpreadAroundTheDevice() {
+        GdopRangingPlanner planner = new GdopRangingPlanner(1);
+        planner.setDevicePosition(0, 0);
+        // Five routers east of the device, one north and one west
+        long[] candidates = {1, 2, 3, 4, 5, 6, 7};
+        double[][] positions = {{10, 0}, {11, 0.5}, {12, -0.5}, {13, 0}, {14, 0.5}, {0, 10}, {-10, 1}};
+        for (int i = 0; i < candidates.length; i++)
+            planner.setAnchorPosition(candidates[i], positions[i][0], positions[i][1]);
+
+        long[] ordered = new long[candidates.length];
+        assertEquals(3, planner.plan(candidates, candidates.length, 3, ordered));
+        Set<Long> batch = new HashSet<>();
+        for (int i = 0; i < 3; i++)
+            batch.add(ordered[i]);
+        assertTrue(batch.contains(6L));
+        assertTrue(batch.contains(7L));
+    }
+
+    @Test
+    public void plan_ranksFailingAndUnplacedRoutersLast() {
+        GdopRangingPlanner planner = new GdopRangingPlanner();
+        long[] candidates = {1, 2, 3, 4};
+        planner.setAnchorPosition(1, 0, 0);
+        planner.setAnchorPosition(2, 10, 0);
+        planner.setAnchorPosition(3, 0, 10);
+        for (int i = 0; i < 10; i++)
+            planner.onRangingResult(1, false);
+        assertTrue(planner.getSuccessRate(1) < 0.1);
+
+        long[] ordered = new long[candidates.length];
+        assertEquals(4, planner.plan(candidates, candidates.length, 2, ordered));
+        assertEquals(4L, ordered[3]);
+        assertEquals(1L, ordered[2]);
+    }
+
+    @Test
+    public void plan_rotatesThroughMoreRoutersThanFit() {
+        GdopRangingPlanner planner = new GdopRangingPlanner(1);
+        planner.setDevicePosition(0, 0);
+        int count = 40;
+        long[] candidates = new long[count];
+        for (int i = 0; i < count; i++) {
+            candidates[i] = 100 + i;
+            double angle = 2 * Math.PI * i / count;
+            planner.setAnchorPosition(candidates[i], 10 * Math.cos(angle), 10 * Math.sin(angle));
+        }
+
+        Set<Long> ranged = new HashSet<>();
+        long[] ordered = new long[count];
+        for (int scan = 0; scan < 20; scan++) {
+            assertEquals(5, planner.plan(candidates, count, 5, ordered));
+            for (int i = 0; i < 5; i++)
+                ranged.add(ordered[i]);
+        }
+        assertEquals(count, ranged.size());
+    }
+
+    @Test
+    public void anchors_surviveGrowingPastDefaultCapacity() {
+        GdopRangingPlanner planner = new GdopRangingPlanner(1);
+        int count = 300;
+        for (int i = 0; i < count; i++)
+            planner.setAnchorPosition(0x0200000000L + i, i, 0);
+        for (int i = 0; i < 10; i++)
+            planner.onRangingResult(0x0200000000L + 150, false);
+        assertTrue(planner.getSuccessRate(0x0200000000L + 150) < 0.1);
+        assertEquals(GdopRangingPlanner.PRIOR_SUCCESS_RATE, planner.getSuccessRate(0x0200000000L + 7), 0);
+        assertEquals(GdopRangingPlanner.PRIOR_SUCCESS_RATE, planner.getSuccessRate(0x0200000000L + count), 0);
+
+        // Positions set before the arrays grew are still used
+        planner.setDevicePosition(150, -10);
+        long[] candidates = {0x0200000000L + 10, 0x0200000000L + 150, 0x0200000000L + 290, 0x0200000000L + 999};
+        long[] ordered = new long[candidates.length];
+        assertEquals(4, planner.plan(candidates, candidates.length, 4, ordered));
+        assertEquals(0x0200000000L + 999, ordered[3]);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the walkable area geofence.
+ */
+public class GeofenceTest {
+    // L-shaped floor with a square stairwell cut out of it
+    private static final double[] OUTER = {0, 0, 20, 0, 20, 8, 8, 8, 8, 20, 0, 20};
+    private static final double[] HOLE = {2, 2, 5, 2, 5, 5, 2, 5};
+
+    @Test
+    public void contains_matchesRayCastEverywhere() {
+        Geofence area = new Geofence(new double[][] {OUTER, HOLE}, 1.5);
+        Random random = new Random(3);
+        for (int i = 0; i < 20000; i++) {
+            double x = random.nextDouble() * 26 - 3;
+            double y = random.nextDouble() * 26 - 3;
+            boolean expected = rayCast(OUTER, x, y) != rayCast(HOLE, x, y);
+            assertEquals("(" + x + ", " + y + ")", expected, area.contains(x, y));
+        }
+    }
+
+    @Test
+    public void project_movesOutsidePositionsToNearestBoundary() {
+        Geofence area = new Geofence(new double[][] {OUTER, HOLE});
+        double[] out = new double[2];
+
+        assertFalse(area.project(10, 4, out));
+        assertEquals(10, out[0], 0);
+        assertEquals(4, out[1], 0);
+
+        // In the notch of the L, closer to the wall at y = 8
+        assertTrue(area.project(14, 9, out));
+        assertEquals(14, out[0], 1e-9);
+        assertEquals(8, out[1], 0.02);
+        assertTrue(area.contains(out[0], out[1]));
+
+        // In the stairwell
+        assertTrue(area.project(3.5, 4.5, out));
+        assertEquals(3.5, out[0], 1e-9);
+        assertEquals(5, out[1], 0.02);
+        assertTrue(area.contains(out[0], out[1]));
+
+        // Far outside the grid
+        assertTrue(area.project(-50, 10, out));
+        assertEquals(0, out[0], 0.02);
+        assertEquals(10, out[1], 1e-9);
+    }
+
+    @Test
+    public void parse_groupsRingsByFloor() throws Exception {
+        WalkableAreas areas = WalkableAreas.parse(new StringReader(
+                "# building,floor,points\n"
+                + "0,0,0,0,10,0,10,10,0,10\n"
+                + "\n"
+                + "0,0,4,4,6,4,6,6,4,6\n"
+                + "0,1,0,0,3,0,3,3\n"));
+        assertEquals(2, areas.size());
+        assertTrue(areas.get(0, 0).contains(1, 1));
+        assertFalse(areas.get(0, 0).contains(5, 5));
+        assertTrue(areas.get(0, 1).contains(2, 1));
+        assertNull(areas.get(1, 0));
+
+        try {
+            WalkableAreas.parse(new StringReader("0,0,1,2,3,4\n"));
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Line 1"));
+        }
+    }
+
+    private static boolean rayCast(double[] ring, double x, double y) {
+        boolean inside = false;
+        int points = ring.length / 2;
+        for (int i = 0, j = points - 1; i < points; j = i++) {
+            double xi = ring[2 * i], yi = ring[2 * i + 1], xj = ring[2 * j], yj = ring[2 * j + 1];
+            if ((yi > y) != (yj > y) && x < xi + (y - yi) * (xj - xi) / (yj - yi))
+                inside = !inside;
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the Levenberg-Marquardt refinement stage.
+ */
+public class LevenbergMarquardtSolverTest {
+    private static final double[][] ANCHORS = {
+            {32.24, 37.12}, {31.26, 47.87}, {32.24, 55.68}, {31.26, 65.45}, {37.12, 42.98},
+            {46.89, 42.98}, {38.10, 51.78}, {41.03, 54.71}, {46.89, 58.62}};
+
+    private static RangeMeasurements noisyRangesTo(double x, double y, Random random, double sigma) {
+        RangeMeasurements measurements = new RangeMeasurements();
+        for (double[] anchor : ANCHORS) {
+            double range = Math.hypot(x - anchor[0], y - anchor[1]) + random.nextGaussian() * sigma;
+            measurements.add(anchor[0], anchor[1], Math.max(0, range), sigma, -60);
+        }
+        return measurements;
+    }
+
+    @Test
+    public void refine_reducesErrorOfLinearSolution() {
+        Random random = new Random(7);
+        WeightedLeastSquaresSolver linear = new WeightedLeastSquaresSolver();
+        LevenbergMarquardtSolver refined = new LevenbergMarquardtSolver();
+        double linearError = 0, refinedError = 0;
+        double[] position = new double[2];
+        for (int trial = 0; trial < 200; trial++) {
+            double x = 33 + random.nextDouble() * 12;
+            double y = 40 + random.nextDouble() * 20;
+            RangeMeasurements measurements = noisyRangesTo(x, y, random, 1.0);
+
+            assertTrue(linear.solve(measurements, position));
+            linearError += Math.hypot(position[0] - x, position[1] - y);
+            assertTrue(refined.solve(measurements, position));
+            refinedError += Math.hypot(position[0] - x, position[1] - y);
+            assertTrue(refined.getIterations() <= LevenbergMarquardtSolver.DEFAULT_MAX_ITERATIONS);
+            assertTrue(refined.getFinalResidual() <= refined.getInitialResidual() + 1e-12);
+        }
+        assertTrue(refinedError < linearError);
+        assertEquals(200, refined.getSolveCount());
+    }
+
+    @Test
+    public void refine_convergesQuicklyOnExactRanges() {
+        LevenbergMarquardtSolver solver = new LevenbergMarquardtSolver();
+        RangeMeasurements measurements = noisyRangesTo(40, 50, new Random(1), 0);
+        double[] position = {38, 47};
+        assertTrue(solver.refine(measurements, position, true));
+        assertTrue(solver.isConverged());
+        assertEquals(40, position[0], 1e-3);
+        assertEquals(50, position[1], 1e-3);
+        assertTrue(solver.getFinalResidual() < 1e-3);
+    }
+
+    @Test
+    public void refine_warmStartsFromPreviousFix() {
+        LevenbergMarquardtSolver solver = new LevenbergMarquardtSolver();
+        RangeMeasurements measurements = noisyRangesTo(40, 50, new Random(1), 0);
+        double[] position = new double[2];
+        assertFalse(solver.refine(measurements, position, false));
+
+        measurements.setPrior(41, 49);
+        assertTrue(solver.refine(measurements, position, false));
+        assertEquals(40, position[0], 1e-3);
+        assertEquals(50, position[1], 1e-3);
+    }
+}
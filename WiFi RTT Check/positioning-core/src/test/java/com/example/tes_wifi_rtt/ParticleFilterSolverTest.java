@@ -0,0 +1,75 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the particle filter solver.
+ */
+public class ParticleFilterSolverTest {
+    // 40 m corridor, 3 m wide, with every anchor mounted along its centre line
+    private static final Geofence CORRIDOR = new Geofence(new double[][] {{0, 0, 40, 0, 40, 3, 0, 3}});
+    private static final double[] ANCHOR_X = {5, 15, 25, 35};
+
+    @Test
+    public void solve_tracksCollinearAnchorsInCorridor() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ParticleFilterSolver filter = new ParticleFilterSolver(4000, pool, new Random(1));
+        Random noise = new Random(2);
+        RangeMeasurements measurements = new RangeMeasurements();
+        double[] position = new double[2];
+
+        // The closed form solver cannot use anchors on one line
+        fill(measurements, 20, 1, noise, 0);
+        assertFalse(new WeightedLeastSquaresSolver().solve(measurements, position));
+
+        // Walk along the corridor at 1 m/s
+        for (int scan = 0; scan < 20; scan++) {
+            double truthX = 12 + 0.5 * scan;
+            fill(measurements, truthX, 1, noise, scan * 500000000L);
+            assertTrue(filter.solve(measurements, position));
+            if (scan >= 5) {
+                assertEquals("scan " + scan, truthX, position[0], 1.0);
+                assertTrue(CORRIDOR.contains(position[0], position[1]));
+            }
+        }
+        assertTrue(filter.getSpread() < 1);
+
+        // Fewer particles still track, and a single anchor is enough to keep the position
+        filter.setParticleCount(200);
+        assertEquals(200, filter.getParticleCount());
+        fill(measurements, 22, 1, noise, 10000000000L);
+        measurements.count = 1;
+        assertTrue(filter.solve(measurements, position));
+        assertEquals(22, position[0], 1.5);
+        pool.shutdown();
+    }
+
+    @Test
+    public void solve_failsWithoutAnchors() {
+        ParticleFilterSolver filter = new ParticleFilterSolver();
+        RangeMeasurements measurements = new RangeMeasurements();
+        double[] position = {7, 8};
+        assertFalse(filter.solve(measurements, position));
+        assertEquals(7, position[0], 0);
+    }
+
+    private static void fill(RangeMeasurements measurements, double x, double y, Random noise, long timestampNanos) {
+        measurements.clear();
+        for (double anchorX : ANCHOR_X) {
+            double range = Math.hypot(x - anchorX, y - 1.5) + 0.3 * noise.nextGaussian();
+            measurements.add(anchorX, 1.5, range, 0.3, -60);
+        }
+        // Sort the nearest anchor first, as the core API does by RSSI
+        for (int i = 1; i < measurements.count; i++) {
+            if (measurements.range[i] < measurements.range[0])
+                measurements.swap(0, i);
+        }
+        measurements.timestampNanos = timestampNanos;
+        measurements.area = CORRIDOR;
+    }
+}
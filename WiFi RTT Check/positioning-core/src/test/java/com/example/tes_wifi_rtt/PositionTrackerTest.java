@@ -0,0 +1,80 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the position tracker and range filter.
+ */
+public class PositionTrackerTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void tracker_estimatesVelocityOfWalk() {
+        PositionTracker tracker = new PositionTracker();
+        Random random = new Random(3);
+        for (int t = 0; t <= 30; t++) {
+            double x = 35 + 1.2 * t * 0.5;
+            tracker.update(t * SECOND / 2, x + random.nextGaussian() * 0.3, 50 + random.nextGaussian() * 0.3, 0.09);
+        }
+        assertEquals(1.2, tracker.getVelocityX(), 0.2);
+        assertEquals(0, tracker.getVelocityY(), 0.2);
+
+        double[] predicted = new double[2];
+        tracker.predict(15 * SECOND + SECOND / 2, predicted);
+        assertEquals(53.6, predicted[0], 0.5);
+
+        double[] covariance = new double[16];
+        tracker.getCovariance(covariance);
+        assertTrue(covariance[0] > 0 && covariance[0] < 0.09);
+        assertEquals(covariance[2], covariance[8], 0);
+        assertEquals(0, covariance[1], 0);
+    }
+
+    @Test
+    public void tracker_limitsExtrapolation() {
+        PositionTracker tracker = new PositionTracker();
+        tracker.update(0, 40, 50, 0.25);
+        tracker.update(SECOND, 41, 50, 0.25);
+        double[] near = new double[2];
+        double[] far = new double[2];
+        tracker.predict(SECOND + PositionTracker.MAX_PREDICTION_NANOS, near);
+        tracker.predict(SECOND + 100 * PositionTracker.MAX_PREDICTION_NANOS, far);
+        assertArrayEquals(near, far, 0);
+    }
+
+    @Test
+    public void tracker_growsVarianceUntilNextFix() {
+        PositionTracker tracker = new PositionTracker();
+        tracker.update(0, 40, 50, 0.25);
+        tracker.update(SECOND, 40, 50, 0.25);
+        double[] covariance = new double[16];
+        tracker.getCovariance(covariance);
+        assertEquals(covariance[0], tracker.predictPositionVariance(SECOND), 0);
+        assertTrue(tracker.predictPositionVariance(2 * SECOND) > covariance[0]);
+        assertTrue(tracker.predictPositionVariance(10 * SECOND) > tracker.predictPositionVariance(2 * SECOND));
+        assertTrue(tracker.predictPositionVariance(10 * SECOND) > ScanScheduler.POOR_VARIANCE);
+    }
+
+    @Test
+    public void rangeFilter_trustsPreciseMeasurementsMore() {
+        RangeFilter filter = new RangeFilter();
+        filter.update(5.0, 0.3, 0);
+        filter.update(8.0, 3.0, SECOND / 10);
+        assertTrue(filter.getRange() < 5.2);
+        filter.update(6.0, 0.3, 60 * SECOND);
+        // After a long gap the new measurement dominates
+        assertEquals(6.0, filter.getRange(), 0.05);
+        assertEquals(3, filter.getCount());
+        // Trusted less the longer the router goes unmeasured
+        assertEquals(filter.getVariance(), filter.predictVariance(SECOND), 0);
+        assertEquals(filter.getVariance() + 5 * RangeFilter.DEFAULT_PROCESS_NOISE, filter.predictVariance(65 * SECOND), 1e-9);
+
+        filter.reset();
+        filter.update(2.5, 0.1, 0);
+        assertEquals(2.5, filter.getRange(), 0);
+    }
+}
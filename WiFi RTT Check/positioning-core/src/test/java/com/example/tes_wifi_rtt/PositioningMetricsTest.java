@@ -0,0 +1,100 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the latency histograms and the metrics registry.
+ */
+public class PositioningMetricsTest {
+    @Test
+    public void histogram_percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (long micros = 1; micros <= 1000; micros++)
+            histogram.record(micros * 1000);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getMean(), 1e-6);
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500000, histogram.getPercentile(50), 500000.0 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(990000, histogram.getPercentile(99), 990000.0 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(1000000, histogram.getPercentile(100));
+        assertEquals(1000, histogram.getPercentile(0), 1000.0 / LatencyHistogram.SUB_BUCKETS);
+
+        // Small values are exact, huge ones land in the last bucket
+        histogram.record(-5);
+        histogram.record(3600000000000L); // An hour
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(3600000000000L, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void histogram_bucketsAreContiguous() {
+        for (long nanos = 0; nanos < 1 << 16; nanos++) {
+            int bucket = LatencyHistogram.bucketOf(nanos);
+            assertTrue(nanos <= LatencyHistogram.highestInBucket(bucket));
+            assertTrue(bucket == 0 || nanos > LatencyHistogram.highestInBucket(bucket - 1));
+        }
+    }
+
+    @Test
+    public void histogram_countsEveryRecordFromManyThreads() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100000; i++)
+                    histogram.record(i * 10 + offset);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(400000, histogram.getCount());
+        assertEquals(400000, histogram.copy().getCount());
+        assertEquals(999993, histogram.getMax());
+    }
+
+    @Test
+    public void snapshot_exportsCountersStagesAndCodes() throws Exception {
+        PositioningMetrics metrics = new PositioningMetrics();
+        for (int i = 0; i < 10; i++) {
+            metrics.increment(PositioningMetrics.COUNTER_FIXES);
+            metrics.record(PositioningMetrics.STAGE_SOLVE, 2000000);
+        }
+        metrics.recordFailure(RangingSource.FAILURE_NO_RESPONDERS);
+        metrics.recordFailure(RangingSource.FAILURE_NO_RESPONDERS);
+        metrics.recordFailure(1000);
+        metrics.recordStatus(0);
+        metrics.recordStatus(2);
+
+        long now = System.nanoTime();
+        PositioningMetrics.Snapshot snapshot = metrics.snapshot(now);
+        for (int i = 0; i < 4; i++)
+            metrics.increment(PositioningMetrics.COUNTER_FIXES); // Not in the snapshot
+        assertEquals(2, metrics.snapshot(now + 2000000000L).getFixRate(snapshot), 1e-9);
+        assertEquals(10, snapshot.getCount(PositioningMetrics.COUNTER_FIXES));
+        assertEquals(3, snapshot.getCount(PositioningMetrics.COUNTER_FAILED));
+        assertEquals(2, snapshot.getFailureCount(RangingSource.FAILURE_NO_RESPONDERS));
+        assertEquals(1, snapshot.getFailureCount(Integer.MIN_VALUE)); // Shares the slot of 1000
+        assertEquals(1, snapshot.getStatusCount(2));
+        assertEquals(10, snapshot.getStage(PositioningMetrics.STAGE_SOLVE).getCount());
+        assertTrue(snapshot.getFixRate() > 0);
+
+        StringWriter out = new StringWriter();
+        snapshot.write(out);
+        String csv = out.toString();
+        assertTrue(csv.startsWith("metric,value\n"));
+        assertTrue(csv.contains("\nfixes,10\n"));
+        assertTrue(csv.contains("\nsolve.count,10\n"));
+        assertTrue(csv.contains("\nsolve.p50_ms,2.000\n"));
+        assertTrue(csv.contains("\nfailure.-1,2\n"));
+        assertTrue(csv.contains("\nfailure.other,1\n"));
+        assertTrue(csv.contains("\nstatus.0,1\n"));
+        assertFalse(csv.contains("failure.1,"));
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the positioning pipeline, using a fake ranging source.
+ */
+public class PositioningPipelineTest {
+    private static final String[] MACS = {"d8:6c:63:d6:5f:aa", "9c:4f:5f:0b:a9:5a", "9c:4f:5f:0b:ad:6f",
+            "70:3a:cb:29:4b:3a", "9c:4f:5f:0b:ac:b4", "60:b7:6e:a3:72:07"};
+    private static final double[][] ANCHORS = {{32.24, 37.12}, {31.26, 47.87}, {32.24, 55.68},
+            {37.12, 42.98}, {46.89, 42.98}, {38.10, 51.78}};
+
+    /**
+     * Ranging source returning exact ranges to a fixed position, or failing with a set code.
+     */
+    static class FakeRangingSource implements RangingSource {
+        volatile double x = 36;
+        volatile double y = 45;
+        volatile int failure = 0;
+        final AtomicInteger requests = new AtomicInteger();
+        long time = 0;
+
+        @Override
+        public void startRanging(RangingScan scan, Executor executor, Callback callback) {
+            requests.incrementAndGet();
+            executor.execute(() -> {
+                if (failure != 0) {
+                    callback.onRangingFailure(failure);
+                    return;
+                }
+                time += 100000000L;
+                scan.reset(time);
+                for (int i = 0; i < MACS.length; i++) {
+                    int dist = (int)Math.round(Math.hypot(x - ANCHORS[i][0], y - ANCHORS[i][1]) * 1000);
+                    scan.add(MacAddress.pack(MACS[i]), dist, 100, -55 - i);
+                }
+                callback.onRangingResults(scan);
+            });
+        }
+    }
+
+    /**
+     * Ranging source that holds each request until the test completes it.
+     */
+    static class DeferredRangingSource implements RangingSource {
+        final BlockingQueue<Runnable> pending = new LinkedBlockingQueue<>();
+
+        @Override
+        public void startRanging(RangingScan scan, Executor executor, Callback callback) {
+            pending.add(() -> executor.execute(() -> {
+                scan.reset(scan.sequence * 100000000L);
+                for (int i = 0; i < MACS.length; i++) {
+                    int dist = (int)Math.round(Math.hypot(36 - ANCHORS[i][0], 45 - ANCHORS[i][1]) * 1000);
+                    scan.add(MacAddress.pack(MACS[i]), dist, 100, -55 - i);
+                }
+                callback.onRangingResults(scan);
+            }));
+        }
+    }
+
+    /**
+     * Solver that solves the first scans it is given and fails every scan after them.
+     */
+    private static PositionSolver failingAfter(int solves) {
+        PositionSolver solver = new WeightedLeastSquaresSolver();
+        AtomicInteger count = new AtomicInteger();
+        return (measurements, position) -> count.incrementAndGet() <= solves && solver.solve(measurements, position);
+    }
+
+    private static PositionFix awaitFix(PositioningPipeline pipeline, PositionFix previous) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            PositionFix fix = pipeline.getLatestFix();
+            if (fix != null && fix != previous)
+                return fix;
+            pipeline.requestScan();
+            Thread.sleep(10);
+        }
+        fail("No fix published");
+        return null;
+    }
+
+    @Test
+    public void pipeline_publishesFixFromBackgroundThreads() throws InterruptedException {
+        FakeRangingSource source = new FakeRangingSource();
+        PositioningPipeline pipeline = new PositioningPipeline(new GPSCoreAPI(AnchorDatabaseTest.fixture()), source);
+        pipeline.start();
+        try {
+            PositionFix fix = awaitFix(pipeline, null);
+            assertTrue(fix.hasPosition());
+            assertEquals(36, fix.getX(), 0.05);
+            assertEquals(45, fix.getY(), 0.05);
+            assertEquals(MACS.length, fix.getRouterCount());
+            assertEquals(MacAddress.pack(MACS[0]), fix.getRouterMAC(0));
+            assertEquals(0, pipeline.getLastStatus());
+
+            source.failure = RangingSource.FAILURE_NO_RESPONDERS;
+            int before = source.requests.get();
+            while (source.requests.get() < before + 2) {
+                pipeline.requestScan();
+                Thread.sleep(5);
+            }
+            Thread.sleep(20);
+            assertEquals(RangingSource.FAILURE_NO_RESPONDERS, pipeline.getLastStatus());
+
+            PositioningMetrics.Snapshot metrics = pipeline.getMetrics().snapshot();
+            assertTrue(metrics.getCount(PositioningMetrics.COUNTER_POSITIONED) >= 1);
+            assertEquals(metrics.getCount(PositioningMetrics.COUNTER_FIXES),
+                    metrics.getStage(PositioningMetrics.STAGE_SOLVE).getCount());
+            assertEquals(metrics.getCount(PositioningMetrics.COUNTER_RANGED),
+                    metrics.getStage(PositioningMetrics.STAGE_RANGE).getCount());
+            assertTrue(metrics.getFailureCount(RangingSource.FAILURE_NO_RESPONDERS) >= 2);
+            assertEquals(0, metrics.getStage(PositioningMetrics.STAGE_RENDER).getCount());
+        }
+        finally {
+            pipeline.stop();
+        }
+        assertFalse(pipeline.isRunning());
+    }
+
+    @Test
+    public void pipeline_restartsAfterStop() throws InterruptedException {
+        PositioningPipeline pipeline = new PositioningPipeline(new GPSCoreAPI(AnchorDatabaseTest.fixture()), new FakeRangingSource());
+        pipeline.start();
+        PositionFix first = awaitFix(pipeline, null);
+        pipeline.stop();
+        pipeline.start();
+        try {
+            assertNotSame(first, awaitFix(pipeline, first));
+        }
+        finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    public void pipeline_discardsScansStartedBeforeClear() throws InterruptedException {
+        DeferredRangingSource source = new DeferredRangingSource();
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        PositioningPipeline pipeline = new PositioningPipeline(coreAPI, source);
+        BlockingQueue<PositionFix> published = new LinkedBlockingQueue<>();
+        pipeline.setFixListener(published::add);
+        pipeline.start();
+        try {
+            pipeline.requestScan();
+            Runnable first = source.pending.poll(1, TimeUnit.SECONDS);
+            assertNotNull(first);
+            pipeline.clearRouterList();
+            first.run();
+            for (int i = 0; i < 500 && pipeline.getStaleScanCount() == 0; i++)
+                Thread.sleep(2);
+            assertEquals(1, pipeline.getStaleScanCount());
+            assertNull(pipeline.getLatestFix());
+
+            pipeline.requestScan();
+            Runnable second = source.pending.poll(1, TimeUnit.SECONDS);
+            assertNotNull(second);
+            second.run();
+            // The fix is pushed to the listener by the scan it was solved from
+            PositionFix fix = published.poll(1, TimeUnit.SECONDS);
+            assertNotNull(fix);
+            assertSame(fix, pipeline.getLatestFix());
+            assertEquals(2, fix.getScanSequence());
+            assertEquals(1, fix.getEpoch());
+            assertEquals(200000000L, fix.getTimestamp());
+            assertEquals(36, fix.getX(), 0.05);
+        }
+        finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    public void metrics_timeSolveApartFromIngest() throws InterruptedException {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        PositionSolver solver = new WeightedLeastSquaresSolver();
+        coreAPI.setPositionSolver((measurements, position) -> {
+            try {
+                Thread.sleep(3); // Far longer than applying a six router scan
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return solver.solve(measurements, position);
+        });
+        PositioningPipeline pipeline = new PositioningPipeline(coreAPI, new FakeRangingSource());
+        pipeline.start();
+        try {
+            PositionFix fix = null;
+            for (int i = 0; i < 5; i++)
+                fix = awaitFix(pipeline, fix);
+        }
+        finally {
+            pipeline.stop();
+        }
+        PositioningMetrics.Snapshot metrics = pipeline.getMetrics().snapshot();
+        LatencyHistogram solve = metrics.getStage(PositioningMetrics.STAGE_SOLVE);
+        LatencyHistogram ingest = metrics.getStage(PositioningMetrics.STAGE_INGEST);
+        assertTrue(solve.getCount() >= 5);
+        assertEquals(solve.getCount(), ingest.getCount());
+        assertTrue(solve.getPercentile(0) >= 3000000);
+        assertTrue(ingest.getPercentile(50) < 3000000);
+    }
+
+    @Test
+    public void metrics_countOnlyScansThatGavePosition() throws InterruptedException {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        coreAPI.setPositionSolver(failingAfter(1));
+        PositioningPipeline pipeline = new PositioningPipeline(coreAPI, new FakeRangingSource());
+        pipeline.start();
+        PositionFix fix = null;
+        try {
+            for (int i = 0; i < 5; i++)
+                fix = awaitFix(pipeline, fix);
+        }
+        finally {
+            pipeline.stop();
+        }
+        assertTrue(fix.hasPosition()); // Still predicted from the first scan
+        PositioningMetrics.Snapshot metrics = pipeline.getMetrics().snapshot();
+        assertTrue(metrics.getCount(PositioningMetrics.COUNTER_FIXES) >= 5);
+        assertEquals(1, metrics.getCount(PositioningMetrics.COUNTER_POSITIONED));
+    }
+
+    @Test
+    public void scheduler_speedsUpWhenSolvesKeepFailing() throws InterruptedException {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        coreAPI.setPositionSolver(failingAfter(12));
+        ScanScheduler scheduler = new ScanScheduler(250, 4000);
+        PositioningPipeline pipeline = new PositioningPipeline(coreAPI, new FakeRangingSource(), scheduler);
+        BlockingQueue<Long> intervals = new LinkedBlockingQueue<>();
+        pipeline.setFixListener(fix -> intervals.add(scheduler.getIntervalMillis()));
+        pipeline.start();
+        try {
+            PositionFix fix = null;
+            for (int i = 0; i < 15; i++)
+                fix = awaitFix(pipeline, fix);
+        }
+        finally {
+            pipeline.stop();
+        }
+        // Standing still with good fixes slows down to the longest interval
+        Long[] seen = intervals.toArray(new Long[0]);
+        assertEquals(4000, (long)seen[11]);
+        // Then the failed solves range at the fastest rate again
+        assertEquals(250, (long)seen[seen.length - 1]);
+    }
+
+    @Test
+    public void dropOldestQueue_dropsOldest() throws InterruptedException {
+        DropOldestQueue<Integer> queue = new DropOldestQueue<>(2);
+        assertNull(queue.offer(1));
+        assertNull(queue.offer(2));
+        assertEquals(Integer.valueOf(1), queue.offer(3));
+        assertEquals(1, queue.getDropCount());
+        assertEquals(Integer.valueOf(2), queue.poll());
+        assertEquals(Integer.valueOf(3), queue.take());
+        assertNull(queue.poll(1, java.util.concurrent.TimeUnit.MILLISECONDS));
+    }
+}
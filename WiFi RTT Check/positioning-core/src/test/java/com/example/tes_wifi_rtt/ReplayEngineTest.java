@@ -0,0 +1,132 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the offline replay of recorded walks.
+ */
+public class ReplayEngineTest {
+    private static final long[] MACS = {0xd86c63d65faaL, 0x9c4f5f0ba95aL, 0x9c4f5f0bad6fL, 0x703acb294b3aL,
+            0x9c4f5f0bacb4L, 0x60b76ea37207L};
+    private static final double[][] ANCHORS = {{32.24, 37.12}, {31.26, 47.87}, {32.24, 55.68}, {37.12, 42.98},
+            {46.89, 42.98}, {38.10, 51.78}};
+
+    /**
+     * Records a walk from (34, 40) to (44, 50) at 1 m/s, one scan every 500 ms, with ranges
+     * perturbed by the given noise.
+     */
+    private static ReplayTrace walk(String name, double noiseM, long seed) throws Exception {
+        File file = File.createTempFile(name, ".bin");
+        file.deleteOnExit();
+        Random random = new Random(seed);
+        TraceRecorder recorder = new TraceRecorder(file);
+        double duration = Math.hypot(10, 10);
+        for (int scan = 0; scan * 0.5 <= duration; scan++) {
+            long timestamp = 1000000000L + scan * 500000000L;
+            double t = scan * 0.5 / duration;
+            double x = 34 + 10 * t;
+            double y = 40 + 10 * t;
+            for (int i = 0; i < MACS.length; i++) {
+                double range = Math.hypot(x - ANCHORS[i][0], y - ANCHORS[i][1]) + random.nextGaussian() * noiseM;
+                recorder.recordSample(timestamp, MACS[i], (int)Math.round(range * 1000), 200, -55 - i, 0);
+            }
+            recorder.recordSample(timestamp, 0x60b76ea3731aL, 0, 0, 0, 6); // Failed results are not applied
+        }
+        recorder.close();
+        String waypoints = "timestamp,x,y\n"
+                + "1000000000,34,40\n"
+                + (1000000000L + (long)(duration * 1e9)) + ",44,50\n";
+        return new ReplayTrace(name, TraceReader.open(file), new StringReader(waypoints));
+    }
+
+    @Test
+    public void replayTrace_groupsSamplesIntoScansAndInterpolatesWaypoints() throws Exception {
+        ReplayTrace trace = walk("walk", 0, 1);
+        assertEquals(29, trace.getScanCount());
+        assertEquals(2, trace.getWaypointCount());
+
+        RangingScan scan = new RangingScan();
+        trace.copyScan(3, scan);
+        assertEquals(2500000000L, scan.timestampNanos);
+        assertEquals(MACS.length, scan.count);
+
+        double[] truth = new double[2];
+        assertFalse(trace.getTruth(999999999L, truth));
+        assertTrue(trace.getTruth(1000000000L + (long)(Math.hypot(10, 10) * 0.5e9), truth));
+        assertEquals(39, truth[0], 1e-6);
+        assertEquals(45, truth[1], 1e-6);
+    }
+
+    @Test
+    public void run_reportsPercentilesPerConfiguration() throws Exception {
+        List<ReplayTrace> traces = Arrays.asList(walk("exact", 0, 1), walk("noisy", 1.5, 2), walk("noisier", 1.5, 3));
+        List<ReplayEngine.Configuration> configurations = ReplayEngine.defaultConfigurations(WalkableAreas.NONE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        ReplayEngine.Result[] results = new ReplayEngine(AnchorDatabaseTest.fixture(), pool).run(traces, configurations);
+        pool.shutdown();
+
+        assertEquals(configurations.size(), results.length);
+        for (int c = 0; c < results.length; c++) {
+            ReplayEngine.Result result = results[c];
+            assertEquals(configurations.get(c).getName(), result.getName());
+            assertEquals(3 * 29, result.getFixCount() + result.getMissedCount());
+            assertTrue(result.getName(), result.getPercentile(50) <= result.getPercentile(90));
+            assertTrue(result.getName(), result.getPercentile(90) <= result.getPercentile(100));
+            assertTrue(result.getName() + " p50 " + result.getPercentile(50), result.getPercentile(50) < 2);
+        }
+
+        // Replays are repeatable
+        ReplayEngine.Result again = new ReplayEngine(AnchorDatabaseTest.fixture()).run(traces,
+                Collections.singletonList(configurations.get(0)))[0];
+        assertEquals(results[0].getPercentile(95), again.getPercentile(95), 0);
+    }
+
+    @Test
+    public void run_countsScansWithoutFixAsMissed() throws Exception {
+        // Standing at (38, 45), the last 10 of 20 scans come after the router TTL and only range a
+        // router missing from the database
+        File file = File.createTempFile("lost", ".bin");
+        file.deleteOnExit();
+        TraceRecorder recorder = new TraceRecorder(file);
+        for (int scan = 0; scan < 20; scan++) {
+            long timestamp = 1000000000L + scan * 500000000L + (scan >= 10 ? 60000000000L : 0);
+            if (scan >= 10) {
+                recorder.recordSample(timestamp, 0x0123456789abL, 5000, 200, -60, 0);
+                continue;
+            }
+            for (int i = 0; i < MACS.length; i++) {
+                double range = Math.hypot(38 - ANCHORS[i][0], 45 - ANCHORS[i][1]);
+                recorder.recordSample(timestamp, MACS[i], (int)Math.round(range * 1000), 200, -55 - i, 0);
+            }
+        }
+        recorder.close();
+        ReplayTrace trace = new ReplayTrace("lost", TraceReader.open(file),
+                new StringReader("timestamp,x,y\n1000000000,38,45\n70500000000,38,45\n"));
+
+        ReplayEngine.Result result = new ReplayEngine(AnchorDatabaseTest.fixture()).run(
+                Collections.singletonList(trace), ReplayEngine.defaultConfigurations(WalkableAreas.NONE).subList(0, 1))[0];
+        assertEquals(10, result.getFixCount());
+        assertEquals(10, result.getMissedCount());
+    }
+
+    @Test
+    public void result_usesNearestRank() {
+        ReplayEngine.Result result = new ReplayEngine.Result("test", new float[] {5, 1, 4, 2, 3}, 0);
+        assertEquals(1, result.getPercentile(0), 0);
+        assertEquals(3, result.getPercentile(50), 0);
+        assertEquals(5, result.getPercentile(90), 0);
+        assertEquals(5, result.getPercentile(100), 0);
+        assertEquals(3, result.getMean(), 1e-9);
+        assertTrue(Double.isNaN(new ReplayEngine.Result("empty", new float[0], 0).getPercentile(50)));
+    }
+}
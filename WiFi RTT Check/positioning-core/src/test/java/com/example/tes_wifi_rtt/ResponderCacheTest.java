@@ -0,0 +1,62 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the responder cache.
+ */
+public class ResponderCacheTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void put_evictsLeastRecentlyUsedAndExpired() {
+        ResponderCache<String> cache = new ResponderCache<>(3, 10000, 30000);
+        cache.beginRefresh(0);
+        cache.put(1L, "a", true, 5180, 0);
+        cache.put(2L, "b", false, 2412, 0);
+        cache.put(3L, "c", true, 5200, 5 * SECOND);
+        assertEquals("a", cache.get(1L)); // Now the most recently used
+        cache.put(4L, "d", true, 5220, 5 * SECOND);
+
+        assertNull(cache.get(2L));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        long[] out = new long[cache.size()];
+        assertEquals(3, cache.getResponders(out));
+        assertEquals(5220, cache.getFrequency(4L));
+
+        assertEquals(1, cache.evictExpired(12 * SECOND));
+        assertNull(cache.get(1L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void needsRefresh_followsIntervalAndFailures() {
+        ResponderCache<String> cache = new ResponderCache<>(8, 60000, 30000);
+        assertTrue(cache.needsRefresh(0));
+        cache.beginRefresh(0);
+        assertTrue(cache.needsRefresh(SECOND)); // No responders yet
+        cache.put(1L, "a", true, 5180, 0);
+        cache.put(2L, "b", true, 5180, 0);
+        assertFalse(cache.needsRefresh(SECOND));
+        assertTrue(cache.needsRefresh(30 * SECOND));
+
+        // Repeated failures drop the responder and ask for an early refresh
+        for (int i = 0; i < ResponderCache.MAX_CONSECUTIVE_FAILURES - 1; i++)
+            cache.onRangingResult(1L, false, 2 * SECOND);
+        cache.onRangingResult(1L, true, 2 * SECOND);
+        cache.onRangingResult(2L, false, 2 * SECOND);
+        assertFalse(cache.needsRefresh(3 * SECOND));
+        for (int i = 0; i < ResponderCache.MAX_CONSECUTIVE_FAILURES; i++)
+            cache.onRangingResult(1L, false, 3 * SECOND);
+        assertEquals(1, cache.size());
+        assertTrue(cache.needsRefresh(3 * SECOND));
+        cache.beginRefresh(3 * SECOND);
+        assertFalse(cache.needsRefresh(4 * SECOND));
+        assertEquals(2, cache.getRefreshCount());
+    }
+}
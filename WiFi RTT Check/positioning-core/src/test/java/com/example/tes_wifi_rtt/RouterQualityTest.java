@@ -0,0 +1,116 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the per-router ranging statistics and quarantine.
+ */
+public class RouterQualityTest {
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void failingRouter_isQuarantinedFilteredAndReleased() {
+        RouterQuality quality = new RouterQuality(10000);
+        long now = SECOND;
+        for (int i = 0; i < RouterQuality.MIN_SAMPLES * 2; i++, now += SECOND / 5) {
+            quality.onRangingResult(1L, true, now);
+            quality.onRangingResult(2L, true, now);
+            quality.onRangingResult(3L, false, now);
+        }
+        assertTrue(quality.isQuarantined(3L, now));
+        assertFalse(quality.isQuarantined(1L, now));
+        assertEquals(1, quality.getQuarantineCount());
+        assertEquals(1, quality.getSuccessRate(3L), 0); // Starts over once quarantined
+
+        long[] macs = {1L, 3L, 2L};
+        assertEquals(2, quality.filter(macs, 3, now));
+        assertEquals(1L, macs[0]);
+        assertEquals(2L, macs[1]);
+
+        // Released after 10 s, and a second quarantine lasts twice as long
+        long released = now + 10 * SECOND;
+        assertFalse(quality.isQuarantined(3L, released));
+        for (int i = 0; i < RouterQuality.MIN_SAMPLES * 2; i++)
+            quality.onRangingResult(3L, false, released + i);
+        assertTrue(quality.isQuarantined(3L, released + 19 * SECOND));
+        assertFalse(quality.isQuarantined(3L, released + 21 * SECOND));
+    }
+
+    @Test
+    public void longRanges_raiseMultipathAndInnovationScores() {
+        RouterQuality quality = new RouterQuality();
+        long now = SECOND;
+        for (int i = 0; i < RouterQuality.MIN_SAMPLES * 2; i++, now += SECOND / 5) {
+            double noise = (i % 2 == 0 ? 0.2 : -0.2);
+            quality.onRange(1L, 10 + noise, 0.3, noise, 0.5, now);
+            quality.onRange(2L, 12 + noise, 0.3, -noise, 0.5, now);
+            quality.onRange(3L, 15 + noise, 0.3, 5 + noise, 0.5, now); // Through a wall
+            quality.onRange(4L, 20, 0.3, 8, 50, now); // Fix too uncertain to judge
+        }
+        assertFalse(quality.isQuarantined(1L, now));
+        assertFalse(quality.isQuarantined(2L, now));
+        assertTrue(quality.isQuarantined(3L, now));
+        assertFalse(quality.isQuarantined(4L, now));
+        assertEquals(0.2 * 0.2 * 2, quality.getRangeVariance(1L), 0.02);
+        assertTrue(quality.getInnovationScore(1L) < 1);
+        assertEquals(0, quality.getInnovationMean(1L), 0.1);
+        assertEquals(0, quality.getMultipathScore(1L), 0);
+        assertEquals(0, quality.getMultipathScore(4L), 0);
+        assertEquals(0, quality.getInnovationScore(4L), 0);
+    }
+
+    @Test
+    public void quarantine_neverHoldsMoreThanAThird() {
+        RouterQuality quality = new RouterQuality();
+        long now = SECOND;
+        for (int i = 0; i < RouterQuality.MIN_SAMPLES * 2; i++, now += SECOND / 5) {
+            for (long mac = 1; mac <= 6; mac++)
+                quality.onRangingResult(mac, false, now);
+        }
+        int quarantined = 0;
+        for (long mac = 1; mac <= 6; mac++)
+            quarantined += quality.isQuarantined(mac, now) ? 1 : 0;
+        assertEquals(2, quarantined);
+    }
+
+    @Test
+    public void ingestScan_stopsSolvingWithBiasedRouter() {
+        AnchorDatabase anchors = AnchorDatabaseTest.fixture();
+        long biased = MacAddress.pack("70:3a:cb:29:4b:3a");
+        GPSCoreAPI plain = new GPSCoreAPI(anchors);
+        GPSCoreAPI judged = new GPSCoreAPI(anchors);
+        RouterQuality quality = new RouterQuality();
+        judged.setRouterQuality(quality);
+
+        int count = anchors.size();
+        long[] macs = new long[count];
+        int[] dist = new int[count];
+        int[] stdDev = new int[count];
+        int[] rssi = new int[count];
+        double x = 38;
+        double y = 50;
+        for (int i = 0; i < count; i++) {
+            macs[i] = anchors.getMAC(i);
+            dist[i] = (int)(1000 * Math.hypot(anchors.getX(i) - x, anchors.getY(i) - y));
+            if (macs[i] == biased)
+                dist[i] += 6000;
+            stdDev[i] = 200;
+            rssi[i] = -50 - i;
+        }
+        for (int scan = 1; scan <= 40; scan++) {
+            plain.ingestScan(scan * SECOND / 5, macs, dist, stdDev, rssi, count);
+            judged.ingestScan(scan * SECOND / 5, macs, dist, stdDev, rssi, count);
+        }
+        assertTrue(quality.isQuarantined(biased, 40 * SECOND / 5));
+        assertEquals(count, judged.getRouterCount()); // Still listed
+        double[] position = new double[2];
+        assertTrue(judged.predictDevicePos(40 * SECOND / 5, position));
+        double judgedError = Math.hypot(position[0] - x, position[1] - y);
+        assertTrue(plain.predictDevicePos(40 * SECOND / 5, position));
+        double plainError = Math.hypot(position[0] - x, position[1] - y);
+        assertTrue(judgedError + " vs " + plainError, judgedError < 0.5 * plainError);
+        assertTrue(judgedError < 0.3);
+    }
+}
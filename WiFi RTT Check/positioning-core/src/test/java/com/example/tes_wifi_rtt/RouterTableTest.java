@@ -0,0 +1,82 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the router table and MAC address packing.
+ */
+public class RouterTableTest {
+    @Test
+    public void pack_roundTrips() {
+        long mac = MacAddress.pack(" D8:6C:63:D6:5F:AA ");
+        assertEquals(0xd86c63d65faaL, mac);
+        assertEquals("d8:6c:63:d6:5f:aa", MacAddress.format(mac));
+        assertEquals("MAC: d8:6c:63:d6:5f:aa", MacAddress.append(new StringBuilder("MAC: "), mac).toString());
+        assertEquals(MacAddress.INVALID, MacAddress.pack("FAIL"));
+        assertEquals(MacAddress.INVALID, MacAddress.pack(null));
+    }
+
+    @Test
+    public void updateRssi_keepsStrongestFirst() {
+        RouterTable table = new RouterTable(4);
+        for (long mac = 1; mac <= 5; mac++) {
+            table.add(mac);
+            table.updateRssi(mac, (int)(-90 + mac));
+        }
+        assertEquals(5, table.size());
+        assertEquals(5L, table.getByRank(0).getMAC());
+        assertEquals(1L, table.getByRank(4).getMAC());
+
+        table.updateRssi(1L, -50);
+        assertEquals(1L, table.getByRank(0).getMAC());
+        table.updateRssi(1L, -99);
+        assertEquals(1L, table.getByRank(4).getMAC());
+        for (int i = 1; i < table.size(); i++)
+            assertTrue(table.getByRank(i - 1).getRSSI() >= table.getByRank(i).getRSSI());
+    }
+
+    @Test
+    public void add_reusesExistingRouter() {
+        RouterTable table = new RouterTable();
+        GPSCoreAPI.Router first = table.add(42L);
+        assertSame(first, table.add(42L));
+        assertSame(first, table.get(42L));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void remove_keepsOtherKeysReachable() {
+        RouterTable table = new RouterTable(8);
+        for (long mac = 1; mac <= 8; mac++)
+            table.add(mac << 40);
+        assertTrue(table.remove(3L << 40));
+        assertFalse(table.remove(3L << 40));
+        assertNull(table.get(3L << 40));
+        for (long mac = 1; mac <= 8; mac++) {
+            if (mac != 3)
+                assertNotNull(table.get(mac << 40));
+        }
+        assertEquals(7, table.size());
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertNull(table.get(1L << 40));
+    }
+
+    @Test
+    public void appendRouterList_updatesInPlace() {
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        coreAPI.appendRouterList(4000, "d8:6c:63:d6:5f:aa", -70);
+        coreAPI.appendRouterList(6000, "9c:4f:5f:0b:a9:5a", -60);
+        coreAPI.appendRouterList(2000, "d8:6c:63:d6:5f:aa", -50);
+        coreAPI.appendRouterList(1000, "FAIL", 0);
+
+        assertEquals(2, coreAPI.getRouterCount());
+        assertEquals("d8:6c:63:d6:5f:aa", coreAPI.getRouterMACAddr(0));
+        assertEquals(3.0f, coreAPI.getRouterDist(0), 0.01f); // Filtered over both measurements
+        assertEquals(32.24f, coreAPI.getRouterX(0), 1e-6f);
+        assertEquals(6.0f, coreAPI.getRouterDist(1), 1e-6f);
+    }
+}
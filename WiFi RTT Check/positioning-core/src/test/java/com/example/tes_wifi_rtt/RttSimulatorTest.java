@@ -0,0 +1,103 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the synthetic ranging scan generator.
+ */
+public class RttSimulatorTest {
+    // A 60 s loop through the corridors of the fixture site
+    private static final long[] TIMES = {0, 15000000000L, 30000000000L, 45000000000L, 60000000000L};
+    private static final double[] X = {33, 45, 45, 33, 33};
+    private static final double[] Y = {40, 40, 56, 56, 40};
+
+    @Test
+    public void nextScan_isDeterministicAndFollowsTrajectory() {
+        RttSimulator a = new RttSimulator(AnchorDatabaseTest.fixture(), TIMES, X, Y, 7);
+        RttSimulator b = new RttSimulator(AnchorDatabaseTest.fixture(), TIMES, X, Y, 7);
+        a.setNlos(0.2, 3);
+        b.setNlos(0.2, 3);
+        RangingScan scanA = new RangingScan();
+        RangingScan scanB = new RangingScan();
+        double[] truth = new double[2];
+        int scans = 0;
+        while (a.nextScan(scanA)) {
+            assertTrue(b.nextScan(scanB));
+            assertEquals(scanA.timestampNanos, scanB.timestampNanos);
+            assertEquals(scanA.count, scanB.count);
+            for (int i = 0; i < scanA.count; i++) {
+                assertEquals(scanA.macs[i], scanB.macs[i]);
+                assertEquals(scanA.distMm[i], scanB.distMm[i]);
+                assertEquals(scanA.rssi[i], scanB.rssi[i]);
+            }
+            scans++;
+        }
+        assertFalse(b.nextScan(scanB));
+        assertEquals(121, scans);
+        a.getTruth(truth);
+        assertEquals(33, truth[0], 1e-9);
+        assertEquals(40, truth[1], 1e-9);
+
+        // Half way along the second leg
+        a.reset();
+        for (int i = 0; i <= 45; i++)
+            a.nextScan(scanA);
+        a.getTruth(truth);
+        assertEquals(22500000000L, scanA.timestampNanos);
+        assertEquals(45, truth[0], 1e-9);
+        assertEquals(48, truth[1], 1e-9);
+    }
+
+    @Test
+    public void nextScan_appliesDropoutsChurnAndRange() {
+        RttSimulator simulator = new RttSimulator(AnchorDatabaseTest.fixture(), TIMES, X, Y, 3);
+        simulator.setNoise(0);
+        RangingScan scan = new RangingScan();
+        double[] truth = new double[2];
+        AnchorDatabase anchors = AnchorDatabaseTest.fixture();
+        assertTrue(simulator.nextScan(scan));
+        simulator.getTruth(truth);
+        assertEquals(anchors.size(), scan.count);
+        for (int i = 0; i < scan.count; i++) {
+            int index = anchors.indexOf(scan.macs[i]);
+            double distance = Math.hypot(anchors.getX(index) - truth[0], anchors.getY(index) - truth[1]);
+            assertEquals(distance * 1000, scan.distMm[i], 1);
+        }
+
+        simulator.setMaxRange(10);
+        simulator.reset();
+        simulator.nextScan(scan);
+        assertTrue(scan.count < anchors.size());
+
+        simulator.setMaxRange(RttSimulator.DEFAULT_MAX_RANGE);
+        simulator.setDropout(0.5);
+        simulator.setChurn(0.05);
+        simulator.reset();
+        long results = 0;
+        int scans = 0;
+        while (simulator.nextScan(scan)) {
+            results += scan.count;
+            scans++;
+        }
+        double heard = (double)results / (scans * anchors.size());
+        assertTrue("heard " + heard, heard > 0.2 && heard < 0.45);
+    }
+
+    @Test
+    public void toTrace_replaysWithinNoise() {
+        RttSimulator simulator = new RttSimulator(AnchorDatabaseTest.fixture(), TIMES, X, Y, 11);
+        simulator.setDropout(0.1);
+        ReplayTrace trace = simulator.toTrace("loop");
+        assertEquals(121, trace.getScanCount());
+        assertEquals(TIMES.length, trace.getWaypointCount());
+
+        ReplayEngine.Result result = new ReplayEngine(AnchorDatabaseTest.fixture()).run(
+                Collections.singletonList(trace), ReplayEngine.defaultConfigurations(WalkableAreas.NONE))[0];
+        assertEquals(121, result.getFixCount() + result.getMissedCount());
+        assertTrue("p90 " + result.getPercentile(90), result.getPercentile(90) < 1.5);
+    }
+}
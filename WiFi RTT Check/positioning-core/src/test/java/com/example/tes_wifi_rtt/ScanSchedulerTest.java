@@ -0,0 +1,47 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the adaptive scan scheduler.
+ */
+public class ScanSchedulerTest {
+    @Test
+    public void onFix_rangesFastWhileMovingAndSlowWhileStill() {
+        ScanScheduler scheduler = new ScanScheduler(250, 4000);
+        assertEquals(250, scheduler.getIntervalMillis());
+
+        scheduler.onFix(true, 1.5, 0.5);
+        assertEquals(250, scheduler.getIntervalMillis());
+
+        // Standing still slows down a step at a time
+        long previous = scheduler.getIntervalMillis();
+        for (int i = 0; i < 20; i++) {
+            scheduler.onFix(true, 0, 0.5);
+            assertTrue(scheduler.getIntervalMillis() <= previous * 3 / 2);
+            previous = scheduler.getIntervalMillis();
+        }
+        assertEquals(4000, scheduler.getIntervalMillis());
+
+        // A poor fix or starting to move speeds up at once
+        scheduler.onFix(true, 0, 10);
+        assertEquals(250, scheduler.getIntervalMillis());
+        scheduler.onFix(false, 0, 0);
+        assertEquals(250, scheduler.getIntervalMillis());
+    }
+
+    @Test
+    public void onFailure_backsOffUntilNextFix() {
+        ScanScheduler scheduler = new ScanScheduler(250, 4000);
+        for (int i = 0; i < 20; i++)
+            scheduler.onFailure();
+        assertEquals(ScanScheduler.MAX_BACKOFF_MS, scheduler.getIntervalMillis());
+        assertEquals(20, scheduler.getFailureCount());
+
+        scheduler.onFix(true, 2, 0.5);
+        assertEquals(0, scheduler.getFailureCount());
+        assertEquals(250, scheduler.getIntervalMillis());
+    }
+}
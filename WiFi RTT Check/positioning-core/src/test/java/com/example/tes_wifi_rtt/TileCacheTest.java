@@ -0,0 +1,68 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the floorplan tile cache. Tiles are byte arrays sized by their length.
+ */
+public class TileCacheTest {
+    private static TileCache<byte[]> cache(long maxBytes) {
+        return new TileCache<>(maxBytes, tile -> tile.length);
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedBeyondSize() {
+        TileCache<byte[]> cache = cache(300);
+        cache.put(1, new byte[100]);
+        cache.put(2, new byte[100]);
+        cache.put(3, new byte[100]);
+        assertNotNull(cache.get(1)); // Now 2 is the least recently used
+        cache.put(4, new byte[100]);
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(4));
+        assertEquals(3, cache.getCount());
+        assertEquals(300, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(4, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        cache.put(5, new byte[400]); // Larger than the whole cache
+        assertEquals(0, cache.getCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void request_marksPendingOnceUntilPutOrFailed() {
+        TileCache<byte[]> cache = cache(1000);
+        assertTrue(cache.request(7));
+        assertFalse(cache.request(7));
+        assertTrue(cache.isPending(7));
+        cache.put(7, new byte[10]);
+        assertFalse(cache.isPending(7));
+        assertFalse(cache.request(7)); // Cached
+
+        assertTrue(cache.request(8));
+        cache.fail(8);
+        assertFalse(cache.isPending(8));
+        assertTrue(cache.request(8));
+    }
+
+    @Test
+    public void cancelPendingExcept_dropsTilesOutOfView() {
+        TileCache<byte[]> cache = cache(1000);
+        for (long key = 1; key <= 5; key++)
+            cache.request(key);
+        cache.cancelPendingExcept(new long[] { 2, 99, 4 }, 2);
+        assertFalse(cache.isPending(1));
+        assertTrue(cache.isPending(2));
+        assertFalse(cache.isPending(3));
+        assertFalse(cache.isPending(4)); // Past the count
+        assertFalse(cache.isPending(5));
+        assertNull(cache.peek(2));
+        assertEquals(0, cache.getMissCount());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the floorplan tile layout and its manifest.
+ */
+public class TilePyramidTest {
+    @Test
+    public void levels_halveUntilOneTile() {
+        TilePyramid pyramid = new TilePyramid(1330, 1598, 256, 17.91, 0, -304.5);
+        assertEquals(4, pyramid.getLevels());
+        assertEquals(6, pyramid.getColumns(0));
+        assertEquals(7, pyramid.getRows(0));
+        assertEquals(665, pyramid.getLevelWidth(1));
+        assertEquals(400, pyramid.getLevelHeight(2));
+        assertEquals(200, pyramid.getLevelHeight(3));
+        assertEquals(1, pyramid.getColumns(3));
+        assertEquals(1, pyramid.getRows(3));
+        assertEquals(1, new TilePyramid(100, 80, 256, 1, 0, 0).getLevels());
+    }
+
+    @Test
+    public void chooseLevel_keepsAtLeastOnePixelPerScreenPixel() {
+        TilePyramid pyramid = new TilePyramid(1330, 1598, 256, 17.91, 0, -304.5);
+        assertEquals(0, pyramid.chooseLevel(0.5));
+        assertEquals(0, pyramid.chooseLevel(1.9));
+        assertEquals(1, pyramid.chooseLevel(2));
+        assertEquals(2, pyramid.chooseLevel(7.9));
+        assertEquals(3, pyramid.chooseLevel(100)); // Coarsest level there is
+    }
+
+    @Test
+    public void visibleTiles_coverRectangleAndClipToImage() {
+        TilePyramid pyramid = new TilePyramid(1330, 1598, 256, 17.91, 0, -304.5);
+        long[] keys = new long[64];
+        int count = pyramid.visibleTiles(0, 300, 100, 600, 300, keys);
+        assertEquals(4, count);
+        assertEquals(TilePyramid.key(0, 1, 0), keys[0]);
+        assertEquals(TilePyramid.key(0, 2, 0), keys[1]);
+        assertEquals(TilePyramid.key(0, 1, 1), keys[2]);
+        assertEquals(TilePyramid.key(0, 2, 1), keys[3]);
+        // Level 1 tiles span 512 level 0 pixels
+        assertEquals(1, pyramid.visibleTiles(1, 300, 100, 500, 300, keys));
+        assertEquals(TilePyramid.key(1, 0, 0), keys[0]);
+        // Partly and wholly outside the image
+        assertEquals(6 * 7, pyramid.visibleTiles(0, -1000, -1000, 5000, 5000, keys));
+        assertEquals(0, pyramid.visibleTiles(0, 2000, 0, 3000, 100, keys));
+        assertEquals(-42, pyramid.visibleTiles(0, -1000, -1000, 5000, 5000, new long[10]));
+    }
+
+    @Test
+    public void keysAndManifest_roundTrip() throws Exception {
+        long key = TilePyramid.key(3, 70000, 12);
+        assertEquals(3, TilePyramid.getLevel(key));
+        assertEquals(70000, TilePyramid.getColumn(key));
+        assertEquals(12, TilePyramid.getRow(key));
+        assertEquals("3/70000_12.jpg", TilePyramid.getPath(key));
+
+        TilePyramid pyramid = new TilePyramid(1330, 1598, 256, 17.91, 0, -304.5);
+        StringWriter out = new StringWriter();
+        pyramid.write(out);
+        TilePyramid read = TilePyramid.parse(new StringReader("# Floorplan\n\n" + out));
+        assertEquals(1330, read.getWidth());
+        assertEquals(1598, read.getHeight());
+        assertEquals(256, read.getTileSize());
+        assertEquals(17.91, read.getPxPerMeter(), 0);
+        assertEquals(-304.5, read.getOriginY(), 0);
+        assertEquals(4, read.getLevels());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parse_rejectsNonPositiveScale() throws Exception {
+        TilePyramid.parse(new StringReader("1330,1598,256,0,0,0\n"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the binary trace recorder and reader.
+ */
+public class TraceRecorderTest {
+    @Test
+    public void recordedSamplesAndFixes_readBackInOrder() throws Exception {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        GPSCoreAPI coreAPI = new GPSCoreAPI(AnchorDatabaseTest.fixture());
+        PositionFix fix = new PositionFix(coreAPI, 3000, 7);
+
+        TraceRecorder recorder = new TraceRecorder(file);
+        for (int i = 0; i < 1000; i++)
+            recorder.recordSample(1000 + i, 0xd86c63d65faaL, 4200 + i, 150, -61, 0);
+        recorder.recordSample(2000, 0x9c4f5f0ba95aL, 0, 0, 0, -2);
+        recorder.recordFix(fix);
+        recorder.close();
+        assertEquals(1002, recorder.getRecordedCount());
+        assertEquals(0, recorder.getDroppedCount());
+
+        TraceReader reader = TraceReader.open(file);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(reader.next());
+            assertEquals(TraceRecorder.SAMPLE, reader.getType());
+            assertEquals(1000 + i, reader.getTimestamp());
+            assertEquals(0xd86c63d65faaL, reader.getMAC());
+            assertEquals(4200 + i, reader.getDistMm());
+            assertEquals(150, reader.getDistStdDevMm());
+            assertEquals(-61, reader.getRssi());
+            assertEquals(0, reader.getStatus());
+        }
+        assertTrue(reader.next());
+        assertEquals(0x9c4f5f0ba95aL, reader.getMAC());
+        assertEquals(-2, reader.getStatus());
+        assertTrue(reader.next());
+        assertEquals(TraceRecorder.FIX, reader.getType());
+        assertEquals(3000, reader.getTimestamp());
+        assertEquals(7, reader.getScanSequence());
+        assertEquals(fix.hasPosition(), reader.hasPosition());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void fullRing_dropsRecordsAndTruncatedTraceEndsCleanly() throws Exception {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        TraceRecorder recorder = new TraceRecorder(file, 256);
+        for (int i = 0; i < 20; i++)
+            recorder.recordSample(i, i, i, 0, -50, 0);
+        long recorded = recorder.getRecordedCount();
+        assertEquals(20, recorded + recorder.getDroppedCount());
+        recorder.close();
+        assertTrue(recorded >= 256 / (TraceRecorder.SAMPLE_SIZE + 2));
+
+        // Cut the last record in half as a crash would
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(out.length() - TraceRecorder.SAMPLE_SIZE / 2);
+        }
+        TraceReader reader = TraceReader.open(file);
+        int count = 0;
+        while (reader.next())
+            assertEquals(count++, reader.getTimestamp());
+        assertEquals(recorded - 1, count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void open_rejectsOtherFiles() throws Exception {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.write(new byte[32]);
+        }
+        TraceReader.open(file);
+    }
+}
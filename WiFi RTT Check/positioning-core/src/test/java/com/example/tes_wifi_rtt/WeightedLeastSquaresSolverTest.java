@@ -0,0 +1,67 @@
+package com.example.tes_wifi_rtt;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the weighted least squares position solver.
+ */
+public class WeightedLeastSquaresSolverTest {
+    private static final double[][] ANCHORS = {
+            {32.24, 37.12}, {31.26, 47.87}, {32.24, 55.68}, {31.26, 65.45}, {37.12, 42.98},
+            {46.89, 42.98}, {38.10, 51.78}, {41.03, 54.71}, {46.89, 58.62}};
+
+    private static RangeMeasurements rangesTo(double x, double y) {
+        RangeMeasurements measurements = new RangeMeasurements(2);
+        for (double[] anchor : ANCHORS)
+            measurements.add(anchor[0], anchor[1], Math.hypot(x - anchor[0], y - anchor[1]), 0.5, -60);
+        return measurements;
+    }
+
+    @Test
+    public void solve_exactRanges() {
+        double[] position = new double[2];
+        assertTrue(new WeightedLeastSquaresSolver().solve(rangesTo(40, 50), position));
+        assertEquals(40, position[0], 1e-9);
+        assertEquals(50, position[1], 1e-9);
+    }
+
+    @Test
+    public void solve_downWeightsUntrustedRange() {
+        RangeMeasurements measurements = rangesTo(40, 50);
+        // One anchor with a 5 m error but a large reported standard deviation and weak signal
+        measurements.range[8] += 5;
+        measurements.stdDev[8] = 3;
+        measurements.rssi[8] = -88;
+
+        double[] position = new double[2];
+        assertTrue(new WeightedLeastSquaresSolver().solve(measurements, position));
+        assertEquals(40, position[0], 0.05);
+        assertEquals(50, position[1], 0.05);
+    }
+
+    @Test
+    public void solve_rejectsDegenerateInput() {
+        WeightedLeastSquaresSolver solver = new WeightedLeastSquaresSolver();
+        double[] position = {-1, -1};
+
+        RangeMeasurements two = new RangeMeasurements();
+        two.add(0, 0, 1, 0.5, -60);
+        two.add(2, 0, 1, 0.5, -60);
+        assertFalse(solver.solve(two, position));
+
+        RangeMeasurements collinear = new RangeMeasurements();
+        collinear.add(0, 0, 1, 0.5, -60);
+        collinear.add(1, 0, 1, 0.5, -60);
+        collinear.add(2, 0, 1, 0.5, -60);
+        assertFalse(solver.solve(collinear, position));
+        assertEquals(-1, position[0], 0);
+    }
+
+    @Test
+    public void weight_penalisesWeakSignal() {
+        assertEquals(1 / (0.3 * 0.3), WeightedLeastSquaresSolver.weight(0.1, -50), 1e-9);
+        assertTrue(WeightedLeastSquaresSolver.weight(0.5, -80) < WeightedLeastSquaresSolver.weight(0.5, -60));
+    }
+}
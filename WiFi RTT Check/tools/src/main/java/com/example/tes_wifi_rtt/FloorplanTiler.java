@@ -0,0 +1,208 @@
+/** \file FloorplanTiler.java
+ *  \brief This file contains the tool that splits a floorplan image into the
+ *  tile pyramid drawn by the app.
+ *
+ *  Run on a build machine as
+ *      java com.example.tes_wifi_rtt.FloorplanTiler map.jpg out/ pxPerMeter originX originY [tileSize]
+ *  to write out/floorplan.csv and the tiles out/<level>/<column>_<row>.jpg.
+ *  Tiles already in out/ are replaced.
+ */
+
+package com.example.tes_wifi_rtt;
+
+/* Imports */
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ *  \brief This class writes every level of a TilePyramid from one image, each
+ *  level a 2x2 box filtered half of the one before.
+ */
+public final class FloorplanTiler {
+    /* Public Variables */
+    public static final float JPEG_QUALITY = 0.85f;     /*!< Quality of the written tiles, from 0 to 1. */
+
+    /* Constructor(s) */
+
+    /**
+     *  \brief Private constructor. This class only contains static methods.
+     *
+     *  \param None.
+     */
+    private FloorplanTiler() {
+    }
+
+    /* Methods */
+
+    /**
+     *  \brief Tiles an image file.
+     *
+     *  \param args A String array containing the image path, the output directory, the level 0
+     *         pixels per meter, the pixel of 0,0 m and optionally the tile size.
+     *  \return None.
+     *  \throws IOException If a file could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 5 && args.length != 6) {
+            System.err.println("Usage: FloorplanTiler <image> <output dir> <pxPerMeter> <originX> <originY> [tileSize]");
+            System.exit(2);
+        }
+        BufferedImage image = ImageIO.read(new File(args[0]));
+        if (image == null) {
+            System.err.println("Not an image: " + args[0]);
+            System.exit(1);
+        }
+        int tileSize = args.length == 6 ? Integer.parseInt(args[5]) : TilePyramid.DEFAULT_TILE_SIZE;
+        TilePyramid pyramid = new TilePyramid(image.getWidth(), image.getHeight(), tileSize,
+                Double.parseDouble(args[2]), Double.parseDouble(args[3]), Double.parseDouble(args[4]));
+        int tiles = write(image, pyramid, new File(args[1]));
+        System.out.println("Wrote " + tiles + " tiles in " + pyramid.getLevels() + " levels to " + args[1]);
+    }
+
+    /**
+     *  \brief Writes the manifest and every tile of a pyramid.
+     *
+     *  \param image The level 0 image. Its size must match the pyramid.
+     *  \param pyramid The layout of the tiles.
+     *  \param directory The directory to write to, created if missing.
+     *  \return An integer containing the number of tiles written.
+     *  \throws IOException If a file could not be written.
+     */
+    public static int write(BufferedImage image, TilePyramid pyramid, File directory) throws IOException {
+        if (image.getWidth() != pyramid.getWidth() || image.getHeight() != pyramid.getHeight())
+            throw new IllegalArgumentException("Image is " + image.getWidth() + "x" + image.getHeight()
+                    + ", pyramid is " + pyramid.getWidth() + "x" + pyramid.getHeight());
+        BufferedImage level = toRgb(image);
+        int written = 0;
+        for (int l = 0; l < pyramid.getLevels(); l++) {
+            if (l > 0)
+                level = halve(level);
+            File levelDirectory = new File(directory, Integer.toString(l));
+            clear(levelDirectory);
+            int size = pyramid.getTileSize();
+            for (int row = 0; row < pyramid.getRows(l); row++) {
+                for (int column = 0; column < pyramid.getColumns(l); column++) {
+                    int x = column * size;
+                    int y = row * size;
+                    BufferedImage tile = level.getSubimage(x, y, Math.min(size, level.getWidth() - x),
+                            Math.min(size, level.getHeight() - y));
+                    writeJpeg(tile, new File(directory, TilePyramid.getPath(TilePyramid.key(l, column, row))));
+                    written++;
+                }
+            }
+        }
+        // Levels left over from a larger image
+        for (int l = pyramid.getLevels(); ; l++) {
+            File stale = new File(directory, Integer.toString(l));
+            File[] files = stale.listFiles();
+            if (files == null)
+                break;
+            for (File file : files)
+                file.delete();
+            stale.delete();
+        }
+        try (Writer out = new FileWriter(new File(directory, TilePyramid.MANIFEST))) {
+            pyramid.write(out);
+        }
+        return written;
+    }
+
+    /**
+     *  \brief Halves an image, each pixel the mean of the 2x2 pixels it covers. An odd last
+     *         column or row is averaged on its own.
+     *
+     *  \param image An RGB image.
+     *  \return A new RGB image of half the size, rounded up.
+     */
+    static BufferedImage halve(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int halfWidth = (width + 1) / 2;
+        int halfHeight = (height + 1) / 2;
+        int[] upper = new int[width];
+        int[] lower = new int[width];
+        int[] out = new int[halfWidth];
+        BufferedImage half = new BufferedImage(halfWidth, halfHeight, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < halfHeight; y++) {
+            image.getRGB(0, 2 * y, width, 1, upper, 0, width);
+            image.getRGB(0, Math.min(2 * y + 1, height - 1), width, 1, lower, 0, width);
+            for (int x = 0; x < halfWidth; x++) {
+                int x1 = Math.min(2 * x + 1, width - 1);
+                int pixel = 0;
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int sum = ((upper[2 * x] >> shift) & 0xFF) + ((upper[x1] >> shift) & 0xFF)
+                            + ((lower[2 * x] >> shift) & 0xFF) + ((lower[x1] >> shift) & 0xFF);
+                    pixel |= ((sum + 2) / 4) << shift;
+                }
+                out[x] = pixel;
+            }
+            half.setRGB(0, y, halfWidth, 1, out, 0, halfWidth);
+        }
+        return half;
+    }
+
+    /**
+     *  \brief Copies an image into an RGB image, dropping any alpha.
+     *
+     *  \param image The image to copy.
+     *  \return The image itself if it is already RGB, else a copy.
+     */
+    private static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB)
+            return image;
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        rgb.createGraphics().drawImage(image, 0, 0, null);
+        return rgb;
+    }
+
+    /**
+     *  \brief Deletes the tiles in a level directory, creating the directory if missing.
+     *
+     *  \param directory The level directory.
+     *  \return None.
+     *  \throws IOException If the directory could not be created.
+     */
+    private static void clear(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".jpg"));
+        if (files == null) {
+            if (!directory.mkdirs() && !directory.isDirectory())
+                throw new IOException("Could not create " + directory);
+            return;
+        }
+        for (File file : files)
+            file.delete();
+    }
+
+    /**
+     *  \brief Writes an image as a JPEG file at JPEG_QUALITY.
+     *
+     *  \param image The image to write.
+     *  \param file The file to write to.
+     *  \return None.
+     *  \throws IOException If the file could not be written.
+     */
+    private static void writeJpeg(BufferedImage image, File file) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+        file.delete();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            writer.dispose();
+        }
+    }
+}